@@ -1,18 +1,52 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import javax.imageio.ImageIO;
 
 import tester.*;
 import javalib.impworld.*;
 import javalib.worldimages.*;
 import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
 
 // TODO: final run (tick presentation)/formatting, user guide ZIP IMAGES!!!
 
 // controls the animation of seam removals
 class ImageEditor extends World {
 
-  // the end of the list represents the most recently removed seam
-  ArrayList<SeamInfo> seamHistory;
+  // every removed seam as compact index paths and colors, the most recently
+  // removed seam is popped first
+  ISeamHistory seamHistory;
 
   // random variable based on a seed (consistently generates same random sequence
   // if same seed)
@@ -41,27 +75,83 @@ class ImageEditor extends World {
   // is the game inflating?
   boolean inflating = false;
 
+  // pick the direction of every seam by the energy it removes per pixel instead
+  // of at random?
+  boolean optimalOrder = false;
+
+  // the image being carved, linked pixel by pixel (see PackedGrid for why the
+  // editor does not carve a flat buffer)
   Grid grid;
 
+  // draws the grid into the same image every frame, created on the first frame
+  transient GridRenderer renderer;
+
+  // the seam highlighted as a red line, which is the seam removed on the next
+  // tick, or null if no seam is highlighted
+  transient SeamInfo redLineSeam;
+
+  // finds the next seams on a background thread while a frame is shown, or
+  // null if every seam is found on this thread when it is needed
+  transient SeamPipeline pipeline;
+
+  // finds both seams at once on a copy of the grid for optimalOrder when there
+  // is no pipeline, both created the first time they are needed, after which
+  // every seam removed or reinserted is also removed or reinserted in the copy
+  transient DualSeamSearch dualSearch;
+  transient GridMirror mirror;
+
   ImageEditor(Grid grid) {
     this.grid = grid;
     this.rand = new Random(420);
-    this.seamHistory = new ArrayList<>();
+    this.seamHistory = new SeamHistory();
+  }
+
+  // like ImageEditor(grid), but also finds the next seams in the background if
+  // background is true, which needs every change to the grid to go through
+  // this editor
+  ImageEditor(Grid grid, boolean background) {
+    this(grid);
+    if (background) {
+      this.pipeline = new SeamPipeline(grid);
+    }
+  }
+
+  // like ImageEditor(grid), but keeps every removed seam in the given journal
+  // instead of memory, first removing the seams already in it from the grid,
+  // so that a carve can be resumed from the journal it left behind
+  // the journal is closed by close(), which the world calls when it ends, a
+  // journal that is never closed still has every seam up to its end, followed
+  // by the unused part of the last mapped window
+  ImageEditor(Grid grid, SeamJournal journal) {
+    this(grid);
+    journal.replay(grid);
+    this.seamHistory = journal;
   }
 
   // creates the scene that visualizes the pixels in the grid according to the
   // world parameters
   public WorldScene makeScene() {
+    if (this.renderer == null || this.renderer.grid != this.grid) {
+      this.renderer = new GridRenderer(this.grid);
+    }
+
     WorldScene w = new WorldScene(1000, 1000);
-    w.placeImageXY(this.grid.makeImage(this.grayScaleOffEnergy), 500, 500);
+    w.placeImageXY(this.renderer.render(this.grayScaleOffEnergy), 500, 500);
     return w;
   }
 
+  // EFFECT: stops the editor's threads and closes its journal once the world
+  // ends, returning the last scene like any other world
+  public WorldScene lastScene(String msg) {
+    this.close();
+    return super.lastScene(msg);
+  }
+
   // EFFECT: mutates the world state based on given the key press
   public void onKeyEvent(String key) {
     // does not process the image once it is smaller than 3 on either dimension
     // grid construction assumes at least a 2x2 grid
-    if (this.grid.rootPixel.rowCount() < 3 || this.grid.rootPixel.colCount() < 3) {
+    if (this.grid.height < 3 || this.grid.width < 3) {
       // unless we are trying to inflate, then we will allow r to be pressed
       if (!key.equals("r")) {
         return;
@@ -95,6 +185,12 @@ class ImageEditor extends World {
       this.grayScaleOffEnergy = !this.grayScaleOffEnergy;
     }
 
+    // User can choose to toggle between removing seams in a random direction,
+    // and in the direction that removes the least energy per pixel
+    else if (key.equals("o")) {
+      this.optimalOrder = !this.optimalOrder;
+    }
+
     // Extra Credit: User can choose to toggle between normal and reverse direction
     // of
     // the seams removed, reinserting them back into the image
@@ -115,7 +211,7 @@ class ImageEditor extends World {
     }
 
     // does not process the image once it is smaller than 3 on either dimension
-    if (this.grid.rootPixel.rowCount() < 3 || this.grid.rootPixel.colCount() < 3) {
+    if (this.grid.height < 3 || this.grid.width < 3) {
       // unless we are reversing, then we will keep running code in onTick
       if (!this.inflating) {
         return;
@@ -132,27 +228,23 @@ class ImageEditor extends World {
 
       if (this.removeSeam) {
         // also if we are on a red line, remove the correct seam and the red line
-        if (this.removeVertical) {
-          // vertical red line
-          this.seamHistory.add(this.grid.findLowestSeamVertical());
-          this.grid.removeSeamVertical(false);
-        }
-        else {
-          // horizontal red line
-          this.seamHistory.add(this.grid.findLowestSeamHorizontal());
-          this.grid.removeSeamHorizontal(false);
-        }
+        this.removeRedLineSeam();
 
         // next removal of seam will be a red line
         this.removeSeam = false;
 
       }
 
-      // EFFECT: removes the last element in the seam history and stores it in
-      // seamToInsert
-      SeamInfo seamToInsert = this.seamHistory.remove(this.seamHistory.size() - 1);
-
-      this.grid.reinsertSeam(seamToInsert);
+      // EFFECT: removes the most recently removed seam from the history and
+      // rebuilds its pixels in the grid, and in the copies of the grid
+      CompactSeam seam = this.seamHistory.pop();
+      this.grid.reinsertSeam(seam);
+      if (this.pipeline != null) {
+        this.pipeline.seamReinserted(seam);
+      }
+      if (this.mirror != null) {
+        this.mirror.apply(new SeamChange(seam));
+      }
 
       // dont do anything else on this tick
       return;
@@ -164,17 +256,8 @@ class ImageEditor extends World {
       if (this.removeHorizontalOverride || this.removeVerticalOverride) {
         // if a remove hor/vertical seam has been queued (to remove a single seam)
         // we will not draw a red line, and simply remove the queued seam
-
-        if (this.removeHorizontalOverride) {
-          // horiontal red line
-          this.seamHistory.add(this.grid.findLowestSeamHorizontal());
-          this.grid.removeSeamHorizontal(false);
-        }
-        else {
-          // vertical red line
-          this.seamHistory.add(this.grid.findLowestSeamVertical());
-          this.grid.removeSeamVertical(false);
-        }
+        boolean vertical = !this.removeHorizontalOverride;
+        this.removeSeamForGood(this.nextSeam(vertical), vertical);
 
         // reset the overrides
         this.removeVerticalOverride = false;
@@ -183,36 +266,117 @@ class ImageEditor extends World {
         return;
       }
 
-      // randomly generates a number that is either 0 or 1, if the number is 1,
-      // highlight a vertical seam, otherwise, a horizontal seam
-      if (this.rand.nextInt(2) == 1) {
-        this.removeVertical = true;
-        this.grid.removeSeamVertical(true);
+      if (this.optimalOrder) {
+        // highlight whichever seam removes less energy per pixel
+        SeamForecast both = this.bothSeams();
+        this.removeVertical = both.verticalIsCheaper();
+        this.redLineSeam = this.grid.traceSeam(both.seam(this.removeVertical).indices,
+            this.removeVertical);
       }
       else {
-        this.removeVertical = false;
-        this.grid.removeSeamHorizontal(true);
+        // randomly generates a number that is either 0 or 1, if the number is 1,
+        // highlight a vertical seam, otherwise, a horizontal seam
+        this.removeVertical = this.rand.nextInt(2) == 1;
+        this.redLineSeam = this.nextSeam(this.removeVertical);
       }
-    }
-    else {
-      // in the process of removing a seam on this tick
       if (this.removeVertical) {
-        // vertical seam to remove
-        this.seamHistory.add(this.grid.findLowestSeamVertical());
-        this.grid.removeSeamVertical(false);
+        this.grid.removeSeamVerticalHelp(this.redLineSeam, true);
       }
       else {
-        // horizontal seam to remove
-        this.seamHistory.add(this.grid.findLowestSeamHorizontal());
-        this.grid.removeSeamHorizontal(false);
+        this.grid.removeSeamHorizontalHelp(this.redLineSeam, true);
       }
-
+    }
+    else {
+      // in the process of removing a seam on this tick, which is the seam
+      // highlighted on the last tick
+      this.removeRedLineSeam();
     }
 
     // switch red line toggle
     this.removeSeam = !this.removeSeam;
   }
 
+  // returns the lowest energy vertical or horizontal seam of the grid, which
+  // the background pipeline may have found already
+  SeamInfo nextSeam(boolean vertical) {
+    if (this.pipeline != null) {
+      SeamForecast forecast = this.pipeline.forecast();
+      if (forecast != null) {
+        return this.grid.traceSeam(forecast.seam(vertical).indices, vertical);
+      }
+    }
+
+    if (vertical) {
+      return this.grid.findLowestSeamVertical();
+    }
+    else {
+      return this.grid.findLowestSeamHorizontal();
+    }
+  }
+
+  // returns the lowest vertical and horizontal seams of the grid, from the
+  // background pipeline if it found them already, otherwise both found at once
+  // on the mirror of the grid
+  SeamForecast bothSeams() {
+    if (this.pipeline != null) {
+      SeamForecast forecast = this.pipeline.forecast();
+      if (forecast != null) {
+        return forecast;
+      }
+    }
+
+    if (this.dualSearch == null) {
+      this.dualSearch = new DualSeamSearch();
+      this.mirror = new GridMirror(this.grid);
+    }
+    return this.dualSearch.search(this.mirror.grid, 0);
+  }
+
+  // EFFECT: stops the background threads this editor started, and closes the
+  // seam journal if the seams are kept in one, after which the editor must not
+  // be used again
+  void close() {
+    if (this.pipeline != null) {
+      this.pipeline.stop();
+    }
+    if (this.dualSearch != null) {
+      this.dualSearch.shutdown();
+    }
+    if (this.seamHistory instanceof SeamJournal) {
+      ((SeamJournal) this.seamHistory).close();
+    }
+  }
+
+  // EFFECT: removes the seam highlighted as a red line, without searching for
+  // it again, or the lowest seam if there is no red line
+  void removeRedLineSeam() {
+    SeamInfo seam = this.redLineSeam;
+    if (seam == null) {
+      seam = this.nextSeam(this.removeVertical);
+    }
+    this.redLineSeam = null;
+    this.removeSeamForGood(seam, this.removeVertical);
+  }
+
+  // EFFECT: removes the given seam from the grid, adding it to the history and
+  // telling the background pipeline about it
+  void removeSeamForGood(SeamInfo seam, boolean vertical) {
+    this.seamHistory.push(this.grid.compactSeam(seam, vertical));
+    if (vertical) {
+      this.grid.removeSeamVerticalHelp(seam, false);
+    }
+    else {
+      this.grid.removeSeamHorizontalHelp(seam, false);
+    }
+
+    if (this.pipeline != null) {
+      this.pipeline.seamRemoved(vertical, this.grid.seamIndices(seam));
+    }
+    if (this.mirror != null) {
+      this.mirror.apply(new SeamChange(vertical, this.grid.seamIndices(seam)));
+    }
+  }
+
 }
 
 // a linked-list describing all the pixels in the seam
@@ -222,10 +386,21 @@ class SeamInfo {
   // base case, cameFrom is null (first pixel in the seam)
   SeamInfo cameFrom;
 
+  // the column (vertical seam) or row (horizontal seam) of the pixel when the
+  // seam was found, or -1 if it is not known
+  // (transient: a hint for seamIndices, seams with the same pixels are equal
+  // whether or not it is known)
+  transient int index;
+
   SeamInfo(Pixel pixel, double totalWeight, SeamInfo cameFrom) {
+    this(pixel, totalWeight, cameFrom, -1);
+  }
+
+  SeamInfo(Pixel pixel, double totalWeight, SeamInfo cameFrom, int index) {
     this.pixel = pixel;
     this.totalWeight = totalWeight;
     this.cameFrom = cameFrom;
+    this.index = index;
   }
 
   // EFFECT: either adds the red color to this pixel or removes the pixel in this
@@ -373,2211 +548,8529 @@ class SeamInfo {
 
 }
 
-// represents a connection of pixels and their neighbors to form an overall
-// image
-class Grid {
-  // the top left pixel in an image, is always present
-  Pixel rootPixel;
-
-  // EFFECT: reinserts the given seam by fixing up all connections to this seam,
-  // and making sure the grid is still well formed after removal
-  void reinsertSeam(SeamInfo seam) {
-
-    if (seam == null) {
-      return;
+// a removed seam without any pixels, only its index in every line (like
+// PackedSeam.indices) and the packed ARGB color removed at each of them, which
+// is all Grid.reinsertSeam needs to rebuild it
+class CompactSeam {
+  boolean vertical;
+  int[] indices;
+  int[] colors;
+
+  CompactSeam(boolean vertical, int[] indices, int[] colors) {
+    if (indices.length != colors.length) {
+      throw new RuntimeException("Every index needs a color!");
     }
+    this.vertical = vertical;
+    this.indices = indices;
+    this.colors = colors;
+  }
 
-    APixel newRoot = seam.reinsertSeamHelp();
-    if (newRoot != null) {
-      this.rootPixel = newRoot.asPixel();
-    }
+  // constructs the seam stored in the given ints, see encode
+  CompactSeam(int[] record) {
+    this(record[1] == 1, Arrays.copyOfRange(record, 2, 2 + record[0]),
+        Arrays.copyOfRange(record, 2 + record[0], 2 + 2 * record[0]));
+  }
 
-    this.reinsertSeam(seam.cameFrom);
+  // returns this seam as its length, 1 if it is vertical (0 otherwise), its
+  // indices, its colors, and its length again so that a list of seams can be
+  // walked from either end
+  int[] encode() {
+    int length = this.indices.length;
+    int[] record = new int[2 * length + 3];
+    record[0] = length;
+    record[1] = this.vertical ? 1 : 0;
+    System.arraycopy(this.indices, 0, record, 2, length);
+    System.arraycopy(this.colors, 0, record, 2 + length, length);
+    record[2 * length + 2] = length;
+    return record;
   }
+}
 
-  // returns the world image that visualizes this grid
-  ComputedPixelImage makeImage(boolean grayScale) {
+// a stack of the seams removed from an image, most recently removed on top
+interface ISeamHistory {
+  // EFFECT: adds the given seam as the most recently removed seam
+  void push(CompactSeam seam);
 
-    int width = this.rootPixel.colCount();
-    int height = this.rootPixel.rowCount();
-    ComputedPixelImage img = new ComputedPixelImage(width, height);
-    APixel current = this.rootPixel;
-    int y = 0;
-    double maxEnergy = this.getMaxEnergy();
-    // INVARIANT: isBorder() returns true when it is called on a BorderPixel
-    // every pixel has a finite amount of neighbors in either direction
-    // eventually by continually calling getBottom, a BorderPixel will be reached
-    // and isBorder() will return true, so the while loop will terminate
+  // EFFECT: removes and returns the most recently removed seam
+  CompactSeam pop();
 
-    // EFFECT: mutates the computed pixel image row by row and increases y,
-    // updating the row and the currentPixel
-    while (!current.isBorder()) {
-      if (y < height) {
-        this.makeImageRow(current, img, width, y, grayScale, maxEnergy);
-        current = current.getBottom();
-        y += 1;
-      }
+  // returns the amount of seams in the history
+  int size();
+}
+
+// a stack of removed seams stored as plain ints in a ring buffer, which grows
+// up to a memory cap, once it is full the oldest seams are spilled to a file
+// and read back when every seam after them has been popped
+// every seam is stored as CompactSeam.encode, so that it can be found from
+// either end
+class SeamHistory implements ISeamHistory {
+  // the default memory cap, 64 MB
+  static final int DEFAULT_MAX_BYTES = 64 << 20;
+
+  // the most ints the ring buffer may hold
+  int maxInts;
+
+  // the ring buffer, which starts small and doubles until it reaches maxInts
+  int[] buffer;
+
+  // where the oldest seam in the buffer starts, and how many ints are used
+  int start;
+  int used;
+
+  // how many seams are in the buffer, and how many are spilled to the file
+  int memorySeams;
+  int spilledSeams;
+
+  // the file spilled seams are appended to, or null for a temporary file that
+  // is created on the first spill
+  transient File spillFile;
+  transient RandomAccessFile spill;
+
+  SeamHistory(int maxBytes, File spillFile) {
+    if (maxBytes < 4) {
+      throw new RuntimeException("Memory cap must be at least one int!");
     }
+    this.maxInts = maxBytes / 4;
+    this.buffer = new int[Math.min(this.maxInts, 1024)];
+    this.start = 0;
+    this.used = 0;
+    this.memorySeams = 0;
+    this.spilledSeams = 0;
+    this.spillFile = spillFile;
+  }
 
-    return img;
+  // keeps up to 64 MB of seams in memory, spilling to a temporary file
+  SeamHistory() {
+    this(DEFAULT_MAX_BYTES, null);
+  }
 
+  // returns the amount of seams in the history
+  public int size() {
+    return this.memorySeams + this.spilledSeams;
   }
 
-  // returns the maximum energy of a single pixel in the grid
-  double getMaxEnergy() {
-    double maximum = this.rootPixel.energy();
-    return this.rootPixel.getMaximumEnergyGrid(maximum);
+  // returns the amount of ints the given seam takes up
+  int recordSize(CompactSeam seam) {
+    return 2 * seam.indices.length + 3;
   }
 
-  // EFFECT: mutates the ComputedPixelImage in the given y row
-  void makeImageRow(APixel pixel, ComputedPixelImage img, int width, int y, boolean grayScale,
-      double maxEnergy) {
-    APixel current = pixel;
-    int x = 0;
+  // EFFECT: adds the given seam as the most recently removed seam, spilling the
+  // oldest seams until it fits in memory (or every seam, if it never fits)
+  public void push(CompactSeam seam) {
+    int size = this.recordSize(seam);
+    while (this.used > 0 && this.used + size > this.maxInts) {
+      this.spillOldest();
+    }
 
-    // INVARIANT: isBorder() returns true when it is called on a BorderPixel
-    // every pixel has a finite amount of neighbors in either direction
-    // eventually by continually calling getRight, a BorderPixel will be reached
-    // and isBorder() will return true, so the while loop will terminate
+    if (size > this.maxInts) {
+      this.writeSpilled(seam.encode());
+      this.spilledSeams += 1;
+      return;
+    }
 
-    // EFFECT: mutates the pixel at the given x and y to the currentPixel's color,
-    // updating the pixel and the x index
-    while (!current.isBorder()) {
-      if (x < width) {
-        if (grayScale) {
-          img.setPixel(x, y, current.getGrayScale(maxEnergy));
+    this.grow(this.used + size);
+    int[] record = seam.encode();
+    for (int index = 0; index < size; index += 1) {
+      this.buffer[(this.start + this.used + index) % this.buffer.length] = record[index];
+    }
+    this.used += size;
+    this.memorySeams += 1;
+  }
 
-        }
-        else {
-          img.setPixel(x, y, current.getColor());
+  // EFFECT: removes and returns the most recently removed seam
+  public CompactSeam pop() {
+    if (this.size() == 0) {
+      throw new RuntimeException("No seams in the history!");
+    }
 
-        }
-        current = current.getRight();
-        x += 1;
-      }
+    if (this.memorySeams == 0) {
+      this.spilledSeams -= 1;
+      return new CompactSeam(this.readSpilled());
     }
+
+    int length = this.buffer[(this.start + this.used - 1) % this.buffer.length];
+    int size = 2 * length + 3;
+    this.used -= size;
+    this.memorySeams -= 1;
+    return new CompactSeam(this.takeRecord(this.used, size));
   }
 
-  // constructs the grid by connecting all the pixels to each other and setting
-  // the rootPixel to the pixel at row 0 col 0
-  Grid(FromFileImage image) {
-    ArrayList<ArrayList<Pixel>> pixels = new ArrayList<>();
+  // returns the ints of the seam that starts at the given offset from the
+  // oldest seam in the buffer, clearing them so that the unused part of the
+  // buffer is always empty
+  int[] takeRecord(int offset, int size) {
+    int[] record = new int[size];
+    for (int index = 0; index < size; index += 1) {
+      int position = (this.start + offset + index) % this.buffer.length;
+      record[index] = this.buffer[position];
+      this.buffer[position] = 0;
+    }
+    return record;
+  }
 
-    // initializes all of the rows in the 2d arraylist of pixels
-    for (int row = 0; row < image.getHeight(); row += 1) {
-      pixels.add(new ArrayList<Pixel>());
+  // EFFECT: makes the buffer big enough for the given amount of ints, moving
+  // the oldest seam to the start of the new buffer
+  void grow(int needed) {
+    if (needed <= this.buffer.length) {
+      return;
+    }
+    int[] grown = new int[Math.min(this.maxInts, Math.max(needed, this.buffer.length * 2))];
+    for (int index = 0; index < this.used; index += 1) {
+      grown[index] = this.buffer[(this.start + index) % this.buffer.length];
     }
+    this.buffer = grown;
+    this.start = 0;
+  }
 
-    // row: 0 is the top row, increasing row index means going down
-    // col: 0 is the left column, increasing col index means going right
+  // EFFECT: moves the oldest seam in the buffer to the end of the spill file
+  void spillOldest() {
+    int size = 2 * this.buffer[this.start] + 3;
+    this.writeSpilled(this.takeRecord(0, size));
+    this.start = (this.start + size) % this.buffer.length;
+    this.used -= size;
+    this.memorySeams -= 1;
+    this.spilledSeams += 1;
+  }
 
-    // adds the pixel to its corresponding spot in the 2d arraylist of pixels from
-    // the image
-    for (int row = 0; row < image.getHeight(); row += 1) {
-      // adds the pixel to the given row and col
-      for (int col = 0; col < image.getWidth(); col += 1) {
+  // EFFECT: appends the given seam to the end of the spill file, opening it
+  // first if needed
+  void writeSpilled(int[] record) {
+    ByteBuffer bytes = ByteBuffer.allocate(record.length * 4);
+    bytes.asIntBuffer().put(record);
+    try {
+      RandomAccessFile file = this.spillFile();
+      file.seek(file.length());
+      file.write(bytes.array());
+    }
+    catch (IOException e) {
+      throw new RuntimeException("Cannot spill the seam history!");
+    }
+  }
 
-        pixels.get(row).add(new Pixel(image.getColorAt(col, row)));
+  // EFFECT: removes the last seam from the end of the spill file, returning its
+  // ints
+  int[] readSpilled() {
+    try {
+      RandomAccessFile file = this.spillFile();
+      file.seek(file.length() - 4);
+      int length = file.readInt();
+      long recordStart = file.length() - 4L * (2 * length + 3);
+      byte[] bytes = new byte[4 * (2 * length + 3)];
+      file.seek(recordStart);
+      file.readFully(bytes);
+      file.setLength(recordStart);
+
+      int[] record = new int[2 * length + 3];
+      ByteBuffer.wrap(bytes).asIntBuffer().get(record);
+      return record;
+    }
+    catch (IOException e) {
+      throw new RuntimeException("Cannot spill the seam history!");
+    }
+  }
 
+  // returns the open spill file, creating it the first time
+  RandomAccessFile spillFile() throws IOException {
+    if (this.spill == null) {
+      if (this.spillFile == null) {
+        this.spillFile = File.createTempFile("seams", ".history");
+        this.spillFile.deleteOnExit();
       }
+      this.spill = new RandomAccessFile(this.spillFile, "rw");
+      this.spill.setLength(0);
     }
+    return this.spill;
+  }
 
-    // assigns every pixel its correct neighbors
-    for (int row = 0; row < image.getHeight(); row += 1) {
-      // get the pixel at the given row and col and set its neighbors
-      // based on its position in the image (corners, edges, middle)
-      for (int col = 0; col < image.getWidth(); col += 1) {
-        Pixel pixel = pixels.get(row).get(col);
-
-        // EFFECT: connects all the pixels
-        this.connectPixels(image, pixels, row, col, pixel);
+  // EFFECT: forgets every seam, closing and deleting the spill file if there
+  // is one
+  void clear() {
+    Arrays.fill(this.buffer, 0);
+    this.start = 0;
+    this.used = 0;
+    this.memorySeams = 0;
+    this.spilledSeams = 0;
+    if (this.spill != null) {
+      try {
+        this.spill.close();
       }
+      catch (IOException e) {
+        throw new RuntimeException("Cannot spill the seam history!");
+      }
+      this.spill = null;
+      this.spillFile.delete();
     }
-
   }
+}
 
-  void connectPixels(FromFileImage image, ArrayList<ArrayList<Pixel>> pixels, int row, int col,
-      Pixel pixel) {
-
-    // assumes at least 2x2 grid
-    // 7 cases for a pixel in the image:
-
-    // 4 corners
-    // 2 edge pairs [top/bottom] (not including corners)
-    // pixel not in edge
-
-    // overlap of setting nodes does occur
-
-    if (row == 0 && col == 0) {
-
-      this.rootPixel = pixel;
-
-      // case top left corner pixel (root pixel)
-
-      Pixel pixelRight = pixels.get(row).get(col + 1);
-      Pixel pixelBottom = pixels.get(row + 1).get(col);
-
-      pixel.setNeighbor(pixelRight, 1);
-      pixel.setNeighbor(pixelBottom, 2);
+// a seam history kept in a file instead of the heap, for carves with far more
+// seams than fit in memory, read and written through a memory mapped window
+// of the file that moves along with the end of the history: forward from the
+// end when seams are pushed, and backward from it when they are popped
+// the file starts with a header of MAGIC, VERSION, the width and height of the
+// image before the first seam was removed, and where the last seam ends (a
+// long), followed by every seam in the order it was removed as
+// CompactSeam.encode, so a journal left behind by an editor can be opened again
+// to resume the carve
+class SeamJournal implements ISeamHistory {
+  // marks a file as a seam journal ("SEAM"), and the version of its layout
+  static final int MAGIC = 0x5345414D;
+  static final int VERSION = 1;
+
+  // the size of the header in bytes
+  static final int HEADER_BYTES = 24;
+
+  // the fewest bytes mapped at once
+  static final int WINDOW_BYTES = 1 << 22;
+
+  // windows mapped backward from the end of the history start at a multiple
+  // of this, so that popping one seam after another keeps reusing the window
+  static final int ALIGN_BYTES = 1 << 12;
+
+  File file;
+
+  // the size of the image before the first seam in the journal was removed
+  int width;
+  int height;
+
+  // where the next seam is written, in bytes from the start of the file
+  long end;
+
+  // the amount of seams in the journal
+  int seams;
+
+  // the open file, the mapped header, and the mapped window of the file that
+  // starts at windowStart, none of which are part of the history itself
+  transient FileChannel channel;
+  transient MappedByteBuffer header;
+  transient MappedByteBuffer window;
+  transient long windowStart;
+
+  // starts a new, empty journal for an image of the given size in the given
+  // file, replacing anything in it
+  SeamJournal(File file, int width, int height) {
+    if (width < 1 || height < 1) {
+      throw new RuntimeException("Grid must contain at least one pixel!");
     }
-    else if (row == 0 && col == image.getWidth() - 1) {
-      // case top right corner pixel
+    this.file = file;
+    this.width = width;
+    this.height = height;
+    this.end = HEADER_BYTES;
+    this.seams = 0;
+
+    this.open(true);
+    this.header.putInt(0, MAGIC);
+    this.header.putInt(4, VERSION);
+    this.header.putInt(8, width);
+    this.header.putInt(12, height);
+    this.header.putLong(16, this.end);
+  }
 
-      Pixel pixelLeft = pixels.get(row).get(col - 1);
-      Pixel pixelBottom = pixels.get(row + 1).get(col);
+  // opens the journal in the given file as it was left, counting its seams
+  SeamJournal(File file) {
+    this.file = file;
+    this.open(false);
+    if (this.header.getInt(0) != MAGIC || this.header.getInt(4) != VERSION) {
+      // leaves the file exactly as it was, since it is not ours to cut off
+      this.release();
+      throw new RuntimeException("Not a seam journal!");
+    }
+    this.width = this.header.getInt(8);
+    this.height = this.header.getInt(12);
+    this.end = this.header.getLong(16);
+
+    this.seams = 0;
+    long position = HEADER_BYTES;
+    while (position < this.end) {
+      position += this.recordBytes(position);
+      this.seams += 1;
+    }
+  }
 
-      pixel.setNeighbor(pixelLeft, 3);
-      pixel.setNeighbor(pixelBottom, 2);
+  // EFFECT: opens the file and maps its header, emptying the file first if
+  // truncate is true
+  void open(boolean truncate) {
+    try {
+      this.channel = truncate
+          ? FileChannel.open(this.file.toPath(), StandardOpenOption.CREATE,
+              StandardOpenOption.READ, StandardOpenOption.WRITE,
+              StandardOpenOption.TRUNCATE_EXISTING)
+          : FileChannel.open(this.file.toPath(), StandardOpenOption.READ,
+              StandardOpenOption.WRITE);
+      if (!truncate && this.channel.size() < HEADER_BYTES) {
+        this.channel.close();
+        this.channel = null;
+        throw new RuntimeException("Seam journal header is cut off!");
+      }
+      this.header = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+      this.window = null;
     }
-    else if (row == image.getHeight() - 1 && col == 0) {
-      // case bottom left corner pixel
+    catch (IOException e) {
+      throw new RuntimeException("Cannot open the seam journal!");
+    }
+  }
 
-      Pixel pixelRight = pixels.get(row).get(col + 1);
-      Pixel pixelTop = pixels.get(row - 1).get(col);
+  // returns the amount of bytes of the seam that starts at the given position
+  int recordBytes(long position) {
+    this.mapWindow(position, 4);
+    return 4 * (2 * this.window.getInt((int) (position - this.windowStart)) + 3);
+  }
 
-      pixel.setNeighbor(pixelRight, 1);
-      pixel.setNeighbor(pixelTop, 0);
+  // EFFECT: makes sure the given amount of bytes from the given position are
+  // mapped, mapping a new window starting at the position if they are not
+  void mapWindow(long position, int bytes) {
+    if (!this.isMapped(position, bytes)) {
+      this.mapWindowAt(position, Math.max(bytes, WINDOW_BYTES));
     }
-    else if (row == image.getHeight() - 1 && col == image.getWidth() - 1) {
-      // case bottom right corner pixel
-
-      Pixel pixelLeft = pixels.get(row).get(col - 1);
-      Pixel pixelTop = pixels.get(row - 1).get(col);
+  }
 
-      pixel.setNeighbor(pixelLeft, 3);
-      pixel.setNeighbor(pixelTop, 0);
+  // EFFECT: makes sure the given amount of bytes from the given position are
+  // mapped, mapping a new window that ends right after them if they are not,
+  // starting at the multiple of ALIGN_BYTES at or before where a window of
+  // WINDOW_BYTES would start, so that the seams before them are mapped too
+  void mapWindowBefore(long position, int bytes) {
+    if (this.isMapped(position, bytes)) {
+      return;
     }
-    else if (row == 0 || row == image.getHeight() - 1) {
-      // case top/bottom row of pixel (not corners)
+    long start = Math.max(0, Math.min(position, position + bytes - WINDOW_BYTES));
+    start -= start % ALIGN_BYTES;
+    this.mapWindowAt(start, (int) (position + bytes - start));
+  }
 
-      Pixel pixelLeft = pixels.get(row).get(col - 1);
-      Pixel pixelRight = pixels.get(row).get(col + 1);
+  // are the given amount of bytes from the given position in the window?
+  boolean isMapped(long position, int bytes) {
+    return this.window != null && position >= this.windowStart
+        && position + bytes <= this.windowStart + this.window.capacity();
+  }
 
-      pixel.setNeighbor(pixelLeft, 3);
-      pixel.setNeighbor(pixelRight, 1);
+  // EFFECT: maps the given amount of bytes from the given position as the
+  // window, the old window is unmapped once it is garbage collected
+  void mapWindowAt(long position, int bytes) {
+    try {
+      this.windowStart = position;
+      this.window = this.channel.map(FileChannel.MapMode.READ_WRITE, position, bytes);
     }
-    else if (col == 0 || col == image.getWidth() - 1) {
-      // case left/right col of pixel (not corners)
+    catch (IOException e) {
+      throw new RuntimeException("Cannot open the seam journal!");
+    }
+  }
 
-      Pixel pixelTop = pixels.get(row - 1).get(col);
-      Pixel pixelBottom = pixels.get(row + 1).get(col);
+  // returns the amount of seams in the journal
+  public int size() {
+    return this.seams;
+  }
 
-      pixel.setNeighbor(pixelTop, 0);
-      pixel.setNeighbor(pixelBottom, 2);
+  // EFFECT: writes the given seam after the last seam in the journal
+  public void push(CompactSeam seam) {
+    int[] record = seam.encode();
+    this.mapWindow(this.end, 4 * record.length);
+    int offset = (int) (this.end - this.windowStart);
+    for (int index = 0; index < record.length; index += 1) {
+      this.window.putInt(offset + 4 * index, record[index]);
     }
-    else {
-      // case not on the perimeter of the image
 
-      Pixel pixelLeft = pixels.get(row).get(col - 1);
-      Pixel pixelTop = pixels.get(row - 1).get(col);
-      Pixel pixelRight = pixels.get(row).get(col + 1);
-      Pixel pixelBottom = pixels.get(row + 1).get(col);
+    this.end += 4 * record.length;
+    this.seams += 1;
+    this.header.putLong(16, this.end);
+  }
 
-      pixel.setNeighbor(pixelRight, 1);
-      pixel.setNeighbor(pixelBottom, 2);
-      pixel.setNeighbor(pixelLeft, 3);
-      pixel.setNeighbor(pixelTop, 0);
+  // EFFECT: removes and returns the last seam in the journal, found through the
+  // length at its end
+  public CompactSeam pop() {
+    if (this.seams == 0) {
+      throw new RuntimeException("No seams in the history!");
+    }
 
+    this.mapWindowBefore(this.end - 4, 4);
+    int length = this.window.getInt((int) (this.end - 4 - this.windowStart));
+    int[] record = new int[2 * length + 3];
+    long start = this.end - 4 * record.length;
+    this.mapWindowBefore(start, 4 * record.length);
+    int offset = (int) (start - this.windowStart);
+    for (int index = 0; index < record.length; index += 1) {
+      record[index] = this.window.getInt(offset + 4 * index);
     }
+
+    this.end = start;
+    this.seams -= 1;
+    this.header.putLong(16, this.end);
+    return new CompactSeam(record);
   }
 
-  // EFFECT: removes the lowest energy seam vertically in the grid of pixels,
-  // fixing all the connections, and making sure the grid is still well formed
-  // after removal
-  void removeSeamVertical(boolean redLine) {
-    SeamInfo lowestSeam = this.findLowestSeamVertical();
-    this.removeSeamVerticalHelp(lowestSeam, redLine);
+  // EFFECT: removes every seam in the journal from the given grid in the order
+  // they were removed, which must be the image the journal was started for
+  void replay(Grid grid) {
+    if (grid.width != this.width || grid.height != this.height) {
+      throw new RuntimeException("Journal is for a different image!");
+    }
 
-  }
+    long position = HEADER_BYTES;
+    while (position < this.end) {
+      int[] record = new int[this.recordBytes(position) / 4];
+      this.mapWindow(position, 4 * record.length);
+      int offset = (int) (position - this.windowStart);
+      for (int index = 0; index < record.length; index += 1) {
+        record[index] = this.window.getInt(offset + 4 * index);
+      }
+      position += 4 * record.length;
 
-  // EFFECT: removes the lowest energy seam horizontally in the grid of pixels,
-  // fixing all the connections, and making sure the grid is still well formed
-  // after removal
-  void removeSeamHorizontal(boolean redLine) {
-    SeamInfo lowestSeam = this.findLowestSeamHorizontal();
-    this.removeSeamHorizontalHelp(lowestSeam, redLine);
+      CompactSeam seam = new CompactSeam(record);
+      SeamInfo removed = grid.traceSeam(seam.indices, seam.vertical);
+      if (!Arrays.equals(grid.compactSeam(removed, seam.vertical).colors, seam.colors)) {
+        throw new RuntimeException("Journal is for a different image!");
+      }
+      if (seam.vertical) {
+        grid.removeSeamVerticalHelp(removed, false);
+      }
+      else {
+        grid.removeSeamHorizontalHelp(removed, false);
+      }
+    }
   }
 
-  // EFFECT: removes the lowest energy seam vertically in the grid of pixels,
-  // fixing all the
-  // connections, accumulating the lowestSeam, by traversing back the
-  // linked-list until it is empty (null)
-  void removeSeamVerticalHelp(SeamInfo lowestSeam, boolean redLine) {
-    if (lowestSeam == null) {
+  // EFFECT: writes every change to the disk and closes the file, cutting off
+  // whatever was mapped past the last seam, does nothing if it is closed already
+  void close() {
+    if (this.channel == null) {
       return;
     }
 
-    APixel newRoot = lowestSeam.removeInRow(redLine);
-    if (newRoot != null) {
-      this.rootPixel = newRoot.asPixel();
+    try {
+      this.header.force();
+      if (this.window != null) {
+        this.window.force();
+      }
+      this.forgetMappings();
+      try {
+        this.channel.truncate(this.end);
+      }
+      catch (IOException e) {
+        // some systems (Windows) cannot cut off a file while any of it is still
+        // mapped, which it is until the mappings are garbage collected, in which
+        // case the tail stays and is skipped over by the end in the header
+      }
+      this.channel.close();
+      this.channel = null;
+    }
+    catch (IOException e) {
+      throw new RuntimeException("Cannot open the seam journal!");
     }
-    this.removeSeamVerticalHelp(lowestSeam.cameFrom, redLine);
   }
 
-  // EFFECT: removes the lowest energy seam horizontally in the grid of pixels,
-  // fixing all the
-  // connections, accumulating the lowestSeam, by traversing back the
-  // linked-list until it is empty (null)
-  void removeSeamHorizontalHelp(SeamInfo lowestSeam, boolean redLine) {
-    if (lowestSeam == null) {
-      return;
+  // EFFECT: closes the file without writing or cutting off anything
+  void release() {
+    try {
+      this.forgetMappings();
+      this.channel.close();
+      this.channel = null;
     }
-
-    APixel newRoot = lowestSeam.removeInCol(redLine);
-    if (newRoot != null) {
-      this.rootPixel = newRoot.asPixel();
+    catch (IOException e) {
+      throw new RuntimeException("Cannot open the seam journal!");
     }
-    this.removeSeamHorizontalHelp(lowestSeam.cameFrom, redLine);
   }
 
-  // returns the seam with the lowest total energy
-  SeamInfo findLowestSeamVertical() {
+  // EFFECT: drops the header and the window, which are unmapped once they are
+  // garbage collected
+  void forgetMappings() {
+    this.header = null;
+    this.window = null;
+  }
+}
 
-    ArrayList<SeamInfo> currentSeams = new ArrayList<>();
+// represents a connection of pixels and their neighbors to form an overall
+// image
+class Grid {
+  // the top left pixel in an image, is always present
+  Pixel rootPixel;
 
-    // assigns every pixel in the first row to a new seam info
-    for (int col = 0; col < this.rootPixel.colCount(); col += 1) {
-      Pixel currentPixel = this.rootPixel.getPixelAt(0, col);
-      currentSeams.add(new SeamInfo(currentPixel, currentPixel.energy(), null));
-    }
+  // the amount of columns in the grid
+  int width;
 
-    // EFFECT:
-    // iterates through every subsequent row of pixels and mutates currentSeams
-    // based on the original value and the new row of weights
-    for (int row = 1; row < this.rootPixel.rowCount(); row += 1) {
-      Pixel leftMostPixelInRow = this.rootPixel.getPixelAt(row, 0);
-      currentSeams = findLowestSeamHelp(currentSeams, leftMostPixelInRow.constructPixelRow());
+  // the amount of rows in the grid
+  int height;
 
-    }
+  // the first pixel of every row (rowHeads.get(0) is the rootPixel), kept up to
+  // date as seams are removed and reinserted
+  // (transient: derived from the links, which equality already compares, the
+  // tests check them against the links with headsUpToDate)
+  transient ArrayList<Pixel> rowHeads;
 
-    return this.findMinSeamEnergy(currentSeams);
+  // the first pixel of every column (colHeads.get(0) is the rootPixel), kept up
+  // to date as seams are removed and reinserted (transient like rowHeads)
+  transient ArrayList<Pixel> colHeads;
 
-  }
+  // reusable buffers for finding seams, not part of the image itself
+  // (transient: scratch space left over from the last search)
+  transient SeamFinder finder = new SeamFinder();
 
-  // returns the seam with the lowest total energy
-  SeamInfo findLowestSeamHorizontal() {
+  // are seams picked by forward energy (see SeamFinder.addForwardLine) instead
+  // of the sum of the energies of their pixels?
+  boolean forwardEnergy;
 
-    ArrayList<SeamInfo> currentSeams = new ArrayList<>();
+  // the renderer that draws this grid, which is told about every change so that
+  // it only redraws what changed, or null if there is none
+  transient GridRenderer renderer;
 
-    // assigns every pixel in the first row to a new seam info
-    for (int row = 0; row < this.rootPixel.rowCount(); row += 1) {
-      Pixel currentPixel = this.rootPixel.getPixelAt(row, 0);
-      currentSeams.add(new SeamInfo(currentPixel, currentPixel.energy(), null));
+  // EFFECT: reinserts the given seam by fixing up all connections to this seam,
+  // and making sure the grid is still well formed after removal, then re-indexes
+  // the first row and column of the grid
+  void reinsertSeam(SeamInfo seam) {
+
+    if (seam == null) {
+      return;
     }
 
-    // EFFECT:
-    // iterates through every subsequent col of pixels and mutates currentSeams
-    // based on the original value and the new col of weights
-    for (int col = 1; col < this.rootPixel.colCount(); col += 1) {
-      Pixel topMostPixelInCol = this.rootPixel.getPixelAt(0, col);
-      currentSeams = findLowestSeamHelp(currentSeams, topMostPixelInCol.constructPixelCol());
+    this.reinsertSeamPixels(seam);
 
+    // a SeamInfo does not know whether it is vertical or horizontal, so re-index
+    // from the root, which costs about as much as reinserting the seam did
+    this.indexHeads();
+    if (this.renderer != null) {
+      this.renderer.markAllDirty();
     }
+  }
 
-    return this.findMinSeamEnergy(currentSeams);
+  // EFFECT: rebuilds the pixels of the given compact seam, which must be the
+  // most recently removed seam, and reinserts them like any other seam
+  void reinsertSeam(CompactSeam seam) {
+    if (seam == null) {
+      return;
+    }
 
+    this.reinsertSeam(this.unpackSeam(seam));
   }
 
-  // appends a new row of pixels onto the given current seam based on the row of
-  // pixels that are below it
-  ArrayList<SeamInfo> findLowestSeamHelp(ArrayList<SeamInfo> currSeam,
-      ArrayList<Pixel> belowPixelRowOrCol) {
-    ArrayList<SeamInfo> nextSeams = new ArrayList<>();
-
-    // EFFECT:
-    // iterates through the pixels in the next row of pixels and generates a new
-    // list of seams with these pixels appended to the list
-    for (int pixelIndex = 0; pixelIndex < belowPixelRowOrCol.size(); pixelIndex += 1) {
-      ArrayList<SeamInfo> neighboringSeams = new ArrayList<>();
+  // returns a SeamInfo of new pixels with the colors of the given compact seam,
+  // each linked to the neighbors it had right before the seam was removed
+  // (without those neighbors linking back), which is what reinsertSeam expects
+  // from a removed seam
+  SeamInfo unpackSeam(CompactSeam compact) {
+    boolean vertical = compact.vertical;
+    int[] indices = compact.indices;
+    int lines = indices.length;
+    Pixel[] created = new Pixel[lines];
+    APixel[] before = new APixel[lines];
+    APixel[] after = new APixel[lines];
+
+    // current is the pixel right before the gap in the line, or the first pixel
+    // of the line if the gap is at its start, and follows the gap line by line
+    APixel current = this.rootPixel;
+    for (int step = 1; step < indices[0]; step += 1) {
+      current = vertical ? current.getRight() : current.getBottom();
+    }
+    for (int line = 0; line < lines; line += 1) {
+      if (line > 0) {
+        current = vertical ? current.getBottom() : current.getRight();
+        int move = Math.max(indices[line] - 1, 0) - Math.max(indices[line - 1] - 1, 0);
+        if (move > 0) {
+          current = vertical ? current.getRight() : current.getBottom();
+        }
+        else if (move < 0) {
+          current = vertical ? current.getLeft() : current.getTop();
+        }
+      }
 
-      neighboringSeams.add(currSeam.get(pixelIndex));
+      APixel next = vertical ? current.getRight() : current.getBottom();
+      before[line] = indices[line] > 0 ? current : BorderPixel.BORDER;
+      after[line] = indices[line] > 0 ? next : current;
+      created[line] = new Pixel(new Color(compact.colors[line], true));
+    }
 
-      if (pixelIndex == 0) {
-        neighboringSeams.add(currSeam.get(pixelIndex + 1));
-      }
-      else if (pixelIndex == belowPixelRowOrCol.size() - 1) {
-        neighboringSeams.add(currSeam.get(pixelIndex - 1));
+    SeamInfo seam = null;
+    for (int line = 0; line < lines; line += 1) {
+      Pixel pixel = created[line];
+      APixel previous = line == 0 ? BorderPixel.BORDER
+          : this.neighborInLine(indices, created, before, after, line, line - 1);
+      APixel following = line == lines - 1 ? BorderPixel.BORDER
+          : this.neighborInLine(indices, created, before, after, line, line + 1);
+
+      if (vertical) {
+        pixel.changeNeighbor(previous, 0);
+        pixel.changeNeighbor(after[line], 1);
+        pixel.changeNeighbor(following, 2);
+        pixel.changeNeighbor(before[line], 3);
       }
       else {
-        neighboringSeams.add(currSeam.get(pixelIndex + 1));
-        neighboringSeams.add(currSeam.get(pixelIndex - 1));
+        pixel.changeNeighbor(before[line], 0);
+        pixel.changeNeighbor(following, 1);
+        pixel.changeNeighbor(after[line], 2);
+        pixel.changeNeighbor(previous, 3);
       }
+      seam = new SeamInfo(pixel, 0, seam, indices[line]);
+    }
 
-      SeamInfo lowestSeam = findMinSeamEnergy(neighboringSeams);
+    return seam;
+  }
 
-      nextSeams.add(new SeamInfo(belowPixelRowOrCol.get(pixelIndex),
-          lowestSeam.totalWeight + belowPixelRowOrCol.get(pixelIndex).energy(), lowestSeam));
+  // returns the pixel that was next to the seam pixel of the given line in the
+  // other (adjacent) line before the seam was removed: the seam pixel of that
+  // line if the seam went straight, otherwise the pixel before or after the gap
+  APixel neighborInLine(int[] indices, Pixel[] created, APixel[] before, APixel[] after,
+      int line, int other) {
+    if (indices[line] == indices[other]) {
+      return created[other];
+    }
+    else if (indices[line] < indices[other]) {
+      return before[other];
+    }
+    else {
+      return after[other];
     }
+  }
 
-    return nextSeams;
+  // returns the compact form of the given seam, which must know its indices,
+  // with the colors of its pixels
+  CompactSeam compactSeam(SeamInfo seam, boolean vertical) {
+    int[] indices = this.seamIndices(seam);
+    int[] colors = new int[indices.length];
+    int line = indices.length - 1;
+    for (SeamInfo current = seam; current != null; current = current.cameFrom) {
+      colors[line] = current.pixel.color.getRGB();
+      line -= 1;
+    }
+    return new CompactSeam(vertical, indices, colors);
   }
 
-  // returns the SeamInfo with the lowest weight
-  SeamInfo findMinSeamEnergy(ArrayList<SeamInfo> seams) {
-    SeamInfo minSeamSoFar = seams.get(0);
+  // EFFECT: reinserts every pixel of the given seam, updating the rootPixel if
+  // it is reinserted
+  void reinsertSeamPixels(SeamInfo seam) {
 
-    // EFFECT:
-    // iterates through the seams and mutates minSeamSoFar to refer to the new seam
-    // if it is smaller
-    for (int seamIndex = 0; seamIndex < seams.size(); seamIndex += 1) {
-      if (seams.get(seamIndex).totalWeight < minSeamSoFar.totalWeight) {
-        minSeamSoFar = seams.get(seamIndex);
+    // EFFECT: reinserts the pixels from the end of the seam back to its start
+    for (SeamInfo current = seam; current != null; current = current.cameFrom) {
+      APixel newRoot = current.reinsertSeamHelp();
+      if (newRoot != null) {
+        this.rootPixel = newRoot.asPixel();
       }
-
     }
 
-    return minSeamSoFar;
+    this.forgetEnergiesAround(seam);
   }
 
-}
+  // EFFECT: forgets the cached energy of every pixel next to the given seam,
+  // which are the only pixels whose neighbors change when the seam is removed
+  // or reinserted, called while the seam is in the grid so that its links
+  // still lead to those pixels
+  void forgetEnergiesAround(SeamInfo seam) {
+    for (SeamInfo current = seam; current != null; current = current.cameFrom) {
+      current.pixel.forgetEnergiesAround();
+    }
+  }
 
-// represents either a pixel or a border pixel
-interface IPixel {
+  // EFFECT: rebuilds the row and column heads and the dimensions of the grid by
+  // walking the first column and the first row from the rootPixel
+  void indexHeads() {
+    this.rowHeads.clear();
+    this.colHeads.clear();
 
-  // returns the gray scale equivalent of a pixel when represented using its
-  // energy instead of its color
-  Color getGrayScale(double maxEnergy);
+    for (APixel current = this.rootPixel; !current.isBorder(); current = current.getBottom()) {
+      this.rowHeads.add(current.asPixel());
+    }
+    for (APixel current = this.rootPixel; !current.isBorder(); current = current.getRight()) {
+      this.colHeads.add(current.asPixel());
+    }
 
-  // returns the pixel version of the abstract pixel, throwing an exception if a
-  // border pixel calls this
-  Pixel asPixel();
+    this.height = this.rowHeads.size();
+    this.width = this.colHeads.size();
+  }
 
-  // gets the color of this APixel (a border pixel has no actual color and throws
-  // exception)
-  Color getColor();
+  // returns the first pixel in the given row
+  Pixel getRowStart(int row) {
+    return this.rowHeads.get(row);
+  }
 
-  // returns whether or not the pixel is out of bounds (outside the image)
-  boolean isBorder();
+  // returns the first pixel in the given column
+  Pixel getColStart(int col) {
+    return this.colHeads.get(col);
+  }
 
-  // EFFECT: sets this APixel's neighbor to the given new pixel,
-  // where 0 represents top, 1 represents right, 2 represents bottom, 3 represents
-  // left
-  void changeNeighbor(APixel newPixel, int direction);
+  // returns the pixel at the given row and col, walking right from the start of
+  // the row
+  Pixel getPixelAt(int row, int col) {
+    if (row < 0 || row >= this.height || col < 0 || col >= this.width) {
+      throw new RuntimeException("Index out of bounds exception for getPixelAt!");
+    }
 
-  // returns the amount of rows below this pixel (including this pixel)
-  int rowCount();
+    APixel current = this.getRowStart(row);
+    for (int step = 0; step < col; step += 1) {
+      current = current.getRight();
+    }
+    return current.asPixel();
+  }
 
-  // returns the amount of columns to the right of this pixel (including this
-  // pixel)
-  int colCount();
+  // returns the world image that visualizes this grid
+  ComputedPixelImage makeImage(boolean grayScale) {
 
-  // returns the pixel at the given row and col offset with respect to this pixel
-  // 0,0 means same pixel
-  // only traverses down and right
-  // rowOffset of 3 means down 3 rows
-  // colOffset of 3 means right 3 cols
-  Pixel getPixelAt(int colOffset, int rowOffset);
+    int width = this.width;
+    int height = this.height;
+    ComputedPixelImage img = new ComputedPixelImage(width, height);
+    APixel current = this.rootPixel;
+    int y = 0;
+    double maxEnergy = this.getMaxEnergy();
+    // INVARIANT: isBorder() returns true when it is called on a BorderPixel
+    // every pixel has a finite amount of neighbors in either direction
+    // eventually by continually calling getBottom, a BorderPixel will be reached
+    // and isBorder() will return true, so the while loop will terminate
 
-  // EFFECT:
-  // returns an array list of each pixel to the right of this pixel (including
-  // this pixel), accumulating the list of pixels encountered so far
-  ArrayList<Pixel> constructPixelRowHelp(ArrayList<Pixel> listSoFar);
+    // EFFECT: mutates the computed pixel image row by row and increases y,
+    // updating the row and the currentPixel
+    while (!current.isBorder()) {
+      if (y < height) {
+        this.makeImageRow(current, img, width, y, grayScale, maxEnergy);
+        current = current.getBottom();
+        y += 1;
+      }
+    }
 
-  // EFFECT:
-  // returns an array list of each pixel below this pixel (including
-  // this pixel), accumulating the list of pixels encountered so far
-  ArrayList<Pixel> constructPixelColHelp(ArrayList<Pixel> listSoFar);
+    return img;
 
-  // returns the pixel above this pixel or a border pixel if this pixel is at the
-  // top of the image
-  APixel getTop();
+  }
 
-  // returns the pixel to the right of this pixel or a border pixel if this pixel
-  // is at the right of the image
-  APixel getRight();
+  // returns the maximum energy of a single pixel in the grid
+  double getMaxEnergy() {
+    double maximum = this.rootPixel.energy();
+    return this.rootPixel.getMaximumEnergyGrid(maximum);
+  }
 
-  // returns the pixel below this pixel or a border pixel if this pixel is at the
-  // bottom of the image
-  APixel getBottom();
+  // EFFECT: mutates the ComputedPixelImage in the given y row
+  void makeImageRow(APixel pixel, ComputedPixelImage img, int width, int y, boolean grayScale,
+      double maxEnergy) {
+    APixel current = pixel;
+    int x = 0;
 
-  // returns the pixel to the left of this pixel or a border pixel if this pixel
-  // is at the left of the image
-  APixel getLeft();
+    // INVARIANT: isBorder() returns true when it is called on a BorderPixel
+    // every pixel has a finite amount of neighbors in either direction
+    // eventually by continually calling getRight, a BorderPixel will be reached
+    // and isBorder() will return true, so the while loop will terminate
 
-  // computes the "brightness" of this pixel
-  double brightness();
+    // EFFECT: mutates the pixel at the given x and y to the currentPixel's color,
+    // updating the pixel and the x index
+    while (!current.isBorder()) {
+      if (x < width) {
+        if (grayScale) {
+          img.setPixel(x, y, current.getGrayScale(maxEnergy));
 
-  // calculates the horizontal energy of this pixel
-  double hEnergy();
+        }
+        else {
+          img.setPixel(x, y, current.getColor());
 
-  // calculates the vertical energy of this pixel
-  double vEnergy();
+        }
+        current = current.getRight();
+        x += 1;
+      }
+    }
+  }
 
-  // calculates the overall energy of this pixel
-  double energy();
+  // constructs the grid by connecting all the pixels to each other and setting
+  // the rootPixel to the pixel at row 0 col 0, with the colors of an image
+  // javalib already loaded (Grid(BufferedImage) with RasterLoader.read loads a
+  // file faster)
+  Grid(FromFileImage image) {
+    this(new RasterLoader().readColors(image), (int) image.getWidth(),
+        (int) image.getHeight());
+  }
 
-  // returns the energy of the pixel with highest energy in this row
-  double getMaximumEnergyRow(double currMax);
+  // constructs the grid from the packed ARGB colors of an image in row-major
+  // order, linking every pixel to the pixel on its left and the pixel above it
+  // as soon as it is created
+  Grid(int[] colors, int width, int height) {
+    if (width < 1 || height < 1) {
+      throw new RuntimeException("Grid must contain at least one pixel!");
+    }
 
-  // returns the energy of the pixel with highest energy in this grid
-  double getMaximumEnergyGrid(double currMax);
-}
+    this.width = width;
+    this.height = height;
+    this.rowHeads = new ArrayList<>();
+    this.colHeads = new ArrayList<>();
+
+    // the most recently created pixel in every column
+    Pixel[] above = new Pixel[width];
+    for (int row = 0; row < height; row += 1) {
+      for (int col = 0; col < width; col += 1) {
+        Pixel pixel = new Pixel(new Color(colors[row * width + col], true));
+        if (col > 0) {
+          pixel.setNeighbor(above[col - 1], 3);
+        }
+        else {
+          this.rowHeads.add(pixel);
+        }
+        if (row > 0) {
+          pixel.setNeighbor(above[col], 0);
+        }
+        else {
+          this.colHeads.add(pixel);
+        }
+        above[col] = pixel;
+      }
+    }
 
-// represents a pixel that either borders the image or is inside the image
-abstract class APixel implements IPixel {
-  Color color;
+    this.rootPixel = this.rowHeads.get(0);
+  }
 
-  APixel(Color color) {
-    this.color = color;
+  // constructs the grid from an image loaded without javalib, such as with
+  // javax.imageio
+  Grid(BufferedImage image) {
+    this(new RasterLoader().readColors(image), image.getWidth(), image.getHeight());
   }
 
-  // returns the gray scale equivalent of a pixel when represented using its
-  // energy instead of its color
-  public abstract Color getGrayScale(double maxEnergy);
+  // returns a new image of the given BufferedImage type with the colors of
+  // this grid
+  BufferedImage toBufferedImage(int type) {
+    BufferedImage image = new BufferedImage(this.width, this.height, type);
+    for (int row = 0; row < this.height; row += 1) {
+      APixel current = this.getRowStart(row);
+      for (int col = 0; col < this.width; col += 1) {
+        image.setRGB(col, row, current.color.getRGB());
+        current = current.getRight();
+      }
+    }
+    return image;
+  }
 
-  // returns the pixel version of the abstract pixel, throwing an exception if a
-  // border pixel calls this
-  public abstract Pixel asPixel();
+  // EFFECT: removes the lowest energy seam vertically in the grid of pixels,
+  // fixing all the connections, and making sure the grid is still well formed
+  // after removal
+  void removeSeamVertical(boolean redLine) {
+    SeamInfo lowestSeam = this.findLowestSeamVertical();
+    this.removeSeamVerticalHelp(lowestSeam, redLine);
 
-  // gets the color of this APixel (a border pixel has no actual color and throws
-  // exception)
-  public abstract Color getColor();
+  }
 
-  // returns whether or not the pixel is out of bounds (outside the image)
-  public abstract boolean isBorder();
+  // EFFECT: removes the lowest energy seam horizontally in the grid of pixels,
+  // fixing all the connections, and making sure the grid is still well formed
+  // after removal
+  void removeSeamHorizontal(boolean redLine) {
+    SeamInfo lowestSeam = this.findLowestSeamHorizontal();
+    this.removeSeamHorizontalHelp(lowestSeam, redLine);
+  }
 
-  // EFFECT: sets this APixel's neighbor to the given new pixel,
-  // where 0 represents top, 1 represents right, 2 represents bottom, 3 represents
-  // left
-  public abstract void changeNeighbor(APixel newPixel, int direction);
+  // EFFECT: removes the k lowest energy vertical seams one after another, the
+  // same seams as calling removeSeamVertical k times, but the energies are
+  // computed once into a PackedGrid and only refreshed around every removed
+  // seam, returns the removed seams in the order they were removed
+  ArrayList<SeamInfo> removeSeamsVertical(int k) {
+    if (k < 0 || k >= this.width) {
+      throw new RuntimeException("Cannot remove that many seams!");
+    }
 
-  // returns the amount of rows below this pixel (including this pixel)
-  public abstract int rowCount();
+    PackedGrid packed = new PackedGrid(this);
+    ArrayList<SeamInfo> seams = new ArrayList<SeamInfo>();
+    for (int seam = 0; seam < k; seam += 1) {
+      SeamInfo removed = this.traceSeam(packed.removeSeamVertical(false).indices, true);
+      this.removeSeamVerticalHelp(removed, false);
+      seams.add(removed);
+    }
+    return seams;
+  }
 
-  // returns the amount of columns to the right of this pixel (including this
-  // pixel)
-  public abstract int colCount();
+  // EFFECT: removes the k lowest energy horizontal seams one after another, the
+  // same seams as calling removeSeamHorizontal k times, returns the removed
+  // seams in the order they were removed
+  ArrayList<SeamInfo> removeSeamsHorizontal(int k) {
+    if (k < 0 || k >= this.height) {
+      throw new RuntimeException("Cannot remove that many seams!");
+    }
 
-  // returns the pixel at the given row and col offset with respect to this pixel
-  // 0,0 means same pixel
-  // only traverses down and right
-  // rowOffset of 3 means down 3 rows
-  // colOffset of 3 means right 3 cols
-  public abstract Pixel getPixelAt(int colOffset, int rowOffset);
+    PackedGrid packed = new PackedGrid(this);
+    ArrayList<SeamInfo> seams = new ArrayList<SeamInfo>();
+    for (int seam = 0; seam < k; seam += 1) {
+      SeamInfo removed = this.traceSeam(packed.removeSeamHorizontal(false).indices, false);
+      this.removeSeamHorizontalHelp(removed, false);
+      seams.add(removed);
+    }
+    return seams;
+  }
 
-  // EFFECT:
-  // returns an array list of each pixel to the right of this pixel (including
-  // this pixel), accumulating the list of pixels encountered so far
-  public abstract ArrayList<Pixel> constructPixelRowHelp(ArrayList<Pixel> listSoFar);
+  // EFFECT: removes the lowest energy seam vertically in the grid of pixels,
+  // fixing all the
+  // connections, accumulating the lowestSeam, by traversing back the
+  // linked-list until it is empty (null)
+  void removeSeamVerticalHelp(SeamInfo lowestSeam, boolean redLine) {
+    if (lowestSeam == null) {
+      return;
+    }
 
-  // EFFECT:
-  // returns an array list of each pixel below this pixel (including
-  // this pixel), accumulating the list of pixels encountered so far
-  public abstract ArrayList<Pixel> constructPixelColHelp(ArrayList<Pixel> listSoFar);
+    if (!redLine) {
+      this.forgetEnergiesAround(lowestSeam);
+    }
 
-  // returns the pixel above this pixel or a border pixel if this pixel is at the
-  // top of the image
-  public abstract APixel getTop();
+    // the seam starts in the top row, so the last pixel is in row length - 1
+    int row = this.seamLength(lowestSeam) - 1;
+
+    // EFFECT: removes the seam pixel in every row from the bottom up, moving the
+    // head of the row to the right if the head is removed and dropping the head
+    // of the removed column
+    for (SeamInfo current = lowestSeam; current != null; current = current.cameFrom) {
+      this.markSeamDirty(row, current.index, true);
+      if (!redLine) {
+        Pixel removed = current.pixel;
+        if (this.rowHeads.get(row) == removed) {
+          this.rowHeads.set(row, removed.getRight().asPixel());
+        }
+        if (row == 0) {
+          this.colHeads.remove(removed);
+        }
+      }
 
-  // returns the pixel to the right of this pixel or a border pixel if this pixel
-  // is at the right of the image
-  public abstract APixel getRight();
+      APixel newRoot = current.removeInRow(redLine);
+      if (newRoot != null) {
+        this.rootPixel = newRoot.asPixel();
+      }
+      row -= 1;
+    }
 
-  // returns the pixel below this pixel or a border pixel if this pixel is at the
-  // bottom of the image
-  public abstract APixel getBottom();
+    if (!redLine) {
+      this.width -= 1;
+    }
+  }
 
-  // returns the pixel to the left of this pixel or a border pixel if this pixel
-  // is at the left of the image
-  public abstract APixel getLeft();
+  // EFFECT: removes the lowest energy seam horizontally in the grid of pixels,
+  // fixing all the
+  // connections, accumulating the lowestSeam, by traversing back the
+  // linked-list until it is empty (null)
+  void removeSeamHorizontalHelp(SeamInfo lowestSeam, boolean redLine) {
+    if (lowestSeam == null) {
+      return;
+    }
 
-  // computes the "brightness" of this pixel
-  public double brightness() {
-    return (this.color.getRed() + this.color.getBlue() + this.color.getGreen()) / (3.0 * 255.0);
-  }
+    if (!redLine) {
+      this.forgetEnergiesAround(lowestSeam);
+    }
 
-  // calculates the horizontal energy of this pixel
-  public double hEnergy() {
-    double topLeftBr = this.getTop().getLeft().brightness();
-    double leftBr = this.getLeft().brightness();
-    double bottomLeftBr = this.getBottom().getLeft().brightness();
+    // the seam starts in the left column, so the last pixel is in column
+    // length - 1
+    int col = this.seamLength(lowestSeam) - 1;
+
+    // EFFECT: removes the seam pixel in every column from the right to the left,
+    // moving the head of the column down if the head is removed and dropping the
+    // head of the removed row
+    for (SeamInfo current = lowestSeam; current != null; current = current.cameFrom) {
+      this.markSeamDirty(col, current.index, false);
+      if (!redLine) {
+        Pixel removed = current.pixel;
+        if (this.colHeads.get(col) == removed) {
+          this.colHeads.set(col, removed.getBottom().asPixel());
+        }
+        if (col == 0) {
+          this.rowHeads.remove(removed);
+        }
+      }
 
-    double topRightBr = this.getTop().getRight().brightness();
-    double rightBr = this.getRight().brightness();
-    double bottomRightBr = this.getBottom().getRight().brightness();
+      APixel newRoot = current.removeInCol(redLine);
+      if (newRoot != null) {
+        this.rootPixel = newRoot.asPixel();
+      }
+      col -= 1;
+    }
 
-    return (topLeftBr + 2.0 * leftBr + bottomLeftBr) - (topRightBr + 2.0 * rightBr + bottomRightBr);
+    if (!redLine) {
+      this.height -= 1;
+    }
   }
 
-  // calculates the vertical energy of this pixel
-  public double vEnergy() {
-    double topLeftBr = this.getTop().getLeft().brightness();
-    double topBr = this.getTop().brightness();
-    double topRightBr = this.getTop().getRight().brightness();
+  // EFFECT: tells the renderer (if there is one) which pixels may look different
+  // once the seam pixel at the given index of the given line is removed or
+  // highlighted, which is every pixel whose energy depends on it and every
+  // pixel that moves to fill the gap, an unknown index (-1) redraws whole lines
+  void markSeamDirty(int line, int index, boolean vertical) {
+    if (this.renderer == null) {
+      return;
+    }
 
-    double bottomLeftBr = this.getBottom().getLeft().brightness();
-    double bottomBr = this.getBottom().brightness();
-    double bottomRightBr = this.getBottom().getRight().brightness();
+    if (vertical) {
+      this.renderer.markRows(line - 1, line + 1, index - 1);
+    }
+    else {
+      this.renderer.markRowsBelow(index - 1, line - 1);
+    }
+  }
 
-    return (topLeftBr + 2.0 * topBr + topRightBr) - (bottomLeftBr + 2.0 * bottomBr + bottomRightBr);
+  // returns the index of the given seam in every line, from the first line to
+  // the last, which the seam must know
+  int[] seamIndices(SeamInfo seam) {
+    int[] indices = new int[this.seamLength(seam)];
+    int line = indices.length - 1;
+    for (SeamInfo current = seam; current != null; current = current.cameFrom) {
+      if (current.index < 0) {
+        throw new RuntimeException("Seam does not know its indices!");
+      }
+      indices[line] = current.index;
+      line -= 1;
+    }
+    return indices;
   }
 
-  // calculates the overall energy of this pixel
-  public double energy() {
-    return Math.sqrt((this.hEnergy() * this.hEnergy() + this.vEnergy() * this.vEnergy()));
+  // returns the amount of pixels in the given seam
+  int seamLength(SeamInfo seam) {
+    int length = 0;
+    for (SeamInfo current = seam; current != null; current = current.cameFrom) {
+      length += 1;
+    }
+    return length;
   }
 
-  // returns the energy of the pixel with highest energy in this row
-  public abstract double getMaximumEnergyRow(double currMax);
+  // returns the seam with the lowest total energy
+  SeamInfo findLowestSeamVertical() {
+    return this.seamFromPath(this.findLowestSeamVerticalPath(), true);
+  }
 
-  // returns the energy of the pixel with highest energy in this grid
-  public abstract double getMaximumEnergyGrid(double currMax);
+  // returns the seam with the lowest total energy
+  SeamInfo findLowestSeamHorizontal() {
+    return this.seamFromPath(this.findLowestSeamHorizontalPath(), false);
+  }
 
-}
+  // returns the column of the lowest energy vertical seam in every row
+  int[] findLowestSeamVerticalPath() {
+    this.finder.start(this.height, this.width);
 
-// represents a pixel that is within the image
-class Pixel extends APixel {
+    // EFFECT:
+    // feeds the energies of every row of pixels into the seam finder, stepping
+    // down from the root so that the search follows the links themselves
+    APixel rowStart = this.rootPixel;
+    for (int row = 0; row < this.height; row += 1) {
+      this.addLine(rowStart, true, this.width);
+      rowStart = rowStart.getBottom();
+    }
 
-  // the masked color of this pixel for highlighting a path (not the actual
-  // color)
-  boolean maskedColor = false;
+    return this.finder.finish();
+  }
 
-  APixel top;
-  APixel right;
-  APixel bottom;
-  APixel left;
+  // returns the row of the lowest energy horizontal seam in every column
+  int[] findLowestSeamHorizontalPath() {
+    this.finder.start(this.width, this.height);
 
-  Pixel(Color color) {
-    super(color);
+    // EFFECT:
+    // feeds the energies of every column of pixels into the seam finder,
+    // stepping right from the root so that the search follows the links
+    // themselves
+    APixel colStart = this.rootPixel;
+    for (int col = 0; col < this.width; col += 1) {
+      this.addLine(colStart, false, this.height);
+      colStart = colStart.getRight();
+    }
 
-    this.top = new BorderPixel();
-    this.right = new BorderPixel();
-    this.bottom = new BorderPixel();
-    this.left = new BorderPixel();
+    return this.finder.finish();
   }
 
-  // checks whether a pixel is well formed in the col
-  boolean isWellFormedCol() {
-    if (this.getTop().isBorder()) {
-      if (this.getBottom().getTop() != this) {
-        return false;
-      }
-    }
-    else if (this.getBottom().isBorder()) {
-      if (this.getTop().getBottom() != this) {
-        return false;
-      }
+  // EFFECT: feeds the line starting at the given pixel into the seam finder,
+  // either as energies or as brightness for forward energy
+  void addLine(APixel start, boolean alongRow, int maxLength) {
+    if (this.forwardEnergy) {
+      int length = this.collectLine(start, alongRow, maxLength, true);
+      this.finder.addForwardLine(this.finder.lineEnergies, 0, length, false);
     }
-    else if (this.getTop().getBottom() != this || this.getBottom().getTop() != this) {
-      return false;
+    else {
+      this.finder.addLine(this.finder.lineEnergies,
+          this.collectEnergies(start, alongRow, maxLength));
     }
-    return true;
   }
 
-  // checks whether a pixel is well formed in the row
-  boolean isWellFormedRow() {
-    if (this.getRight().isBorder()) {
-      if (this.getLeft().getRight() != this) {
-        return false;
-      }
-    }
-    else if (this.getLeft().isBorder()) {
-      if (this.getRight().getLeft() != this) {
-        return false;
-      }
-    }
-    else if (this.getRight().getLeft() != this || this.getLeft().getRight() != this) {
-      return false;
-    }
-    return true;
+  // EFFECT: writes the energy of the given pixel and every pixel to the right of
+  // it (or below it) into the finder's line of energies, returning how many
+  // energies were written
+  int collectEnergies(APixel start, boolean alongRow, int maxLength) {
+    return this.collectLine(start, alongRow, maxLength, false);
   }
 
-  // returns an array list of each pixel below this pixel (including
-  // this pixel) kicking off the accumulation helper with an empty list of pixels
-  ArrayList<Pixel> constructPixelCol() {
-    return this.constructPixelColHelp(new ArrayList<>());
-  }
+  // EFFECT: writes the energy (or the brightness) of the given pixel and every
+  // pixel to the right of it (or below it) into the finder's line of energies,
+  // returning how many values were written
+  int collectLine(APixel start, boolean alongRow, int maxLength, boolean brightness) {
+    int length = 0;
+    APixel current = start;
 
-  // returns the pixel above this pixel
-  public APixel getTop() {
-    return this.top;
-  }
+    // INVARIANT: every line ends at a BorderPixel, so the loop terminates
+    while (!current.isBorder()) {
+      if (length == maxLength) {
+        throw new RuntimeException("Line is longer than the first line of the grid!");
+      }
+      this.finder.lineEnergies[length] = brightness ? current.brightness() : current.energy();
+      length += 1;
+      current = alongRow ? current.getRight() : current.getBottom();
+    }
 
-  // returns the pixel to the right of this pixel
-  public APixel getRight() {
-    return this.right;
+    return length;
   }
 
-  // returns the pixel below this pixel
-  public APixel getBottom() {
-    return this.bottom;
-  }
+  // returns the SeamInfo linked-list for the given path of indices, where
+  // path[i] is the column in row i (vertical) or the row in column i
+  // (horizontal), accumulating the weights in the same order as the seam search
+  SeamInfo seamFromPath(int[] path, boolean vertical) {
+    SeamInfo seam = null;
+    APixel lineStart = this.rootPixel;
+
+    for (int line = 0; line < path.length; line += 1) {
+      APixel current = lineStart;
+      for (int step = 0; step < path[line]; step += 1) {
+        current = vertical ? current.getRight() : current.getBottom();
+      }
 
-  // returns the pixel to the left of this pixel
-  public APixel getLeft() {
-    return this.left;
+      double totalWeight = seam == null ? current.energy() : seam.totalWeight + current.energy();
+      seam = new SeamInfo(current.asPixel(), totalWeight, seam, path[line]);
+      lineStart = vertical ? lineStart.getBottom() : lineStart.getRight();
+    }
+
+    return seam;
   }
 
-  // EFFECT: sets this pixel's target neighbor to refer to the given pixel, and
-  // makes the given pixel refer to this one
-  // 0 implies top, 1 implies right, 2 implies bottom, 3 implies left
-  public void setNeighbor(Pixel p, int direction) {
-    if (direction < 0 || direction > 3) {
-      throw new RuntimeException("Direciton should be between 0 and 3!");
+  // returns the SeamInfo linked-list for the given path of indices like
+  // seamFromPath, but only walks the first line and then follows the seam
+  // itself, which needs a well formed grid since it steps diagonally
+  SeamInfo traceSeam(int[] path, boolean vertical) {
+    APixel current = this.rootPixel;
+    for (int step = 0; step < path[0]; step += 1) {
+      current = vertical ? current.getRight() : current.getBottom();
     }
+    SeamInfo seam = new SeamInfo(current.asPixel(), current.energy(), null, path[0]);
 
-    // 0 implies top, 1 implies right, 2 implies bottom, 3 implies left
-    switch (direction) {
-      case 0:
-        this.top = p;
-        break;
-      case 1:
-        this.right = p;
-        break;
-      case 2:
-        this.bottom = p;
-        break;
-      case 3:
-        this.left = p;
-        break;
-      default:
-        // no other case applies
-        break;
+    for (int line = 1; line < path.length; line += 1) {
+      current = vertical ? current.getBottom() : current.getRight();
+      if (path[line] > path[line - 1]) {
+        current = vertical ? current.getRight() : current.getBottom();
+      }
+      else if (path[line] < path[line - 1]) {
+        current = vertical ? current.getLeft() : current.getTop();
+      }
+      seam = new SeamInfo(current.asPixel(), seam.totalWeight + current.energy(), seam,
+          path[line]);
     }
 
-    // ternary operator:
-    // 0 (top) maps to 2 (bottom) on the other pixel
-    // 1 -> 3
-    // 3 (left) maps to 1 (right) on the other pixel
-    // 2 -> 0
-    p.setNeighborHelp(this, direction < 2 ? direction + 2 : direction - 2);
+    return seam;
   }
 
-  // EFFECT: sets this pixel's target neighbor to refer to the given pixel
-  // 0 implies top, 1 implies right, 2 implies bottom, 3 implies left
-  public void setNeighborHelp(Pixel p, int direction) {
-    switch (direction) {
-      case 0:
-        this.top = p;
-        break;
-      case 1:
-        this.right = p;
-        break;
-      case 2:
-        this.bottom = p;
-        break;
-      case 3:
-        this.left = p;
-        break;
-      default:
-        // no other case applies
-        break;
+  // returns the SeamInfo with the lowest weight
+  SeamInfo findMinSeamEnergy(ArrayList<SeamInfo> seams) {
+    SeamInfo minSeamSoFar = seams.get(0);
+
+    // EFFECT:
+    // iterates through the seams and mutates minSeamSoFar to refer to the new seam
+    // if it is smaller
+    for (int seamIndex = 0; seamIndex < seams.size(); seamIndex += 1) {
+      if (seams.get(seamIndex).totalWeight < minSeamSoFar.totalWeight) {
+        minSeamSoFar = seams.get(seamIndex);
+      }
+
     }
 
+    return minSeamSoFar;
   }
 
-  // returns 1 + the row count of the pixel below this pixel
-  public int rowCount() {
-    return 1 + this.getBottom().rowCount();
-  }
+}
 
-  // returns 1 + the col count of the pixel to the right of this pixel
-  public int colCount() {
-    return 1 + this.getRight().colCount();
-  }
+// finds the lowest energy seam one line (row or column) of energies at a time,
+// keeping only the running totals of the previous and the current line plus
+// one byte per pixel recording which neighbor each total came from
+// the buffers are reused between searches, so a search only allocates the
+// returned path
+class SeamFinder {
+  // the running totals of the previous line and of the most recent line
+  double[] prevTotals;
+  double[] currTotals;
 
-  // either returns this pixel if both row and col offset are 0, or returns the
-  // pixel at getPixelAt(row - 1, col - 1)
-  public Pixel getPixelAt(int rowOffset, int colOffset) {
-    if (rowOffset == 0 && colOffset == 0) {
-      return this;
-    }
-    else if (rowOffset == 0) {
-      return this.getRight().getPixelAt(rowOffset, colOffset - 1);
-    }
-    else if (colOffset == 0) {
-      return this.getBottom().getPixelAt(rowOffset - 1, colOffset);
-    }
-    else {
-      return this.getBottom().getRight().getPixelAt(rowOffset - 1, colOffset - 1);
-    }
-  }
+  // moves[line * maxLength + index] is -1, 0 or 1, the offset of the index in
+  // the previous line that the total at this index came from
+  byte[] moves;
 
-  // returns an array list of each pixel to the right of this pixel (including
-  // this pixel) kicking off the accumulation helper with an empty list of pixels
-  ArrayList<Pixel> constructPixelRow() {
-    return this.constructPixelRowHelp(new ArrayList<>());
-  }
+  // scratch space for callers to write the energies of a line into
+  double[] lineEnergies;
 
-  // EFFECT:
-  // adds the current pixel to the list so far, and returns the result of applying
-  // this action recursively to every pixel to the right of this pixel
-  public ArrayList<Pixel> constructPixelRowHelp(ArrayList<Pixel> listSoFar) {
-    listSoFar.add(this);
-    return this.getRight().constructPixelRowHelp(listSoFar);
-  }
+  // the brightness of the most recent line added with addForwardLine
+  double[] prevBrightness;
 
-  // EFFECT: sets this pixel's neighbor to the given APixel, where 0 implies top,
-  // 1 implies right, 2 implies bottom, 3 implies left
-  public void changeNeighbor(APixel newPixel, int direction) {
-    // 0 implies top, 1 implies right, 2 implies bottom, 3 implies left
-    switch (direction) {
-      case 0:
-        this.top = newPixel;
-        break;
-      case 1:
-        this.right = newPixel;
-        break;
-      case 2:
-        this.bottom = newPixel;
-        break;
-      case 3:
-        this.left = newPixel;
-        break;
-      default:
-        // no other case applies
-        break;
-    }
-  }
+  // the amount of lines in the current search
+  int lines;
 
-  // returns that this is not a border pixel
-  public boolean isBorder() {
-    return false;
-  }
+  // the most energies a line in the current search may have
+  int maxLength;
 
-  // returns either the maskedColor if it has been initialized or the pixel's
-  // color
-  public Color getColor() {
-    return this.maskedColor ? Color.red : this.color;
-  }
+  // the amount of lines added so far
+  int line;
 
-  // EFFECT:
-  // adds the current pixel to the list so far, and returns the result of applying
-  // this action recursively to every pixel below this pixel
-  public ArrayList<Pixel> constructPixelColHelp(ArrayList<Pixel> listSoFar) {
-    listSoFar.add(this);
-    return this.getBottom().constructPixelColHelp(listSoFar);
-  }
+  // the amount of energies in the most recent line
+  int length;
 
-  // returns this pixel
-  public Pixel asPixel() {
-    return this;
-  }
+  // the total energy of the seam returned by the last call to finish
+  double lowestTotal;
 
-  // returns the gray scaled version of this pixel based on the max energy
-  public Color getGrayScale(double maxEnergy) {
-    int grayRatio = (int) (255 * (this.energy() / maxEnergy));
-    return new Color(grayRatio, grayRatio, grayRatio);
+  SeamFinder() {
+    this.prevTotals = new double[0];
+    this.currTotals = new double[0];
+    this.moves = new byte[0];
+    this.lineEnergies = new double[0];
+    this.prevBrightness = new double[0];
   }
 
-  // returns the energy of the pixel with highest energy in this row
-  public double getMaximumEnergyRow(double currMax) {
-    if (this.energy() > currMax) {
-      return this.getRight().getMaximumEnergyRow(this.energy());
+  // EFFECT: starts a new search over the given amount of lines, each with at
+  // most maxLength energies, only growing the buffers when they are too small
+  void start(int lines, int maxLength) {
+    if (this.currTotals.length < maxLength) {
+      this.prevTotals = new double[maxLength];
+      this.currTotals = new double[maxLength];
+      this.lineEnergies = new double[maxLength];
+      this.prevBrightness = new double[maxLength];
     }
-    else {
-      return this.getRight().getMaximumEnergyRow(currMax);
+    if (this.moves.length < lines * maxLength) {
+      this.moves = new byte[lines * maxLength];
     }
 
+    this.lines = lines;
+    this.maxLength = maxLength;
+    this.line = 0;
+    this.length = 0;
   }
 
-  // returns the energy of the pixel with highest energy in this grid
-  public double getMaximumEnergyGrid(double currMax) {
-
-    double currRowMax = this.getMaximumEnergyRow(currMax);
-    if (currRowMax > currMax) {
-      return this.getBottom().getMaximumEnergyGrid(currRowMax);
-    }
-    else {
-      return this.getBottom().getMaximumEnergyGrid(currMax);
-    }
+  // EFFECT: extends every seam found so far by the first length energies of the
+  // given line
+  void addLine(double[] energies, int length) {
+    this.addLine(energies, 0, length);
   }
 
-}
+  // EFFECT: extends every seam found so far by the length energies of the given
+  // line starting at offset, each index continuing the cheapest of the same
+  // index, the next index, and the previous index in the previous line (in that
+  // order of preference, exactly like Grid.findMinSeamEnergy)
+  void addLine(double[] energies, int offset, int length) {
+    if (this.line >= this.lines || length > this.maxLength) {
+      throw new RuntimeException("Line does not fit in the seam search!");
+    }
 
-// represents a pixel that borders the image
-class BorderPixel extends APixel {
+    double[] prev = this.currTotals;
+    double[] curr = this.prevTotals;
+    this.prevTotals = prev;
+    this.currTotals = curr;
 
-  BorderPixel() {
-    super(Color.black);
-  }
+    if (this.line == 0) {
+      System.arraycopy(energies, offset, curr, 0, length);
+    }
+    else {
+      int moveOffset = this.line * this.maxLength;
+      for (int index = 0; index < length; index += 1) {
+        int best = index;
+        byte move = 0;
+
+        // the last index only looks left, unless it is also the first index
+        if ((index == 0 || index < length - 1) && index + 1 < this.length
+            && prev[index + 1] < prev[best]) {
+          best = index + 1;
+          move = 1;
+        }
+        if (index > 0 && prev[index - 1] < prev[best]) {
+          best = index - 1;
+          move = -1;
+        }
 
-  // a border pixel does not count as a row
-  public int rowCount() {
-    return 0;
-  }
+        curr[index] = prev[best] + energies[offset + index];
+        this.moves[moveOffset + index] = move;
+      }
+    }
 
-  // a border pixel does not count as a col
-  public int colCount() {
-    return 0;
+    this.length = length;
+    this.line += 1;
   }
 
-  // a border pixel represents the base case, cannot go from a base case to a
-  // non-base case
-  public APixel getTop() {
-    return new BorderPixel();
-  }
+  // EFFECT: extends every seam found so far by the line whose brightness is
+  // given by the length values starting at offset, using forward energy: the
+  // cost of a pixel is how different the pixels are that become neighbors when
+  // it is removed, which depends on where the seam came from in the previous
+  // line, rather than the energy of the pixel itself
+  // positions outside the image are black, or repeat the nearest pixel in the
+  // line if replicateEdges is true, and ties are broken exactly like addLine
+  void addForwardLine(double[] brightness, int offset, int length, boolean replicateEdges) {
+    if (this.line >= this.lines || length > this.maxLength) {
+      throw new RuntimeException("Line does not fit in the seam search!");
+    }
 
-  // a border pixel represents the base case, cannot go from a base case to a
-  // non-base case
-  public APixel getRight() {
-    return new BorderPixel();
-  }
+    double[] prev = this.currTotals;
+    double[] curr = this.prevTotals;
+    this.prevTotals = prev;
+    this.currTotals = curr;
+
+    int moveOffset = this.line * this.maxLength;
+    // the brightness before, at and after the current index, which slide along
+    // the line so that every value is only read once
+    double before = this.brightnessAt(brightness, offset, length, -1, replicateEdges);
+    double here = this.brightnessAt(brightness, offset, length, 0, replicateEdges);
+    for (int index = 0; index < length; index += 1) {
+      double after = this.brightnessAt(brightness, offset, length, index + 1, replicateEdges);
+      // removing the pixel always makes the pixels before and after it neighbors
+      double upCost = Math.abs(after - before);
+
+      if (this.line == 0) {
+        curr[index] = upCost;
+      }
+      else {
+        double above = index < this.length ? this.prevBrightness[index]
+            : this.brightnessAt(this.prevBrightness, 0, this.length, index, replicateEdges);
+        double best = prev[index] + upCost;
+        byte move = 0;
+
+        // coming from the next index also makes the pixel above a neighbor of the
+        // pixel after this one
+        if ((index == 0 || index < length - 1) && index + 1 < this.length) {
+          double rightCost = prev[index + 1] + upCost + Math.abs(above - after);
+          if (rightCost < best) {
+            best = rightCost;
+            move = 1;
+          }
+        }
+        // and coming from the previous index, of the pixel before this one
+        if (index > 0) {
+          double leftCost = prev[index - 1] + upCost + Math.abs(above - before);
+          if (leftCost < best) {
+            best = leftCost;
+            move = -1;
+          }
+        }
 
-  // a border pixel represents the base case, cannot go from a base case to a
-  // non-base case
-  public APixel getBottom() {
-    return new BorderPixel();
+        curr[index] = best;
+        this.moves[moveOffset + index] = move;
+      }
+
+      before = here;
+      here = after;
+    }
+
+    System.arraycopy(brightness, offset, this.prevBrightness, 0, length);
+    this.length = length;
+    this.line += 1;
   }
 
-  // a border pixel represents the base case, cannot go from a base case to a
-  // non-base case
-  public APixel getLeft() {
-    return new BorderPixel();
+  // returns the value at the given index of the line of the given length
+  // starting at offset, which is black (0) outside of the line, or the nearest
+  // value in the line if replicateEdges is true
+  double brightnessAt(double[] values, int offset, int length, int index,
+      boolean replicateEdges) {
+    if (index < 0 || index >= length) {
+      if (!replicateEdges || length == 0) {
+        return 0.0;
+      }
+      index = Math.max(0, Math.min(index, length - 1));
+    }
+    return values[offset + index];
   }
 
-  // a border pixel indicates an out of bounds exception as too large of an offset
-  // was passed in for either dimension
-  public Pixel getPixelAt(int rowOffset, int colOffset) {
-    throw new RuntimeException("Index out of bounds exception for getPixelAt!");
+  // returns the index of the lowest energy seam in every line, picking the
+  // first lowest total in the last line, and records its total in lowestTotal
+  int[] finish() {
+    if (this.line != this.lines) {
+      throw new RuntimeException("Seam search is missing lines!");
+    }
+
+    int best = 0;
+    for (int index = 1; index < this.length; index += 1) {
+      if (this.currTotals[index] < this.currTotals[best]) {
+        best = index;
+      }
+    }
+    this.lowestTotal = this.currTotals[best];
+
+    int[] path = new int[this.lines];
+    for (int line = this.lines - 1; line >= 0; line -= 1) {
+      path[line] = best;
+      best += this.moves[line * this.maxLength + best];
+    }
+
+    return path;
   }
+}
 
-  // indicates we have reached the end of the list, so return the listSoFar
-  public ArrayList<Pixel> constructPixelRowHelp(ArrayList<Pixel> listSoFar) {
-    return listSoFar;
+// a seam through a PackedGrid, stored as one index per row (vertical seam) or
+// one index per column (horizontal seam)
+class PackedSeam {
+  // does this seam go from the top of the image to the bottom?
+  boolean vertical;
+
+  // for a vertical seam, indices[row] is the column removed in that row
+  // for a horizontal seam, indices[col] is the row removed in that column
+  int[] indices;
+
+  // the packed ARGB colors removed at each index, null until the seam is
+  // actually removed from a grid
+  int[] colors;
+
+  // the sum of the energies of every pixel in the seam
+  double totalWeight;
+
+  PackedSeam(boolean vertical, int[] indices, double totalWeight) {
+    this.vertical = vertical;
+    this.indices = indices;
+    this.colors = null;
+    this.totalWeight = totalWeight;
   }
+}
 
-  // EFFECT: nothing
-  // does nothing because a border pixel is only pointed at
-  public void changeNeighbor(APixel newPixel, int direction) {
-    return;
+// finds the lowest vertical and horizontal seams of a grid on a background
+// thread, so that they are ready by the time the editor needs them
+// the thread only reads its own PackedGrid copy of the grid (which finds the
+// same seams), and the editor tells it about every change to the grid through
+// a lock-free queue, the seams it finds are handed back through a single slot
+// that always holds the latest forecast
+class SeamPipeline implements Runnable {
+  // the copy of the grid, only used by the worker thread once it starts
+  GridMirror mirror;
+
+  // the changes to the grid that the worker has not applied to the mirror yet
+  ConcurrentLinkedQueue<SeamChange> changes;
+
+  // the latest seams found by the worker
+  AtomicReference<SeamForecast> slot;
+
+  // the amount of changes the editor has made to the grid, only used by the
+  // editor
+  int version;
+
+  // should the worker keep running?
+  volatile boolean running;
+
+  Thread worker;
+
+  // finds both seams of the mirror at once, only used by the worker thread
+  DualSeamSearch search;
+
+  // starts finding seams for the given grid in the background
+  SeamPipeline(Grid grid) {
+    this.mirror = new GridMirror(grid);
+    this.search = new DualSeamSearch();
+    this.changes = new ConcurrentLinkedQueue<SeamChange>();
+    this.slot = new AtomicReference<SeamForecast>();
+    this.version = 0;
+    this.running = true;
+
+    this.worker = new Thread(this, "seam-pipeline");
+    this.worker.setDaemon(true);
+    this.worker.start();
   }
 
-  // returns that this is a border pixel
-  public boolean isBorder() {
-    return true;
+  // returns the seams of the grid as it is now, or null if the worker has not
+  // found them yet
+  SeamForecast forecast() {
+    SeamForecast forecast = this.slot.get();
+    if (forecast == null || forecast.version != this.version) {
+      return null;
+    }
+    return forecast;
   }
 
-  // cannot call getColor on a border pixel
-  public Color getColor() {
-    throw new RuntimeException("Border pixel has no color!");
+  // EFFECT: tells the worker that the seam with the given indices was removed
+  void seamRemoved(boolean vertical, int[] indices) {
+    this.publish(new SeamChange(vertical, indices));
   }
 
-  // indicates we have reached the end of the list, so return the listSoFar
-  public ArrayList<Pixel> constructPixelColHelp(ArrayList<Pixel> listSoFar) {
-    return listSoFar;
+  // EFFECT: tells the worker that the given seam, the most recently removed
+  // seam, was reinserted
+  void seamReinserted(CompactSeam seam) {
+    this.publish(new SeamChange(seam));
   }
 
-  // we do not call asPixel on a border pixel
-  public Pixel asPixel() {
-    throw new RuntimeException("Cannot call asPixel on a border pixel!");
+  // EFFECT: queues the given change for the worker and wakes it up
+  void publish(SeamChange change) {
+    this.changes.add(change);
+    this.version += 1;
+    LockSupport.unpark(this.worker);
   }
 
-  // returns the energy of the pixel with highest energy in this row
-  public double getMaximumEnergyRow(double currMax) {
-    return currMax;
+  // EFFECT: stops the worker thread
+  void stop() {
+    this.running = false;
+    LockSupport.unpark(this.worker);
+    this.search.shutdown();
   }
 
-  // returns the energy of the pixel with highest energy in this grid
-  public double getMaximumEnergyGrid(double currMax) {
-    return currMax;
+  // EFFECT: applies every change to the mirror as it comes in, and finds the
+  // seams of the mirror whenever there are no changes left, sleeping once the
+  // seams are found until the next change
+  public void run() {
+    int applied = 0;
+    int forecasted = -1;
+
+    while (this.running) {
+      SeamChange change = this.changes.poll();
+      if (change != null) {
+        this.mirror.apply(change);
+        applied += 1;
+      }
+      else if (forecasted != applied) {
+        this.slot.set(this.search.search(this.mirror.grid, applied));
+        forecasted = applied;
+      }
+      else {
+        LockSupport.park(this);
+      }
+    }
   }
+}
 
-  // a border pixel has no gray scale as it has no color
-  public Color getGrayScale(double maxEnergy) {
-    throw new RuntimeException("Border pixel has no energy!");
+// a PackedGrid copy of a linked Grid that is kept up to date by making every
+// change made to the grid to it as well, so that its energies and seam costs
+// only change where the seams were, instead of copying the whole grid again
+// it keeps no seams of its own, every seam it reinserts comes from the seam
+// history of the grid, so it can be made at any time and never holds more
+// than that history does
+class GridMirror {
+  PackedGrid grid;
+
+  GridMirror(Grid grid) {
+    this.grid = new PackedGrid(grid);
   }
 
+  // EFFECT: makes the same change to the copy that was made to the grid
+  void apply(SeamChange change) {
+    PackedSeam seam = new PackedSeam(change.vertical, change.indices, 0);
+    if (change.colors != null) {
+      seam.colors = change.colors;
+      this.grid.reinsertSeam(seam);
+    }
+    else if (change.vertical) {
+      this.grid.removeSeamVerticalHelp(seam, false);
+    }
+    else {
+      this.grid.removeSeamHorizontalHelp(seam, false);
+    }
+  }
 }
 
-class ExamplesIE {
-
-  Pixel singlePixel;
+// a change made to a grid, either removing the seam with the given indices,
+// or reinserting a removed seam, the only change with colors
+class SeamChange {
+  boolean vertical;
+  int[] indices;
 
-  Grid grid;
-  Grid gridCopy;
-  Grid grid2;
-  Grid grid2Copy;
-  Grid grid2Remove1Seam;
-  Grid grid3x3;
-  Grid grid3x3Copy;
+  // the colors of the reinserted seam, or null if the seam was removed
+  int[] colors;
 
-  ImageEditor ie;
-  ImageEditor ieCopy;
-  ImageEditor ie2;
-  ImageEditor ie2Copy;
+  SeamChange(boolean vertical, int[] indices) {
+    this.vertical = vertical;
+    this.indices = indices;
+    this.colors = null;
+  }
 
-  FromFileImage balloons = new FromFileImage("./balloons.jpeg");
-  FromFileImage tinyImg1 = new FromFileImage("./tinyImage1.png");
-  FromFileImage tinyImg1Remove1Seam = new FromFileImage("./4x4_1.png");
-  FromFileImage img3x3 = new FromFileImage("./img3x3.png");
+  // reinserting the given seam, which was the most recently removed seam
+  SeamChange(CompactSeam seam) {
+    this.vertical = seam.vertical;
+    this.indices = seam.indices;
+    this.colors = seam.colors;
+  }
+}
 
-  void testBigBang(Tester t) {
-    // initialize conditions
-    this.initConds();
+// the lowest vertical and horizontal seams of a grid after the given amount of
+// changes were made to it
+class SeamForecast {
+  int version;
+  PackedSeam vertical;
+  PackedSeam horizontal;
+
+  SeamForecast(int version, PackedSeam vertical, PackedSeam horizontal) {
+    this.version = version;
+    this.vertical = vertical;
+    this.horizontal = horizontal;
+  }
 
-    ie.bigBang(1000, 1000, 0.1);
+  // returns the vertical seam if vertical is true, otherwise the horizontal seam
+  PackedSeam seam(boolean vertical) {
+    return vertical ? this.vertical : this.horizontal;
   }
 
-  // EFFECT: initializes the conditions for testing
-  void initConds() {
-    this.singlePixel = new Pixel(Color.blue);
-    this.grid = new Grid(balloons);
-    this.grid2Copy = new Grid(balloons);
-    this.grid2 = new Grid(tinyImg1);
-    this.grid2Copy = new Grid(tinyImg1);
-    this.grid2Remove1Seam = new Grid(tinyImg1Remove1Seam);
-    this.grid3x3 = new Grid(img3x3);
-    this.grid3x3Copy = new Grid(img3x3);
-    this.ie = new ImageEditor(grid);
-    this.ie2 = new ImageEditor(grid2);
-    this.ieCopy = new ImageEditor(gridCopy);
-    this.ie2Copy = new ImageEditor(grid2Copy);
+  // is removing the vertical seam cheaper than removing the horizontal seam,
+  // counting the energy removed per pixel removed? a vertical seam removes one
+  // pixel per row and a horizontal seam one per column, so comparing their
+  // totals alone would favor the shorter seam, ties go to the vertical seam
+  boolean verticalIsCheaper() {
+    return this.vertical.totalWeight / this.vertical.indices.length
+        <= this.horizontal.totalWeight / this.horizontal.indices.length;
   }
+}
 
-  void testEnergiesAndBrightness(Tester t) {
-    // initialize conditions
-    this.initConds();
+// finds the lowest vertical and horizontal seams of a PackedGrid at the same
+// time, the horizontal seam on a helper thread while the calling thread finds
+// the vertical seam, which is safe since both only read the colors and
+// energies of the grid and each has its own SeamFinder (and the vertical seam
+// costs are only touched by the calling thread)
+class DualSeamSearch {
+  // runs the horizontal searches
+  ExecutorService helper;
+
+  DualSeamSearch() {
+    this.helper = Executors.newSingleThreadExecutor(new DaemonThreads("dual-seam-search"));
+  }
 
-    t.checkExpect(new BorderPixel().energy(), 0.0);
-    t.checkInexact(this.singlePixel.energy(), 0.0, 0.001);
+  // returns both seams of the given grid, tagged with the given version, which
+  // must not change until this returns
+  SeamForecast search(PackedGrid grid, int version) {
+    Future<PackedSeam> horizontal = this.helper.submit(new HorizontalSeamSearch(grid));
+    PackedSeam vertical = grid.findLowestSeamVertical();
+    try {
+      return new SeamForecast(version, vertical, horizontal.get());
+    }
+    catch (InterruptedException | ExecutionException e) {
+      throw new RuntimeException("Seam search failed!");
+    }
+  }
 
-    this.singlePixel = this.grid2.rootPixel;
-    t.checkInexact(this.singlePixel.energy(), 2.182, 0.001);
+  // EFFECT: stops the helper thread
+  void shutdown() {
+    this.helper.shutdown();
+  }
+}
 
-    this.singlePixel = this.grid2.rootPixel.getPixelAt(1, 1);
-    t.checkInexact(this.singlePixel.energy(), 0.410, 0.001);
+// finds the lowest horizontal seam of a grid for a DualSeamSearch
+class HorizontalSeamSearch implements Callable<PackedSeam> {
+  PackedGrid grid;
 
-    t.checkInexact(this.singlePixel.hEnergy(), -0.2667, 0.001);
-    t.checkInexact(this.singlePixel.vEnergy(), 0.311, 0.001);
-    t.checkInexact(this.singlePixel.brightness(), 0.557, 0.001);
+  HorizontalSeamSearch(PackedGrid grid) {
+    this.grid = grid;
+  }
 
-    t.checkInexact(new BorderPixel().hEnergy(), 0.0, 0.001);
-    t.checkInexact(new BorderPixel().vEnergy(), 0.0, 0.001);
-    t.checkInexact(new BorderPixel().brightness(), 0.0, 0.001);
+  // returns the lowest horizontal seam
+  public PackedSeam call() {
+    return this.grid.findLowestSeamHorizontal();
   }
+}
 
-  void testGridConstructor(Tester t) {
-    // initialize conditions
-    this.initConds();
+// makes daemon threads with the given name, so that helper threads never keep
+// the program running
+class DaemonThreads implements ThreadFactory {
+  String name;
 
-    // check if grid has correct connections
-    // top left pixel: does it refer to the correct edge pixels
+  DaemonThreads(String name) {
+    this.name = name;
+  }
 
-    t.checkExpect(this.grid.rootPixel.getPixelAt(0, 0).getTop().getRight(), new BorderPixel());
-    t.checkExpect(this.grid.rootPixel.getPixelAt(0, 0).getTop(), new BorderPixel());
-    t.checkExpect(this.grid.rootPixel.getPixelAt(0, 0).getTop().getLeft(), new BorderPixel());
-    t.checkExpect(this.grid.rootPixel.getPixelAt(0, 0).getLeft(), new BorderPixel());
-    t.checkExpect(this.grid.rootPixel.getPixelAt(0, 0).getBottom().getLeft(), new BorderPixel());
+  // returns a new daemon thread that runs the given task
+  public Thread newThread(Runnable task) {
+    Thread thread = new Thread(task, this.name);
+    thread.setDaemon(true);
+    return thread;
+  }
+}
 
-    // top left pixel: does it refer to the correct pixel neighbors? (check by
-    // color)
-    // create pixel colors at 0,1 and 0,0
-    Color rightPixelColor = new Color(217, 14, 57);
-    Color topLeftPixelColor = new Color(216, 13, 56);
+// draws a Grid into one image that is reused every frame, only redrawing the
+// parts of every row that changed since the last frame, and only setting the
+// pixels of those parts whose color actually changed
+// the image is as big as the grid was when the renderer was made, and only
+// the part the size of the grid is shown
+class GridRenderer {
+  // every gray a pixel can be drawn in, from black to white, made once so that
+  // drawing in gray scale does not make a Color per pixel
+  static final Color[] GRAYS = GridRenderer.grays();
 
-    t.checkExpect(this.grid.rootPixel.getPixelAt(0, 0).getRight().color, rightPixelColor);
+  Grid grid;
 
-    t.checkExpect(this.grid.rootPixel.getPixelAt(0, 1).getLeft().color, topLeftPixelColor);
+  // the image the grid is drawn into
+  ComputedPixelImage canvas;
 
-    // random edge pixel (not in corner): does it refer to the correct edge pixels?
-    t.checkExpect(this.grid.rootPixel.getPixelAt(0, 69).getTop().getRight(), new BorderPixel());
-    t.checkExpect(this.grid.rootPixel.getPixelAt(0, 69).getTop(), new BorderPixel());
-    t.checkExpect(this.grid.rootPixel.getPixelAt(0, 69).getTop().getLeft(), new BorderPixel());
+  // the packed ARGB color last set at every pixel of the canvas (which starts
+  // out transparent black), laid out like the canvas, so that a redrawn pixel
+  // is only set through the canvas again when its color changed
+  // (transient: a copy of what the canvas already shows)
+  transient int[] drawn;
 
-    // random edge pixel (not in corner): does it refer to the correct edge pixels?
-    t.checkExpect(this.grid.rootPixel.getPixelAt(25, 799).getTop().getRight(), new BorderPixel());
-    t.checkExpect(this.grid.rootPixel.getPixelAt(25, 799).getRight(), new BorderPixel());
-    t.checkExpect(this.grid.rootPixel.getPixelAt(25, 799).getBottom().getRight(),
-        new BorderPixel());
+  // the energy of every pixel drawn in gray scale, laid out like pixels
+  transient double[] energies;
 
-    // random edge pixel (not in corner): does it refer to the correct pixel
-    // neighbors?
-    Color belowColor = new Color(132, 186, 246);
-    Color belowRightColor = new Color(132, 186, 246);
-    t.checkExpect(this.grid.rootPixel.getPixelAt(0, 69).getBottom().color, belowColor);
-    t.checkExpect(this.grid.rootPixel.getPixelAt(0, 69).getBottom().getRight().color,
-        belowRightColor);
+  // the highest energy in the grid when it was last drawn in gray scale
+  double maxEnergy;
 
-    Color leftColor = new Color(2, 10, 95);
-    Color topLeftColor = new Color(2, 10, 95);
-    t.checkExpect(this.grid.rootPixel.getPixelAt(25, 799).getLeft().color, leftColor);
-    t.checkExpect(this.grid.rootPixel.getPixelAt(25, 799).getTop().getLeft().color, topLeftColor);
+  // was the grid last drawn in gray scale?
+  boolean grayScale;
 
-    // random inner pixel: does it refer to the correct pixel neighbors?
-    Color topColor = new Color(116, 154, 216);
-    Color topRightColor = new Color(116, 154, 216);
-    Color rightColor = new Color(119, 155, 217);
-    Color bottomRightColor = new Color(119, 155, 217);
-    Color bottomColor = new Color(119, 155, 217);
-    Color bottomLeftColor = new Color(119, 155, 217);
-    Color leftColor2 = new Color(119, 155, 217);
-    Color topLeftColor2 = new Color(118, 154, 216);
+  // dirtyFrom[row] is the first column of the row that needs to be redrawn,
+  // and dirtyBelow[row] is the first column that needs to be redrawn in the row
+  // and in every row below it, the width of the canvas if nothing does
+  int[] dirtyFrom;
+  int[] dirtyBelow;
 
-    t.checkExpect(this.grid.rootPixel.getPixelAt(62, 420).getTop().color, topColor);
-    t.checkExpect(this.grid.rootPixel.getPixelAt(62, 420).getTop().getRight().color, topRightColor);
-    t.checkExpect(this.grid.rootPixel.getPixelAt(62, 420).getRight().color, rightColor);
-    t.checkExpect(this.grid.rootPixel.getPixelAt(62, 420).getBottom().getRight().color,
-        bottomRightColor);
-    t.checkExpect(this.grid.rootPixel.getPixelAt(62, 420).getBottom().color, bottomColor);
-    t.checkExpect(this.grid.rootPixel.getPixelAt(62, 420).getBottom().getLeft().color,
-        bottomLeftColor);
-    t.checkExpect(this.grid.rootPixel.getPixelAt(62, 420).getLeft().color, leftColor2);
-    t.checkExpect(this.grid.rootPixel.getPixelAt(62, 420).getTop().getLeft().color, topLeftColor2);
+  // does the whole grid need to be redrawn?
+  boolean allDirty;
 
-    // test root pixel
-    t.checkExpect(this.grid2.rootPixel, this.grid2.rootPixel.getPixelAt(0, 0));
+  // starts drawing the given grid, which will tell this renderer about every
+  // change to it from now on
+  GridRenderer(Grid grid) {
+    this.grid = grid;
+    this.grayScale = false;
+    this.newCanvas();
+    grid.renderer = this;
+  }
 
-    t.checkExpect(this.grid2.rootPixel.getTop(), new BorderPixel());
-    t.checkExpect(this.grid2.rootPixel.getBottom(), this.grid2.rootPixel.getPixelAt(1, 0));
-    t.checkExpect(this.grid2.rootPixel.getLeft(), new BorderPixel());
-    t.checkExpect(this.grid2.rootPixel.getRight(), this.grid2.rootPixel.getPixelAt(0, 1));
+  // returns the 256 grays, where the gray at index g is the color with red,
+  // green and blue all g
+  static Color[] grays() {
+    Color[] grays = new Color[256];
+    for (int gray = 0; gray < grays.length; gray += 1) {
+      grays[gray] = new Color(gray, gray, gray);
+    }
+    return grays;
+  }
 
-    t.checkExpect(this.grid2.rootPixel.getBottom().getRight(),
-        this.grid2.rootPixel.getPixelAt(1, 1));
-    t.checkExpect(this.grid2.rootPixel.getBottom().getLeft(), new BorderPixel());
-    t.checkExpect(this.grid2.rootPixel.getTop().getRight(), new BorderPixel());
-    t.checkExpect(this.grid2.rootPixel.getTop().getLeft(), new BorderPixel());
+  // EFFECT: replaces the canvas with a new canvas the size of the grid, which
+  // needs to be drawn completely
+  void newCanvas() {
+    this.canvas = new ComputedPixelImage(this.grid.width, this.grid.height);
+    this.drawn = new int[this.grid.width * this.grid.height];
+    this.energies = new double[this.grid.width * this.grid.height];
+    this.dirtyFrom = new int[this.grid.height];
+    this.dirtyBelow = new int[this.grid.height];
+    Arrays.fill(this.dirtyFrom, this.grid.width);
+    Arrays.fill(this.dirtyBelow, this.grid.width);
+    this.allDirty = true;
+  }
 
-    t.checkExpect(this.grid2.rootPixel.getBottom().getRight().getBottom().getRight().getBottom(),
-        this.grid2.rootPixel.getPixelAt(3, 2));
+  // EFFECT: redraws the given rows from the given column onwards next frame
+  void markRows(int firstRow, int lastRow, int col) {
+    for (int row = Math.max(firstRow, 0); row <= lastRow && row < this.dirtyFrom.length;
+        row += 1) {
+      this.dirtyFrom[row] = Math.min(this.dirtyFrom[row], Math.max(col, 0));
+    }
   }
 
-  void testSetNeighbor(Tester t) {
-    // initialize conditions
-    this.initConds();
+  // EFFECT: redraws the given row and every row below it from the given column
+  // onwards next frame
+  void markRowsBelow(int row, int col) {
+    int firstRow = Math.max(row, 0);
+    if (firstRow < this.dirtyBelow.length) {
+      this.dirtyBelow[firstRow] = Math.min(this.dirtyBelow[firstRow], Math.max(col, 0));
+    }
+  }
 
-    // make two pixels
-    Pixel pixelAbove = new Pixel(Color.blue);
-    Pixel pixelBelow = new Pixel(Color.red);
+  // EFFECT: redraws the whole grid next frame
+  void markAllDirty() {
+    this.allDirty = true;
+  }
 
-    // make sure they are not connected currently
-    t.checkExpect(pixelAbove.bottom, new BorderPixel());
-    t.checkExpect(pixelBelow.top, new BorderPixel());
+  // EFFECT: redraws whatever changed since the last frame, returning the part
+  // of the canvas that shows the grid
+  WorldImage render(boolean grayScale) {
+    int width = this.grid.width;
+    int height = this.grid.height;
+    if (width > this.canvas.width || height > this.canvas.height) {
+      this.newCanvas();
+    }
+    if (grayScale != this.grayScale) {
+      this.grayScale = grayScale;
+      this.allDirty = true;
+    }
 
-    // set neighbors
-    pixelAbove.setNeighbor(pixelBelow, 2);
+    // fold the regions marked below a row into the rows themselves
+    int below = this.canvas.width;
+    for (int row = 0; row < height; row += 1) {
+      below = Math.min(below, this.dirtyBelow[row]);
+      this.dirtyFrom[row] = this.allDirty ? 0 : Math.min(this.dirtyFrom[row], below);
+    }
 
-    // make sure they are connected
-    t.checkExpect(pixelAbove.bottom, pixelBelow);
-    t.checkExpect(pixelBelow.top, pixelAbove);
+    if (grayScale) {
+      this.renderGrayScale(width, height);
+    }
+    else {
+      for (int row = 0; row < height; row += 1) {
+        APixel current = this.startOfDirtyRow(row);
+        for (int col = this.dirtyFrom[row]; col < width; col += 1) {
+          this.setPixel(row, col, current.getColor());
+          current = current.getRight();
+        }
+      }
+    }
+
+    Arrays.fill(this.dirtyFrom, this.canvas.width);
+    Arrays.fill(this.dirtyBelow, this.canvas.width);
+    this.allDirty = false;
+    return new CropImage(0, 0, width, height, this.canvas);
+  }
+
+  // EFFECT: recomputes the energies of the dirty pixels, and redraws them, or
+  // every pixel if the highest energy changed since the last frame
+  void renderGrayScale(int width, int height) {
+    int stride = this.canvas.width;
+    for (int row = 0; row < height; row += 1) {
+      APixel current = this.startOfDirtyRow(row);
+      for (int col = this.dirtyFrom[row]; col < width; col += 1) {
+        this.energies[row * stride + col] = current.energy();
+        current = current.getRight();
+      }
+    }
+
+    // the maximum of the cached energies, the same as Grid.getMaxEnergy
+    double maxEnergy = this.energies[0];
+    for (int row = 0; row < height; row += 1) {
+      for (int col = 0; col < width; col += 1) {
+        maxEnergy = Math.max(maxEnergy, this.energies[row * stride + col]);
+      }
+    }
+    boolean redrawAll = maxEnergy != this.maxEnergy;
+    this.maxEnergy = maxEnergy;
+
+    for (int row = 0; row < height; row += 1) {
+      int from = redrawAll ? 0 : this.dirtyFrom[row];
+      for (int col = from; col < width; col += 1) {
+        // the same gray as APixel.getGrayScale
+        int gray = (int) (255 * (this.energies[row * stride + col] / maxEnergy));
+        this.setPixel(row, col, GRAYS[gray]);
+      }
+    }
+  }
+
+  // returns the first pixel of the given row that needs to be redrawn
+  APixel startOfDirtyRow(int row) {
+    APixel current = this.grid.getRowStart(row);
+    for (int col = 0; col < this.dirtyFrom[row] && col < this.grid.width; col += 1) {
+      current = current.getRight();
+    }
+    return current;
+  }
+
+  // EFFECT: sets the pixel of the canvas at the given row and col to the given
+  // color, unless it already has that color
+  void setPixel(int row, int col, Color color) {
+    int index = row * this.canvas.width + col;
+    int rgb = color.getRGB();
+    if (this.drawn[index] != rgb) {
+      this.drawn[index] = rgb;
+      this.canvas.setPixel(col, row, color);
+    }
+  }
+}
+
+// represents an image as a flat, row-major buffer of packed ARGB colors
+// instead of a linked graph of pixels
+// the interactive ImageEditor still carves the linked Grid, whose pixels are
+// what the red line, the seam history and the tests of the editor are built
+// on, so a PackedGrid is used alongside it: by the batch carvers, and as the
+// copy the editor's background and optimal-order seam searches run on
+class PackedGrid {
+  // the packed ARGB color of every pixel, the pixel at row r and col c is stored
+  // at index r * stride + c
+  int[] colors;
+
+  // the distance in the buffer between the start of two consecutive rows, this
+  // is the width of the image when the grid was made, and only grows if seams
+  // removed before that are reinserted (see ensureCapacity)
+  int stride;
+
+  // the amount of columns currently in the image
+  int width;
+
+  // the amount of rows currently in the image
+  int height;
+
+  // the seam currently highlighted as a red line, or null if there is none
+  PackedSeam redLine;
+
+  // should positions outside the image repeat the nearest pixel on the edge
+  // (true), or be black like a BorderPixel (false)?
+  boolean replicateEdges;
+
+  // the cached energy of every pixel, laid out like colors, which is kept up
+  // to date as seams are removed and reinserted (derived from colors, so not
+  // part of the image itself)
+  // (transient: grids with the same colors are equal, the tests check the cache
+  // against a recomputation with energiesUpToDate)
+  transient double[] energies;
+
+  // reusable buffers for finding vertical seams and horizontal seams, kept
+  // apart so that both can be searched for at the same time on two threads,
+  // not part of the image itself (transient: scratch space)
+  transient SeamFinder finder = new SeamFinder();
+  transient SeamFinder horizontalFinder = new SeamFinder();
+
+  // computes the whole energy map at once, not part of the image itself
+  // (transient: only holds the plane of the last energy pass)
+  transient SobelKernel kernel = SobelKernel.fastest();
+
+  // the total energy of the lowest vertical seam from the top row down to every
+  // pixel, and where in the previous row it came from (-1, 0 or 1), laid out
+  // like colors, which removing a vertical seam only patches where the totals
+  // change, null until the first vertical seam is found
+  // (transient: derived from energies, and whether it has been built yet does
+  // not change the image, testIncrementalSeamCosts checks it against a rebuild)
+  transient double[] seamCosts;
+  transient byte[] seamMoves;
+
+  // do seamCosts and seamMoves match the current energies? (transient along
+  // with them)
+  transient boolean seamCostsValid;
+
+  // are seams picked by forward energy (see SeamFinder.addForwardLine) instead
+  // of the sum of the energies of their pixels?
+  boolean forwardEnergy;
+
+  // constructs the grid by copying the color of every pixel in the image into
+  // the buffer
+  PackedGrid(FromFileImage image) {
+    this((int) image.getWidth(), (int) image.getHeight());
+    this.colors = new RasterLoader().readColors(image);
+    this.computeEnergies();
+  }
+
+  // constructs the grid by copying the color of every pixel in the given linked
+  // grid into the buffer
+  PackedGrid(Grid grid) {
+    this(grid.width, grid.height);
+    this.forwardEnergy = grid.forwardEnergy;
+
+    for (int row = 0; row < this.height; row += 1) {
+      APixel current = grid.getRowStart(row);
+      for (int col = 0; col < this.width; col += 1) {
+        this.colors[row * this.stride + col] = current.color.getRGB();
+        current = current.getRight();
+      }
+    }
+
+    this.computeEnergies();
+  }
+
+  // constructs the grid from an image loaded without javalib, such as with
+  // javax.imageio
+  PackedGrid(BufferedImage image) {
+    this(image.getWidth(), image.getHeight());
+    this.colors = new RasterLoader().readColors(image);
+    this.computeEnergies();
+  }
+
+  // constructs a grid of the given size where every pixel is transparent black
+  PackedGrid(int width, int height) {
+    if (width < 1 || height < 1) {
+      throw new RuntimeException("Grid must contain at least one pixel!");
+    }
+
+    this.colors = new int[width * height];
+    this.energies = new double[width * height];
+    this.stride = width;
+    this.width = width;
+    this.height = height;
+    this.redLine = null;
+    this.replicateEdges = false;
+    this.forwardEnergy = false;
+  }
+
+  // EFFECT: switches between replicating the edge pixels and treating the
+  // outside of the image as black, recomputing every cached energy
+  void setReplicateEdges(boolean replicateEdges) {
+    this.replicateEdges = replicateEdges;
+    this.computeEnergies();
+  }
+
+  // returns the packed ARGB color of the pixel at the given row and col
+  int getRGBAt(int row, int col) {
+    return this.colors[row * this.stride + col];
+  }
+
+  // returns the color of the pixel at the given row and col, or red if it is
+  // part of the highlighted seam
+  Color getColorAt(int row, int col) {
+    if (this.redLine != null && this.inSeam(this.redLine, row, col)) {
+      return Color.red;
+    }
+    return new Color(this.getRGBAt(row, col), true);
+  }
+
+  // is the pixel at the given row and col part of the given seam?
+  boolean inSeam(PackedSeam seam, int row, int col) {
+    if (seam.vertical) {
+      return seam.indices[row] == col;
+    }
+    else {
+      return seam.indices[col] == row;
+    }
+  }
+
+  // returns a new image of the given BufferedImage type with the colors of
+  // this grid
+  BufferedImage toBufferedImage(int type) {
+    BufferedImage image = new BufferedImage(this.width, this.height, type);
+    image.setRGB(0, 0, this.width, this.height, this.colors, 0, this.stride);
+    return image;
+  }
+
+  // EFFECT: removes vertical seams until the grid is the given width, then
+  // horizontal seams until it is the given height, the same seams as
+  // Grid.removeSeamsVertical and removeSeamsHorizontal, returning the amount
+  // of seams removed
+  int carveTo(int width, int height) {
+    if (this.width < width || this.height < height) {
+      throw new RuntimeException("Image is smaller than the target size!");
+    }
+
+    int seams = this.width - width + this.height - height;
+    while (this.width > width) {
+      this.removeSeamVertical(false);
+    }
+    while (this.height > height) {
+      this.removeSeamHorizontal(false);
+    }
+    return seams;
+  }
+
+  // returns a copy of the colors currently in the image, row by row with no
+  // gaps between rows
+  int[] packedColors() {
+    int[] result = new int[this.width * this.height];
+    for (int row = 0; row < this.height; row += 1) {
+      System.arraycopy(this.colors, row * this.stride, result, row * this.width, this.width);
+    }
+    return result;
+  }
+
+  // returns a copy of this grid without any spare columns, which has the same
+  // colors, energies and settings but no red line and no seam costs yet
+  PackedGrid compactCopy() {
+    PackedGrid copy = new PackedGrid(this.width, this.height);
+    copy.colors = this.packedColors();
+    for (int row = 0; row < this.height; row += 1) {
+      System.arraycopy(this.energies, row * this.stride, copy.energies, row * this.width,
+          this.width);
+    }
+    copy.replicateEdges = this.replicateEdges;
+    copy.forwardEnergy = this.forwardEnergy;
+    return copy;
+  }
+
+  // computes the "brightness" of the pixel at the given row and col, anything
+  // outside of the image is either the nearest pixel on the edge or black like
+  // a border pixel, depending on replicateEdges
+  double brightness(int row, int col) {
+    if (row < 0 || row >= this.height || col < 0 || col >= this.width) {
+      if (!this.replicateEdges) {
+        return 0.0;
+      }
+      row = Math.max(0, Math.min(row, this.height - 1));
+      col = Math.max(0, Math.min(col, this.width - 1));
+    }
+    return this.brightnessOf(this.colors[row * this.stride + col]);
+  }
+
+  // computes the "brightness" of the given packed ARGB color, the same way as
+  // APixel.brightness
+  double brightnessOf(int rgb) {
+    return (((rgb >> 16) & 0xFF) + (rgb & 0xFF) + ((rgb >> 8) & 0xFF)) / (3.0 * 255.0);
+  }
+
+  // calculates the horizontal energy of the pixel at the given row and col
+  double hEnergy(int row, int col) {
+    double topLeftBr = this.brightness(row - 1, col - 1);
+    double leftBr = this.brightness(row, col - 1);
+    double bottomLeftBr = this.brightness(row + 1, col - 1);
+
+    double topRightBr = this.brightness(row - 1, col + 1);
+    double rightBr = this.brightness(row, col + 1);
+    double bottomRightBr = this.brightness(row + 1, col + 1);
+
+    return (topLeftBr + 2.0 * leftBr + bottomLeftBr) - (topRightBr + 2.0 * rightBr + bottomRightBr);
+  }
+
+  // calculates the vertical energy of the pixel at the given row and col
+  double vEnergy(int row, int col) {
+    double topLeftBr = this.brightness(row - 1, col - 1);
+    double topBr = this.brightness(row - 1, col);
+    double topRightBr = this.brightness(row - 1, col + 1);
+
+    double bottomLeftBr = this.brightness(row + 1, col - 1);
+    double bottomBr = this.brightness(row + 1, col);
+    double bottomRightBr = this.brightness(row + 1, col + 1);
+
+    return (topLeftBr + 2.0 * topBr + topRightBr) - (bottomLeftBr + 2.0 * bottomBr + bottomRightBr);
+  }
+
+  // calculates the overall energy of the pixel at the given row and col
+  double energy(int row, int col) {
+    double hEnergy = this.hEnergy(row, col);
+    double vEnergy = this.vEnergy(row, col);
+    return Math.sqrt((hEnergy * hEnergy + vEnergy * vEnergy));
+  }
+
+  // returns the cached energy of the pixel at the given row and col
+  double energyAt(int row, int col) {
+    return this.energies[row * this.stride + col];
+  }
+
+  // EFFECT: recomputes the cached energy of every pixel in the grid, exactly
+  // like energy(row, col) would
+  void computeEnergies() {
+    this.kernel.computeEnergies(this);
+    this.seamCostsValid = false;
+  }
+
+  // EFFECT: recomputes the cached energy of every pixel from firstRow up to (but
+  // not including) lastRow, only reading colors, so separate bands of rows can
+  // be computed at the same time
+  void computeEnergyRows(int firstRow, int lastRow) {
+    this.seamCostsValid = false;
+    for (int row = firstRow; row < lastRow; row += 1) {
+      for (int col = 0; col < this.width; col += 1) {
+        this.energies[row * this.stride + col] = this.energy(row, col);
+      }
+    }
+  }
+
+  // returns the maximum energy of a single pixel in the grid
+  double getMaxEnergy() {
+    double maximum = this.energyAt(0, 0);
+    for (int row = 0; row < this.height; row += 1) {
+      for (int col = 0; col < this.width; col += 1) {
+        maximum = Math.max(maximum, this.energyAt(row, col));
+      }
+    }
+    return maximum;
+  }
+
+  // returns the world image that visualizes this grid
+  ComputedPixelImage makeImage(boolean grayScale) {
+    ComputedPixelImage img = new ComputedPixelImage(this.width, this.height);
+    double maxEnergy = grayScale ? this.getMaxEnergy() : 0;
+
+    for (int row = 0; row < this.height; row += 1) {
+      for (int col = 0; col < this.width; col += 1) {
+        if (grayScale) {
+          int grayRatio = (int) (255 * (this.energyAt(row, col) / maxEnergy));
+          img.setPixel(col, row, new Color(grayRatio, grayRatio, grayRatio));
+        }
+        else {
+          img.setPixel(col, row, this.getColorAt(row, col));
+        }
+      }
+    }
+
+    return img;
+  }
+
+  // returns the vertical seam with the lowest total energy, ties are broken the
+  // same way as Grid.findLowestSeamVertical (same column, then right, then left,
+  // and the leftmost seam overall)
+  PackedSeam findLowestSeamVertical() {
+    if (!this.forwardEnergy) {
+      return this.findLowestSeamVerticalFromCosts();
+    }
+    return this.findLowestSeamVerticalFromScratch();
+  }
+
+  // returns the same seam as findLowestSeamVertical, searching every row again
+  // without the persistent seam costs
+  PackedSeam findLowestSeamVerticalFromScratch() {
+    this.finder.start(this.height, this.width);
+
+    // every row of cached energies is already contiguous
+    for (int row = 0; row < this.height; row += 1) {
+      if (this.forwardEnergy) {
+        this.collectBrightness(row, true);
+        this.finder.addForwardLine(this.finder.lineEnergies, 0, this.width, this.replicateEdges);
+      }
+      else {
+        this.finder.addLine(this.energies, row * this.stride, this.width);
+      }
+    }
+
+    return this.finishSeam(true);
+  }
+
+  // returns the lowest vertical seam by backward energy from the persistent
+  // seam costs, computing them all first if they are out of date, exactly the
+  // seam SeamFinder would find
+  PackedSeam findLowestSeamVerticalFromCosts() {
+    if (!this.seamCostsValid) {
+      if (this.seamCosts == null) {
+        this.seamCosts = new double[this.colors.length];
+        this.seamMoves = new byte[this.colors.length];
+      }
+      for (int row = 0; row < this.height; row += 1) {
+        for (int col = 0; col < this.width; col += 1) {
+          this.updateSeamCost(row, col);
+        }
+      }
+      this.seamCostsValid = true;
+    }
+
+    int last = (this.height - 1) * this.stride;
+    int best = 0;
+    for (int col = 1; col < this.width; col += 1) {
+      if (this.seamCosts[last + col] < this.seamCosts[last + best]) {
+        best = col;
+      }
+    }
+
+    int[] path = new int[this.height];
+    int col = best;
+    for (int row = this.height - 1; row >= 0; row -= 1) {
+      path[row] = col;
+      col += this.seamMoves[row * this.stride + col];
+    }
+    return new PackedSeam(true, path, this.seamCosts[last + best]);
+  }
+
+  // EFFECT: recomputes the seam cost of the pixel at the given row and col from
+  // the costs of the row above, breaking ties like SeamFinder.addLine, and
+  // returns whether the cost changed
+  boolean updateSeamCost(int row, int col) {
+    int index = row * this.stride + col;
+    double cost = this.energies[index];
+    byte move = 0;
+
+    if (row > 0) {
+      int above = index - this.stride;
+      int best = above;
+      if ((col == 0 || col < this.width - 1) && col + 1 < this.width
+          && this.seamCosts[above + 1] < this.seamCosts[best]) {
+        best = above + 1;
+        move = 1;
+      }
+      if (col > 0 && this.seamCosts[above - 1] < this.seamCosts[best]) {
+        best = above - 1;
+        move = -1;
+      }
+      cost += this.seamCosts[best];
+    }
+
+    boolean changed = cost != this.seamCosts[index];
+    this.seamCosts[index] = cost;
+    this.seamMoves[index] = move;
+    return changed;
+  }
+
+  // EFFECT: brings the seam costs up to date after the given vertical seam was
+  // removed (and the costs shifted along with the energies), recomputing the
+  // pixels around the seam in every row, whose energies or neighbors above
+  // changed, and below every pixel whose cost changed in the row above, which
+  // stops spreading as soon as the totals agree with the old ones again
+  void patchSeamCosts(PackedSeam seam) {
+    // the first and last pixel whose cost changed in the row above
+    int changedLow = 0;
+    int changedHigh = -1;
+
+    for (int row = 0; row < this.height; row += 1) {
+      int low = seam.indices[row];
+      int high = seam.indices[row];
+      if (row > 0) {
+        low = Math.min(low, seam.indices[row - 1]);
+        high = Math.max(high, seam.indices[row - 1]);
+      }
+      if (row < this.height - 1) {
+        low = Math.min(low, seam.indices[row + 1]);
+        high = Math.max(high, seam.indices[row + 1]);
+      }
+      low -= 2;
+      high += 1;
+      if (changedHigh >= changedLow) {
+        low = Math.min(low, changedLow - 1);
+        high = Math.max(high, changedHigh + 1);
+      }
+
+      changedLow = Integer.MAX_VALUE;
+      changedHigh = -1;
+      for (int col = Math.max(low, 0); col <= Math.min(high, this.width - 1); col += 1) {
+        if (this.updateSeamCost(row, col)) {
+          changedLow = Math.min(changedLow, col);
+          changedHigh = col;
+        }
+      }
+    }
+  }
+
+  // returns the horizontal seam with the lowest total energy, ties are broken
+  // the same way as Grid.findLowestSeamHorizontal
+  PackedSeam findLowestSeamHorizontal() {
+    SeamFinder finder = this.horizontalFinder;
+    finder.start(this.width, this.height);
+    double[] energies = finder.lineEnergies;
+
+    for (int col = 0; col < this.width; col += 1) {
+      if (this.forwardEnergy) {
+        this.collectBrightness(col, false);
+        finder.addForwardLine(energies, 0, this.height, this.replicateEdges);
+      }
+      else {
+        for (int row = 0; row < this.height; row += 1) {
+          energies[row] = this.energies[row * this.stride + col];
+        }
+        finder.addLine(energies, this.height);
+      }
+    }
+
+    return this.finishSeam(false);
+  }
+
+  // returns the finder that searches for vertical seams if vertical is true,
+  // otherwise the one for horizontal seams
+  SeamFinder finderFor(boolean vertical) {
+    return vertical ? this.finder : this.horizontalFinder;
+  }
+
+  // EFFECT: writes the brightness of every pixel in the given row (or column)
+  // into the line of energies of the finder for that direction
+  void collectBrightness(int line, boolean row) {
+    int length = row ? this.width : this.height;
+    int start = row ? line * this.stride : line;
+    int step = row ? 1 : this.stride;
+    double[] lineEnergies = this.finderFor(row).lineEnergies;
+    for (int index = 0; index < length; index += 1) {
+      lineEnergies[index] = this.brightnessOf(this.colors[start + index * step]);
+    }
+  }
+
+  // returns the seam the finder for the given direction found, whose total
+  // weight is the sum of the energies of its pixels in either mode, like a
+  // SeamInfo
+  PackedSeam finishSeam(boolean vertical) {
+    SeamFinder finder = this.finderFor(vertical);
+    int[] path = finder.finish();
+    if (!this.forwardEnergy) {
+      return new PackedSeam(vertical, path, finder.lowestTotal);
+    }
+
+    double totalWeight = 0;
+    for (int line = 0; line < path.length; line += 1) {
+      int index = vertical ? line * this.stride + path[line] : path[line] * this.stride + line;
+      totalWeight = line == 0 ? this.energies[index] : totalWeight + this.energies[index];
+    }
+    return new PackedSeam(vertical, path, totalWeight);
+  }
+
+  // EFFECT: removes the lowest energy vertical seam from the grid, or only
+  // highlights it if redLine is true, returning the seam
+  PackedSeam removeSeamVertical(boolean redLine) {
+    PackedSeam lowestSeam = this.findLowestSeamVertical();
+    this.removeSeamVerticalHelp(lowestSeam, redLine);
+    return lowestSeam;
+  }
+
+  // EFFECT: removes the lowest energy horizontal seam from the grid, or only
+  // highlights it if redLine is true, returning the seam
+  PackedSeam removeSeamHorizontal(boolean redLine) {
+    PackedSeam lowestSeam = this.findLowestSeamHorizontal();
+    this.removeSeamHorizontalHelp(lowestSeam, redLine);
+    return lowestSeam;
+  }
+
+  // EFFECT: either highlights the given vertical seam or removes it by shifting
+  // the rest of every row one column to the left, storing the removed colors in
+  // the seam
+  void removeSeamVerticalHelp(PackedSeam seam, boolean redLine) {
+    if (redLine) {
+      this.redLine = seam;
+      return;
+    }
+
+    seam.colors = new int[this.height];
+    for (int row = 0; row < this.height; row += 1) {
+      int col = seam.indices[row];
+      int start = row * this.stride;
+      seam.colors[row] = this.colors[start + col];
+      System.arraycopy(this.colors, start + col + 1, this.colors, start + col,
+          this.width - col - 1);
+      System.arraycopy(this.energies, start + col + 1, this.energies, start + col,
+          this.width - col - 1);
+      if (this.seamCostsValid) {
+        System.arraycopy(this.seamCosts, start + col + 1, this.seamCosts, start + col,
+            this.width - col - 1);
+        System.arraycopy(this.seamMoves, start + col + 1, this.seamMoves, start + col,
+            this.width - col - 1);
+      }
+    }
+
+    this.width -= 1;
+    this.redLine = null;
+    this.refreshEnergiesAround(seam, 0);
+    if (this.seamCostsValid) {
+      this.patchSeamCosts(seam);
+    }
+  }
+
+  // EFFECT: either highlights the given horizontal seam or removes it by
+  // shifting the rest of every column one row up, storing the removed colors in
+  // the seam
+  void removeSeamHorizontalHelp(PackedSeam seam, boolean redLine) {
+    if (redLine) {
+      this.redLine = seam;
+      return;
+    }
+
+    seam.colors = new int[this.width];
+    for (int col = 0; col < this.width; col += 1) {
+      seam.colors[col] = this.colors[seam.indices[col] * this.stride + col];
+    }
+
+    // walk the buffer row by row so that every copy reads memory in order
+    for (int row = 0; row < this.height - 1; row += 1) {
+      int start = row * this.stride;
+      for (int col = 0; col < this.width; col += 1) {
+        if (seam.indices[col] <= row) {
+          this.colors[start + col] = this.colors[start + this.stride + col];
+          this.energies[start + col] = this.energies[start + this.stride + col];
+        }
+      }
+    }
+
+    this.height -= 1;
+    this.redLine = null;
+    this.refreshEnergiesAround(seam, 0);
+    // every column below the seam moved up, so every total below it changed
+    this.seamCostsValid = false;
+  }
+
+  // EFFECT: makes room in the buffers for a grid of the given size, moving
+  // every pixel into bigger buffers (half again as wide or as tall, so that
+  // reinserting many seams only moves them a few times) when it does not fit,
+  // which only happens when seams removed before this grid was made are
+  // reinserted into it
+  void ensureCapacity(int width, int height) {
+    int rows = this.colors.length / this.stride;
+    if (width <= this.stride && height <= rows) {
+      return;
+    }
+
+    int stride = width <= this.stride ? this.stride : Math.max(width, this.stride * 3 / 2);
+    int[] colors = new int[stride * (height <= rows ? rows : Math.max(height, rows * 3 / 2))];
+    double[] energies = new double[colors.length];
+    for (int row = 0; row < this.height; row += 1) {
+      System.arraycopy(this.colors, row * this.stride, colors, row * stride, this.width);
+      System.arraycopy(this.energies, row * this.stride, energies, row * stride, this.width);
+    }
+    this.colors = colors;
+    this.energies = energies;
+    this.stride = stride;
+
+    // laid out like the old buffers, so they are made again when needed
+    this.seamCosts = null;
+    this.seamMoves = null;
+    this.seamCostsValid = false;
+  }
+
+  // EFFECT: reinserts the given seam, which must be the most recently removed
+  // seam, by shifting the pixels after it back out of the way
+  void reinsertSeam(PackedSeam seam) {
+    if (seam == null) {
+      return;
+    }
+
+    if (seam.colors == null) {
+      throw new RuntimeException("Cannot reinsert a seam that was never removed!");
+    }
+
+    this.redLine = null;
+    this.ensureCapacity(this.width + (seam.vertical ? 1 : 0),
+        this.height + (seam.vertical ? 0 : 1));
+
+    if (seam.vertical) {
+      for (int row = 0; row < this.height; row += 1) {
+        int col = seam.indices[row];
+        int start = row * this.stride;
+        System.arraycopy(this.colors, start + col, this.colors, start + col + 1,
+            this.width - col);
+        System.arraycopy(this.energies, start + col, this.energies, start + col + 1,
+            this.width - col);
+        this.colors[start + col] = seam.colors[row];
+      }
+      this.width += 1;
+    }
+    else {
+      this.height += 1;
+      for (int row = this.height - 1; row > 0; row -= 1) {
+        int start = row * this.stride;
+        for (int col = 0; col < this.width; col += 1) {
+          if (seam.indices[col] < row) {
+            this.colors[start + col] = this.colors[start - this.stride + col];
+            this.energies[start + col] = this.energies[start - this.stride + col];
+          }
+        }
+      }
+      for (int col = 0; col < this.width; col += 1) {
+        this.colors[seam.indices[col] * this.stride + col] = seam.colors[col];
+      }
+    }
+
+    this.refreshEnergiesAround(seam, 1);
+    this.seamCostsValid = false;
+  }
+
+  // EFFECT: recomputes the cached energy of every pixel whose 3x3 neighborhood
+  // was changed by removing (extra = 0) or reinserting (extra = 1) the given
+  // seam, every other pixel only moved along with its neighbors
+  // in each line this is from one before the smallest index of the seam in the
+  // neighboring lines up to the largest index (plus extra), usually 3 or 4 pixels
+  void refreshEnergiesAround(PackedSeam seam, int extra) {
+    int lines = seam.indices.length;
+    int lineLength = seam.vertical ? this.width : this.height;
+
+    for (int line = 0; line < lines; line += 1) {
+      int low = seam.indices[line];
+      int high = seam.indices[line];
+      if (line > 0) {
+        low = Math.min(low, seam.indices[line - 1]);
+        high = Math.max(high, seam.indices[line - 1]);
+      }
+      if (line < lines - 1) {
+        low = Math.min(low, seam.indices[line + 1]);
+        high = Math.max(high, seam.indices[line + 1]);
+      }
+
+      low = Math.max(low - 1, 0);
+      high = Math.min(high + extra, lineLength - 1);
+      for (int index = low; index <= high; index += 1) {
+        if (seam.vertical) {
+          this.energies[line * this.stride + index] = this.energy(line, index);
+        }
+        else {
+          this.energies[index * this.stride + line] = this.energy(index, line);
+        }
+      }
+    }
+  }
+}
+
+// the order in which the pixels of an image are removed when it is carved down
+// once, which is enough to produce the image at any size in between without
+// searching for seams again
+// removing only columns (or only rows) gives exactly the same image as carving
+// that many seams, removing both uses the order of the columns first, and then
+// keeps the pixels that the row carving removed last in every column, which is
+// close to carving both but not exact since the row seams were found on the
+// full width image
+class CarveOrderMap {
+  // the size of the original image
+  int width;
+  int height;
+
+  // the smallest size the map can produce
+  int minWidth;
+  int minHeight;
+
+  // the packed ARGB color of every pixel of the original image, row-major
+  int[] colors;
+
+  // does the map (and every image it produces) replicate the edge pixels?
+  boolean replicateEdges;
+
+  // verticalOrder[row * width + col] is the vertical seam (counting from 0) that
+  // removed the pixel, or width - minWidth if no seam removed it
+  int[] verticalOrder;
+
+  // horizontalOrder[row * width + col] is the horizontal seam (counting from 0)
+  // that removed the pixel, or height - minHeight if no seam removed it
+  int[] horizontalOrder;
+
+  // carves a copy of the given grid down to minWidth columns, and another copy
+  // down to minHeight rows, recording when every pixel was removed
+  CarveOrderMap(PackedGrid grid, int minWidth, int minHeight) {
+    if (minWidth < 1 || minHeight < 1 || minWidth > grid.width || minHeight > grid.height) {
+      throw new RuntimeException("Cannot carve to that size!");
+    }
+
+    this.width = grid.width;
+    this.height = grid.height;
+    this.minWidth = minWidth;
+    this.minHeight = minHeight;
+    this.colors = grid.packedColors();
+    this.replicateEdges = grid.replicateEdges;
+    this.verticalOrder = this.carveOrder(true, this.width - minWidth);
+    this.horizontalOrder = this.carveOrder(false, this.height - minHeight);
+  }
+
+  // carves the image down to its minimum size once
+  CarveOrderMap(BufferedImage image, int minWidth, int minHeight) {
+    this(new PackedGrid(image), minWidth, minHeight);
+  }
+
+  // returns when every pixel of the original image is removed while carving
+  // the given amount of vertical or horizontal seams out of a copy of it
+  int[] carveOrder(boolean vertical, int seams) {
+    PackedGrid grid = this.newGrid(this.width, this.height);
+    System.arraycopy(this.colors, 0, grid.colors, 0, this.colors.length);
+    grid.computeEnergies();
+
+    // ids[index] is the original index of the pixel now at index in the grid,
+    // and is shifted exactly like the colors of the grid
+    int[] ids = new int[this.colors.length];
+    for (int index = 0; index < ids.length; index += 1) {
+      ids[index] = index;
+    }
+    int[] order = new int[this.colors.length];
+    Arrays.fill(order, seams);
+
+    for (int seam = 0; seam < seams; seam += 1) {
+      if (vertical) {
+        PackedSeam removed = grid.removeSeamVertical(false);
+        for (int row = 0; row < grid.height; row += 1) {
+          int start = row * this.width + removed.indices[row];
+          order[ids[start]] = seam;
+          System.arraycopy(ids, start + 1, ids, start, grid.width - removed.indices[row]);
+        }
+      }
+      else {
+        PackedSeam removed = grid.removeSeamHorizontal(false);
+        for (int col = 0; col < grid.width; col += 1) {
+          order[ids[removed.indices[col] * this.width + col]] = seam;
+          for (int row = removed.indices[col]; row < grid.height; row += 1) {
+            ids[row * this.width + col] = ids[(row + 1) * this.width + col];
+          }
+        }
+      }
+    }
+
+    return order;
+  }
+
+  // returns the image resized to the given width and height in a single pass
+  // over the pixels
+  PackedGrid resize(int targetWidth, int targetHeight) {
+    if (targetWidth < this.minWidth || targetWidth > this.width
+        || targetHeight < this.minHeight || targetHeight > this.height) {
+      throw new RuntimeException("Target size is outside of the carve order map!");
+    }
+
+    // the original index of every pixel left after removing the columns
+    int removedCols = this.width - targetWidth;
+    int[] kept = new int[targetWidth * this.height];
+    int next = 0;
+    for (int index = 0; index < this.colors.length; index += 1) {
+      if (this.verticalOrder[index] >= removedCols) {
+        kept[next] = index;
+        next += 1;
+      }
+    }
+
+    PackedGrid result = this.newGrid(targetWidth, targetHeight);
+    int[] counts = new int[this.height - this.minHeight + 1];
+    for (int col = 0; col < targetWidth; col += 1) {
+      // find the order at which to stop so that exactly targetHeight pixels of
+      // this column are kept, starting with the pixels removed last
+      Arrays.fill(counts, 0);
+      for (int row = 0; row < this.height; row += 1) {
+        counts[this.horizontalOrder[kept[row * targetWidth + col]]] += 1;
+      }
+      int threshold = counts.length - 1;
+      int above = 0;
+      while (above + counts[threshold] < targetHeight) {
+        above += counts[threshold];
+        threshold -= 1;
+      }
+      int atThreshold = targetHeight - above;
+
+      int resultRow = 0;
+      for (int row = 0; row < this.height; row += 1) {
+        int index = kept[row * targetWidth + col];
+        int order = this.horizontalOrder[index];
+        if (order > threshold || (order == threshold && atThreshold > 0)) {
+          if (order == threshold) {
+            atThreshold -= 1;
+          }
+          result.colors[resultRow * targetWidth + col] = this.colors[index];
+          resultRow += 1;
+        }
+      }
+    }
+
+    result.computeEnergies();
+    return result;
+  }
+
+  // returns a black grid of the given size that treats its edges like the
+  // original image
+  PackedGrid newGrid(int width, int height) {
+    PackedGrid grid = new PackedGrid(width, height);
+    grid.replicateEdges = this.replicateEdges;
+    return grid;
+  }
+}
+
+// the transport map of an image (Avidan and Shamir), which finds the order of
+// vertical and horizontal seam removals that shrinks the image by the given
+// amount of columns and rows while removing the least total energy, the cost of
+// reaching r rows and c columns removed is
+//   T(r, c) = min(T(r - 1, c) + the lowest horizontal seam of the image at (r - 1, c),
+//                 T(r, c - 1) + the lowest vertical seam of the image at (r, c - 1))
+// instead of the whole map, only the costs, packed colors and two lowest seams
+// of the cells of the latest anti-diagonal (r + c) filled are kept, along with
+// a single bit per cell for which of the two it chose
+// every anti-diagonal is filled in two passes that each run in parallel: the
+// first makes one grid of every cell of the anti-diagonal before and searches
+// it for both of its seams, which the two cells that follow it share, and the
+// second picks the cheaper seam for every cell and copies the image it
+// follows without that seam, which needs no grid or energies at all
+class TransportMap {
+  // the amount of rows and columns removed to get to the last cell of the map
+  int rows;
+  int cols;
+
+  // the size of the image before any seam is removed
+  int width;
+  int height;
+
+  // the settings of the grid the map is for, which every image of a cell has
+  boolean replicateEdges;
+  boolean forwardEnergy;
+
+  // bit r * (cols + 1) + c is set if the cell with r rows and c columns removed
+  // was reached by removing a vertical seam, and clear if by a horizontal seam
+  long[] choices;
+
+  // costs[c] and images[c] are the cost and the packed colors of the image of
+  // the cell in column c of the latest anti-diagonal filled, the image is
+  // width - c columns wide, without any spare columns, and null in the columns
+  // the anti-diagonal does not reach
+  double[] costs;
+  int[][] images;
+
+  // the lowest horizontal and vertical seam of the image of the cell in every
+  // column of the latest anti-diagonal filled, or null if the map ends there
+  PackedSeam[] horizontalSeams;
+  PackedSeam[] verticalSeams;
+
+  // the cost, the image and the choice of every cell of the anti-diagonal being
+  // filled, by column, until the whole anti-diagonal is done
+  double[] nextCosts;
+  int[][] nextImages;
+  boolean[] nextVertical;
+
+  // the most bytes of costs, images, seams and choices kept at once while
+  // filling
+  long peakBytes;
+
+  // fills the map of the given grid on the given pool, the cells of every
+  // anti-diagonal are split into tasks of at most the given amount of cells, or
+  // on the current thread if the pool is null, the grid itself is unchanged
+  TransportMap(PackedGrid grid, int rows, int cols, ForkJoinPool pool, int taskCells) {
+    if (rows < 0 || cols < 0 || rows >= grid.height || cols >= grid.width) {
+      throw new RuntimeException("Cannot carve to that size!");
+    }
+    if (taskCells < 1) {
+      throw new RuntimeException("Tasks must have at least one cell!");
+    }
+    this.rows = rows;
+    this.cols = cols;
+    this.width = grid.width;
+    this.height = grid.height;
+    this.replicateEdges = grid.replicateEdges;
+    this.forwardEnergy = grid.forwardEnergy;
+    this.choices = new long[((rows + 1) * (cols + 1) + 63) / 64];
+    this.costs = new double[cols + 1];
+    this.images = new int[cols + 1][];
+    this.horizontalSeams = new PackedSeam[cols + 1];
+    this.verticalSeams = new PackedSeam[cols + 1];
+    this.nextCosts = new double[cols + 1];
+    this.nextImages = new int[cols + 1][];
+    this.nextVertical = new boolean[cols + 1];
+    this.images[0] = grid.packedColors();
+
+    for (int diagonal = 1; diagonal <= rows + cols; diagonal += 1) {
+      // the columns of the cells on the anti-diagonal before and on this one
+      // that are in the map
+      int firstSearched = Math.max(0, diagonal - 1 - rows);
+      int lastSearched = Math.min(cols, diagonal - 1) + 1;
+      int firstCol = Math.max(0, diagonal - rows);
+      int lastCol = Math.min(cols, diagonal) + 1;
+      this.run(new TransportCells(this, diagonal - 1, firstSearched, lastSearched, taskCells,
+          true), pool);
+      this.run(new TransportCells(this, diagonal, firstCol, lastCol, taskCells, false), pool);
+      this.peakBytes = Math.max(this.peakBytes, this.storedBytes());
+
+      for (int col = firstSearched; col < lastSearched; col += 1) {
+        this.images[col] = null;
+        this.horizontalSeams[col] = null;
+        this.verticalSeams[col] = null;
+      }
+      for (int col = firstCol; col < lastCol; col += 1) {
+        this.costs[col] = this.nextCosts[col];
+        this.images[col] = this.nextImages[col];
+        this.nextImages[col] = null;
+        if (this.nextVertical[col]) {
+          int bit = (diagonal - col) * (cols + 1) + col;
+          this.choices[bit / 64] |= 1L << (bit % 64);
+        }
+      }
+    }
+  }
+
+  // fills the map one cell at a time on the current thread
+  TransportMap(PackedGrid grid, int rows, int cols) {
+    this(grid, rows, cols, null, Integer.MAX_VALUE);
+  }
+
+  // EFFECT: runs the given cells on the given pool, or on the current thread if
+  // the pool is null
+  void run(TransportCells cells, ForkJoinPool pool) {
+    if (pool == null) {
+      cells.compute();
+    }
+    else {
+      pool.invoke(cells);
+    }
+  }
+
+  // returns the amount of bytes in the costs, images, seams and choices kept
+  // right now
+  long storedBytes() {
+    long bytes = 8L * (this.costs.length + this.nextCosts.length + this.choices.length)
+        + this.nextVertical.length;
+    for (int col = 0; col <= this.cols; col += 1) {
+      if (this.images[col] != null) {
+        bytes += 4L * this.images[col].length;
+      }
+      if (this.nextImages[col] != null) {
+        bytes += 4L * this.nextImages[col].length;
+      }
+      if (this.horizontalSeams[col] != null) {
+        bytes += 4L * this.horizontalSeams[col].indices.length;
+      }
+      if (this.verticalSeams[col] != null) {
+        bytes += 4L * this.verticalSeams[col].indices.length;
+      }
+    }
+    return bytes;
+  }
+
+  // EFFECT: searches the image of the cell of the given anti-diagonal in the
+  // given column for the seams the cells below it and right of it remove, on a
+  // single grid that only lives until both are found
+  void searchCell(int diagonal, int col) {
+    int row = diagonal - col;
+    PackedGrid grid = this.gridOf(this.images[col], this.width - col, this.height - row);
+    if (row < this.rows) {
+      this.horizontalSeams[col] = grid.findLowestSeamHorizontal();
+    }
+    if (col < this.cols) {
+      this.verticalSeams[col] = grid.findLowestSeamVerticalFromScratch();
+    }
+  }
+
+  // EFFECT: fills the cell of the given anti-diagonal in the given column into
+  // nextCosts, nextImages and nextVertical, only reading the costs, images and
+  // seams of the anti-diagonal before
+  void fillCell(int diagonal, int col) {
+    int row = diagonal - col;
+
+    // the horizontal seam of the cell above, and the vertical seam of the cell
+    // to the left, if there are such cells
+    PackedSeam horizontal = row > 0 ? this.horizontalSeams[col] : null;
+    PackedSeam vertical = col > 0 ? this.verticalSeams[col - 1] : null;
+
+    // ties go to the vertical seam, like SeamForecast.verticalIsCheaper
+    boolean fromLeft = horizontal == null || (vertical != null
+        && this.costs[col - 1] + vertical.totalWeight
+            <= this.costs[col] + horizontal.totalWeight);
+
+    if (fromLeft) {
+      this.nextCosts[col] = this.costs[col - 1] + vertical.totalWeight;
+      this.nextImages[col] = this.carve(this.images[col - 1], this.width - col + 1,
+          this.height - row, vertical);
+    }
+    else {
+      this.nextCosts[col] = this.costs[col] + horizontal.totalWeight;
+      this.nextImages[col] = this.carve(this.images[col], this.width - col,
+          this.height - row + 1, horizontal);
+    }
+    this.nextVertical[col] = fromLeft;
+  }
+
+  // returns a copy of the given packed colors of an image of the given size
+  // without the pixels of the given seam, the same colors PackedGrid.packedColors
+  // has after removing the seam
+  int[] carve(int[] colors, int width, int height, PackedSeam seam) {
+    if (seam.vertical) {
+      int[] carved = new int[(width - 1) * height];
+      for (int row = 0; row < height; row += 1) {
+        int col = seam.indices[row];
+        System.arraycopy(colors, row * width, carved, row * (width - 1), col);
+        System.arraycopy(colors, row * width + col + 1, carved, row * (width - 1) + col,
+            width - col - 1);
+      }
+      return carved;
+    }
+
+    // walk the image row by row so that every copy reads memory in order
+    int[] carved = new int[width * (height - 1)];
+    for (int row = 0; row < height - 1; row += 1) {
+      for (int col = 0; col < width; col += 1) {
+        int from = seam.indices[col] <= row ? row + 1 : row;
+        carved[row * width + col] = colors[from * width + col];
+      }
+    }
+    return carved;
+  }
+
+  // returns a grid of the given size with a copy of the given packed colors,
+  // and the settings of the grid the map is for
+  PackedGrid gridOf(int[] colors, int width, int height) {
+    PackedGrid grid = new PackedGrid(width, height);
+    System.arraycopy(colors, 0, grid.colors, 0, colors.length);
+    grid.replicateEdges = this.replicateEdges;
+    grid.forwardEnergy = this.forwardEnergy;
+    grid.computeEnergies();
+    return grid;
+  }
+
+  // was the cell with the given amount of rows and columns removed reached by
+  // removing a vertical seam?
+  boolean isVertical(int row, int col) {
+    if (row < 0 || col < 0 || row > this.rows || col > this.cols) {
+      throw new RuntimeException("Cell is outside of the map!");
+    }
+    int bit = row * (this.cols + 1) + col;
+    return (this.choices[bit / 64] & (1L << (bit % 64))) != 0;
+  }
+
+  // returns the direction of every seam removed on the way to the last cell, in
+  // order, true for a vertical seam and false for a horizontal seam
+  boolean[] order() {
+    boolean[] order = new boolean[this.rows + this.cols];
+    int row = this.rows;
+    int col = this.cols;
+    while (row + col > 0) {
+      boolean vertical = this.isVertical(row, col);
+      order[row + col - 1] = vertical;
+      if (vertical) {
+        col -= 1;
+      }
+      else {
+        row -= 1;
+      }
+    }
+    return order;
+  }
+
+  // returns the total energy of every seam removed on the way to the last cell
+  double totalCost() {
+    return this.costs[this.cols];
+  }
+
+  // returns the image of the last cell, carved in the optimal order
+  PackedGrid result() {
+    return this.gridOf(this.images[this.cols], this.width - this.cols,
+        this.height - this.rows);
+  }
+}
+
+// some of the cells of one anti-diagonal of a TransportMap, which all only
+// depend on the anti-diagonal before, to either search for their seams or fill
+class TransportCells extends RecursiveAction {
+  // needed because RecursiveAction is Serializable, though no task ever is
+  private static final long serialVersionUID = 1L;
+
+  TransportMap map;
+
+  // the anti-diagonal the cells are on
+  int diagonal;
+
+  // the column of the first cell, and the column after the last cell
+  int firstCol;
+  int lastCol;
+
+  // the most cells handled without splitting the cells in half
+  int taskCells;
+
+  // are the cells searched for their seams (TransportMap.searchCell) rather
+  // than filled (TransportMap.fillCell)?
+  boolean search;
+
+  TransportCells(TransportMap map, int diagonal, int firstCol, int lastCol, int taskCells,
+      boolean search) {
+    this.map = map;
+    this.diagonal = diagonal;
+    this.firstCol = firstCol;
+    this.lastCol = lastCol;
+    this.taskCells = taskCells;
+    this.search = search;
+  }
+
+  // EFFECT: searches or fills these cells, or both halves of them in parallel
+  // if there are too many
+  protected void compute() {
+    if (this.lastCol - this.firstCol <= this.taskCells) {
+      for (int col = this.firstCol; col < this.lastCol; col += 1) {
+        if (this.search) {
+          this.map.searchCell(this.diagonal, col);
+        }
+        else {
+          this.map.fillCell(this.diagonal, col);
+        }
+      }
+    }
+    else {
+      int middle = (this.firstCol + this.lastCol) / 2;
+      invokeAll(new TransportCells(this.map, this.diagonal, this.firstCol, middle,
+          this.taskCells, this.search),
+          new TransportCells(this.map, this.diagonal, middle, this.lastCol, this.taskCells,
+              this.search));
+    }
+  }
+}
+
+// compares carving a grid in the optimal order of a TransportMap against
+// carving it in a random order of the same seams, like ImageEditor does, and
+// filling the map on one thread against filling it in parallel
+class TransportMapReport {
+  // the amount of rows and columns removed
+  int rows;
+  int cols;
+
+  // the total energy of every seam removed in each order
+  double optimalCost;
+  double randomCost;
+
+  // how long each took in nanoseconds
+  long randomNanos;
+  long sequentialNanos;
+  long parallelNanos;
+
+  // the most bytes the map kept at once (see TransportMap.peakBytes)
+  long peakBytes;
+
+  // carves a copy of the given grid in each order, where the random order is
+  // decided with the given random, the grid itself is unchanged
+  TransportMapReport(PackedGrid grid, int rows, int cols, Random rand, ForkJoinPool pool) {
+    this.rows = rows;
+    this.cols = cols;
+
+    long start = System.nanoTime();
+    TransportMap sequential = new TransportMap(grid, rows, cols);
+    this.sequentialNanos = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    TransportMap parallel = new TransportMap(grid, rows, cols, pool, 1);
+    this.parallelNanos = System.nanoTime() - start;
+    if (parallel.totalCost() != sequential.totalCost()) {
+      throw new RuntimeException("Parallel transport map is different!");
+    }
+    this.peakBytes = parallel.peakBytes;
+    this.optimalCost = parallel.totalCost();
+
+    start = System.nanoTime();
+    PackedGrid copy = grid.compactCopy();
+    int rowsLeft = rows;
+    int colsLeft = cols;
+    while (rowsLeft + colsLeft > 0) {
+      // a coin flip while both directions are left, like ImageEditor.onTick
+      if (rowsLeft == 0 || (colsLeft > 0 && rand.nextInt(2) == 1)) {
+        this.randomCost += copy.removeSeamVertical(false).totalWeight;
+        colsLeft -= 1;
+      }
+      else {
+        this.randomCost += copy.removeSeamHorizontal(false).totalWeight;
+        rowsLeft -= 1;
+      }
+    }
+    this.randomNanos = System.nanoTime() - start;
+  }
+
+  // returns how many times less energy the optimal order removes
+  double savings() {
+    return this.randomCost / Math.max(Double.MIN_VALUE, this.optimalCost);
+  }
+
+  // returns how many times faster the map is filled in parallel
+  double speedup() {
+    return (double) this.sequentialNanos / Math.max(1, this.parallelNanos);
+  }
+
+  // returns a one line summary of the comparison
+  String summary() {
+    return String.format(
+        "%d x %d removals: random order %.1f energy in %.1f ms, optimal order %.1f energy"
+            + " (%.2fx less) in %.1f ms on one thread, %.1f ms in parallel (%.2fx),"
+            + " keeping at most %.1f MB",
+        this.rows, this.cols, this.randomCost, this.randomNanos / 1e6, this.optimalCost,
+        this.savings(), this.sequentialNanos / 1e6, this.parallelNanos / 1e6, this.speedup(),
+        this.peakBytes / 1048576.0);
+  }
+
+  // compares both orders on balloons.jpeg from the command line, scaled to the
+  // given width and height (which keeps the aspect ratio if it is left out)
+  // run with: java TransportMapReport [rows] [cols] [width] [height]
+  public static void main(String[] args) throws IOException {
+    int rows = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+    int cols = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+    int width = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+    BufferedImage balloons = new RasterLoader().read(new File("balloons.jpeg"));
+    int height = args.length > 3 ? Integer.parseInt(args[3])
+        : width * balloons.getHeight() / balloons.getWidth();
+    BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    scaled.getGraphics().drawImage(balloons, 0, 0, width, height, null);
+
+    ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    System.out.println(new TransportMapReport(new PackedGrid(scaled), rows, cols,
+        new Random(0), pool).summary());
+    pool.shutdown();
+  }
+}
+
+// loads images straight from the data of their raster, instead of asking for
+// the color of one pixel at a time
+class RasterLoader {
+  // returns a grid of the image in the given file
+  Grid loadGrid(File file) throws IOException {
+    return new Grid(this.read(file));
+  }
+
+  // returns a packed grid of the image in the given file
+  PackedGrid loadPackedGrid(File file) throws IOException {
+    return new PackedGrid(this.read(file));
+  }
+
+  // returns the image in the given file
+  BufferedImage read(File file) throws IOException {
+    BufferedImage image = ImageIO.read(file);
+    if (image == null) {
+      throw new RuntimeException("Cannot read the image!");
+    }
+    return image;
+  }
+
+  // EFFECT: writes the given image to the given file in the format of its
+  // extension, or as png with ".png" added to the name if no writer knows the
+  // extension, and without transparency unless the format is png, returning
+  // the file written
+  File write(BufferedImage image, File output) throws IOException {
+    String format = this.suffix(output.getName());
+    if (!ImageIO.getImageWritersBySuffix(format).hasNext()) {
+      format = "png";
+      output = new File(output.getPath() + ".png");
+    }
+
+    if (image.getColorModel().hasAlpha() && !format.equals("png")) {
+      // setRGB into an opaque image drops the alpha, like
+      // PackedGrid.toBufferedImage
+      int width = image.getWidth();
+      int height = image.getHeight();
+      BufferedImage opaque = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+      opaque.setRGB(0, 0, width, height, this.readColors(image), 0, width);
+      image = opaque;
+    }
+
+    if (!ImageIO.write(image, format, output)) {
+      throw new IOException("No writer for " + format + " images!");
+    }
+    return output;
+  }
+
+  // returns the lower case extension of the given file name, or "" if it has
+  // none
+  String suffix(String name) {
+    return name.substring(name.lastIndexOf('.') + 1).toLowerCase();
+  }
+
+  // returns the packed ARGB color of every pixel of the given javalib image in
+  // row-major order, one pixel at a time through getColorAt
+  // javalib does not give out its decoded pixels, so this is only for images
+  // that were already loaded with javalib, loading a file with read and
+  // readColors(BufferedImage) decodes it once and copies the raster in one pass
+  int[] readColors(FromFileImage image) {
+    int width = (int) image.getWidth();
+    int height = (int) image.getHeight();
+    int[] colors = new int[width * height];
+    for (int row = 0; row < height; row += 1) {
+      for (int col = 0; col < width; col += 1) {
+        colors[row * width + col] = image.getColorAt(col, row).getRGB();
+      }
+    }
+    return colors;
+  }
+
+  // returns the packed ARGB color of every pixel of the image in row-major
+  // order, the same colors as BufferedImage.getRGB
+  // the int and byte layouts that ImageIO decodes most images into (JPEG into
+  // 3 byte BGR, PNG into 4 byte ABGR or ints) are copied from the raster in
+  // one pass, anything else falls back to getRGB, which also converts the color
+  // space of gray and indexed images
+  int[] readColors(BufferedImage image) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int size = width * height;
+    WritableRaster raster = image.getRaster();
+    DataBuffer buffer = raster.getDataBuffer();
+
+    // only a raster that starts at the beginning of a buffer of exactly this
+    // image can be read directly, so not subimages
+    boolean direct = buffer.getNumBanks() == 1 && buffer.getOffset() == 0
+        && raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0;
+
+    if (direct && buffer instanceof DataBufferInt && buffer.getSize() == size) {
+      int[] data = ((DataBufferInt) buffer).getData();
+      if (image.getType() == BufferedImage.TYPE_INT_ARGB) {
+        return Arrays.copyOf(data, size);
+      }
+      if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+        int[] colors = new int[size];
+        for (int index = 0; index < size; index += 1) {
+          colors[index] = 0xFF000000 | data[index];
+        }
+        return colors;
+      }
+    }
+
+    if (direct && buffer instanceof DataBufferByte) {
+      byte[] data = ((DataBufferByte) buffer).getData();
+      if (image.getType() == BufferedImage.TYPE_3BYTE_BGR && data.length == size * 3) {
+        int[] colors = new int[size];
+        for (int index = 0; index < size; index += 1) {
+          int offset = index * 3;
+          colors[index] = 0xFF000000 | (data[offset + 2] & 0xFF) << 16
+              | (data[offset + 1] & 0xFF) << 8 | (data[offset] & 0xFF);
+        }
+        return colors;
+      }
+      if (image.getType() == BufferedImage.TYPE_4BYTE_ABGR && data.length == size * 4) {
+        int[] colors = new int[size];
+        for (int index = 0; index < size; index += 1) {
+          int offset = index * 4;
+          colors[index] = (data[offset] & 0xFF) << 24 | (data[offset + 3] & 0xFF) << 16
+              | (data[offset + 2] & 0xFF) << 8 | (data[offset + 1] & 0xFF);
+        }
+        return colors;
+      }
+    }
+
+    return image.getRGB(0, 0, width, height, null, 0, width);
+  }
+}
+
+// carves every image in a directory down to a target size without a World or
+// a display, carving several images at once on a pool of worker threads, each
+// on its own PackedGrid
+// run with: java BatchCarver <input dir> <output dir> <width> <height> [workers]
+class BatchCarver {
+  // the size every image is carved down to
+  int targetWidth;
+  int targetHeight;
+
+  // the amount of images carved at the same time
+  int workers;
+
+  BatchCarver(int targetWidth, int targetHeight, int workers) {
+    if (targetWidth < 1 || targetHeight < 1 || workers < 1) {
+      throw new RuntimeException("Target size and workers must be positive!");
+    }
+    this.targetWidth = targetWidth;
+    this.targetHeight = targetHeight;
+    this.workers = workers;
+  }
+
+  // EFFECT: carves every image in the input directory and writes it to the
+  // output directory under the same name, returning what was carved and how
+  // fast, images that fail are reported instead of stopping the other images
+  BatchCarveReport run(File inputDir, File outputDir) throws InterruptedException {
+    File[] files = inputDir.listFiles();
+    if (files == null) {
+      throw new RuntimeException("Input is not a directory!");
+    }
+    Arrays.sort(files);
+    outputDir.mkdirs();
+
+    ArrayList<String> suffixes = new ArrayList<String>(
+        Arrays.asList(ImageIO.getReaderFileSuffixes()));
+    ArrayList<File> images = new ArrayList<File>();
+    for (File file : files) {
+      if (file.isFile() && suffixes.contains(new RasterLoader().suffix(file.getName()))) {
+        images.add(file);
+      }
+    }
+
+    BatchCarveReport report = new BatchCarveReport();
+    long start = System.nanoTime();
+    ExecutorService pool = Executors.newFixedThreadPool(this.workers);
+    try {
+      ArrayList<Future<Integer>> results = new ArrayList<Future<Integer>>();
+      for (File image : images) {
+        results.add(pool.submit(new CarveJob(this, image, outputDir)));
+      }
+
+      for (int index = 0; index < images.size(); index += 1) {
+        try {
+          report.seams += results.get(index).get();
+          report.images += 1;
+        }
+        catch (ExecutionException e) {
+          report.failures.add(images.get(index).getName() + ": " + e.getCause().getMessage());
+        }
+      }
+    }
+    finally {
+      // every job is done unless waiting was interrupted, in which case the
+      // rest are stopped instead of carving on after run returns
+      pool.shutdownNow();
+    }
+    report.nanos = System.nanoTime() - start;
+    return report;
+  }
+
+  // EFFECT: carves the image in the given file and writes it to the output
+  // directory, returning the amount of seams removed
+  int carveFile(File input, File outputDir) throws IOException {
+    RasterLoader loader = new RasterLoader();
+    BufferedImage image = loader.read(input);
+
+    // without a linked pixel per pixel of the image
+    PackedGrid grid = new PackedGrid(image);
+    int seams = grid.carveTo(this.targetWidth, this.targetHeight);
+    loader.write(grid.toBufferedImage(CarveStep.typeFor(image)),
+        new File(outputDir, input.getName()));
+    return seams;
+  }
+
+  // carves a directory of images from the command line
+  public static void main(String[] args) throws InterruptedException {
+    if (args.length < 4 || args.length > 5) {
+      System.out.println("usage: BatchCarver <input dir> <output dir> <width> <height> [workers]");
+      return;
+    }
+
+    int workers = Runtime.getRuntime().availableProcessors();
+    if (args.length == 5) {
+      workers = Integer.parseInt(args[4]);
+    }
+    BatchCarver carver = new BatchCarver(Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+        workers);
+    BatchCarveReport report = carver.run(new File(args[0]), new File(args[1]));
+
+    System.out.println(report.summary());
+    for (String failure : report.failures) {
+      System.out.println("failed " + failure);
+    }
+  }
+}
+
+// carves many images at once inside one program: every submitted image is
+// carved on its own PackedGrid by a fixed pool of workers, and the caller gets
+// a CompletableFuture of the carved image right away
+// at most workers + queueCapacity jobs are unfinished at any time, submitting
+// more blocks the caller until a job finishes, so a fast producer cannot fill
+// the heap with decoded images waiting for a worker
+// reading and writing files happens on a separate executor, which uses a
+// virtual thread per task if virtualIo is true and the JVM has them (Java 21),
+// and a cached thread pool otherwise
+class CarveScheduler {
+  // carves the images, one at a time per thread
+  ExecutorService workers;
+
+  // reads and writes image files
+  ExecutorService io;
+
+  // does io run every task on its own virtual thread?
+  boolean virtualThreads;
+
+  // one permit for every job that may be unfinished at once
+  Semaphore slots;
+
+  // the amount of permits in slots when no job is running
+  int capacity;
+
+  CarveScheduler(int workers, int queueCapacity, boolean virtualIo) {
+    if (workers < 1 || queueCapacity < 0) {
+      throw new RuntimeException("Invalid carve scheduler settings!");
+    }
+    this.workers = Executors.newFixedThreadPool(workers);
+    this.io = virtualIo ? this.virtualThreadExecutor() : null;
+    this.virtualThreads = this.io != null;
+    if (this.io == null) {
+      this.io = Executors.newCachedThreadPool();
+    }
+    this.capacity = workers + queueCapacity;
+    this.slots = new Semaphore(this.capacity);
+  }
+
+  // uses every available core, queues up to as many jobs again, and uses
+  // virtual threads for files if it can
+  CarveScheduler() {
+    this(Runtime.getRuntime().availableProcessors(),
+        Runtime.getRuntime().availableProcessors(), true);
+  }
+
+  // returns an executor that starts a virtual thread for every task, or null
+  // if this JVM has no virtual threads, found by name so that this compiles
+  // and runs before Java 21
+  ExecutorService virtualThreadExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    }
+    catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  // returns the amount of jobs submitted that have not finished yet
+  int unfinished() {
+    return this.capacity - this.slots.availablePermits();
+  }
+
+  // EFFECT: queues the given image to be carved down to the given size,
+  // waiting for room in the queue first, the future fails if the image is
+  // smaller than the target size
+  CompletableFuture<BufferedImage> submit(BufferedImage image, int targetWidth,
+      int targetHeight) throws InterruptedException {
+    CarveStep carve = new CarveStep(targetWidth, targetHeight);
+    this.slots.acquire();
+    return this.carve(image, carve);
+  }
+
+  // EFFECT: like submit, but returns null instead of waiting if the queue is
+  // full
+  CompletableFuture<BufferedImage> trySubmit(BufferedImage image, int targetWidth,
+      int targetHeight) {
+    CarveStep carve = new CarveStep(targetWidth, targetHeight);
+    if (!this.slots.tryAcquire()) {
+      return null;
+    }
+    return this.carve(image, carve);
+  }
+
+  // EFFECT: queues the image in the given file to be read, carved down to the
+  // given size and written to the output file like RasterLoader.write,
+  // waiting for room in the queue first
+  CompletableFuture<File> submit(File input, File output, int targetWidth, int targetHeight)
+      throws InterruptedException {
+    CarveStep carve = new CarveStep(targetWidth, targetHeight);
+    this.slots.acquire();
+    CompletableFuture<File> written;
+    try {
+      written = CompletableFuture.supplyAsync(new ReadImageStep(input), this.io)
+          .thenApplyAsync(carve, this.workers)
+          .thenApplyAsync(new WriteImageStep(output), this.io);
+    }
+    catch (RejectedExecutionException e) {
+      // the job never started, so it gives its slot back right away
+      this.slots.release();
+      throw e;
+    }
+    written.whenComplete(new ReleaseSlot(this.slots));
+    return written;
+  }
+
+  // returns the future of carving the given image, which already has a slot,
+  // the future fails (and gives the slot back) if the job cannot be started
+  CompletableFuture<BufferedImage> carve(BufferedImage image, CarveStep carve) {
+    CompletableFuture<BufferedImage> carved = CompletableFuture.completedFuture(image)
+        .thenApplyAsync(carve, this.workers);
+    carved.whenComplete(new ReleaseSlot(this.slots));
+    return carved;
+  }
+
+  // EFFECT: stops the threads once every submitted job is done
+  void shutdown() {
+    this.workers.shutdown();
+    this.io.shutdown();
+  }
+}
+
+// carves an image down to a target size on a PackedGrid of its own, so no
+// state is shared with any other job
+class CarveStep implements Function<BufferedImage, BufferedImage> {
+  int targetWidth;
+  int targetHeight;
+
+  CarveStep(int targetWidth, int targetHeight) {
+    if (targetWidth < 1 || targetHeight < 1) {
+      throw new RuntimeException("Target size must be positive!");
+    }
+    this.targetWidth = targetWidth;
+    this.targetHeight = targetHeight;
+  }
+
+  // returns the carved copy of the given image, which keeps its transparency
+  public BufferedImage apply(BufferedImage image) {
+    PackedGrid grid = new PackedGrid(image);
+    grid.carveTo(this.targetWidth, this.targetHeight);
+    return grid.toBufferedImage(CarveStep.typeFor(image));
+  }
+
+  // returns the BufferedImage type of a carved copy of the given image, which
+  // only has an alpha channel if the image does
+  static int typeFor(BufferedImage image) {
+    return image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB
+        : BufferedImage.TYPE_INT_RGB;
+  }
+}
+
+// reads an image file for a CarveScheduler
+class ReadImageStep implements Supplier<BufferedImage> {
+  File input;
+
+  ReadImageStep(File input) {
+    this.input = input;
+  }
+
+  // returns the image in the file
+  public BufferedImage get() {
+    try {
+      return new RasterLoader().read(this.input);
+    }
+    catch (IOException e) {
+      throw new RuntimeException("Cannot read the image!", e);
+    }
+  }
+}
+
+// writes a carved image for a CarveScheduler with RasterLoader.write, like
+// BatchCarver writes its images
+class WriteImageStep implements Function<BufferedImage, File> {
+  File output;
+
+  WriteImageStep(File output) {
+    this.output = output;
+  }
+
+  // EFFECT: writes the given image to the output file, returning the file
+  // written, which has ".png" added if no writer knows its extension
+  public File apply(BufferedImage image) {
+    try {
+      return new RasterLoader().write(image, this.output);
+    }
+    catch (IOException e) {
+      throw new RuntimeException("Cannot write the image!", e);
+    }
+  }
+}
+
+// gives a job's slot back to a CarveScheduler once the job is done, whether it
+// worked or not
+class ReleaseSlot implements BiConsumer<Object, Throwable> {
+  Semaphore slots;
+
+  ReleaseSlot(Semaphore slots) {
+    this.slots = slots;
+  }
+
+  // EFFECT: releases the slot
+  public void accept(Object result, Throwable failure) {
+    this.slots.release();
+  }
+}
+
+// carves a single image for a BatchCarver on one of its worker threads
+class CarveJob implements Callable<Integer> {
+  BatchCarver carver;
+  File input;
+  File outputDir;
+
+  CarveJob(BatchCarver carver, File input, File outputDir) {
+    this.carver = carver;
+    this.input = input;
+    this.outputDir = outputDir;
+  }
+
+  // EFFECT: carves the image, returning the amount of seams removed
+  public Integer call() throws IOException {
+    return this.carver.carveFile(this.input, this.outputDir);
+  }
+}
+
+// what a BatchCarver carved and how long it took
+class BatchCarveReport {
+  // the amount of images carved and seams removed
+  int images;
+  int seams;
+
+  // the name of every image that could not be carved, and why
+  ArrayList<String> failures = new ArrayList<String>();
+
+  // how long the whole batch took in nanoseconds
+  long nanos;
+
+  // returns the amount of images carved per second
+  double imagesPerSecond() {
+    return this.images / (Math.max(1, this.nanos) / 1e9);
+  }
+
+  // returns the amount of seams removed per second
+  double seamsPerSecond() {
+    return this.seams / (Math.max(1, this.nanos) / 1e9);
+  }
+
+  // returns a one line summary of the batch
+  String summary() {
+    return String.format("%d images, %d seams, %d failed in %.2f s (%.2f images/s, %.1f seams/s)",
+        this.images, this.seams, this.failures.size(), this.nanos / 1e9, this.imagesPerSecond(),
+        this.seamsPerSecond());
+  }
+}
+
+// compares how long it takes to find a vertical seam of a grid with backward
+// energy and with forward energy
+class ForwardEnergyReport {
+  // the amount of seams found in each mode
+  int seams;
+
+  // how long finding the seams took in each mode in nanoseconds
+  long backwardNanos;
+  long forwardNanos;
+
+  // finds the lowest vertical seam of the given grid the given amount of times
+  // in each mode, after finding one seam in each mode first to warm up, and
+  // leaves the grid in the mode it was in, every seam is searched for from
+  // scratch so that the persistent seam costs cannot answer it without a search
+  ForwardEnergyReport(PackedGrid grid, int seams) {
+    if (seams < 1) {
+      throw new RuntimeException("Must find at least one seam!");
+    }
+    this.seams = seams;
+    boolean forwardEnergy = grid.forwardEnergy;
+
+    grid.forwardEnergy = false;
+    grid.findLowestSeamVerticalFromScratch();
+    long start = System.nanoTime();
+    for (int seam = 0; seam < seams; seam += 1) {
+      grid.findLowestSeamVerticalFromScratch();
+    }
+    this.backwardNanos = System.nanoTime() - start;
+
+    grid.forwardEnergy = true;
+    grid.findLowestSeamVerticalFromScratch();
+    start = System.nanoTime();
+    for (int seam = 0; seam < seams; seam += 1) {
+      grid.findLowestSeamVerticalFromScratch();
+    }
+    this.forwardNanos = System.nanoTime() - start;
+
+    grid.forwardEnergy = forwardEnergy;
+  }
+
+  // returns how many times longer a forward energy seam takes to find
+  double slowdown() {
+    return (double) this.forwardNanos / Math.max(1, this.backwardNanos);
+  }
+
+  // returns a one line summary of the comparison
+  String summary() {
+    return String.format("per seam: backward %.2f ms, forward %.2f ms (%.2fx)",
+        this.backwardNanos / 1e6 / this.seams, this.forwardNanos / 1e6 / this.seams,
+        this.slowdown());
+  }
+}
+
+// measures the time and the memory allocated by the core operations on a Grid,
+// for images of several sizes, either synthetic noise or balloons.jpeg scaled
+// to size, so that every optimization can be compared before and after
+// run with: java -Xmx8g SeamBenchmarks [sizes, like 256,1024,4096] [iterations]
+class SeamBenchmarks {
+  // how many times every operation runs before it is measured, and while it is
+  // measured
+  int warmups;
+  int iterations;
+
+  // the result of every benchmark run so far
+  ArrayList<BenchmarkResult> results;
+
+  SeamBenchmarks(int warmups, int iterations) {
+    if (warmups < 0 || iterations < 1) {
+      throw new RuntimeException("Must measure at least one iteration!");
+    }
+    this.warmups = warmups;
+    this.iterations = iterations;
+    this.results = new ArrayList<BenchmarkResult>();
+  }
+
+  // EFFECT: runs every benchmark on the given image
+  void runAll(String imageName, FromFileImage image) {
+    String[] operations = new String[] { "Grid(FromFileImage)", "APixel.energy",
+        "findLowestSeamVertical", "findLowestSeamHorizontal", "removeSeamVerticalHelp",
+        "reinsertSeam", "makeImage" };
+    for (String operation : operations) {
+      this.results.add(this.measure(new GridOperation(operation, image), imageName));
+    }
+  }
+
+  // returns how long the given operation takes and how much it allocates, on
+  // average, not counting what it does to prepare
+  BenchmarkResult measure(GridOperation operation, String imageName) {
+    for (int warmup = 0; warmup < this.warmups; warmup += 1) {
+      operation.prepare();
+      operation.run();
+    }
+
+    long nanos = 0;
+    long bytes = 0;
+    for (int iteration = 0; iteration < this.iterations; iteration += 1) {
+      operation.prepare();
+      long startBytes = this.allocatedBytes();
+      long start = System.nanoTime();
+      operation.run();
+      nanos += System.nanoTime() - start;
+      bytes += this.allocatedBytes() - startBytes;
+    }
+
+    return new BenchmarkResult(operation.name, imageName, (int) operation.image.getWidth(),
+        (double) nanos / this.iterations, (double) bytes / this.iterations);
+  }
+
+  // returns how many bytes this thread has allocated so far, or 0 if the JVM
+  // cannot tell
+  long allocatedBytes() {
+    java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) threads)
+          .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return 0;
+  }
+
+  // returns a square image of random noise with the given side length, saved
+  // to a temporary file so that it can be loaded like any other image
+  FromFileImage syntheticImage(int size) throws IOException {
+    Random rand = new Random(size);
+    BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+    for (int row = 0; row < size; row += 1) {
+      for (int col = 0; col < size; col += 1) {
+        image.setRGB(col, row, rand.nextInt());
+      }
+    }
+    return this.saveImage(image, "synthetic");
+  }
+
+  // returns the given image stretched to a square with the given side length,
+  // saved to a temporary file
+  FromFileImage scaledImage(BufferedImage source, int size) throws IOException {
+    BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+    image.getGraphics().drawImage(source, 0, 0, size, size, null);
+    return this.saveImage(image, "scaled");
+  }
+
+  // returns the given image after saving it to a temporary file
+  FromFileImage saveImage(BufferedImage image, String prefix) throws IOException {
+    File file = File.createTempFile(prefix, ".png");
+    file.deleteOnExit();
+    ImageIO.write(image, "png", file);
+    return new FromFileImage(file.getPath());
+  }
+
+  // runs every benchmark from the command line
+  public static void main(String[] args) throws IOException {
+    String sizes = args.length > 0 ? args[0] : "256,1024,4096";
+    int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+    SeamBenchmarks benchmarks = new SeamBenchmarks(2, iterations);
+    BufferedImage balloons = new RasterLoader().read(new File("balloons.jpeg"));
+
+    System.out.println(BenchmarkResult.HEADER);
+    for (String size : sizes.split(",")) {
+      int side = Integer.parseInt(size.trim());
+      benchmarks.runAll("synthetic", benchmarks.syntheticImage(side));
+      benchmarks.runAll("balloons", benchmarks.scaledImage(balloons, side));
+      for (BenchmarkResult result : benchmarks.results) {
+        System.out.println(result.line());
+      }
+      benchmarks.results.clear();
+    }
+  }
+}
+
+// one of the operations measured by SeamBenchmarks, on a grid of an image
+class GridOperation {
+  // the name of the operation, which decides what it does
+  String name;
+
+  FromFileImage image;
+
+  // the grid the operation runs on, rebuilt whenever it gets too small
+  Grid grid;
+
+  // the seam removed or reinserted by the next run
+  SeamInfo seam;
+
+  // sums up results so that the JIT cannot skip computing them
+  double sink;
+
+  GridOperation(String name, FromFileImage image) {
+    this.name = name;
+    this.image = image;
+    this.grid = new Grid(image);
+  }
+
+  // EFFECT: gets the grid ready for the next run, which is not measured
+  void prepare() {
+    if (this.grid.width < 3 || this.grid.height < 3) {
+      this.grid = new Grid(this.image);
+    }
+    if (this.name.equals("removeSeamVerticalHelp")) {
+      this.seam = this.grid.findLowestSeamVertical();
+    }
+    else if (this.name.equals("reinsertSeam")) {
+      this.seam = this.grid.findLowestSeamVertical();
+      this.grid.removeSeamVerticalHelp(this.seam, false);
+    }
+  }
+
+  // EFFECT: runs the operation once
+  void run() {
+    if (this.name.equals("Grid(FromFileImage)")) {
+      this.sink += new Grid(this.image).width;
+    }
+    else if (this.name.equals("APixel.energy")) {
+      // the energy of every pixel in the grid
+      for (int row = 0; row < this.grid.height; row += 1) {
+        for (APixel current = this.grid.getRowStart(row); !current.isBorder();
+            current = current.getRight()) {
+          this.sink += current.energy();
+        }
+      }
+    }
+    else if (this.name.equals("findLowestSeamVertical")) {
+      this.sink += this.grid.findLowestSeamVertical().totalWeight;
+    }
+    else if (this.name.equals("findLowestSeamHorizontal")) {
+      this.sink += this.grid.findLowestSeamHorizontal().totalWeight;
+    }
+    else if (this.name.equals("removeSeamVerticalHelp")) {
+      this.grid.removeSeamVerticalHelp(this.seam, false);
+    }
+    else if (this.name.equals("reinsertSeam")) {
+      this.grid.reinsertSeam(this.seam);
+    }
+    else if (this.name.equals("makeImage")) {
+      this.sink += this.grid.makeImage(false).width;
+    }
+    else {
+      throw new RuntimeException("Unknown benchmark!");
+    }
+  }
+}
+
+// the average time and memory allocated by one run of a benchmark
+class BenchmarkResult {
+  // the column names of line
+  static final String HEADER = String.format("%-26s %-10s %5s %14s %14s", "benchmark", "image",
+      "size", "ms/op", "KB alloc/op");
+
+  String benchmark;
+  String image;
+  int size;
+  double nanosPerOp;
+  double bytesPerOp;
+
+  BenchmarkResult(String benchmark, String image, int size, double nanosPerOp,
+      double bytesPerOp) {
+    this.benchmark = benchmark;
+    this.image = image;
+    this.size = size;
+    this.nanosPerOp = nanosPerOp;
+    this.bytesPerOp = bytesPerOp;
+  }
+
+  // returns this result as a line of a table
+  String line() {
+    return String.format("%-26s %-10s %5d %14.3f %14.1f", this.benchmark, this.image, this.size,
+        this.nanosPerOp / 1e6, this.bytesPerOp / 1024);
+  }
+}
+
+// computes the energy of every pixel of a PackedGrid from a plane of their
+// brightness with a ring of padding around it, so that the inner loop has no
+// bounds checks, branches or calls and the JIT can turn it into SIMD
+// instructions, the operations happen in the same order as PackedGrid.energy,
+// so the energies are exactly the same
+// VectorSobelKernel (vector/VectorSobelKernel.java) does the same with the
+// Vector API, and is compiled separately because it needs the
+// jdk.incubator.vector module, see fastest
+class SobelKernel {
+  // the brightness of every pixel, the pixel at row r and col c is stored at
+  // (r + 1) * paddedWidth + c + 1, and the padding holds whatever
+  // PackedGrid.brightness has outside of the image
+  double[] plane;
+  int paddedWidth;
+
+  SobelKernel() {
+    this.plane = new double[0];
+  }
+
+  // returns a new VectorSobelKernel if the jdk.incubator.vector module was
+  // added to this JVM (with --add-modules) and the class was compiled, or a new
+  // scalar kernel otherwise, found by name so that this compiles and runs
+  // without the module
+  static SobelKernel fastest() {
+    if (!SobelKernel.vectorModulePresent()) {
+      return new SobelKernel();
+    }
+    try {
+      return (SobelKernel) Class.forName("VectorSobelKernel").getDeclaredConstructor()
+          .newInstance();
+    }
+    catch (ReflectiveOperationException | LinkageError e) {
+      return new SobelKernel();
+    }
+  }
+
+  // was the jdk.incubator.vector module added to this JVM?
+  static boolean vectorModulePresent() {
+    return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+  }
+
+  // EFFECT: computes the energy of every pixel of the given grid into its
+  // cached energies
+  void computeEnergies(PackedGrid grid) {
+    this.loadBrightness(grid);
+    this.computeRows(grid, 0, grid.height);
+  }
+
+  // EFFECT: fills the plane with the brightness of every pixel of the given
+  // grid, and the padding with black or the nearest edge pixel
+  void loadBrightness(PackedGrid grid) {
+    this.fitPlane(grid);
+    this.loadRows(grid, 0, grid.height);
+  }
+
+  // EFFECT: makes the plane big enough for the given grid and its padding
+  void fitPlane(PackedGrid grid) {
+    this.paddedWidth = grid.width + 2;
+    int paddedHeight = grid.height + 2;
+    if (this.plane.length < this.paddedWidth * paddedHeight) {
+      this.plane = new double[this.paddedWidth * paddedHeight];
+    }
+  }
+
+  // EFFECT: fills the plane with the brightness of the pixels of the given
+  // grid from firstRow up to (but not including) lastRow and the padding on
+  // both sides of them, and the padding row above or below the image if the
+  // rows start or end there, so that bands of rows can load in parallel once
+  // fitPlane made room for the grid
+  void loadRows(PackedGrid grid, int firstRow, int lastRow) {
+    for (int row = firstRow; row < lastRow; row += 1) {
+      int from = row * grid.stride;
+      int to = (row + 1) * this.paddedWidth + 1;
+      for (int col = 0; col < grid.width; col += 1) {
+        this.plane[to + col] = grid.brightnessOf(grid.colors[from + col]);
+      }
+      this.plane[to - 1] = grid.replicateEdges ? this.plane[to] : 0.0;
+      this.plane[to + grid.width] = grid.replicateEdges ? this.plane[to + grid.width - 1] : 0.0;
+    }
+
+    // the padding rows include the corners
+    if (firstRow == 0) {
+      for (int col = 0; col < this.paddedWidth; col += 1) {
+        this.plane[col] = grid.replicateEdges ? this.plane[this.paddedWidth + col] : 0.0;
+      }
+    }
+    if (lastRow == grid.height) {
+      int bottom = (grid.height + 1) * this.paddedWidth;
+      for (int col = 0; col < this.paddedWidth; col += 1) {
+        this.plane[bottom + col] = grid.replicateEdges
+            ? this.plane[bottom - this.paddedWidth + col] : 0.0;
+      }
+    }
+  }
+
+  // EFFECT: computes the energy of every pixel from firstRow up to (but not
+  // including) lastRow into the cached energies of the given grid, whose
+  // brightness must already be in the plane
+  void computeRows(PackedGrid grid, int firstRow, int lastRow) {
+    for (int row = firstRow; row < lastRow; row += 1) {
+      this.computeRow(grid, row, 0);
+    }
+  }
+
+  // EFFECT: computes the energy of every pixel of the given row from firstCol
+  // to the end of the row, like computeRows
+  void computeRow(PackedGrid grid, int row, int firstCol) {
+    double[] plane = this.plane;
+    double[] energies = grid.energies;
+    int width = grid.width;
+    int up = row * this.paddedWidth;
+    int middle = up + this.paddedWidth;
+    int down = middle + this.paddedWidth;
+    int out = row * grid.stride;
+
+    for (int col = firstCol; col < width; col += 1) {
+      double topLeft = plane[up + col];
+      double top = plane[up + col + 1];
+      double topRight = plane[up + col + 2];
+      double left = plane[middle + col];
+      double right = plane[middle + col + 2];
+      double bottomLeft = plane[down + col];
+      double bottom = plane[down + col + 1];
+      double bottomRight = plane[down + col + 2];
+
+      double hEnergy = (topLeft + 2.0 * left + bottomLeft)
+          - (topRight + 2.0 * right + bottomRight);
+      double vEnergy = (topLeft + 2.0 * top + topRight)
+          - (bottomLeft + 2.0 * bottom + bottomRight);
+      energies[out + col] = Math.sqrt((hEnergy * hEnergy + vEnergy * vEnergy));
+    }
+  }
+}
+
+// computes the whole energy map of a PackedGrid on a fork/join pool, splitting
+// the image into bands of rows, which first load their rows of the plane of
+// brightness of the grid's SobelKernel, and once every band has, run the
+// kernel over their rows, the plane is the same as the serial computeEnergies
+// loads so the maps are identical
+class EnergyMapBuilder {
+  // the pool the bands of rows are computed on
+  ForkJoinPool pool;
+
+  // bands are not split any further once they have this many rows or fewer
+  int minBandRows;
+
+  EnergyMapBuilder(int parallelism, int minBandRows) {
+    if (parallelism < 1 || minBandRows < 1) {
+      throw new RuntimeException("Parallelism and band size must be positive!");
+    }
+    this.pool = new ForkJoinPool(parallelism);
+    this.minBandRows = minBandRows;
+  }
+
+  // uses every available core and bands of at least 16 rows
+  EnergyMapBuilder() {
+    this(Runtime.getRuntime().availableProcessors(), 16);
+  }
+
+  // EFFECT: recomputes every cached energy of the given grid
+  void build(PackedGrid grid) {
+    // aim for a few bands per worker so that uneven bands even out
+    int bandRows = Math.max(this.minBandRows,
+        grid.height / (this.pool.getParallelism() * 4) + 1);
+    grid.kernel.fitPlane(grid);
+    // every band reads the rows around it, so all of them load first
+    this.pool.invoke(new EnergyBand(grid, 0, grid.height, bandRows, true));
+    this.pool.invoke(new EnergyBand(grid, 0, grid.height, bandRows, false));
+    grid.seamCostsValid = false;
+  }
+
+  // EFFECT: stops the worker threads once the work already submitted is done
+  void shutdown() {
+    this.pool.shutdown();
+  }
+}
+
+// a band of rows of a PackedGrid whose energies still need to be computed
+class EnergyBand extends RecursiveAction {
+  // RecursiveAction is Serializable, though bands are never serialized
+  private static final long serialVersionUID = 1L;
+
+  PackedGrid grid;
+
+  // the first row of the band
+  int firstRow;
+
+  // the row after the last row of the band
+  int lastRow;
+
+  // the most rows computed without splitting the band in half
+  int bandRows;
+
+  // does the band load the brightness of its rows (SobelKernel.loadRows)
+  // rather than compute their energies?
+  boolean load;
+
+  EnergyBand(PackedGrid grid, int firstRow, int lastRow, int bandRows, boolean load) {
+    this.grid = grid;
+    this.firstRow = firstRow;
+    this.lastRow = lastRow;
+    this.bandRows = bandRows;
+    this.load = load;
+  }
+
+  // EFFECT: loads or computes this band, or both of its halves in parallel if
+  // it is too tall
+  protected void compute() {
+    if (this.lastRow - this.firstRow > this.bandRows) {
+      int middle = (this.firstRow + this.lastRow) / 2;
+      invokeAll(new EnergyBand(this.grid, this.firstRow, middle, this.bandRows, this.load),
+          new EnergyBand(this.grid, middle, this.lastRow, this.bandRows, this.load));
+    }
+    else if (this.load) {
+      this.grid.kernel.loadRows(this.grid, this.firstRow, this.lastRow);
+    }
+    else {
+      this.grid.kernel.computeRows(this.grid, this.firstRow, this.lastRow);
+    }
+  }
+}
+
+// finds the lowest energy vertical seam of a PackedGrid on a fork/join pool,
+// the columns are split into chunks, and several rows are computed per
+// synchronization by first filling a shrinking triangle of rows in each chunk
+// (which only needs that chunk), and then the upside down triangles left over
+// between neighboring chunks, every total is computed exactly like
+// SeamFinder.addLine so the seam is the same as PackedGrid.findLowestSeamVertical
+class ParallelSeamFinder {
+  // the pool the chunks are computed on
+  ForkJoinPool pool;
+
+  // the fewest columns in a chunk
+  int chunkColumns;
+
+  // the most rows computed per synchronization, at most half of chunkColumns
+  int bandRows;
+
+  // the running totals of the rows in the current band, row k of the band is
+  // stored at index k * width, and row 0 is the last row of the previous band
+  transient double[] totals;
+
+  // moves[row * width + col] is -1, 0 or 1, like SeamFinder.moves
+  transient byte[] moves;
+
+  // the column where every chunk starts, followed by the width of the grid
+  transient int[] bounds;
+
+  // the grid being searched and the first row of the current band
+  transient PackedGrid grid;
+  transient int firstRow;
+
+  // the amount of rows in the current band
+  transient int rows;
+
+  ParallelSeamFinder(int parallelism, int chunkColumns, int bandRows) {
+    if (parallelism < 1 || chunkColumns < 2 || bandRows < 1) {
+      throw new RuntimeException("Invalid parallel seam search settings!");
+    }
+    this.pool = new ForkJoinPool(parallelism);
+    this.chunkColumns = chunkColumns;
+    this.bandRows = Math.min(bandRows, chunkColumns / 2);
+    this.totals = new double[0];
+    this.moves = new byte[0];
+  }
+
+  // uses every available core, chunks of at least 1024 columns and bands of 64
+  // rows
+  ParallelSeamFinder() {
+    this(Runtime.getRuntime().availableProcessors(), 1024, 64);
+  }
+
+  // returns the vertical seam of the given grid with the lowest total energy
+  PackedSeam findLowestSeamVertical(PackedGrid grid) {
+    int width = grid.width;
+    int height = grid.height;
+    if (this.totals.length < (this.bandRows + 1) * width) {
+      this.totals = new double[(this.bandRows + 1) * width];
+    }
+    if (this.moves.length < height * width) {
+      this.moves = new byte[height * width];
+    }
+
+    int chunks = Math.max(1, width / this.chunkColumns);
+    this.bounds = new int[chunks + 1];
+    for (int chunk = 0; chunk <= chunks; chunk += 1) {
+      this.bounds[chunk] = (int) ((long) chunk * width / chunks);
+    }
+
+    this.grid = grid;
+    System.arraycopy(grid.energies, 0, this.totals, 0, width);
+    for (int row = 1; row < height; row += this.rows) {
+      this.firstRow = row;
+      this.rows = Math.min(this.bandRows, height - row);
+      this.pool.invoke(new SeamBandTask(this, false, 0, chunks));
+      if (chunks > 1) {
+        this.pool.invoke(new SeamBandTask(this, true, 1, chunks));
+      }
+      // the last row of this band starts the next one
+      System.arraycopy(this.totals, this.rows * width, this.totals, 0, width);
+    }
+    this.grid = null;
+
+    int best = 0;
+    for (int col = 1; col < width; col += 1) {
+      if (this.totals[col] < this.totals[best]) {
+        best = col;
+      }
+    }
+    double lowestTotal = this.totals[best];
+
+    int[] path = new int[height];
+    for (int row = height - 1; row >= 0; row -= 1) {
+      path[row] = best;
+      best += this.moves[row * width + best];
+    }
+    return new PackedSeam(true, path, lowestTotal);
+  }
+
+  // EFFECT: computes the totals of the given chunk that only depend on the
+  // chunk itself, every row of the band loses a column on each side that
+  // borders another chunk
+  void fillTriangle(int chunk) {
+    int start = this.bounds[chunk];
+    int end = this.bounds[chunk + 1];
+    int width = this.grid.width;
+    for (int k = 1; k <= this.rows; k += 1) {
+      int from = start;
+      if (start > 0) {
+        from += k;
+      }
+      int to = end;
+      if (end < width) {
+        to -= k;
+      }
+      this.fillRow(k, from, to);
+    }
+  }
+
+  // EFFECT: computes the totals between the given chunk and the chunk before
+  // it that fillTriangle left out
+  void fillGap(int chunk) {
+    int bound = this.bounds[chunk];
+    for (int k = 1; k <= this.rows; k += 1) {
+      this.fillRow(k, bound - k, bound + k);
+    }
+  }
+
+  // EFFECT: computes the totals of row k of the band from column from up to
+  // (but not including) column to, exactly like SeamFinder.addLine
+  void fillRow(int k, int from, int to) {
+    int width = this.grid.width;
+    double[] energies = this.grid.energies;
+    double[] totals = this.totals;
+    byte[] moves = this.moves;
+    int energyOffset = (this.firstRow + k - 1) * this.grid.stride;
+    int moveOffset = (this.firstRow + k - 1) * width;
+    int prevOffset = (k - 1) * width;
+    int currOffset = k * width;
+
+    for (int index = from; index < to; index += 1) {
+      int best = index;
+      byte move = 0;
+
+      // the last index only looks left, unless it is also the first index
+      if ((index == 0 || index < width - 1) && index + 1 < width
+          && totals[prevOffset + index + 1] < totals[prevOffset + best]) {
+        best = index + 1;
+        move = 1;
+      }
+      if (index > 0 && totals[prevOffset + index - 1] < totals[prevOffset + best]) {
+        best = index - 1;
+        move = -1;
+      }
+
+      totals[currOffset + index] = totals[prevOffset + best] + energies[energyOffset + index];
+      moves[moveOffset + index] = move;
+    }
+  }
+
+  // EFFECT: stops the worker threads once the work already submitted is done
+  void shutdown() {
+    this.pool.shutdown();
+  }
+}
+
+// a range of chunks of the current band of a ParallelSeamFinder, either their
+// triangles or the gaps in front of them
+class SeamBandTask extends RecursiveAction {
+  // only declared because RecursiveAction is Serializable
+  private static final long serialVersionUID = 1L;
+
+  ParallelSeamFinder finder;
+
+  // does this task fill the gaps between chunks instead of their triangles?
+  boolean gaps;
+
+  // the first chunk of the range
+  int firstChunk;
+
+  // the chunk after the last chunk of the range
+  int lastChunk;
+
+  SeamBandTask(ParallelSeamFinder finder, boolean gaps, int firstChunk, int lastChunk) {
+    this.finder = finder;
+    this.gaps = gaps;
+    this.firstChunk = firstChunk;
+    this.lastChunk = lastChunk;
+  }
+
+  // EFFECT: fills the range of chunks, splitting it in half until there is only
+  // one chunk left
+  protected void compute() {
+    if (this.lastChunk - this.firstChunk == 1) {
+      if (this.gaps) {
+        this.finder.fillGap(this.firstChunk);
+      }
+      else {
+        this.finder.fillTriangle(this.firstChunk);
+      }
+    }
+    else {
+      int middle = (this.firstChunk + this.lastChunk) / 2;
+      invokeAll(new SeamBandTask(this.finder, this.gaps, this.firstChunk, middle),
+          new SeamBandTask(this.finder, this.gaps, middle, this.lastChunk));
+    }
+  }
+}
+
+// finds a vertical seam of a PackedGrid coarse to fine: first the lowest seam
+// of an energy map shrunk by a factor in both directions, where every pixel is
+// the mean energy of a block of the grid, then the lowest seam of the full grid
+// that stays within bandWidth columns of the blocks the coarse seam went through
+// the seam is usually the same as the exact one, but not always, because the
+// search never looks outside of the band
+class PyramidSeamFinder {
+  // how many pixels of the grid make up one side of a block
+  int factor;
+
+  // how many extra columns the fine search may look at on either side of a block
+  int bandWidth;
+
+  // finds the seam of the coarse energy map
+  transient SeamFinder coarseFinder;
+
+  // the mean energy of every block, block row r and block col c is stored at
+  // index r * coarseWidth + c
+  transient double[] coarseEnergies;
+  transient int coarseWidth;
+
+  // the grid the coarse energies belong to and its size when they were last
+  // brought up to date, or null if the next search computes them from scratch
+  transient PackedGrid mapped;
+  transient int mappedWidth;
+  transient int mappedHeight;
+
+  // how many seams were removed from the mapped grid since its coarse
+  // energies were computed from scratch
+  transient int staleSeams;
+
+  // the first column of the band in every row of the grid
+  transient int[] bandStarts;
+
+  // the running totals of the band in the previous row and in the current row
+  transient double[] prevTotals;
+  transient double[] currTotals;
+
+  // moves[row * maxBand + index] is -1, 0 or 1, like SeamFinder.moves, but for
+  // the index-th column of the band in that row
+  transient byte[] moves;
+  transient int maxBand;
+
+  PyramidSeamFinder(int factor, int bandWidth) {
+    if (factor < 1 || bandWidth < 0) {
+      throw new RuntimeException("Invalid pyramid seam search settings!");
+    }
+    this.factor = factor;
+    this.bandWidth = bandWidth;
+    this.coarseFinder = new SeamFinder();
+    this.coarseEnergies = new double[0];
+    this.bandStarts = new int[0];
+    this.prevTotals = new double[0];
+    this.currTotals = new double[0];
+    this.moves = new byte[0];
+  }
+
+  // shrinks the energy map 4 times and refines within 4 columns of each block
+  PyramidSeamFinder() {
+    this(4, 4);
+  }
+
+  // returns a vertical seam of the given grid with a low total energy, which
+  // is the lowest seam within the band around the lowest coarse seam
+  PackedSeam findLowestSeamVertical(PackedGrid grid) {
+    return this.refine(grid, this.findCoarseSeam(grid));
+  }
+
+  // returns the column of the lowest seam in every row of the coarse energy
+  // map of the given grid, reusing the coarse energies if only seamRemoved
+  // changed the grid since they were computed
+  int[] findCoarseSeam(PackedGrid grid) {
+    if (this.mapped != grid || grid.width != this.mappedWidth
+        || grid.height != this.mappedHeight) {
+      this.computeCoarseEnergies(grid);
+    }
+    int coarseHeight = this.coarseEnergies.length / this.coarseWidth;
+
+    this.coarseFinder.start(coarseHeight, this.coarseWidth);
+    for (int row = 0; row < coarseHeight; row += 1) {
+      this.coarseFinder.addLine(this.coarseEnergies, row * this.coarseWidth, this.coarseWidth);
+    }
+    return this.coarseFinder.finish();
+  }
+
+  // EFFECT: computes the mean energy of every block of the given grid, the
+  // blocks in the last row and column are smaller if the grid does not divide
+  // evenly
+  void computeCoarseEnergies(PackedGrid grid) {
+    this.coarseWidth = (grid.width + this.factor - 1) / this.factor;
+    int coarseHeight = (grid.height + this.factor - 1) / this.factor;
+    if (this.coarseEnergies.length != this.coarseWidth * coarseHeight) {
+      this.coarseEnergies = new double[this.coarseWidth * coarseHeight];
+    }
+
+    for (int coarseRow = 0; coarseRow < coarseHeight; coarseRow += 1) {
+      for (int block = 0; block < this.coarseWidth; block += 1) {
+        this.averageBlock(grid, coarseRow, block);
+      }
+    }
+
+    this.mapped = grid;
+    this.mappedWidth = grid.width;
+    this.mappedHeight = grid.height;
+    this.staleSeams = 0;
+  }
+
+  // EFFECT: sets the coarse energy of the given block to the mean energy of
+  // the pixels of the given grid in it
+  void averageBlock(PackedGrid grid, int coarseRow, int block) {
+    int firstRow = coarseRow * this.factor;
+    int lastRow = Math.min(grid.height, firstRow + this.factor);
+    int firstCol = block * this.factor;
+    int lastCol = Math.min(grid.width, firstCol + this.factor);
+
+    double sum = 0;
+    for (int row = firstRow; row < lastRow; row += 1) {
+      for (int col = firstCol; col < lastCol; col += 1) {
+        sum += grid.energies[row * grid.stride + col];
+      }
+    }
+    this.coarseEnergies[coarseRow * this.coarseWidth + block] =
+        sum / ((lastRow - firstRow) * (lastCol - firstCol));
+  }
+
+  // EFFECT: brings the coarse energies up to date after the given vertical
+  // seam was removed from the given grid, averaging again only the blocks
+  // under the seam and beside it, where energies changed, and the last block
+  // of every row, which lost a column
+  // the blocks right of the seam keep the energies of pixels that moved one
+  // column to the left, which the band of the fine search makes up for until
+  // more seams were removed than the band is wide, then the next search
+  // computes every block from scratch
+  void seamRemoved(PackedGrid grid, PackedSeam seam) {
+    if (this.mapped != grid || !seam.vertical || grid.width != this.mappedWidth - 1
+        || grid.height != this.mappedHeight) {
+      this.mapped = null;
+      return;
+    }
+    this.mappedWidth = grid.width;
+    this.staleSeams += 1;
+    if (this.staleSeams > this.bandWidth
+        || (grid.width + this.factor - 1) / this.factor != this.coarseWidth) {
+      this.mapped = null;
+      return;
+    }
+
+    int coarseHeight = this.coarseEnergies.length / this.coarseWidth;
+    for (int coarseRow = 0; coarseRow < coarseHeight; coarseRow += 1) {
+      // removing the seam changes the energies of a row from the column left
+      // of the seam in the row above, the row itself or the row below
+      int firstRow = Math.max(0, coarseRow * this.factor - 1);
+      int lastRow = Math.min(grid.height, (coarseRow + 1) * this.factor + 1);
+      int low = seam.indices[firstRow];
+      int high = seam.indices[firstRow];
+      for (int row = firstRow + 1; row < lastRow; row += 1) {
+        low = Math.min(low, seam.indices[row]);
+        high = Math.max(high, seam.indices[row]);
+      }
+
+      int lastBlock = Math.min(grid.width - 1, high) / this.factor;
+      for (int block = Math.max(0, low - 1) / this.factor; block <= lastBlock; block += 1) {
+        this.averageBlock(grid, coarseRow, block);
+      }
+      if (lastBlock < this.coarseWidth - 1) {
+        this.averageBlock(grid, coarseRow, this.coarseWidth - 1);
+      }
+    }
+  }
+
+  // returns the lowest vertical seam of the given grid that stays within the
+  // band around the given coarse seam, ties are broken exactly like
+  // SeamFinder.addLine, so a band wider than the grid finds the exact seam
+  PackedSeam refine(PackedGrid grid, int[] coarseSeam) {
+    this.maxBand = Math.min(grid.width, this.factor + 2 * this.bandWidth);
+    if (this.currTotals.length < this.maxBand) {
+      this.prevTotals = new double[this.maxBand];
+      this.currTotals = new double[this.maxBand];
+    }
+    if (this.moves.length < grid.height * this.maxBand) {
+      this.moves = new byte[grid.height * this.maxBand];
+    }
+    if (this.bandStarts.length < grid.height) {
+      this.bandStarts = new int[grid.height];
+    }
+
+    int prevStart = 0;
+    int prevLength = 0;
+    for (int row = 0; row < grid.height; row += 1) {
+      int block = coarseSeam[row / this.factor];
+      int start = Math.max(0, block * this.factor - this.bandWidth);
+      int end = Math.min(grid.width, (block + 1) * this.factor + this.bandWidth);
+      this.bandStarts[row] = start;
+
+      double[] prev = this.currTotals;
+      double[] curr = this.prevTotals;
+      this.prevTotals = prev;
+      this.currTotals = curr;
+
+      for (int col = start; col < end; col += 1) {
+        double energy = grid.energies[row * grid.stride + col];
+        if (row == 0) {
+          curr[col - start] = energy;
+          continue;
+        }
+
+        // a column outside of the band in the previous row can never be reached
+        double best = this.totalAt(prev, prevStart, prevLength, col);
+        byte move = 0;
+        if ((col == 0 || col < grid.width - 1) && col + 1 < grid.width) {
+          double right = this.totalAt(prev, prevStart, prevLength, col + 1);
+          if (right < best) {
+            best = right;
+            move = 1;
+          }
+        }
+        if (col > 0) {
+          double left = this.totalAt(prev, prevStart, prevLength, col - 1);
+          if (left < best) {
+            best = left;
+            move = -1;
+          }
+        }
+
+        curr[col - start] = best + energy;
+        this.moves[row * this.maxBand + col - start] = move;
+      }
+
+      prevStart = start;
+      prevLength = end - start;
+    }
+
+    int best = 0;
+    for (int index = 1; index < prevLength; index += 1) {
+      if (this.currTotals[index] < this.currTotals[best]) {
+        best = index;
+      }
+    }
+    double totalWeight = this.currTotals[best];
+
+    int[] path = new int[grid.height];
+    int col = prevStart + best;
+    for (int row = grid.height - 1; row >= 0; row -= 1) {
+      path[row] = col;
+      col += this.moves[row * this.maxBand + col - this.bandStarts[row]];
+    }
+
+    return new PackedSeam(true, path, totalWeight);
+  }
+
+  // returns the running total of the given column in the band of the previous
+  // row, or infinity if the column is outside of the band
+  double totalAt(double[] totals, int bandStart, int bandLength, int col) {
+    if (col < bandStart || col >= bandStart + bandLength) {
+      return Double.POSITIVE_INFINITY;
+    }
+    return totals[col - bandStart];
+  }
+
+  // returns how much more energy the seam this finds in the given grid has
+  // than the exact lowest seam, as a fraction of the energy of the exact seam
+  double relativeError(PackedGrid grid) {
+    double exact = grid.findLowestSeamVertical().totalWeight;
+    double approximate = this.findLowestSeamVertical(grid).totalWeight;
+    if (exact == 0) {
+      return approximate == 0 ? 0 : Double.POSITIVE_INFINITY;
+    }
+    return (approximate - exact) / exact;
+  }
+}
+
+// compares the exact vertical seam search of a PackedGrid against a
+// PyramidSeamFinder, while carving a copy of the grid with the exact seams
+class PyramidSeamReport {
+  // the amount of seams found by each search
+  int seams;
+
+  // how long finding the seams took in each search in nanoseconds
+  long exactNanos;
+  long pyramidNanos;
+
+  // the mean and the largest PyramidSeamFinder.relativeError over every seam
+  double meanError;
+  double worstError;
+
+  // how many of the seams were exactly the same in both searches
+  int sameSeams;
+
+  // finds the given amount of seams with both searches on a copy of the given
+  // grid, removing the exact seam after each one, the grid itself is unchanged
+  PyramidSeamReport(PackedGrid grid, PyramidSeamFinder pyramid, int seams) {
+    if (seams < 1 || seams >= grid.width) {
+      throw new RuntimeException("Cannot find that many seams!");
+    }
+    this.seams = seams;
+
+    PackedGrid copy = new PackedGrid(grid.width, grid.height);
+    copy.colors = grid.packedColors();
+    copy.replicateEdges = grid.replicateEdges;
+    copy.computeEnergies();
+
+    for (int seam = 0; seam < seams; seam += 1) {
+      // a full search, like the pyramid search, instead of the persistent seam
+      // costs that removing the last seam already patched
+      long start = System.nanoTime();
+      PackedSeam exact = copy.findLowestSeamVerticalFromScratch();
+      this.exactNanos += System.nanoTime() - start;
+
+      start = System.nanoTime();
+      PackedSeam approximate = pyramid.findLowestSeamVertical(copy);
+      this.pyramidNanos += System.nanoTime() - start;
+
+      double error = exact.totalWeight == 0 ? 0
+          : (approximate.totalWeight - exact.totalWeight) / exact.totalWeight;
+      this.meanError += error / seams;
+      this.worstError = Math.max(this.worstError, error);
+      if (Arrays.equals(exact.indices, approximate.indices)) {
+        this.sameSeams += 1;
+      }
+
+      copy.removeSeamVerticalHelp(exact, false);
+      pyramid.seamRemoved(copy, exact);
+    }
+  }
+
+  // returns how many times faster the pyramid search is
+  double speedup() {
+    return (double) this.exactNanos / Math.max(1, this.pyramidNanos);
+  }
+
+  // returns a one line summary of the comparison
+  String summary() {
+    return String.format(
+        "per seam: exact %.2f ms, pyramid %.2f ms (%.2fx), error mean %.4f%% worst %.4f%%,"
+            + " %d of %d seams identical",
+        this.exactNanos / 1e6 / this.seams, this.pyramidNanos / 1e6 / this.seams,
+        this.speedup(), this.meanError * 100, this.worstError * 100, this.sameSeams, this.seams);
+  }
+}
+
+// compares removing seams from a linked Grid one at a time against removing
+// them in a batch with Grid.removeSeamsVertical or Grid.removeSeamsHorizontal
+class BatchRemovalReport {
+  // the amount of seams removed by each path
+  int seams;
+
+  // were the seams vertical?
+  boolean vertical;
+
+  // how long each path took in nanoseconds
+  long oneAtATimeNanos;
+  long batchNanos;
+
+  // did both paths end up with exactly the same image?
+  boolean sameResult;
+
+  // removes the given amount of seams from two copies of the given image, once
+  // per path, timing both
+  BatchRemovalReport(BufferedImage image, int seams, boolean vertical) {
+    this.seams = seams;
+    this.vertical = vertical;
+
+    Grid oneAtATime = new Grid(image);
+    long start = System.nanoTime();
+    for (int seam = 0; seam < seams; seam += 1) {
+      if (vertical) {
+        oneAtATime.removeSeamVertical(false);
+      }
+      else {
+        oneAtATime.removeSeamHorizontal(false);
+      }
+    }
+    this.oneAtATimeNanos = System.nanoTime() - start;
+
+    Grid batch = new Grid(image);
+    start = System.nanoTime();
+    if (vertical) {
+      batch.removeSeamsVertical(seams);
+    }
+    else {
+      batch.removeSeamsHorizontal(seams);
+    }
+    this.batchNanos = System.nanoTime() - start;
+
+    this.sameResult = Arrays.equals(new PackedGrid(oneAtATime).colors,
+        new PackedGrid(batch).colors);
+  }
+
+  // returns how many times faster the batch path was
+  double speedup() {
+    return (double) this.oneAtATimeNanos / Math.max(1, this.batchNanos);
+  }
+
+  // returns a one line summary of the comparison
+  String summary() {
+    return String.format("%d %s seams: one at a time %.1f ms, batch %.1f ms (%.1fx), %s",
+        this.seams, this.vertical ? "vertical" : "horizontal", this.oneAtATimeNanos / 1e6,
+        this.batchNanos / 1e6, this.speedup(), this.sameResult ? "same result" : "DIFFERENT");
+  }
+}
+
+// represents either a pixel or a border pixel
+interface IPixel {
+
+  // returns the gray scale equivalent of a pixel when represented using its
+  // energy instead of its color
+  Color getGrayScale(double maxEnergy);
+
+  // returns the pixel version of the abstract pixel, throwing an exception if a
+  // border pixel calls this
+  Pixel asPixel();
+
+  // gets the color of this APixel (a border pixel has no actual color and throws
+  // exception)
+  Color getColor();
+
+  // returns whether or not the pixel is out of bounds (outside the image)
+  boolean isBorder();
+
+  // EFFECT: sets this APixel's neighbor to the given new pixel,
+  // where 0 represents top, 1 represents right, 2 represents bottom, 3 represents
+  // left
+  void changeNeighbor(APixel newPixel, int direction);
+
+  // returns the amount of rows below this pixel (including this pixel)
+  int rowCount();
+
+  // returns the amount of columns to the right of this pixel (including this
+  // pixel)
+  int colCount();
+
+  // returns the pixel at the given row and col offset with respect to this pixel
+  // 0,0 means same pixel
+  // only traverses down and right
+  // rowOffset of 3 means down 3 rows
+  // colOffset of 3 means right 3 cols
+  Pixel getPixelAt(int colOffset, int rowOffset);
+
+  // EFFECT:
+  // returns an array list of each pixel to the right of this pixel (including
+  // this pixel), accumulating the list of pixels encountered so far
+  ArrayList<Pixel> constructPixelRowHelp(ArrayList<Pixel> listSoFar);
+
+  // EFFECT:
+  // returns an array list of each pixel below this pixel (including
+  // this pixel), accumulating the list of pixels encountered so far
+  ArrayList<Pixel> constructPixelColHelp(ArrayList<Pixel> listSoFar);
+
+  // returns the pixel above this pixel or a border pixel if this pixel is at the
+  // top of the image
+  APixel getTop();
+
+  // returns the pixel to the right of this pixel or a border pixel if this pixel
+  // is at the right of the image
+  APixel getRight();
+
+  // returns the pixel below this pixel or a border pixel if this pixel is at the
+  // bottom of the image
+  APixel getBottom();
+
+  // returns the pixel to the left of this pixel or a border pixel if this pixel
+  // is at the left of the image
+  APixel getLeft();
+
+  // computes the "brightness" of this pixel
+  double brightness();
+
+  // calculates the horizontal energy of this pixel
+  double hEnergy();
+
+  // calculates the vertical energy of this pixel
+  double vEnergy();
+
+  // calculates the overall energy of this pixel
+  double energy();
+
+  // returns the energy of the pixel with highest energy in this row
+  double getMaximumEnergyRow(double currMax);
+
+  // returns the energy of the pixel with highest energy in this grid
+  double getMaximumEnergyGrid(double currMax);
+}
+
+// represents a pixel that either borders the image or is inside the image
+abstract class APixel implements IPixel {
+  Color color;
+
+  // the brightness of the color, computed once because the color of a pixel
+  // never changes and every energy reads the brightness of up to 8 neighbors,
+  // it moves along with the pixel when seams are removed and reinserted
+  // (transient: a function of color, which equality already compares)
+  transient double cachedBrightness;
+
+  APixel(Color color) {
+    this.color = color;
+    this.cachedBrightness = (color.getRed() + color.getBlue() + color.getGreen())
+        / (3.0 * 255.0);
+  }
+
+  // returns the gray scale equivalent of a pixel when represented using its
+  // energy instead of its color
+  public abstract Color getGrayScale(double maxEnergy);
+
+  // returns the pixel version of the abstract pixel, throwing an exception if a
+  // border pixel calls this
+  public abstract Pixel asPixel();
+
+  // gets the color of this APixel (a border pixel has no actual color and throws
+  // exception)
+  public abstract Color getColor();
+
+  // returns whether or not the pixel is out of bounds (outside the image)
+  public abstract boolean isBorder();
+
+  // EFFECT: sets this APixel's neighbor to the given new pixel,
+  // where 0 represents top, 1 represents right, 2 represents bottom, 3 represents
+  // left
+  public abstract void changeNeighbor(APixel newPixel, int direction);
+
+  // returns the amount of rows below this pixel (including this pixel)
+  public abstract int rowCount();
+
+  // returns the amount of columns to the right of this pixel (including this
+  // pixel)
+  public abstract int colCount();
+
+  // returns the pixel at the given row and col offset with respect to this pixel
+  // 0,0 means same pixel
+  // only traverses down and right
+  // rowOffset of 3 means down 3 rows
+  // colOffset of 3 means right 3 cols
+  public abstract Pixel getPixelAt(int colOffset, int rowOffset);
+
+  // EFFECT:
+  // returns an array list of each pixel to the right of this pixel (including
+  // this pixel), accumulating the list of pixels encountered so far
+  public abstract ArrayList<Pixel> constructPixelRowHelp(ArrayList<Pixel> listSoFar);
+
+  // EFFECT:
+  // returns an array list of each pixel below this pixel (including
+  // this pixel), accumulating the list of pixels encountered so far
+  public abstract ArrayList<Pixel> constructPixelColHelp(ArrayList<Pixel> listSoFar);
+
+  // returns the pixel above this pixel or a border pixel if this pixel is at the
+  // top of the image
+  public abstract APixel getTop();
+
+  // returns the pixel to the right of this pixel or a border pixel if this pixel
+  // is at the right of the image
+  public abstract APixel getRight();
+
+  // returns the pixel below this pixel or a border pixel if this pixel is at the
+  // bottom of the image
+  public abstract APixel getBottom();
+
+  // returns the pixel to the left of this pixel or a border pixel if this pixel
+  // is at the left of the image
+  public abstract APixel getLeft();
+
+  // returns the "brightness" of this pixel
+  public double brightness() {
+    return this.cachedBrightness;
+  }
+
+  // calculates the horizontal energy of this pixel
+  public double hEnergy() {
+    double topLeftBr = this.getTop().getLeft().brightness();
+    double leftBr = this.getLeft().brightness();
+    double bottomLeftBr = this.getBottom().getLeft().brightness();
+
+    double topRightBr = this.getTop().getRight().brightness();
+    double rightBr = this.getRight().brightness();
+    double bottomRightBr = this.getBottom().getRight().brightness();
+
+    return (topLeftBr + 2.0 * leftBr + bottomLeftBr) - (topRightBr + 2.0 * rightBr + bottomRightBr);
+  }
+
+  // calculates the vertical energy of this pixel
+  public double vEnergy() {
+    double topLeftBr = this.getTop().getLeft().brightness();
+    double topBr = this.getTop().brightness();
+    double topRightBr = this.getTop().getRight().brightness();
+
+    double bottomLeftBr = this.getBottom().getLeft().brightness();
+    double bottomBr = this.getBottom().brightness();
+    double bottomRightBr = this.getBottom().getRight().brightness();
+
+    return (topLeftBr + 2.0 * topBr + topRightBr) - (bottomLeftBr + 2.0 * bottomBr + bottomRightBr);
+  }
+
+  // calculates the overall energy of this pixel
+  public double energy() {
+    double hEnergy = this.hEnergy();
+    double vEnergy = this.vEnergy();
+    return Math.sqrt((hEnergy * hEnergy + vEnergy * vEnergy));
+  }
+
+  // returns the energy of the pixel with highest energy in this row
+  public abstract double getMaximumEnergyRow(double currMax);
+
+  // returns the energy of the pixel with highest energy in this grid
+  public abstract double getMaximumEnergyGrid(double currMax);
+
+}
+
+// represents a pixel that is within the image
+class Pixel extends APixel {
+
+  // the masked color of this pixel for highlighting a path (not the actual
+  // color)
+  boolean maskedColor = false;
+
+  APixel top;
+  APixel right;
+  APixel bottom;
+  APixel left;
+
+  // the energy of this pixel the last time it was asked for, which is only
+  // known while energyKnown is true, Grid forgets it whenever a seam removed or
+  // reinserted next to this pixel changes its neighbors
+  // (transient: a function of the colors of the neighbors, which equality
+  // already compares)
+  transient double cachedEnergy;
+  transient boolean energyKnown;
+
+  Pixel(Color color) {
+    super(color);
+
+    this.top = BorderPixel.BORDER;
+    this.right = BorderPixel.BORDER;
+    this.bottom = BorderPixel.BORDER;
+    this.left = BorderPixel.BORDER;
+    this.energyKnown = false;
+  }
+
+  // returns the energy of this pixel, only computing it if it is not known
+  public double energy() {
+    if (!this.energyKnown) {
+      this.cachedEnergy = super.energy();
+      this.energyKnown = true;
+    }
+    return this.cachedEnergy;
+  }
+
+  // EFFECT: forgets the energy of this pixel and of the 8 pixels around it,
+  // which are every pixel whose energy reads the brightness of this pixel
+  void forgetEnergiesAround() {
+    APixel top = this.getTop();
+    APixel bottom = this.getBottom();
+    APixel[] around = { this, top, top.getLeft(), top.getRight(), this.getLeft(),
+        this.getRight(), bottom, bottom.getLeft(), bottom.getRight() };
+    for (APixel pixel : around) {
+      if (!pixel.isBorder()) {
+        pixel.asPixel().energyKnown = false;
+      }
+    }
+  }
+
+  // checks whether a pixel is well formed in the col
+  boolean isWellFormedCol() {
+    if (this.getTop().isBorder()) {
+      if (this.getBottom().getTop() != this) {
+        return false;
+      }
+    }
+    else if (this.getBottom().isBorder()) {
+      if (this.getTop().getBottom() != this) {
+        return false;
+      }
+    }
+    else if (this.getTop().getBottom() != this || this.getBottom().getTop() != this) {
+      return false;
+    }
+    return true;
+  }
+
+  // checks whether a pixel is well formed in the row
+  boolean isWellFormedRow() {
+    if (this.getRight().isBorder()) {
+      if (this.getLeft().getRight() != this) {
+        return false;
+      }
+    }
+    else if (this.getLeft().isBorder()) {
+      if (this.getRight().getLeft() != this) {
+        return false;
+      }
+    }
+    else if (this.getRight().getLeft() != this || this.getLeft().getRight() != this) {
+      return false;
+    }
+    return true;
+  }
+
+  // returns an array list of each pixel below this pixel (including
+  // this pixel) kicking off the accumulation helper with an empty list of pixels
+  ArrayList<Pixel> constructPixelCol() {
+    return this.constructPixelColHelp(new ArrayList<>());
+  }
+
+  // returns the pixel above this pixel
+  public APixel getTop() {
+    return this.top;
+  }
+
+  // returns the pixel to the right of this pixel
+  public APixel getRight() {
+    return this.right;
+  }
+
+  // returns the pixel below this pixel
+  public APixel getBottom() {
+    return this.bottom;
+  }
+
+  // returns the pixel to the left of this pixel
+  public APixel getLeft() {
+    return this.left;
+  }
+
+  // EFFECT: sets this pixel's target neighbor to refer to the given pixel, and
+  // makes the given pixel refer to this one
+  // 0 implies top, 1 implies right, 2 implies bottom, 3 implies left
+  public void setNeighbor(Pixel p, int direction) {
+    if (direction < 0 || direction > 3) {
+      throw new RuntimeException("Direciton should be between 0 and 3!");
+    }
+
+    // 0 implies top, 1 implies right, 2 implies bottom, 3 implies left
+    switch (direction) {
+      case 0:
+        this.top = p;
+        break;
+      case 1:
+        this.right = p;
+        break;
+      case 2:
+        this.bottom = p;
+        break;
+      case 3:
+        this.left = p;
+        break;
+      default:
+        // no other case applies
+        break;
+    }
+
+    // ternary operator:
+    // 0 (top) maps to 2 (bottom) on the other pixel
+    // 1 -> 3
+    // 3 (left) maps to 1 (right) on the other pixel
+    // 2 -> 0
+    p.setNeighborHelp(this, direction < 2 ? direction + 2 : direction - 2);
+  }
+
+  // EFFECT: sets this pixel's target neighbor to refer to the given pixel
+  // 0 implies top, 1 implies right, 2 implies bottom, 3 implies left
+  public void setNeighborHelp(Pixel p, int direction) {
+    switch (direction) {
+      case 0:
+        this.top = p;
+        break;
+      case 1:
+        this.right = p;
+        break;
+      case 2:
+        this.bottom = p;
+        break;
+      case 3:
+        this.left = p;
+        break;
+      default:
+        // no other case applies
+        break;
+    }
+
+  }
+
+  // returns the amount of pixels from this pixel down to the bottom border
+  public int rowCount() {
+    int count = 0;
+    for (APixel current = this; !current.isBorder(); current = current.getBottom()) {
+      count += 1;
+    }
+    return count;
+  }
+
+  // returns the amount of pixels from this pixel right to the right border
+  public int colCount() {
+    int count = 0;
+    for (APixel current = this; !current.isBorder(); current = current.getRight()) {
+      count += 1;
+    }
+    return count;
+  }
+
+  // returns the pixel at the given offsets by stepping diagonally down and to
+  // the right until one offset is used up, then straight along the other one
+  public Pixel getPixelAt(int rowOffset, int colOffset) {
+    APixel current = this;
+
+    // INVARIANT: a border pixel is its own neighbor, so once the walk leaves the
+    // image it stays on the border and the exception below is thrown
+    while (!current.isBorder() && (rowOffset != 0 || colOffset != 0)) {
+      if (rowOffset == 0) {
+        current = current.getRight();
+        colOffset -= 1;
+      }
+      else if (colOffset == 0) {
+        current = current.getBottom();
+        rowOffset -= 1;
+      }
+      else {
+        current = current.getBottom().getRight();
+        rowOffset -= 1;
+        colOffset -= 1;
+      }
+    }
+
+    if (current.isBorder()) {
+      throw new RuntimeException("Index out of bounds exception for getPixelAt!");
+    }
+    return current.asPixel();
+  }
+
+  // returns an array list of each pixel to the right of this pixel (including
+  // this pixel) kicking off the accumulation helper with an empty list of pixels
+  ArrayList<Pixel> constructPixelRow() {
+    return this.constructPixelRowHelp(new ArrayList<>());
+  }
+
+  // EFFECT:
+  // adds this pixel and every pixel to the right of this pixel to the list so
+  // far, and returns the list
+  public ArrayList<Pixel> constructPixelRowHelp(ArrayList<Pixel> listSoFar) {
+    for (APixel current = this; !current.isBorder(); current = current.getRight()) {
+      listSoFar.add(current.asPixel());
+    }
+    return listSoFar;
+  }
+
+  // EFFECT: sets this pixel's neighbor to the given APixel, where 0 implies top,
+  // 1 implies right, 2 implies bottom, 3 implies left
+  public void changeNeighbor(APixel newPixel, int direction) {
+    // 0 implies top, 1 implies right, 2 implies bottom, 3 implies left
+    switch (direction) {
+      case 0:
+        this.top = newPixel;
+        break;
+      case 1:
+        this.right = newPixel;
+        break;
+      case 2:
+        this.bottom = newPixel;
+        break;
+      case 3:
+        this.left = newPixel;
+        break;
+      default:
+        // no other case applies
+        break;
+    }
+  }
+
+  // returns that this is not a border pixel
+  public boolean isBorder() {
+    return false;
+  }
+
+  // returns either the maskedColor if it has been initialized or the pixel's
+  // color
+  public Color getColor() {
+    return this.maskedColor ? Color.red : this.color;
+  }
+
+  // EFFECT:
+  // adds this pixel and every pixel below this pixel to the list so far, and
+  // returns the list
+  public ArrayList<Pixel> constructPixelColHelp(ArrayList<Pixel> listSoFar) {
+    for (APixel current = this; !current.isBorder(); current = current.getBottom()) {
+      listSoFar.add(current.asPixel());
+    }
+    return listSoFar;
+  }
+
+  // returns this pixel
+  public Pixel asPixel() {
+    return this;
+  }
+
+  // returns the gray scaled version of this pixel based on the max energy
+  public Color getGrayScale(double maxEnergy) {
+    int grayRatio = (int) (255 * (this.energy() / maxEnergy));
+    return new Color(grayRatio, grayRatio, grayRatio);
+  }
+
+  // returns the energy of the pixel with highest energy in this row (from this
+  // pixel to the right), or currMax if it is higher
+  public double getMaximumEnergyRow(double currMax) {
+    double maximum = currMax;
+    for (APixel current = this; !current.isBorder(); current = current.getRight()) {
+      double energy = current.energy();
+      if (energy > maximum) {
+        maximum = energy;
+      }
+    }
+    return maximum;
+  }
+
+  // returns the energy of the pixel with highest energy in this grid (from this
+  // pixel's row down), or currMax if it is higher
+  public double getMaximumEnergyGrid(double currMax) {
+    double maximum = currMax;
+    for (APixel current = this; !current.isBorder(); current = current.getBottom()) {
+      maximum = current.getMaximumEnergyRow(maximum);
+    }
+    return maximum;
+  }
+
+}
+
+// represents a pixel that borders the image
+class BorderPixel extends APixel {
+
+  // the border pixel shared by every pixel that is on the edge of an image, a
+  // border pixel never changes, so one is enough for every grid
+  static final BorderPixel BORDER = new BorderPixel();
+
+  BorderPixel() {
+    super(Color.black);
+  }
+
+  // a border pixel does not count as a row
+  public int rowCount() {
+    return 0;
+  }
+
+  // a border pixel does not count as a col
+  public int colCount() {
+    return 0;
+  }
+
+  // a border pixel represents the base case, cannot go from a base case to a
+  // non-base case, so it is its own neighbor
+  public APixel getTop() {
+    return this;
+  }
+
+  // a border pixel represents the base case, cannot go from a base case to a
+  // non-base case, so it is its own neighbor
+  public APixel getRight() {
+    return this;
+  }
+
+  // a border pixel represents the base case, cannot go from a base case to a
+  // non-base case, so it is its own neighbor
+  public APixel getBottom() {
+    return this;
+  }
+
+  // a border pixel represents the base case, cannot go from a base case to a
+  // non-base case, so it is its own neighbor
+  public APixel getLeft() {
+    return this;
+  }
+
+  // a border pixel indicates an out of bounds exception as too large of an offset
+  // was passed in for either dimension
+  public Pixel getPixelAt(int rowOffset, int colOffset) {
+    throw new RuntimeException("Index out of bounds exception for getPixelAt!");
+  }
+
+  // indicates we have reached the end of the list, so return the listSoFar
+  public ArrayList<Pixel> constructPixelRowHelp(ArrayList<Pixel> listSoFar) {
+    return listSoFar;
+  }
+
+  // EFFECT: nothing
+  // does nothing because a border pixel is only pointed at
+  public void changeNeighbor(APixel newPixel, int direction) {
+    return;
+  }
+
+  // returns that this is a border pixel
+  public boolean isBorder() {
+    return true;
+  }
+
+  // a border pixel is black, so it has no brightness
+  public double brightness() {
+    return 0.0;
+  }
+
+  // cannot call getColor on a border pixel
+  public Color getColor() {
+    throw new RuntimeException("Border pixel has no color!");
+  }
+
+  // indicates we have reached the end of the list, so return the listSoFar
+  public ArrayList<Pixel> constructPixelColHelp(ArrayList<Pixel> listSoFar) {
+    return listSoFar;
+  }
+
+  // we do not call asPixel on a border pixel
+  public Pixel asPixel() {
+    throw new RuntimeException("Cannot call asPixel on a border pixel!");
+  }
+
+  // returns the energy of the pixel with highest energy in this row
+  public double getMaximumEnergyRow(double currMax) {
+    return currMax;
+  }
+
+  // returns the energy of the pixel with highest energy in this grid
+  public double getMaximumEnergyGrid(double currMax) {
+    return currMax;
+  }
+
+  // a border pixel has no gray scale as it has no color
+  public Color getGrayScale(double maxEnergy) {
+    throw new RuntimeException("Border pixel has no energy!");
+  }
+
+}
+
+class ExamplesIE {
+
+  Pixel singlePixel;
+
+  Grid grid;
+  Grid gridCopy;
+  Grid grid2;
+  Grid grid2Copy;
+  Grid grid2Remove1Seam;
+  Grid grid3x3;
+  Grid grid3x3Copy;
+
+  PackedGrid packed2;
+  PackedGrid packed2Copy;
+  PackedGrid packed2Remove1Seam;
+
+  ImageEditor ie;
+  ImageEditor ieCopy;
+  ImageEditor ie2;
+  ImageEditor ie2Copy;
+
+  BufferedImage balloons = this.load("./balloons.jpeg");
+  BufferedImage tinyImg1 = this.load("./tinyImage1.png");
+  BufferedImage tinyImg1Remove1Seam = this.load("./4x4_1.png");
+  BufferedImage img3x3 = this.load("./img3x3.png");
+
+  // returns the image in the given file, decoded once with RasterLoader
+  BufferedImage load(String fileName) {
+    try {
+      return new RasterLoader().read(new File(fileName));
+    }
+    catch (IOException e) {
+      throw new RuntimeException("Cannot read the image!", e);
+    }
+  }
+
+  void testBigBang(Tester t) {
+    // initialize conditions
+    this.initConds();
+
+    ie.bigBang(1000, 1000, 0.1);
+  }
+
+  // EFFECT: initializes the conditions for testing
+  void initConds() {
+    this.singlePixel = new Pixel(Color.blue);
+    this.grid = new Grid(balloons);
+    this.grid2Copy = new Grid(balloons);
+    this.grid2 = new Grid(tinyImg1);
+    this.grid2Copy = new Grid(tinyImg1);
+    this.grid2Remove1Seam = new Grid(tinyImg1Remove1Seam);
+    this.grid3x3 = new Grid(img3x3);
+    this.grid3x3Copy = new Grid(img3x3);
+    this.packed2 = new PackedGrid(tinyImg1);
+    this.packed2Copy = new PackedGrid(tinyImg1);
+    this.packed2Remove1Seam = new PackedGrid(tinyImg1Remove1Seam);
+    this.ie = new ImageEditor(grid);
+    this.ie2 = new ImageEditor(grid2);
+    this.ieCopy = new ImageEditor(gridCopy);
+    this.ie2Copy = new ImageEditor(grid2Copy);
+  }
+
+  void testEnergiesAndBrightness(Tester t) {
+    // initialize conditions
+    this.initConds();
+
+    t.checkExpect(new BorderPixel().energy(), 0.0);
+    t.checkInexact(this.singlePixel.energy(), 0.0, 0.001);
+
+    this.singlePixel = this.grid2.rootPixel;
+    t.checkInexact(this.singlePixel.energy(), 2.182, 0.001);
+
+    this.singlePixel = this.grid2.rootPixel.getPixelAt(1, 1);
+    t.checkInexact(this.singlePixel.energy(), 0.410, 0.001);
+
+    t.checkInexact(this.singlePixel.hEnergy(), -0.2667, 0.001);
+    t.checkInexact(this.singlePixel.vEnergy(), 0.311, 0.001);
+    t.checkInexact(this.singlePixel.brightness(), 0.557, 0.001);
+
+    t.checkInexact(new BorderPixel().hEnergy(), 0.0, 0.001);
+    t.checkInexact(new BorderPixel().vEnergy(), 0.0, 0.001);
+    t.checkInexact(new BorderPixel().brightness(), 0.0, 0.001);
+  }
+
+  void testGridConstructor(Tester t) {
+    // initialize conditions
+    this.initConds();
+
+    // check if grid has correct connections
+    // top left pixel: does it refer to the correct edge pixels
+
+    t.checkExpect(this.grid.rootPixel.getPixelAt(0, 0).getTop().getRight(), new BorderPixel());
+    t.checkExpect(this.grid.rootPixel.getPixelAt(0, 0).getTop(), new BorderPixel());
+    t.checkExpect(this.grid.rootPixel.getPixelAt(0, 0).getTop().getLeft(), new BorderPixel());
+    t.checkExpect(this.grid.rootPixel.getPixelAt(0, 0).getLeft(), new BorderPixel());
+    t.checkExpect(this.grid.rootPixel.getPixelAt(0, 0).getBottom().getLeft(), new BorderPixel());
+
+    // top left pixel: does it refer to the correct pixel neighbors? (check by
+    // color)
+    // create pixel colors at 0,1 and 0,0
+    Color rightPixelColor = new Color(217, 14, 57);
+    Color topLeftPixelColor = new Color(216, 13, 56);
+
+    t.checkExpect(this.grid.rootPixel.getPixelAt(0, 0).getRight().color, rightPixelColor);
+
+    t.checkExpect(this.grid.rootPixel.getPixelAt(0, 1).getLeft().color, topLeftPixelColor);
+
+    // random edge pixel (not in corner): does it refer to the correct edge pixels?
+    t.checkExpect(this.grid.rootPixel.getPixelAt(0, 69).getTop().getRight(), new BorderPixel());
+    t.checkExpect(this.grid.rootPixel.getPixelAt(0, 69).getTop(), new BorderPixel());
+    t.checkExpect(this.grid.rootPixel.getPixelAt(0, 69).getTop().getLeft(), new BorderPixel());
+
+    // random edge pixel (not in corner): does it refer to the correct edge pixels?
+    t.checkExpect(this.grid.rootPixel.getPixelAt(25, 799).getTop().getRight(), new BorderPixel());
+    t.checkExpect(this.grid.rootPixel.getPixelAt(25, 799).getRight(), new BorderPixel());
+    t.checkExpect(this.grid.rootPixel.getPixelAt(25, 799).getBottom().getRight(),
+        new BorderPixel());
+
+    // random edge pixel (not in corner): does it refer to the correct pixel
+    // neighbors?
+    Color belowColor = new Color(132, 186, 246);
+    Color belowRightColor = new Color(132, 186, 246);
+    t.checkExpect(this.grid.rootPixel.getPixelAt(0, 69).getBottom().color, belowColor);
+    t.checkExpect(this.grid.rootPixel.getPixelAt(0, 69).getBottom().getRight().color,
+        belowRightColor);
+
+    Color leftColor = new Color(2, 10, 95);
+    Color topLeftColor = new Color(2, 10, 95);
+    t.checkExpect(this.grid.rootPixel.getPixelAt(25, 799).getLeft().color, leftColor);
+    t.checkExpect(this.grid.rootPixel.getPixelAt(25, 799).getTop().getLeft().color, topLeftColor);
+
+    // random inner pixel: does it refer to the correct pixel neighbors?
+    Color topColor = new Color(116, 154, 216);
+    Color topRightColor = new Color(116, 154, 216);
+    Color rightColor = new Color(119, 155, 217);
+    Color bottomRightColor = new Color(119, 155, 217);
+    Color bottomColor = new Color(119, 155, 217);
+    Color bottomLeftColor = new Color(119, 155, 217);
+    Color leftColor2 = new Color(119, 155, 217);
+    Color topLeftColor2 = new Color(118, 154, 216);
+
+    t.checkExpect(this.grid.rootPixel.getPixelAt(62, 420).getTop().color, topColor);
+    t.checkExpect(this.grid.rootPixel.getPixelAt(62, 420).getTop().getRight().color, topRightColor);
+    t.checkExpect(this.grid.rootPixel.getPixelAt(62, 420).getRight().color, rightColor);
+    t.checkExpect(this.grid.rootPixel.getPixelAt(62, 420).getBottom().getRight().color,
+        bottomRightColor);
+    t.checkExpect(this.grid.rootPixel.getPixelAt(62, 420).getBottom().color, bottomColor);
+    t.checkExpect(this.grid.rootPixel.getPixelAt(62, 420).getBottom().getLeft().color,
+        bottomLeftColor);
+    t.checkExpect(this.grid.rootPixel.getPixelAt(62, 420).getLeft().color, leftColor2);
+    t.checkExpect(this.grid.rootPixel.getPixelAt(62, 420).getTop().getLeft().color, topLeftColor2);
+
+    // test root pixel
+    t.checkExpect(this.grid2.rootPixel, this.grid2.rootPixel.getPixelAt(0, 0));
+
+    t.checkExpect(this.grid2.rootPixel.getTop(), new BorderPixel());
+    t.checkExpect(this.grid2.rootPixel.getBottom(), this.grid2.rootPixel.getPixelAt(1, 0));
+    t.checkExpect(this.grid2.rootPixel.getLeft(), new BorderPixel());
+    t.checkExpect(this.grid2.rootPixel.getRight(), this.grid2.rootPixel.getPixelAt(0, 1));
+
+    t.checkExpect(this.grid2.rootPixel.getBottom().getRight(),
+        this.grid2.rootPixel.getPixelAt(1, 1));
+    t.checkExpect(this.grid2.rootPixel.getBottom().getLeft(), new BorderPixel());
+    t.checkExpect(this.grid2.rootPixel.getTop().getRight(), new BorderPixel());
+    t.checkExpect(this.grid2.rootPixel.getTop().getLeft(), new BorderPixel());
+
+    t.checkExpect(this.grid2.rootPixel.getBottom().getRight().getBottom().getRight().getBottom(),
+        this.grid2.rootPixel.getPixelAt(3, 2));
+  }
+
+  void testSetNeighbor(Tester t) {
+    // initialize conditions
+    this.initConds();
+
+    // make two pixels
+    Pixel pixelAbove = new Pixel(Color.blue);
+    Pixel pixelBelow = new Pixel(Color.red);
+
+    // make sure they are not connected currently
+    t.checkExpect(pixelAbove.bottom, new BorderPixel());
+    t.checkExpect(pixelBelow.top, new BorderPixel());
+
+    // set neighbors
+    pixelAbove.setNeighbor(pixelBelow, 2);
+
+    // make sure they are connected
+    t.checkExpect(pixelAbove.bottom, pixelBelow);
+    t.checkExpect(pixelBelow.top, pixelAbove);
+
+    // other side of ternary operator:
+    // make two pixels
+    // initialize conditions
+    this.initConds();
+    pixelAbove = new Pixel(Color.blue);
+    pixelBelow = new Pixel(Color.red);
+
+    // make sure they are not connected currently
+    t.checkExpect(pixelAbove.bottom, new BorderPixel());
+    t.checkExpect(pixelBelow.top, new BorderPixel());
+
+    // set neighbors
+    pixelBelow.setNeighbor(pixelAbove, 0);
+
+    // make sure they are connected
+    t.checkExpect(pixelAbove.bottom, pixelBelow);
+    t.checkExpect(pixelBelow.top, pixelAbove);
+
+    // exception testing
+    t.checkException(new RuntimeException("Direciton should be between 0 and 3!"), pixelBelow,
+        "setNeighbor", pixelAbove, -1);
+    t.checkException(new RuntimeException("Direciton should be between 0 and 3!"), pixelBelow,
+        "setNeighbor", pixelAbove, 4);
+
+  }
+
+  void testGetPixelAt(Tester t) {
+    // initialize conditions
+    this.initConds();
+
+    // test get pixel for same pixel
+    t.checkExpect(this.grid2.rootPixel.getPixelAt(0, 0), this.grid2.rootPixel);
+
+    // test get pixel on edges
+    t.checkExpect(this.grid2.rootPixel.getPixelAt(1, 0), this.grid2.rootPixel.getBottom());
+    t.checkExpect(this.grid2.rootPixel.getPixelAt(0, 1), this.grid2.rootPixel.getRight());
+
+    // test pixel not on edge
+    t.checkExpect(this.grid2.rootPixel.getPixelAt(1, 1),
+        this.grid2.rootPixel.getBottom().getRight());
+
+    // test asymmetric, not on edge, input
+    t.checkExpect(this.grid2.rootPixel.getPixelAt(3, 2),
+        this.grid2.rootPixel.getBottom().getBottom().getBottom().getRight().getRight());
+
+    // test out of bounds
+    t.checkException(new RuntimeException("Index out of bounds exception for getPixelAt!"),
+        this.grid2.rootPixel, "getPixelAt", 3, 4);
+  }
+
+  void testSeamFinder(Tester t) {
+    // initialize conditions
+    this.initConds();
+
+    // initialize weights, and the result seam
+    double weight1 = this.grid2.rootPixel.getPixelAt(0, 2).energy();
+    double weight2 = this.grid2.rootPixel.getPixelAt(1, 1).energy() + weight1;
+    double weight3 = this.grid2.rootPixel.getPixelAt(2, 1).energy() + weight2;
+    double weight4 = this.grid2.rootPixel.getPixelAt(3, 0).energy() + weight3;
+
+    SeamInfo resultSeam = new SeamInfo(this.grid2.rootPixel.getPixelAt(3, 0), weight4,
+        new SeamInfo(this.grid2.rootPixel.getPixelAt(2, 1), weight3,
+            new SeamInfo(this.grid2.rootPixel.getPixelAt(1, 1), weight2,
+                new SeamInfo(this.grid2.rootPixel.getPixelAt(0, 2), weight1, null))));
+
+    // make sure finding lowest seam returns correct result
+    t.checkExpect(this.grid2.findLowestSeamVertical(), resultSeam);
+
+    // initialize weights, and the result seam
+    weight1 = this.grid2.rootPixel.getPixelAt(2, 0).energy();
+    weight2 = this.grid2.rootPixel.getPixelAt(1, 1).energy() + weight1;
+    weight3 = this.grid2.rootPixel.getPixelAt(1, 2).energy() + weight2;
+    weight4 = this.grid2.rootPixel.getPixelAt(0, 3).energy() + weight3;
+
+    resultSeam = new SeamInfo(this.grid2.rootPixel.getPixelAt(0, 3), weight4,
+        new SeamInfo(this.grid2.rootPixel.getPixelAt(1, 2), weight3,
+            new SeamInfo(this.grid2.rootPixel.getPixelAt(1, 1), weight2,
+                new SeamInfo(this.grid2.rootPixel.getPixelAt(2, 0), weight1, null))));
+
+    // make sure finding lowest seam returns correct result
+    t.checkExpect(this.grid2.findLowestSeamHorizontal(), resultSeam);
+
+  }
+
+  void testMakeScene(Tester t) {
+    // initialize conditions
+    this.initConds();
+
+    WorldScene w = new WorldScene(1000, 1000);
+    w.placeImageXY(this.grid.makeImage(false), 500, 500);
+
+    t.checkExpect(this.ie.makeScene(), w);
+
+    // initialize conditions
+    this.initConds();
+
+    this.ie.grayScaleOffEnergy = true;
+
+    w = new WorldScene(1000, 1000);
+    w.placeImageXY(this.grid.makeImage(true), 500, 500);
+
+    t.checkExpect(this.ie.makeScene(), w);
+  }
+
+  void testMakeImage(Tester t) {
+    // initialize conditions
+    this.initConds();
+
+    // mutate img
+    ComputedPixelImage img = new ComputedPixelImage(4, 4);
+    this.grid2.makeImageRow(this.grid2.rootPixel, img, 4, 0, true, this.grid2.getMaxEnergy());
+    this.grid2.makeImageRow(this.grid2.rootPixel.getBottom(), img, 4, 1, true,
+        this.grid2.getMaxEnergy());
+    this.grid2.makeImageRow(this.grid2.rootPixel.getBottom().getBottom(), img, 4, 2, true,
+        this.grid2.getMaxEnergy());
+    this.grid2.makeImageRow(this.grid2.rootPixel.getBottom().getBottom().getBottom(), img, 4, 3,
+        true, this.grid2.getMaxEnergy());
+
+    t.checkExpect(this.grid2.makeImage(true), img);
 
-    // other side of ternary operator:
-    // make two pixels
     // initialize conditions
     this.initConds();
-    pixelAbove = new Pixel(Color.blue);
-    pixelBelow = new Pixel(Color.red);
 
-    // make sure they are not connected currently
-    t.checkExpect(pixelAbove.bottom, new BorderPixel());
-    t.checkExpect(pixelBelow.top, new BorderPixel());
+    // mutate img
+    img = new ComputedPixelImage(4, 4);
+    this.grid2.makeImageRow(this.grid2.rootPixel, img, 4, 0, false, this.grid2.getMaxEnergy());
+    this.grid2.makeImageRow(this.grid2.rootPixel.getBottom(), img, 4, 1, false,
+        this.grid2.getMaxEnergy());
+    this.grid2.makeImageRow(this.grid2.rootPixel.getBottom().getBottom(), img, 4, 2, false,
+        this.grid2.getMaxEnergy());
+    this.grid2.makeImageRow(this.grid2.rootPixel.getBottom().getBottom().getBottom(), img, 4, 3,
+        false, this.grid2.getMaxEnergy());
 
-    // set neighbors
-    pixelBelow.setNeighbor(pixelAbove, 0);
+    t.checkExpect(this.grid2.makeImage(false), img);
+  }
 
-    // make sure they are connected
-    t.checkExpect(pixelAbove.bottom, pixelBelow);
-    t.checkExpect(pixelBelow.top, pixelAbove);
+  void testMakeImageRow(Tester t) {
+    // initialize conditions
+    this.initConds();
 
-    // exception testing
-    t.checkException(new RuntimeException("Direciton should be between 0 and 3!"), pixelBelow,
-        "setNeighbor", pixelAbove, -1);
-    t.checkException(new RuntimeException("Direciton should be between 0 and 3!"), pixelBelow,
-        "setNeighbor", pixelAbove, 4);
+    ComputedPixelImage img = new ComputedPixelImage(4, 4);
 
-  }
+    // no grayscale case
 
-  void testGetPixelAt(Tester t) {
+    // check if there is no pixels in there so far
+    t.checkExpect(img.getPixel(0, 1), new Color(0, 0, 0, 0));
+    t.checkExpect(img.getPixel(1, 1), new Color(0, 0, 0, 0));
+    t.checkExpect(img.getPixel(2, 1), new Color(0, 0, 0, 0));
+    t.checkExpect(img.getPixel(3, 1), new Color(0, 0, 0, 0));
+
+    // update them
+    this.grid2.makeImageRow(this.grid2.rootPixel.getBottom(), img, 4, 1, false, 0);
+
+    // check if the pixels now refer to grid2 pixels
+    t.checkExpect(img.getPixel(0, 1), new Color(161, 23, 140));
+    t.checkExpect(img.getPixel(1, 1), new Color(38, 157, 231));
+    t.checkExpect(img.getPixel(2, 1), new Color(38, 157, 231));
+    t.checkExpect(img.getPixel(3, 1), new Color(38, 231, 38));
+
+    // gray scale case
     // initialize conditions
     this.initConds();
 
-    // test get pixel for same pixel
-    t.checkExpect(this.grid2.rootPixel.getPixelAt(0, 0), this.grid2.rootPixel);
-
-    // test get pixel on edges
-    t.checkExpect(this.grid2.rootPixel.getPixelAt(1, 0), this.grid2.rootPixel.getBottom());
-    t.checkExpect(this.grid2.rootPixel.getPixelAt(0, 1), this.grid2.rootPixel.getRight());
+    img = new ComputedPixelImage(4, 4);
 
-    // test pixel not on edge
-    t.checkExpect(this.grid2.rootPixel.getPixelAt(1, 1),
-        this.grid2.rootPixel.getBottom().getRight());
+    // check if there is no pixels in there so far
+    t.checkExpect(img.getPixel(0, 1), new Color(0, 0, 0, 0));
+    t.checkExpect(img.getPixel(1, 1), new Color(0, 0, 0, 0));
+    t.checkExpect(img.getPixel(2, 1), new Color(0, 0, 0, 0));
+    t.checkExpect(img.getPixel(3, 1), new Color(0, 0, 0, 0));
 
-    // test asymmetric, not on edge, input
-    t.checkExpect(this.grid2.rootPixel.getPixelAt(3, 2),
-        this.grid2.rootPixel.getBottom().getBottom().getBottom().getRight().getRight());
+    // update them
+    this.grid2.makeImageRow(this.grid2.rootPixel.getBottom(), img, 4, 1, true, 5);
 
-    // test out of bounds
-    t.checkException(new RuntimeException("Index out of bounds exception for getPixelAt!"),
-        this.grid2.rootPixel, "getPixelAt", 3, 4);
+    // check if the pixels now refer to grid2 pixels
+    t.checkExpect(img.getPixel(0, 1), new Color(123, 123, 123));
+    t.checkExpect(img.getPixel(1, 1), new Color(20, 20, 20));
+    t.checkExpect(img.getPixel(2, 1), new Color(58, 58, 58));
+    t.checkExpect(img.getPixel(3, 1), new Color(96, 96, 96));
   }
 
-  void testSeamFinder(Tester t) {
+  void testOnTick(Tester t) {
     // initialize conditions
     this.initConds();
 
-    // initialize weights, and the result seam
-    double weight1 = this.grid2.rootPixel.getPixelAt(0, 2).energy();
-    double weight2 = this.grid2.rootPixel.getPixelAt(1, 1).energy() + weight1;
-    double weight3 = this.grid2.rootPixel.getPixelAt(2, 1).energy() + weight2;
-    double weight4 = this.grid2.rootPixel.getPixelAt(3, 0).energy() + weight3;
+    // make sure ie refers to ie2 copy
+    t.checkExpect(this.ie2, this.ie2Copy);
 
-    SeamInfo resultSeam = new SeamInfo(this.grid2.rootPixel.getPixelAt(3, 0), weight4,
-        new SeamInfo(this.grid2.rootPixel.getPixelAt(2, 1), weight3,
-            new SeamInfo(this.grid2.rootPixel.getPixelAt(1, 1), weight2,
-                new SeamInfo(this.grid2.rootPixel.getPixelAt(0, 2), weight1, null))));
+    // test paused behavior:
+    this.ie2.paused = true;
+    this.ie2Copy.paused = true;
 
-    // make sure finding lowest seam returns correct result
-    t.checkExpect(this.grid2.findLowestSeamVertical(), resultSeam);
+    // tick
+    this.ie2.onTick();
 
-    // initialize weights, and the result seam
-    weight1 = this.grid2.rootPixel.getPixelAt(2, 0).energy();
-    weight2 = this.grid2.rootPixel.getPixelAt(1, 1).energy() + weight1;
-    weight3 = this.grid2.rootPixel.getPixelAt(1, 2).energy() + weight2;
-    weight4 = this.grid2.rootPixel.getPixelAt(0, 3).energy() + weight3;
+    // make sure ie refers to ie2 copy
+    t.checkExpect(this.ie2, this.ie2Copy);
 
-    resultSeam = new SeamInfo(this.grid2.rootPixel.getPixelAt(0, 3), weight4,
-        new SeamInfo(this.grid2.rootPixel.getPixelAt(1, 2), weight3,
-            new SeamInfo(this.grid2.rootPixel.getPixelAt(1, 1), weight2,
-                new SeamInfo(this.grid2.rootPixel.getPixelAt(2, 0), weight1, null))));
+    // test when img too small
+    this.initConds();
+
+    // make img small
+    this.grid2.removeSeamHorizontal(false);
+    this.grid2.removeSeamHorizontal(false);
+
+    this.grid2Copy.removeSeamHorizontal(false);
+    this.grid2Copy.removeSeamHorizontal(false);
+
+    // tick
+    this.ie2.onTick();
+
+    // make sure ontick didnt change anything
+    t.checkExpect(this.ie2, this.ie2Copy);
+
+    this.initConds();
+
+    // make editor start reversing
+    this.ie2.inflating = true;
+    this.ie2Copy.inflating = true;
+
+    // no history of seams, should do nothing when inflating
+    this.ie2.onTick();
+
+    t.checkExpect(this.ie2, this.ie2Copy);
+
+    // remove seams and add to history
+    this.ie2.seamHistory.push(this.grid2.compactSeam(this.grid2.findLowestSeamHorizontal(), false));
+    this.grid2.removeSeamHorizontal(false);
+
+    // tick, should reinsert the removed seams
+    this.ie2.onTick();
+
+    t.checkExpect(this.ie2, this.ie2Copy);
+
+    this.initConds();
+
+    // make editor start reversing
+    this.ie2.inflating = true;
+    this.ie2Copy.inflating = true;
+
+    // no history of seams, should do nothing when inflating
+    this.ie2.onTick();
+
+    t.checkExpect(this.ie2, this.ie2Copy);
+
+    // remove seams and add to history
+    this.ie2.seamHistory.push(this.grid2.compactSeam(this.grid2.findLowestSeamHorizontal(), false));
+    this.grid2.removeSeamHorizontal(false);
+
+    this.ie2.seamHistory.push(this.grid2.compactSeam(this.grid2.findLowestSeamVertical(), true));
+    this.grid2.removeSeamVertical(false);
+
+    // tick, should reinsert the removed seams
+    this.ie2.onTick();
+    this.ie2.onTick();
+
+    t.checkExpect(this.ie2, this.ie2Copy);
+
+    this.initConds();
+
+    // test drawing redline
+    this.ie2.onTick();
+
+    // update copy to match
+
+    if (this.ie2Copy.rand.nextInt(2) == 1) {
+      this.ie2Copy.removeVertical = true;
+      this.ie2Copy.grid.removeSeamVertical(true);
+    }
+    else {
+      this.ie2Copy.removeVertical = false;
+      this.ie2Copy.grid.removeSeamHorizontal(true);
+    }
+
+    this.ie2Copy.removeSeam = true;
+
+    t.checkExpect(this.ie2, this.ie2Copy);
+
+    this.initConds();
+
+    // test remove horizontal override
+    this.ie2.removeHorizontalOverride = true;
+    this.ie2.removeSeam = false;
+
+    // tick
+    this.ie2.onTick();
+
+    // update copy to match
+    this.ie2Copy.seamHistory
+        .push(this.ie2Copy.grid.compactSeam(this.ie2Copy.grid.findLowestSeamHorizontal(), false));
+    this.ie2Copy.grid.removeSeamHorizontal(false);
+
+    this.ie2Copy.removeVerticalOverride = false;
+    this.ie2Copy.removeHorizontalOverride = false;
+
+    // check if ontick behaves as expected
+    t.checkExpect(this.ie2, this.ie2Copy);
+
+    this.initConds();
+
+    // test remove vertical override
+    this.ie2.removeVerticalOverride = true;
+    this.ie2.removeSeam = false;
+
+    // tick
+    this.ie2.onTick();
+
+    // update copy to match
+    this.ie2Copy.seamHistory
+        .push(this.ie2Copy.grid.compactSeam(this.ie2Copy.grid.findLowestSeamVertical(), true));
+    this.ie2Copy.grid.removeSeamVertical(false);
+
+    this.ie2Copy.removeVerticalOverride = false;
+    this.ie2Copy.removeHorizontalOverride = false;
+
+    // check if ontick behaves as expected
+    t.checkExpect(this.ie2, this.ie2Copy);
+
+    this.initConds();
+
+    // test remove vertical normal behavior
+    this.ie2.removeSeam = true;
+    this.ie2.removeVertical = true;
+
+    // tick
+    this.ie2.onTick();
+
+    // update copy to match
+    this.ie2Copy.seamHistory
+        .push(this.ie2Copy.grid.compactSeam(this.ie2Copy.grid.findLowestSeamVertical(), true));
+    this.ie2Copy.grid.removeSeamVertical(false);
+
+    // check if ontick behaves as expected
+    t.checkExpect(this.ie2, this.ie2Copy);
+
+  }
+
+  void testRemoveInRow(Tester t) {
+    // initialize conditions
+    this.initConds();
+
+    // check that grid refers to original state (copy)
+    t.checkExpect(this.grid2, this.grid2Copy);
+
+    // get the lowest seam
+    SeamInfo seam = this.grid2.findLowestSeamVertical();
 
-    // make sure finding lowest seam returns correct result
-    t.checkExpect(this.grid2.findLowestSeamHorizontal(), resultSeam);
+    // remove the row based on the seam
+    seam.removeInRow(true);
 
-  }
+    // check that the color is red
+    t.checkExpect(this.grid2.rootPixel.getPixelAt(3, 0).maskedColor, true);
+
+    // check if also returns null
+    t.checkExpect(seam.removeInRow(true), null);
 
-  void testMakeScene(Tester t) {
     // initialize conditions
     this.initConds();
+    seam = this.grid2.findLowestSeamVertical();
 
-    WorldScene w = new WorldScene(1000, 1000);
-    w.placeImageXY(this.grid.makeImage(false), 500, 500);
+    // remove the row based on the seam
+    seam.removeInRow(false);
 
-    t.checkExpect(this.ie.makeScene(), w);
+    // check if the pixel was properly removed
+    t.checkExpect(this.grid2.rootPixel.getPixelAt(3, 0).color,
+        this.grid2Copy.rootPixel.getPixelAt(3, 1).color);
+
+    this.initConds();
+    seam = this.grid2.findLowestSeamVertical();
+
+    // check if also returns null
+    t.checkExpect(seam.removeInRow(false), null);
 
     // initialize conditions
     this.initConds();
+    this.grid2.removeSeamVertical(false);
+    seam = this.grid2.findLowestSeamVertical();
 
-    this.ie.grayScaleOffEnergy = true;
+    // remove the row based on the seam
+    seam.removeInRow(false);
 
-    w = new WorldScene(1000, 1000);
-    w.placeImageXY(this.grid.makeImage(true), 500, 500);
+    // check if the pixel was properly removed
+    t.checkExpect(this.grid2.rootPixel.getPixelAt(2, 1).color, new Color(38, 157, 231));
 
-    t.checkExpect(this.ie.makeScene(), w);
-  }
+    seam = this.grid2.findLowestSeamVertical();
+
+    // remove the row based on the seam
+    seam.removeInRow(false);
+
+    // check if the pixel was properly removed
+    t.checkExpect(this.grid2.rootPixel.getPixelAt(1, 1).color, new Color(38, 157, 231));
 
-  void testMakeImage(Tester t) {
-    // initialize conditions
     this.initConds();
 
-    // mutate img
-    ComputedPixelImage img = new ComputedPixelImage(4, 4);
-    this.grid2.makeImageRow(this.grid2.rootPixel, img, 4, 0, true, this.grid2.getMaxEnergy());
-    this.grid2.makeImageRow(this.grid2.rootPixel.getBottom(), img, 4, 1, true,
-        this.grid2.getMaxEnergy());
-    this.grid2.makeImageRow(this.grid2.rootPixel.getBottom().getBottom(), img, 4, 2, true,
-        this.grid2.getMaxEnergy());
-    this.grid2.makeImageRow(this.grid2.rootPixel.getBottom().getBottom().getBottom(), img, 4, 3,
-        true, this.grid2.getMaxEnergy());
+    // remove two seams in vertical direction
+    this.grid2.removeSeamVertical(false);
+    this.grid2.removeSeamVertical(false);
+    seam = this.grid2.findLowestSeamVertical();
+    // remove the row based on the seam
+    seam.removeInRow(false);
 
-    t.checkExpect(this.grid2.makeImage(true), img);
+    // check if the pixel was properly removed
+    t.checkExpect(this.grid2.rootPixel.getPixelAt(0, 1).color, new Color(38, 231, 38));
 
-    // initialize conditions
-    this.initConds();
+    // check if can mutate the rootpixel's reference
+    Pixel rootPixel = new Pixel(new Color(0, 0, 1));
+    Pixel rightPixel = new Pixel(new Color(1, 0, 0));
+    rootPixel.setNeighbor(rightPixel, 1);
+    t.checkExpect(new SeamInfo(rootPixel, 1, null).removeInRow(false), rightPixel);
 
-    // mutate img
-    img = new ComputedPixelImage(4, 4);
-    this.grid2.makeImageRow(this.grid2.rootPixel, img, 4, 0, false, this.grid2.getMaxEnergy());
-    this.grid2.makeImageRow(this.grid2.rootPixel.getBottom(), img, 4, 1, false,
-        this.grid2.getMaxEnergy());
-    this.grid2.makeImageRow(this.grid2.rootPixel.getBottom().getBottom(), img, 4, 2, false,
-        this.grid2.getMaxEnergy());
-    this.grid2.makeImageRow(this.grid2.rootPixel.getBottom().getBottom().getBottom(), img, 4, 3,
-        false, this.grid2.getMaxEnergy());
+    // test well formedness exceptions
+    Pixel badPixel1 = new Pixel(new Color(0, 0, 1));
+    Pixel badPixel2 = new Pixel(new Color(1, 0, 0));
 
-    t.checkExpect(this.grid2.makeImage(false), img);
+    badPixel1.setNeighbor(badPixel2, 1);
+    badPixel2.changeNeighbor(new BorderPixel(), 3);
+    SeamInfo seamError = new SeamInfo(badPixel1, 1, null);
+
+    t.checkException(new RuntimeException("Row not well formed before removal!"), seamError,
+        "removeInRow", false);
   }
 
-  void testMakeImageRow(Tester t) {
+  void testRemoveInCol(Tester t) {
     // initialize conditions
     this.initConds();
 
-    ComputedPixelImage img = new ComputedPixelImage(4, 4);
+    // check that grid refers to original state (copy)
+    t.checkExpect(this.grid2, this.grid2Copy);
 
-    // no grayscale case
+    // get the lowest seam
+    SeamInfo seam = this.grid2.findLowestSeamHorizontal();
 
-    // check if there is no pixels in there so far
-    t.checkExpect(img.getPixel(0, 1), new Color(0, 0, 0, 0));
-    t.checkExpect(img.getPixel(1, 1), new Color(0, 0, 0, 0));
-    t.checkExpect(img.getPixel(2, 1), new Color(0, 0, 0, 0));
-    t.checkExpect(img.getPixel(3, 1), new Color(0, 0, 0, 0));
+    // remove the row based on the seam
+    seam.removeInCol(true);
 
-    // update them
-    this.grid2.makeImageRow(this.grid2.rootPixel.getBottom(), img, 4, 1, false, 0);
+    // check that the color is red
+    t.checkExpect(this.grid2.rootPixel.getPixelAt(0, 3).maskedColor, true);
 
-    // check if the pixels now refer to grid2 pixels
-    t.checkExpect(img.getPixel(0, 1), new Color(161, 23, 140));
-    t.checkExpect(img.getPixel(1, 1), new Color(38, 157, 231));
-    t.checkExpect(img.getPixel(2, 1), new Color(38, 157, 231));
-    t.checkExpect(img.getPixel(3, 1), new Color(38, 231, 38));
+    // check if also returns null
+    t.checkExpect(seam.removeInCol(true), null);
 
-    // gray scale case
     // initialize conditions
     this.initConds();
+    seam = this.grid2.findLowestSeamHorizontal();
 
-    img = new ComputedPixelImage(4, 4);
+    // remove the row based on the seam
+    seam.removeInCol(false);
 
-    // check if there is no pixels in there so far
-    t.checkExpect(img.getPixel(0, 1), new Color(0, 0, 0, 0));
-    t.checkExpect(img.getPixel(1, 1), new Color(0, 0, 0, 0));
-    t.checkExpect(img.getPixel(2, 1), new Color(0, 0, 0, 0));
-    t.checkExpect(img.getPixel(3, 1), new Color(0, 0, 0, 0));
+    // check if the pixel was properly removed
+    t.checkExpect(this.grid2.rootPixel.getPixelAt(3, 0).color,
+        this.grid2Copy.rootPixel.getPixelAt(2, 1).color);
 
-    // update them
-    this.grid2.makeImageRow(this.grid2.rootPixel.getBottom(), img, 4, 1, true, 5);
+    this.initConds();
+    seam = this.grid2.findLowestSeamHorizontal();
 
-    // check if the pixels now refer to grid2 pixels
-    t.checkExpect(img.getPixel(0, 1), new Color(123, 123, 123));
-    t.checkExpect(img.getPixel(1, 1), new Color(20, 20, 20));
-    t.checkExpect(img.getPixel(2, 1), new Color(58, 58, 58));
-    t.checkExpect(img.getPixel(3, 1), new Color(96, 96, 96));
-  }
+    // check if also returns null
+    t.checkExpect(seam.removeInCol(false), null);
 
-  void testOnTick(Tester t) {
     // initialize conditions
     this.initConds();
+    this.grid2.removeSeamHorizontal(false);
+    seam = this.grid2.findLowestSeamHorizontal();
 
-    // make sure ie refers to ie2 copy
-    t.checkExpect(this.ie2, this.ie2Copy);
+    // remove the row based on the seam
+    seam.removeInCol(false);
 
-    // test paused behavior:
-    this.ie2.paused = true;
-    this.ie2Copy.paused = true;
+    // check if the pixel was properly removed
+    t.checkExpect(this.grid2.rootPixel.getPixelAt(2, 1).color, new Color(161, 23, 140));
 
-    // tick
-    this.ie2.onTick();
+    seam = this.grid2.findLowestSeamHorizontal();
 
-    // make sure ie refers to ie2 copy
-    t.checkExpect(this.ie2, this.ie2Copy);
+    // remove the row based on the seam
+    seam.removeInCol(false);
+
+    // check if the pixel was properly removed
+    t.checkExpect(this.grid2.rootPixel.getPixelAt(1, 1).color, new Color(38, 231, 38));
 
-    // test when img too small
     this.initConds();
 
-    // make img small
+    // remove two seams in horziontal direction
     this.grid2.removeSeamHorizontal(false);
     this.grid2.removeSeamHorizontal(false);
+    seam = this.grid2.findLowestSeamHorizontal();
+    // remove the row based on the seam
+    seam.removeInCol(false);
 
-    this.grid2Copy.removeSeamHorizontal(false);
-    this.grid2Copy.removeSeamHorizontal(false);
+    // check if the pixel was properly removed
+    t.checkExpect(this.grid2.rootPixel.getPixelAt(0, 1).color, new Color(38, 157, 231));
 
-    // tick
-    this.ie2.onTick();
+    // check if can mutate the rootpixel's reference
+    Pixel rootPixel = new Pixel(new Color(0, 0, 1));
+    Pixel bottomPixel = new Pixel(new Color(1, 0, 0));
+    rootPixel.setNeighbor(bottomPixel, 2);
+    t.checkExpect(new SeamInfo(rootPixel, 1, null).removeInCol(false), bottomPixel);
 
-    // make sure ontick didnt change anything
-    t.checkExpect(this.ie2, this.ie2Copy);
+    // test well formedness exceptions
+    Pixel badPixel1 = new Pixel(new Color(0, 0, 1));
+    Pixel badPixel2 = new Pixel(new Color(1, 0, 0));
+
+    badPixel1.setNeighbor(badPixel2, 2);
+    badPixel2.changeNeighbor(new BorderPixel(), 0);
+    SeamInfo seamError = new SeamInfo(badPixel1, 1, null);
+
+    t.checkException(new RuntimeException("Col not well formed before removal!"), seamError,
+        "removeInCol", false);
+  }
 
+  void testRemoveSeam(Tester t) {
+    // initialize conditions
     this.initConds();
 
-    // make editor start reversing
-    this.ie2.inflating = true;
-    this.ie2Copy.inflating = true;
+    // make sure grid refers to its original state (copy)
+    t.checkExpect(this.grid2, this.grid2Copy);
 
-    // no history of seams, should do nothing when inflating
-    this.ie2.onTick();
+    // remove the seam
+    this.grid2.removeSeamVertical(false);
 
-    t.checkExpect(this.ie2, this.ie2Copy);
+    // update grid2Copy to match
+    SeamInfo lowestSeam = this.grid2Copy.findLowestSeamVertical();
+    this.grid2Copy.removeSeamVerticalHelp(lowestSeam, false);
 
-    // remove seams and add to history
-    this.ie2.seamHistory.add(this.grid2.findLowestSeamHorizontal());
+    // grid 2 should still refer to its copy
+    t.checkExpect(this.grid2, this.grid2Copy);
+
+    this.initConds();
+
+    // make sure grid refers to its original state (copy)
+    t.checkExpect(this.grid2, this.grid2Copy);
+
+    // remove the seam
     this.grid2.removeSeamHorizontal(false);
 
-    // tick, should reinsert the removed seams
-    this.ie2.onTick();
+    // update grid2Copy to match
+    lowestSeam = this.grid2Copy.findLowestSeamHorizontal();
+    this.grid2Copy.removeSeamHorizontalHelp(lowestSeam, false);
 
-    t.checkExpect(this.ie2, this.ie2Copy);
+    // grid 2 should still refer to its copy
+    t.checkExpect(this.grid2, this.grid2Copy);
 
+    // initialize conditions
     this.initConds();
 
-    // make editor start reversing
-    this.ie2.inflating = true;
-    this.ie2Copy.inflating = true;
+    // make sure grid refers to its original state (copy)
+    t.checkExpect(this.grid2, this.grid2Copy);
 
-    // no history of seams, should do nothing when inflating
-    this.ie2.onTick();
+    // remove the seam
+    this.grid2.removeSeamVertical(true);
 
-    t.checkExpect(this.ie2, this.ie2Copy);
+    // update grid2Copy to match
+    lowestSeam = this.grid2Copy.findLowestSeamVertical();
+    this.grid2Copy.removeSeamVerticalHelp(lowestSeam, true);
 
-    // remove seams and add to history
-    this.ie2.seamHistory.add(this.grid2.findLowestSeamHorizontal());
-    this.grid2.removeSeamHorizontal(false);
+    // grid 2 should still refer to its copy
+    t.checkExpect(this.grid2, this.grid2Copy);
+
+    // initialize conditions
+    this.initConds();
+
+    // make sure grid refers to its original state (copy)
+    t.checkExpect(this.grid2, this.grid2Copy);
+
+    // remove the seam
+    this.grid2.removeSeamHorizontal(true);
+
+    // update grid2Copy to match
+    lowestSeam = this.grid2Copy.findLowestSeamHorizontal();
+    this.grid2Copy.removeSeamHorizontalHelp(lowestSeam, true);
 
-    this.ie2.seamHistory.add(this.grid2.findLowestSeamVertical());
-    this.grid2.removeSeamVertical(false);
+    // grid 2 should still refer to its copy
+    t.checkExpect(this.grid2, this.grid2Copy);
+  }
 
-    // tick, should reinsert the removed seams
-    this.ie2.onTick();
-    this.ie2.onTick();
+  void testRemoveSeamHelp(Tester t) {
+    // initialize conditions
+    this.initConds();
 
-    t.checkExpect(this.ie2, this.ie2Copy);
+    // make sure grid refers to its original state (copy)
+    t.checkExpect(this.grid2, this.grid2Copy);
 
-    this.initConds();
+    this.grid2.removeSeamVerticalHelp(null, false);
 
-    // test drawing redline
-    this.ie2.onTick();
+    // grid 2 should still refer to its copy
+    t.checkExpect(this.grid2, this.grid2Copy);
 
-    // update copy to match
+    // initialize conditions
+    this.initConds();
 
-    if (this.ie2Copy.rand.nextInt(2) == 1) {
-      this.ie2Copy.removeVertical = true;
-      this.ie2Copy.grid.removeSeamVertical(true);
-    }
-    else {
-      this.ie2Copy.removeVertical = false;
-      this.ie2Copy.grid.removeSeamHorizontal(true);
-    }
+    // make sure grid refers to its original state (copy)
+    t.checkExpect(this.grid2, this.grid2Copy);
 
-    this.ie2Copy.removeSeam = true;
+    this.grid2.removeSeamHorizontalHelp(null, false);
 
-    t.checkExpect(this.ie2, this.ie2Copy);
+    // grid 2 should still refer to its copy
+    t.checkExpect(this.grid2, this.grid2Copy);
 
+    // initialize conditions
     this.initConds();
 
-    // test remove horizontal override
-    this.ie2.removeHorizontalOverride = true;
-    this.ie2.removeSeam = false;
+    // make sure grid refers to its original state (copy)
+    t.checkExpect(this.grid2, this.grid2Copy);
 
-    // tick
-    this.ie2.onTick();
+    // remove the seam
+    this.grid2.removeSeamVerticalHelp(this.grid2.findLowestSeamVertical(), true);
 
     // update copy to match
-    this.ie2Copy.seamHistory.add(this.ie2Copy.grid.findLowestSeamHorizontal());
-    this.ie2Copy.grid.removeSeamHorizontal(false);
-
-    this.ie2Copy.removeVerticalOverride = false;
-    this.ie2Copy.removeHorizontalOverride = false;
+    SeamInfo seam = this.grid2Copy.findLowestSeamVertical();
+    seam.removeInRow(true);
+    this.grid2Copy.removeSeamVerticalHelp(seam.cameFrom, true);
 
-    // check if ontick behaves as expected
-    t.checkExpect(this.ie2, this.ie2Copy);
+    // make sure grid refers to its original state (copy)
+    t.checkExpect(this.grid2, this.grid2Copy);
 
+    // initialize conditions
     this.initConds();
 
-    // test remove vertical override
-    this.ie2.removeVerticalOverride = true;
-    this.ie2.removeSeam = false;
+    // make sure grid refers to its original state (copy)
+    t.checkExpect(this.grid2, this.grid2Copy);
 
-    // tick
-    this.ie2.onTick();
+    // remove the seam
+    this.grid2.removeSeamHorizontalHelp(this.grid2.findLowestSeamHorizontal(), true);
 
     // update copy to match
-    this.ie2Copy.seamHistory.add(this.ie2Copy.grid.findLowestSeamVertical());
-    this.ie2Copy.grid.removeSeamVertical(false);
-
-    this.ie2Copy.removeVerticalOverride = false;
-    this.ie2Copy.removeHorizontalOverride = false;
+    seam = this.grid2Copy.findLowestSeamHorizontal();
+    seam.removeInCol(true);
+    this.grid2Copy.removeSeamHorizontalHelp(seam.cameFrom, true);
 
-    // check if ontick behaves as expected
-    t.checkExpect(this.ie2, this.ie2Copy);
+    // make sure grid refers to its original state (copy)
+    t.checkExpect(this.grid2, this.grid2Copy);
+  }
 
+  void testFindMinSeamEnergy(Tester t) {
+    // initialize conditions
     this.initConds();
 
-    // test remove vertical normal behavior
-    this.ie2.removeSeam = true;
-    this.ie2.removeVertical = true;
+    ArrayList<SeamInfo> seams = new ArrayList<>();
+    seams.add(new SeamInfo(null, 10, null));
+    seams.add(new SeamInfo(null, 1, null));
+    seams.add(new SeamInfo(null, 5, null));
+    t.checkExpect(this.grid2.findMinSeamEnergy(seams), seams.get(1));
+  }
 
-    // tick
-    this.ie2.onTick();
+  void testGetColor(Tester t) {
+    // initialize conditions
+    this.initConds();
 
-    // update copy to match
-    this.ie2Copy.seamHistory.add(this.ie2Copy.grid.findLowestSeamVertical());
-    this.ie2Copy.grid.removeSeamVertical(false);
+    t.checkExpect(this.grid2.rootPixel.getColor(), this.grid2.rootPixel.color);
+    t.checkException(new RuntimeException("Border pixel has no color!"), new BorderPixel(),
+        "getColor");
 
-    // check if ontick behaves as expected
-    t.checkExpect(this.ie2, this.ie2Copy);
+    this.grid2.rootPixel.maskedColor = true;
+    t.checkExpect(this.grid2.rootPixel.getColor(), Color.red);
 
   }
 
-  void testRemoveInRow(Tester t) {
+  void testIsBorder(Tester t) {
     // initialize conditions
     this.initConds();
 
-    // check that grid refers to original state (copy)
-    t.checkExpect(this.grid2, this.grid2Copy);
-
-    // get the lowest seam
-    SeamInfo seam = this.grid2.findLowestSeamVertical();
+    t.checkExpect(this.grid2.rootPixel.isBorder(), false);
+    t.checkExpect(this.grid2.rootPixel.getLeft().isBorder(), true);
+  }
 
-    // remove the row based on the seam
-    seam.removeInRow(true);
+  void testRowAndColCount(Tester t) {
+    // initialize conditions
+    this.initConds();
 
-    // check that the color is red
-    t.checkExpect(this.grid2.rootPixel.getPixelAt(3, 0).maskedColor, true);
+    t.checkExpect(this.grid.rootPixel.rowCount(), 343);
+    t.checkExpect(this.grid.rootPixel.colCount(), 800);
 
-    // check if also returns null
-    t.checkExpect(seam.removeInRow(true), null);
+  }
 
+  void testConstructPixelRow(Tester t) {
     // initialize conditions
     this.initConds();
-    seam = this.grid2.findLowestSeamVertical();
 
-    // remove the row based on the seam
-    seam.removeInRow(false);
+    ArrayList<Pixel> pixels = new ArrayList<>();
+    pixels.add(this.grid2.rootPixel);
+    pixels.add((Pixel) this.grid2.rootPixel.getRight());
+    pixels.add((Pixel) this.grid2.rootPixel.getRight().getRight());
+    pixels.add((Pixel) this.grid2.rootPixel.getRight().getRight().getRight());
 
-    // check if the pixel was properly removed
-    t.checkExpect(this.grid2.rootPixel.getPixelAt(3, 0).color,
-        this.grid2Copy.rootPixel.getPixelAt(3, 1).color);
+    t.checkExpect(this.grid2.rootPixel.constructPixelRow(), pixels);
+    t.checkExpect(this.grid2.rootPixel.constructPixelRowHelp(new ArrayList<>()), pixels);
+  }
 
+  void testConstructPixelCol(Tester t) {
+    // initialize conditions
     this.initConds();
-    seam = this.grid2.findLowestSeamVertical();
 
-    // check if also returns null
-    t.checkExpect(seam.removeInRow(false), null);
+    ArrayList<Pixel> pixels = new ArrayList<>();
+    pixels.add(this.grid2.rootPixel);
+    pixels.add((Pixel) this.grid2.rootPixel.getBottom());
+    pixels.add((Pixel) this.grid2.rootPixel.getBottom().getBottom());
+    pixels.add((Pixel) this.grid2.rootPixel.getBottom().getBottom().getBottom());
+
+    t.checkExpect(this.grid2.rootPixel.constructPixelCol(), pixels);
+    t.checkExpect(this.grid2.rootPixel.constructPixelColHelp(new ArrayList<>()), pixels);
+  }
 
+  void testGetPixel(Tester t) {
     // initialize conditions
     this.initConds();
-    this.grid2.removeSeamVertical(false);
-    seam = this.grid2.findLowestSeamVertical();
 
-    // remove the row based on the seam
-    seam.removeInRow(false);
-
-    // check if the pixel was properly removed
-    t.checkExpect(this.grid2.rootPixel.getPixelAt(2, 1).color, new Color(38, 157, 231));
+    t.checkExpect(this.grid2.rootPixel.getTop(), new BorderPixel());
+    t.checkExpect(this.grid2.rootPixel.getRight(), this.grid2.rootPixel.right);
+    t.checkExpect(this.grid2.rootPixel.getLeft(), new BorderPixel());
+    t.checkExpect(this.grid2.rootPixel.getBottom(), this.grid2.rootPixel.bottom);
+  }
 
-    seam = this.grid2.findLowestSeamVertical();
+  void testChangeNeighbor(Tester t) {
+    // initialize conditions
+    this.initConds();
 
-    // remove the row based on the seam
-    seam.removeInRow(false);
+    // check that grid refers to original state (copy)
+    t.checkExpect(this.grid2, this.grid2Copy);
 
-    // check if the pixel was properly removed
-    t.checkExpect(this.grid2.rootPixel.getPixelAt(1, 1).color, new Color(38, 157, 231));
+    this.grid2.rootPixel.changeNeighbor(new BorderPixel(), 0);
 
-    this.initConds();
+    // check that grid didnt change
+    t.checkExpect(this.grid2, this.grid2Copy);
 
-    // remove two seams in vertical direction
-    this.grid2.removeSeamVertical(false);
-    this.grid2.removeSeamVertical(false);
-    seam = this.grid2.findLowestSeamVertical();
-    // remove the row based on the seam
-    seam.removeInRow(false);
+    new BorderPixel().changeNeighbor(this.grid2.rootPixel, 0);
 
-    // check if the pixel was properly removed
-    t.checkExpect(this.grid2.rootPixel.getPixelAt(0, 1).color, new Color(38, 231, 38));
+    // check that grid didnt change
+    t.checkExpect(this.grid2, this.grid2Copy);
 
-    // check if can mutate the rootpixel's reference
-    Pixel rootPixel = new Pixel(new Color(0, 0, 1));
-    Pixel rightPixel = new Pixel(new Color(1, 0, 0));
-    rootPixel.setNeighbor(rightPixel, 1);
-    t.checkExpect(new SeamInfo(rootPixel, 1, null).removeInRow(false), rightPixel);
+    // check top reference
+    t.checkExpect(this.grid2.rootPixel.getBottom().getTop(), this.grid2.rootPixel);
 
-    // test well formedness exceptions
-    Pixel badPixel1 = new Pixel(new Color(0, 0, 1));
-    Pixel badPixel2 = new Pixel(new Color(1, 0, 0));
+    // update top reference
+    this.grid2.rootPixel.getBottom().changeNeighbor(this.grid2.rootPixel.getRight(), 0);
 
-    badPixel1.setNeighbor(badPixel2, 1);
-    badPixel2.changeNeighbor(new BorderPixel(), 3);
-    SeamInfo seamError = new SeamInfo(badPixel1, 1, null);
+    // check that grid refers to new pixel
+    t.checkExpect(this.grid2.rootPixel.getBottom().getTop(), this.grid2.rootPixel.getRight());
 
-    t.checkException(new RuntimeException("Row not well formed before removal!"), seamError,
-        "removeInRow", false);
   }
 
-  void testRemoveInCol(Tester t) {
-    // initialize conditions
+  boolean testGetMaximumRow(Tester t) {
     this.initConds();
+    return t.checkInexact(this.grid.rootPixel.getMaximumEnergyRow(this.grid.rootPixel.energy()),
+        3.408, 0.001)
+        && t.checkInexact(
+            this.grid.rootPixel.getBottom().getMaximumEnergyRow(this.grid.rootPixel.energy()),
+            1.985, 0.001);
 
-    // check that grid refers to original state (copy)
-    t.checkExpect(this.grid2, this.grid2Copy);
-
-    // get the lowest seam
-    SeamInfo seam = this.grid2.findLowestSeamHorizontal();
+  }
 
-    // remove the row based on the seam
-    seam.removeInCol(true);
+  boolean testGetMax(Tester t) {
+    this.initConds();
+    return t.checkInexact(this.grid.getMaxEnergy(), 3.828, 0.01);
+  }
 
-    // check that the color is red
-    t.checkExpect(this.grid2.rootPixel.getPixelAt(0, 3).maskedColor, true);
+  void testReinsertSeam(Tester t) {
+    this.initConds();
 
-    // check if also returns null
-    t.checkExpect(seam.removeInCol(true), null);
+    // store the removed seams
+    SeamInfo firstRemovedSeam = this.grid2.findLowestSeamVertical();
+    SeamInfo secondRemovedSeam = this.grid2.findLowestSeamHorizontal();
 
-    // initialize conditions
-    this.initConds();
-    seam = this.grid2.findLowestSeamHorizontal();
+    // remove one seam
+    this.grid2.removeSeamVertical(false);
 
-    // remove the row based on the seam
-    seam.removeInCol(false);
+    // confirm a removal
+    t.checkExpect(this.grid2, this.grid2Remove1Seam);
 
-    // check if the pixel was properly removed
-    t.checkExpect(this.grid2.rootPixel.getPixelAt(3, 0).color,
-        this.grid2Copy.rootPixel.getPixelAt(2, 1).color);
+    // reinsert seams
+    this.grid2.reinsertSeam(firstRemovedSeam);
+
+    // check no change
+    t.checkExpect(this.grid2, this.grid2Copy);
 
     this.initConds();
-    seam = this.grid2.findLowestSeamHorizontal();
 
-    // check if also returns null
-    t.checkExpect(seam.removeInCol(false), null);
+    // reinsert removed seams
+    this.grid2.reinsertSeam(secondRemovedSeam);
+    this.grid2.reinsertSeam(firstRemovedSeam);
+
+    // check no change
+    t.checkExpect(this.grid2, this.grid2Copy);
 
-    // initialize conditions
     this.initConds();
-    this.grid2.removeSeamHorizontal(false);
-    seam = this.grid2.findLowestSeamHorizontal();
 
-    // remove the row based on the seam
-    seam.removeInCol(false);
+    // should do nothing
+    this.grid2.reinsertSeam((SeamInfo) null);
 
-    // check if the pixel was properly removed
-    t.checkExpect(this.grid2.rootPixel.getPixelAt(2, 1).color, new Color(161, 23, 140));
+    // check if seam still refers to copy
+    t.checkExpect(this.grid2, this.grid2Copy);
 
-    seam = this.grid2.findLowestSeamHorizontal();
+    SeamInfo removedSeam = this.grid2.findLowestSeamHorizontal();
 
-    // remove the row based on the seam
-    seam.removeInCol(false);
+    // remove horizontal seam
+    this.grid2.removeSeamHorizontal(false);
 
-    // check if the pixel was properly removed
-    t.checkExpect(this.grid2.rootPixel.getPixelAt(1, 1).color, new Color(38, 231, 38));
+    // reinsert
+    this.grid2.reinsertSeam(removedSeam);
+
+    // check no change
+    t.checkExpect(this.grid2, this.grid2Copy);
+  }
 
+  void testReinsertSeamHelp(Tester t) {
     this.initConds();
 
-    // remove two seams in horziontal direction
-    this.grid2.removeSeamHorizontal(false);
+    // remove first hor seam
+    SeamInfo firstRemovedSeam = this.grid2.findLowestSeamHorizontal();
     this.grid2.removeSeamHorizontal(false);
-    seam = this.grid2.findLowestSeamHorizontal();
-    // remove the row based on the seam
-    seam.removeInCol(false);
 
-    // check if the pixel was properly removed
-    t.checkExpect(this.grid2.rootPixel.getPixelAt(0, 1).color, new Color(38, 157, 231));
+    // reinsert the seam
+    firstRemovedSeam.reinsertSeamHelp();
 
-    // check if can mutate the rootpixel's reference
-    Pixel rootPixel = new Pixel(new Color(0, 0, 1));
-    Pixel bottomPixel = new Pixel(new Color(1, 0, 0));
-    rootPixel.setNeighbor(bottomPixel, 2);
-    t.checkExpect(new SeamInfo(rootPixel, 1, null).removeInCol(false), bottomPixel);
+    // make sure all pixels are in the right spots
+    t.checkExpect(firstRemovedSeam.pixel.color, new Color(38, 231, 38));
+    t.checkExpect(firstRemovedSeam.cameFrom.pixel.color, new Color(38, 157, 231));
+    t.checkExpect(firstRemovedSeam.cameFrom.cameFrom.pixel.color, new Color(38, 157, 231));
+    t.checkExpect(firstRemovedSeam.cameFrom.cameFrom.cameFrom.pixel.color, new Color(0, 0, 0));
 
-    // test well formedness exceptions
-    Pixel badPixel1 = new Pixel(new Color(0, 0, 1));
-    Pixel badPixel2 = new Pixel(new Color(1, 0, 0));
+    // make sure returns null when root pixel not modified
+    t.checkExpect(firstRemovedSeam.reinsertSeamHelp(), null);
 
-    badPixel1.setNeighbor(badPixel2, 2);
-    badPixel2.changeNeighbor(new BorderPixel(), 0);
-    SeamInfo seamError = new SeamInfo(badPixel1, 1, null);
+    Pixel rootPixel = new Pixel(new Color(0, 1, 0));
 
-    t.checkException(new RuntimeException("Col not well formed before removal!"), seamError,
-        "removeInCol", false);
-  }
+    // make sure throws exception when not well formed
+    SeamInfo rootPixelReinsert = new SeamInfo(rootPixel, 1, null);
+    t.checkException(new RuntimeException("Row or col not well formed after reinsertion!"),
+        rootPixelReinsert, "reinsertSeamHelp");
 
-  void testRemoveSeam(Tester t) {
-    // initialize conditions
-    this.initConds();
+    // make sure changes node when a rootpixel is reinserted
+    Pixel oldRootPixel = new Pixel(new Color(1, 0, 0));
+    Pixel aboveOldRootPixel = new Pixel(new Color(1, 2, 3));
+    Pixel leftOldRootPixel = new Pixel(new Color(1, 2, 4));
+    Pixel rightOldRootPixel = new Pixel(new Color(1, 2, 3));
+    Pixel bottomOldRootPixel = new Pixel(new Color(1, 2, 4));
 
-    // make sure grid refers to its original state (copy)
-    t.checkExpect(this.grid2, this.grid2Copy);
+    rootPixel.setNeighbor(leftOldRootPixel, 2);
+    rootPixel.setNeighbor(aboveOldRootPixel, 1);
 
-    // remove the seam
-    this.grid2.removeSeamVertical(false);
+    oldRootPixel.setNeighbor(leftOldRootPixel, 3);
+    oldRootPixel.setNeighbor(aboveOldRootPixel, 0);
+    oldRootPixel.setNeighbor(rightOldRootPixel, 1);
+    oldRootPixel.setNeighbor(bottomOldRootPixel, 2);
 
-    // update grid2Copy to match
-    SeamInfo lowestSeam = this.grid2Copy.findLowestSeamVertical();
-    this.grid2Copy.removeSeamVerticalHelp(lowestSeam, false);
+    SeamInfo rootPixelReinsert2 = new SeamInfo(rootPixel, 1, new SeamInfo(oldRootPixel, 2, null));
+    t.checkExpect(rootPixelReinsert2.reinsertSeamHelp(), rootPixel);
 
-    // grid 2 should still refer to its copy
-    t.checkExpect(this.grid2, this.grid2Copy);
+  }
 
+  boolean testGetGridMaxEnergy(Tester t) {
     this.initConds();
+    return t.checkInexact(this.grid.getMaxEnergy(), 3.828, 0.01);
+  }
 
-    // make sure grid refers to its original state (copy)
-    t.checkExpect(this.grid2, this.grid2Copy);
-
-    // remove the seam
-    this.grid2.removeSeamHorizontal(false);
-
-    // update grid2Copy to match
-    lowestSeam = this.grid2Copy.findLowestSeamHorizontal();
-    this.grid2Copy.removeSeamHorizontalHelp(lowestSeam, false);
+  void testGetGrayScalePixelColor(Tester t) {
+    this.initConds();
+    double maxEnergy = this.grid.getMaxEnergy();
+    t.checkExpect(this.grid.rootPixel.getGrayScale(maxEnergy), new Color(106, 106, 106));
+    t.checkExpect(this.grid.rootPixel.getRight().getGrayScale(maxEnergy), new Color(100, 100, 100));
+    t.checkExpect(this.grid.rootPixel.getBottom().getGrayScale(maxEnergy),
+        new Color(100, 100, 100));
+    t.checkExpect(this.grid.rootPixel.getRight().getBottom().getGrayScale(maxEnergy),
+        new Color(0, 0, 0));
+    t.checkExpect(this.grid.rootPixel.getBottom().getRight().getGrayScale(maxEnergy),
+        new Color(0, 0, 0));
+    t.checkException(new RuntimeException("Border pixel has no energy!"), new BorderPixel(),
+        "getGrayScale", 1.0);
 
-    // grid 2 should still refer to its copy
-    t.checkExpect(this.grid2, this.grid2Copy);
+  }
 
+  void testOnKeyEvent(Tester t) {
     // initialize conditions
     this.initConds();
 
-    // make sure grid refers to its original state (copy)
-    t.checkExpect(this.grid2, this.grid2Copy);
+    // make sure that grid refers to its copy
+    t.checkExpect(this.ie2, this.ie2Copy);
 
-    // remove the seam
-    this.grid2.removeSeamVertical(true);
+    // test that when the img size is too small (only r will be processed)
+    this.grid2.removeSeamHorizontal(false);
+    this.grid2.removeSeamHorizontal(false);
 
-    // update grid2Copy to match
-    lowestSeam = this.grid2Copy.findLowestSeamVertical();
-    this.grid2Copy.removeSeamVerticalHelp(lowestSeam, true);
+    this.grid2Copy.removeSeamHorizontal(false);
+    this.grid2Copy.removeSeamHorizontal(false);
 
-    // grid 2 should still refer to its copy
-    t.checkExpect(this.grid2, this.grid2Copy);
+    // press a (random key)
+    this.ie2.onKeyEvent("a");
 
-    // initialize conditions
-    this.initConds();
+    // make sure grid didnt change
+    t.checkExpect(this.ie2, this.ie2Copy);
 
-    // make sure grid refers to its original state (copy)
-    t.checkExpect(this.grid2, this.grid2Copy);
+    // press h (remove hor)
+    this.ie2.onKeyEvent("h");
 
-    // remove the seam
-    this.grid2.removeSeamHorizontal(true);
+    // make sure grid didnt change
+    t.checkExpect(this.ie2, this.ie2Copy);
 
-    // update grid2Copy to match
-    lowestSeam = this.grid2Copy.findLowestSeamHorizontal();
-    this.grid2Copy.removeSeamHorizontalHelp(lowestSeam, true);
+    // press v (remove ver)
+    this.ie2.onKeyEvent("v");
 
-    // grid 2 should still refer to its copy
-    t.checkExpect(this.grid2, this.grid2Copy);
-  }
+    // make sure grid didnt change
+    t.checkExpect(this.ie2, this.ie2Copy);
 
-  void testRemoveSeamHelp(Tester t) {
-    // initialize conditions
-    this.initConds();
+    // press g (toggle grayscale)
+    this.ie2.onKeyEvent("g");
 
-    // make sure grid refers to its original state (copy)
-    t.checkExpect(this.grid2, this.grid2Copy);
+    // make sure grid didnt change
+    t.checkExpect(this.ie2, this.ie2Copy);
 
-    this.grid2.removeSeamVerticalHelp(null, false);
+    // press space (toggle pause)
+    this.ie2.onKeyEvent(" ");
 
-    // grid 2 should still refer to its copy
-    t.checkExpect(this.grid2, this.grid2Copy);
+    // make sure grid didnt change
+    t.checkExpect(this.ie2, this.ie2Copy);
 
-    // initialize conditions
+    // press r (toggle reverse)
+    this.ie2.onKeyEvent("r");
+
+    // update copy
+    this.ie2Copy.inflating = !this.ie2Copy.inflating;
+
+    // confirm change
+    t.checkExpect(this.ie2, this.ie2Copy);
+
+    // initialize conds
     this.initConds();
 
-    // make sure grid refers to its original state (copy)
-    t.checkExpect(this.grid2, this.grid2Copy);
+    // press space (toggle pause)
+    this.ie2.onKeyEvent(" ");
 
-    this.grid2.removeSeamHorizontalHelp(null, false);
+    // update copy
+    this.ie2Copy.paused = !this.ie2Copy.paused;
 
-    // grid 2 should still refer to its copy
-    t.checkExpect(this.grid2, this.grid2Copy);
+    // confirm change
+    t.checkExpect(this.ie2, this.ie2Copy);
 
-    // initialize conditions
-    this.initConds();
+    // press v (queue vertical remove)
+    this.ie2.onKeyEvent("v");
 
-    // make sure grid refers to its original state (copy)
-    t.checkExpect(this.grid2, this.grid2Copy);
+    // update copy
+    this.ie2Copy.removeVerticalOverride = true;
+    this.ie2Copy.removeHorizontalOverride = false;
 
-    // remove the seam
-    this.grid2.removeSeamVerticalHelp(this.grid2.findLowestSeamVertical(), true);
+    // confirm change
+    t.checkExpect(this.ie2, this.ie2Copy);
 
-    // update copy to match
-    SeamInfo seam = this.grid2Copy.findLowestSeamVertical();
-    seam.removeInRow(true);
-    this.grid2Copy.removeSeamVerticalHelp(seam.cameFrom, true);
+    // press h (queue horizontal remove)
+    this.ie2.onKeyEvent("h");
 
-    // make sure grid refers to its original state (copy)
-    t.checkExpect(this.grid2, this.grid2Copy);
+    // update copy
+    this.ie2Copy.removeVerticalOverride = false;
+    this.ie2Copy.removeHorizontalOverride = true;
 
-    // initialize conditions
-    this.initConds();
+    // confirm change
+    t.checkExpect(this.ie2, this.ie2Copy);
 
-    // make sure grid refers to its original state (copy)
-    t.checkExpect(this.grid2, this.grid2Copy);
+    // press g (toggle grayscale)
+    this.ie2.onKeyEvent("g");
 
-    // remove the seam
-    this.grid2.removeSeamHorizontalHelp(this.grid2.findLowestSeamHorizontal(), true);
+    // update copy
+    this.ie2.grayScaleOffEnergy = !this.ie2.grayScaleOffEnergy;
 
-    // update copy to match
-    seam = this.grid2Copy.findLowestSeamHorizontal();
-    seam.removeInCol(true);
-    this.grid2Copy.removeSeamHorizontalHelp(seam.cameFrom, true);
+    // confirm change
+    t.checkExpect(this.ie2, this.ie2Copy);
+
+    // press g (toggle reversal)
+    this.ie2.onKeyEvent("r");
+
+    // update copy
+    this.ie2.inflating = !this.ie2.inflating;
 
-    // make sure grid refers to its original state (copy)
-    t.checkExpect(this.grid2, this.grid2Copy);
+    // confirm change
+    t.checkExpect(this.ie2, this.ie2Copy);
   }
 
-  void testFindMinSeamEnergy(Tester t) {
-    // initialize conditions
+  void testGetMaxEnergy(Tester t) {
     this.initConds();
 
-    ArrayList<SeamInfo> seams = new ArrayList<>();
-    seams.add(new SeamInfo(null, 10, null));
-    seams.add(new SeamInfo(null, 1, null));
-    seams.add(new SeamInfo(null, 5, null));
-    t.checkExpect(this.grid2.findMinSeamEnergy(seams), seams.get(1));
+    t.checkInexact(this.grid2.getMaxEnergy(), 2.43, 0.01);
+    t.checkInexact(this.grid.getMaxEnergy(), 3.83, 0.01);
+    t.checkInexact(this.grid2Remove1Seam.getMaxEnergy(), 2.49, 0.01);
   }
 
-  void testGetColor(Tester t) {
-    // initialize conditions
+  void testFixPixels(Tester t) {
     this.initConds();
 
-    t.checkExpect(this.grid2.rootPixel.getColor(), this.grid2.rootPixel.color);
-    t.checkException(new RuntimeException("Border pixel has no color!"), new BorderPixel(),
-        "getColor");
-
-    this.grid2.rootPixel.maskedColor = true;
-    t.checkExpect(this.grid2.rootPixel.getColor(), Color.red);
-
+    // the constructor links every pixel to its neighbors in both directions, and
+    // the pixels on the edges to the border
+    for (int row = 0; row < 3; row += 1) {
+      for (int col = 0; col < 3; col += 1) {
+        Pixel pixel = this.grid3x3.getPixelAt(row, col);
+        t.checkExpect(pixel.isWellFormedRow(), true);
+        t.checkExpect(pixel.isWellFormedCol(), true);
+        t.checkExpect(pixel.getTop().isBorder(), row == 0);
+        t.checkExpect(pixel.getBottom().isBorder(), row == 2);
+        t.checkExpect(pixel.getLeft().isBorder(), col == 0);
+        t.checkExpect(pixel.getRight().isBorder(), col == 2);
+        t.checkExpect(pixel.color, new Color(this.img3x3.getRGB(col, row), true));
+      }
+    }
+    t.checkExpect(this.grid3x3.rootPixel, this.grid3x3.getPixelAt(0, 0));
   }
 
-  void testIsBorder(Tester t) {
-    // initialize conditions
+  void testAsPixel(Tester t) {
     this.initConds();
 
-    t.checkExpect(this.grid2.rootPixel.isBorder(), false);
-    t.checkExpect(this.grid2.rootPixel.getLeft().isBorder(), true);
+    t.checkExpect(new Pixel(Color.black).asPixel(), new Pixel(Color.black));
+    t.checkException(new RuntimeException("Cannot call asPixel on a border pixel!"),
+        new BorderPixel(), "asPixel");
   }
 
-  void testRowAndColCount(Tester t) {
-    // initialize conditions
+  void testGetMaximumEnergyGridAndRow(Tester t) {
     this.initConds();
 
-    t.checkExpect(this.grid.rootPixel.rowCount(), 343);
-    t.checkExpect(this.grid.rootPixel.colCount(), 800);
+    t.checkInexact(this.grid2.rootPixel.getMaximumEnergyGrid(-1), 2.43, 0.01);
+    t.checkInexact(this.grid.rootPixel.getMaximumEnergyGrid(-1), 3.83, 0.01);
+
+    t.checkInexact(this.grid2.rootPixel.getMaximumEnergyRow(-1), 2.31, 0.01);
+    t.checkInexact(this.grid.rootPixel.getMaximumEnergyRow(-1), 3.41, 0.01);
 
+    t.checkInexact(new BorderPixel().getMaximumEnergyRow(70), 70.0, 0.01);
+    t.checkInexact(new BorderPixel().getMaximumEnergyRow(68), 68.0, 0.01);
   }
 
-  void testConstructPixelRow(Tester t) {
-    // initialize conditions
+  void testIsWellFormed(Tester t) {
     this.initConds();
 
-    ArrayList<Pixel> pixels = new ArrayList<>();
-    pixels.add(this.grid2.rootPixel);
-    pixels.add((Pixel) this.grid2.rootPixel.getRight());
-    pixels.add((Pixel) this.grid2.rootPixel.getRight().getRight());
-    pixels.add((Pixel) this.grid2.rootPixel.getRight().getRight().getRight());
+    t.checkExpect(this.grid2.rootPixel.isWellFormedCol(), true);
+    t.checkExpect(this.grid2.rootPixel.isWellFormedRow(), true);
 
-    t.checkExpect(this.grid2.rootPixel.constructPixelRow(), pixels);
-    t.checkExpect(this.grid2.rootPixel.constructPixelRowHelp(new ArrayList<>()), pixels);
-  }
+    t.checkExpect(this.grid.rootPixel.isWellFormedCol(), true);
+    t.checkExpect(this.grid.rootPixel.isWellFormedRow(), true);
 
-  void testConstructPixelCol(Tester t) {
-    // initialize conditions
-    this.initConds();
+    // remove a seam
+    this.grid2.removeSeamHorizontal(false);
+    this.grid2.removeSeamVertical(false);
 
-    ArrayList<Pixel> pixels = new ArrayList<>();
-    pixels.add(this.grid2.rootPixel);
-    pixels.add((Pixel) this.grid2.rootPixel.getBottom());
-    pixels.add((Pixel) this.grid2.rootPixel.getBottom().getBottom());
-    pixels.add((Pixel) this.grid2.rootPixel.getBottom().getBottom().getBottom());
+    this.grid.removeSeamHorizontal(false);
+    this.grid.removeSeamVertical(false);
 
-    t.checkExpect(this.grid2.rootPixel.constructPixelCol(), pixels);
-    t.checkExpect(this.grid2.rootPixel.constructPixelColHelp(new ArrayList<>()), pixels);
-  }
+    t.checkExpect(this.grid2.rootPixel.isWellFormedCol(), true);
+    t.checkExpect(this.grid2.rootPixel.isWellFormedRow(), true);
 
-  void testGetPixel(Tester t) {
-    // initialize conditions
-    this.initConds();
+    t.checkExpect(this.grid.rootPixel.isWellFormedCol(), true);
+    t.checkExpect(this.grid.rootPixel.isWellFormedRow(), true);
 
-    t.checkExpect(this.grid2.rootPixel.getTop(), new BorderPixel());
-    t.checkExpect(this.grid2.rootPixel.getRight(), this.grid2.rootPixel.right);
-    t.checkExpect(this.grid2.rootPixel.getLeft(), new BorderPixel());
-    t.checkExpect(this.grid2.rootPixel.getBottom(), this.grid2.rootPixel.bottom);
-  }
+    t.checkExpect(((Pixel) this.grid.rootPixel.getRight()).isWellFormedCol(), true);
+    t.checkExpect(((Pixel) this.grid.rootPixel.getRight()).isWellFormedRow(), true);
 
-  void testChangeNeighbor(Tester t) {
-    // initialize conditions
-    this.initConds();
+    // make a bad pixel
+    APixel rightPixel = this.grid.rootPixel.getRight();
+    rightPixel.changeNeighbor(new BorderPixel(), 3);
+    rightPixel.changeNeighbor(new Pixel(Color.blue), 1);
 
-    // check that grid refers to original state (copy)
-    t.checkExpect(this.grid2, this.grid2Copy);
+    t.checkExpect(((Pixel) this.grid.rootPixel.getRight()).isWellFormedCol(), true);
+    t.checkExpect(((Pixel) this.grid.rootPixel.getRight()).isWellFormedRow(), false);
 
-    this.grid2.rootPixel.changeNeighbor(new BorderPixel(), 0);
+    this.initConds();
+    // make a bad pixel
+    APixel bottomPixel = this.grid.rootPixel.getBottom();
+    bottomPixel.changeNeighbor(new BorderPixel(), 0);
+    bottomPixel.changeNeighbor(new Pixel(Color.blue), 2);
 
-    // check that grid didnt change
-    t.checkExpect(this.grid2, this.grid2Copy);
+    t.checkExpect(((Pixel) this.grid.rootPixel.getBottom()).isWellFormedCol(), false);
+    t.checkExpect(((Pixel) this.grid.rootPixel.getBottom()).isWellFormedRow(), true);
 
-    new BorderPixel().changeNeighbor(this.grid2.rootPixel, 0);
+  }
 
-    // check that grid didnt change
-    t.checkExpect(this.grid2, this.grid2Copy);
+  // returns whether the packed grid has the same dimensions and the same color
+  // at every position as the linked grid
+  boolean sameAsLinked(PackedGrid packed, Grid linked) {
+    if (packed.width != linked.rootPixel.colCount() || packed.height != linked.rootPixel.rowCount()) {
+      return false;
+    }
 
-    // check top reference
-    t.checkExpect(this.grid2.rootPixel.getBottom().getTop(), this.grid2.rootPixel);
+    for (int row = 0; row < packed.height; row += 1) {
+      for (int col = 0; col < packed.width; col += 1) {
+        if (packed.getRGBAt(row, col) != linked.rootPixel.getPixelAt(row, col).color.getRGB()) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
 
-    // update top reference
-    this.grid2.rootPixel.getBottom().changeNeighbor(this.grid2.rootPixel.getRight(), 0);
+  void testPackedGridConstructor(Tester t) {
+    this.initConds();
 
-    // check that grid refers to new pixel
-    t.checkExpect(this.grid2.rootPixel.getBottom().getTop(), this.grid2.rootPixel.getRight());
+    t.checkExpect(this.packed2.width, 4);
+    t.checkExpect(this.packed2.height, 4);
+    t.checkExpect(this.packed2.stride, 4);
+    t.checkExpect(this.packed2.redLine, null);
+    t.checkExpect(this.sameAsLinked(this.packed2, this.grid2), true);
+    t.checkExpect(this.sameAsLinked(this.packed2Remove1Seam, this.grid2Remove1Seam), true);
 
+    t.checkExpect(this.packed2.getColorAt(1, 0), new Color(161, 23, 140));
+    t.checkExpect(this.packed2.packedColors().length, 16);
+
+    t.checkConstructorException(new RuntimeException("Grid must contain at least one pixel!"),
+        "PackedGrid", 0, 3);
   }
 
-  boolean testGetMaximumRow(Tester t) {
+  void testPackedEnergies(Tester t) {
     this.initConds();
-    return t.checkInexact(this.grid.rootPixel.getMaximumEnergyRow(this.grid.rootPixel.energy()),
-        3.408, 0.001)
-        && t.checkInexact(
-            this.grid.rootPixel.getBottom().getMaximumEnergyRow(this.grid.rootPixel.energy()),
-            1.985, 0.001);
 
+    t.checkInexact(this.packed2.energy(0, 0), 2.182, 0.001);
+    t.checkInexact(this.packed2.energy(1, 1), 0.410, 0.001);
+    t.checkInexact(this.packed2.hEnergy(1, 1), -0.2667, 0.001);
+    t.checkInexact(this.packed2.vEnergy(1, 1), 0.311, 0.001);
+    t.checkInexact(this.packed2.brightness(1, 1), 0.557, 0.001);
+    t.checkInexact(this.packed2.brightness(-1, 2), 0.0, 0.001);
+    t.checkInexact(this.packed2.brightness(1, 4), 0.0, 0.001);
+    t.checkInexact(this.packed2.getMaxEnergy(), 2.43, 0.01);
+
+    // every energy matches the linked pixel exactly
+    boolean allMatch = true;
+    for (int row = 0; row < 4; row += 1) {
+      for (int col = 0; col < 4; col += 1) {
+        allMatch = allMatch
+            && this.packed2.energy(row, col) == this.grid2.rootPixel.getPixelAt(row, col).energy();
+      }
+    }
+    t.checkExpect(allMatch, true);
   }
 
-  boolean testGetMax(Tester t) {
+  void testPackedSeamFinder(Tester t) {
     this.initConds();
-    return t.checkInexact(this.grid.getMaxEnergy(), 3.828, 0.01);
+
+    // same seams as testSeamFinder
+    PackedSeam vertical = this.packed2.findLowestSeamVertical();
+    t.checkExpect(vertical.indices, new int[] { 2, 1, 1, 0 });
+    t.checkInexact(vertical.totalWeight, this.grid2.findLowestSeamVertical().totalWeight, 0.0001);
+    t.checkExpect(vertical.vertical, true);
+    t.checkExpect(vertical.colors, null);
+
+    PackedSeam horizontal = this.packed2.findLowestSeamHorizontal();
+    t.checkExpect(horizontal.indices, new int[] { 2, 1, 1, 0 });
+    t.checkInexact(horizontal.totalWeight, this.grid2.findLowestSeamHorizontal().totalWeight,
+        0.0001);
+    t.checkExpect(horizontal.vertical, false);
   }
 
-  void testReinsertSeam(Tester t) {
+  void testPackedRemoveSeam(Tester t) {
     this.initConds();
 
-    // store the removed seams
-    SeamInfo firstRemovedSeam = this.grid2.findLowestSeamVertical();
-    SeamInfo secondRemovedSeam = this.grid2.findLowestSeamHorizontal();
+    t.checkExpect(this.packed2, this.packed2Copy);
 
-    // remove one seam
-    this.grid2.removeSeamVertical(false);
+    // remove the seam
+    this.packed2.removeSeamVertical(false);
 
-    // confirm a removal
-    t.checkExpect(this.grid2, this.grid2Remove1Seam);
+    // update packed2Copy to match
+    PackedSeam lowestSeam = this.packed2Copy.findLowestSeamVertical();
+    this.packed2Copy.removeSeamVerticalHelp(lowestSeam, false);
 
-    // reinsert seams
-    this.grid2.reinsertSeam(firstRemovedSeam);
+    t.checkExpect(this.packed2, this.packed2Copy);
+    t.checkExpect(this.packed2.width, 3);
+    t.checkExpect(this.packed2.packedColors(), this.packed2Remove1Seam.packedColors());
 
-    // check no change
-    t.checkExpect(this.grid2, this.grid2Copy);
+    this.grid2.removeSeamVertical(false);
+    t.checkExpect(this.sameAsLinked(this.packed2, this.grid2), true);
 
     this.initConds();
 
-    // reinsert removed seams
-    this.grid2.reinsertSeam(secondRemovedSeam);
-    this.grid2.reinsertSeam(firstRemovedSeam);
+    // remove the seam
+    this.packed2.removeSeamHorizontal(false);
 
-    // check no change
-    t.checkExpect(this.grid2, this.grid2Copy);
+    // update packed2Copy to match
+    lowestSeam = this.packed2Copy.findLowestSeamHorizontal();
+    this.packed2Copy.removeSeamHorizontalHelp(lowestSeam, false);
+
+    t.checkExpect(this.packed2, this.packed2Copy);
+    t.checkExpect(this.packed2.height, 3);
+
+    this.grid2.removeSeamHorizontal(false);
+    t.checkExpect(this.sameAsLinked(this.packed2, this.grid2), true);
 
     this.initConds();
 
-    // should do nothing
-    this.grid2.reinsertSeam(null);
+    // highlight the seam
+    PackedSeam redLine = this.packed2.removeSeamVertical(true);
 
-    // check if seam still refers to copy
-    t.checkExpect(this.grid2, this.grid2Copy);
+    t.checkExpect(this.packed2.redLine, redLine);
+    t.checkExpect(this.packed2.width, 4);
+    t.checkExpect(this.packed2.getColorAt(3, 0), Color.red);
+    t.checkExpect(this.packed2.getColorAt(3, 1), this.packed2Copy.getColorAt(3, 1));
 
-    SeamInfo removedSeam = this.grid2.findLowestSeamHorizontal();
+    // removing the seam gets rid of the red line
+    this.packed2.removeSeamVerticalHelp(redLine, false);
+    t.checkExpect(this.packed2.redLine, null);
 
-    // remove horizontal seam
-    this.grid2.removeSeamHorizontal(false);
+    this.initConds();
 
-    // reinsert
-    this.grid2.reinsertSeam(removedSeam);
+    // highlight the seam
+    redLine = this.packed2.removeSeamHorizontal(true);
 
-    // check no change
-    t.checkExpect(this.grid2, this.grid2Copy);
+    t.checkExpect(this.packed2.height, 4);
+    t.checkExpect(this.packed2.getColorAt(0, 3), Color.red);
+    t.checkExpect(this.packed2.getColorAt(1, 3), this.packed2Copy.getColorAt(1, 3));
+
+    // remove many seams in a row and compare with the linked grid
+    this.initConds();
+    this.packed2.removeSeamHorizontal(false);
+    this.packed2.removeSeamVertical(false);
+    this.packed2.removeSeamVertical(false);
+    this.grid2.removeSeamHorizontal(false);
+    this.grid2.removeSeamVertical(false);
+    this.grid2.removeSeamVertical(false);
+    t.checkExpect(this.sameAsLinked(this.packed2, this.grid2), true);
   }
 
-  void testReinsertSeamHelp(Tester t) {
+  void testPackedReinsertSeam(Tester t) {
     this.initConds();
 
-    // remove first hor seam
-    SeamInfo firstRemovedSeam = this.grid2.findLowestSeamHorizontal();
-    this.grid2.removeSeamHorizontal(false);
+    // remove one seam
+    PackedSeam firstRemovedSeam = this.packed2.removeSeamVertical(false);
 
-    // reinsert the seam
-    firstRemovedSeam.reinsertSeamHelp();
+    // confirm a removal
+    t.checkExpect(this.packed2.packedColors(), this.packed2Remove1Seam.packedColors());
 
-    // make sure all pixels are in the right spots
-    t.checkExpect(firstRemovedSeam.pixel.color, new Color(38, 231, 38));
-    t.checkExpect(firstRemovedSeam.cameFrom.pixel.color, new Color(38, 157, 231));
-    t.checkExpect(firstRemovedSeam.cameFrom.cameFrom.pixel.color, new Color(38, 157, 231));
-    t.checkExpect(firstRemovedSeam.cameFrom.cameFrom.cameFrom.pixel.color, new Color(0, 0, 0));
+    // reinsert seam
+    this.packed2.reinsertSeam(firstRemovedSeam);
 
-    // make sure returns null when root pixel not modified
-    t.checkExpect(firstRemovedSeam.reinsertSeamHelp(), null);
+    // check no change
+    t.checkExpect(this.packed2, this.packed2Copy);
 
-    Pixel rootPixel = new Pixel(new Color(0, 1, 0));
+    this.initConds();
 
-    // make sure throws exception when not well formed
-    SeamInfo rootPixelReinsert = new SeamInfo(rootPixel, 1, null);
-    t.checkException(new RuntimeException("Row or col not well formed after reinsertion!"),
-        rootPixelReinsert, "reinsertSeamHelp");
+    // remove seams in both directions and reinsert them in reverse order
+    firstRemovedSeam = this.packed2.removeSeamHorizontal(false);
+    PackedSeam secondRemovedSeam = this.packed2.removeSeamVertical(false);
+    PackedSeam thirdRemovedSeam = this.packed2.removeSeamHorizontal(false);
 
-    // make sure changes node when a rootpixel is reinserted
-    Pixel oldRootPixel = new Pixel(new Color(1, 0, 0));
-    Pixel aboveOldRootPixel = new Pixel(new Color(1, 2, 3));
-    Pixel leftOldRootPixel = new Pixel(new Color(1, 2, 4));
-    Pixel rightOldRootPixel = new Pixel(new Color(1, 2, 3));
-    Pixel bottomOldRootPixel = new Pixel(new Color(1, 2, 4));
+    this.packed2.reinsertSeam(thirdRemovedSeam);
+    this.packed2.reinsertSeam(secondRemovedSeam);
+    this.packed2.reinsertSeam(firstRemovedSeam);
 
-    rootPixel.setNeighbor(leftOldRootPixel, 2);
-    rootPixel.setNeighbor(aboveOldRootPixel, 1);
+    // check no change
+    t.checkExpect(this.packed2, this.packed2Copy);
 
-    oldRootPixel.setNeighbor(leftOldRootPixel, 3);
-    oldRootPixel.setNeighbor(aboveOldRootPixel, 0);
-    oldRootPixel.setNeighbor(rightOldRootPixel, 1);
-    oldRootPixel.setNeighbor(bottomOldRootPixel, 2);
+    this.initConds();
 
-    SeamInfo rootPixelReinsert2 = new SeamInfo(rootPixel, 1, new SeamInfo(oldRootPixel, 2, null));
-    t.checkExpect(rootPixelReinsert2.reinsertSeamHelp(), rootPixel);
+    // should do nothing
+    this.packed2.reinsertSeam(null);
+    t.checkExpect(this.packed2, this.packed2Copy);
 
+    // cannot reinsert a seam that was only highlighted
+    PackedSeam redLine = this.packed2.removeSeamVertical(true);
+    t.checkException(new RuntimeException("Cannot reinsert a seam that was never removed!"),
+        this.packed2, "reinsertSeam", redLine);
   }
 
-  boolean testGetGridMaxEnergy(Tester t) {
+  void testSeamFinderLines(Tester t) {
+    SeamFinder finder = new SeamFinder();
+
+    // ties prefer the same index, then the next index, then the previous one
+    finder.start(2, 3);
+    finder.addLine(new double[] { 1, 2, 1 }, 3);
+    finder.addLine(new double[] { 5, 0, 5 }, 3);
+    t.checkExpect(finder.finish(), new int[] { 2, 1 });
+    t.checkInexact(finder.lowestTotal, 1.0, 0.0001);
+
+    // ties in the last line pick the first index
+    finder.start(2, 3);
+    finder.addLine(new double[] { 1, 1, 1 }, 3);
+    finder.addLine(new double[] { 0, 0, 0 }, 3);
+    t.checkExpect(finder.finish(), new int[] { 0, 0 });
+
+    // the buffers are reused for smaller searches
+    finder.start(3, 2);
+    t.checkExpect(finder.moves.length, 6);
+    finder.addLine(new double[] { 3, 1 }, 2);
+    finder.addLine(new double[] { 1, 3 }, 2);
+    finder.addLine(new double[] { 3, 1 }, 2);
+    t.checkExpect(finder.finish(), new int[] { 1, 0, 1 });
+    t.checkInexact(finder.lowestTotal, 3.0, 0.0001);
+
+    // lines must fit in the search
+    finder.start(1, 2);
+    t.checkException(new RuntimeException("Line does not fit in the seam search!"), finder,
+        "addLine", new double[] { 1, 2, 3 }, 3);
+    t.checkException(new RuntimeException("Seam search is missing lines!"), finder, "finish");
+    finder.addLine(new double[] { 1, 2 }, 2);
+    t.checkException(new RuntimeException("Line does not fit in the seam search!"), finder,
+        "addLine", new double[] { 1, 2 }, 2);
+  }
+
+  void testSeamPaths(Tester t) {
     this.initConds();
-    return t.checkInexact(this.grid.getMaxEnergy(), 3.828, 0.01);
+
+    t.checkExpect(this.grid2.findLowestSeamVerticalPath(), new int[] { 2, 1, 1, 0 });
+    t.checkExpect(this.grid2.findLowestSeamHorizontalPath(), new int[] { 2, 1, 1, 0 });
+    t.checkInexact(this.grid2.finder.lowestTotal,
+        this.grid2.findLowestSeamHorizontal().totalWeight, 0.0001);
+
+    // the seam info is rebuilt from the path
+    t.checkExpect(this.grid2.seamFromPath(new int[] { 2, 1, 1, 0 }, true),
+        this.grid2.findLowestSeamVertical());
+    t.checkExpect(this.grid2.seamFromPath(new int[] { 0 }, false),
+        new SeamInfo(this.grid2.rootPixel, this.grid2.rootPixel.energy(), null));
+
+    // the linked and packed grids find exactly the same seams on a real image
+    PackedGrid packedBalloons = new PackedGrid(this.balloons);
+    PackedSeam packedVertical = packedBalloons.findLowestSeamVertical();
+    t.checkExpect(packedVertical.indices, this.grid.findLowestSeamVerticalPath());
+    t.checkExpect(packedVertical.totalWeight, this.grid.finder.lowestTotal);
+    t.checkExpect(packedBalloons.findLowestSeamHorizontal().indices,
+        this.grid.findLowestSeamHorizontalPath());
+    t.checkExpect(packedBalloons.horizontalFinder.lowestTotal, this.grid.finder.lowestTotal);
+
+    // rows must not be longer than the first row
+    this.grid2.rootPixel.getBottom().getRight().getRight().getRight().changeNeighbor(
+        new Pixel(Color.blue), 1);
+    t.checkException(new RuntimeException("Line is longer than the first line of the grid!"),
+        this.grid2, "findLowestSeamVerticalPath");
   }
 
-  void testGetGrayScalePixelColor(Tester t) {
+  // returns whether a class of the given name can be loaded, without
+  // initializing it
+  boolean hasClass(String name) {
+    try {
+      Class.forName(name, false, this.getClass().getClassLoader());
+      return true;
+    }
+    catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  // returns whether every cached energy in the packed grid matches the energy
+  // computed from scratch
+  boolean energiesUpToDate(PackedGrid packed) {
+    for (int row = 0; row < packed.height; row += 1) {
+      for (int col = 0; col < packed.width; col += 1) {
+        if (packed.energyAt(row, col) != packed.energy(row, col)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  void testPackedEnergyCache(Tester t) {
     this.initConds();
-    double maxEnergy = this.grid.getMaxEnergy();
-    t.checkExpect(this.grid.rootPixel.getGrayScale(maxEnergy), new Color(106, 106, 106));
-    t.checkExpect(this.grid.rootPixel.getRight().getGrayScale(maxEnergy), new Color(100, 100, 100));
-    t.checkExpect(this.grid.rootPixel.getBottom().getGrayScale(maxEnergy),
-        new Color(100, 100, 100));
-    t.checkExpect(this.grid.rootPixel.getRight().getBottom().getGrayScale(maxEnergy),
-        new Color(0, 0, 0));
-    t.checkExpect(this.grid.rootPixel.getBottom().getRight().getGrayScale(maxEnergy),
-        new Color(0, 0, 0));
-    t.checkException(new RuntimeException("Border pixel has no energy!"), new BorderPixel(),
-        "getGrayScale", 1.0);
 
+    t.checkExpect(this.energiesUpToDate(this.packed2), true);
+    t.checkInexact(this.packed2.energyAt(1, 1), 0.410, 0.001);
+
+    // a blank grid has no energy anywhere
+    t.checkExpect(new PackedGrid(2, 3).energyAt(1, 1), 0.0);
+
+    // the cache follows removals and reinsertions in both directions
+    PackedSeam first = this.packed2.removeSeamVertical(false);
+    t.checkExpect(this.energiesUpToDate(this.packed2), true);
+    PackedSeam second = this.packed2.removeSeamHorizontal(false);
+    t.checkExpect(this.energiesUpToDate(this.packed2), true);
+    this.packed2.removeSeamHorizontal(true);
+    t.checkExpect(this.energiesUpToDate(this.packed2), true);
+    this.packed2.reinsertSeam(second);
+    t.checkExpect(this.energiesUpToDate(this.packed2), true);
+    this.packed2.reinsertSeam(first);
+    t.checkExpect(this.energiesUpToDate(this.packed2), true);
+
+    // and on a real image with seams along the edges
+    PackedGrid packedBalloons = new PackedGrid(this.balloons);
+    ArrayList<PackedSeam> removed = new ArrayList<>();
+    for (int seam = 0; seam < 6; seam += 1) {
+      removed.add(packedBalloons.removeSeamVertical(false));
+      removed.add(packedBalloons.removeSeamHorizontal(false));
+    }
+    t.checkExpect(this.energiesUpToDate(packedBalloons), true);
+
+    for (int seam = removed.size() - 1; seam >= 0; seam -= 1) {
+      packedBalloons.reinsertSeam(removed.get(seam));
+    }
+    t.checkExpect(this.energiesUpToDate(packedBalloons), true);
+    t.checkExpect(packedBalloons.packedColors(), new PackedGrid(this.balloons).packedColors());
+
+    // the seams found from the cache match the seams of the linked grid
+    this.grid.removeSeamVertical(false);
+    packedBalloons.removeSeamVertical(false);
+    t.checkExpect(packedBalloons.findLowestSeamHorizontal().indices,
+        this.grid.findLowestSeamHorizontalPath());
+  }
+
+  // returns whether the energy every pixel of the grid remembers matches the
+  // energy computed from its neighbors right now
+  boolean pixelEnergiesUpToDate(Grid grid) {
+    for (int row = 0; row < grid.height; row += 1) {
+      APixel current = grid.getRowStart(row);
+      for (int col = 0; col < grid.width; col += 1) {
+        double hEnergy = current.hEnergy();
+        double vEnergy = current.vEnergy();
+        if (current.energy() != Math.sqrt(hEnergy * hEnergy + vEnergy * vEnergy)) {
+          return false;
+        }
+        current = current.getRight();
+      }
+    }
+    return true;
   }
 
-  void testOnKeyEvent(Tester t) {
-    // initialize conditions
+  void testPixelEnergyCache(Tester t) {
     this.initConds();
 
-    // make sure that grid refers to its copy
-    t.checkExpect(this.ie2, this.ie2Copy);
-
-    // test that when the img size is too small (only r will be processed)
-    this.grid2.removeSeamHorizontal(false);
-    this.grid2.removeSeamHorizontal(false);
+    // an energy is only computed once, until a seam next to it changes
+    Pixel pixel = this.grid2.getPixelAt(1, 1);
+    t.checkExpect(pixel.energyKnown, false);
+    double energy = pixel.energy();
+    t.checkExpect(pixel.energyKnown, true);
+    t.checkExpect(pixel.cachedEnergy, energy);
+    pixel.forgetEnergiesAround();
+    t.checkExpect(pixel.energyKnown, false);
+
+    // the energies found by every search stay right through removals,
+    // highlighting and reinsertions in both directions
+    Grid grid = new Grid(this.balloons);
+    ArrayList<CompactSeam> removed = new ArrayList<>();
+    for (int seam = 0; seam < 6; seam += 1) {
+      SeamInfo vertical = grid.findLowestSeamVertical();
+      removed.add(grid.compactSeam(vertical, true));
+      grid.removeSeamVerticalHelp(vertical, false);
+      t.checkExpect(this.pixelEnergiesUpToDate(grid), true);
+
+      SeamInfo horizontal = grid.findLowestSeamHorizontal();
+      removed.add(grid.compactSeam(horizontal, false));
+      grid.removeSeamHorizontalHelp(horizontal, false);
+      t.checkExpect(this.pixelEnergiesUpToDate(grid), true);
+    }
+    grid.removeSeamVerticalHelp(grid.findLowestSeamVertical(), true);
+    t.checkExpect(this.pixelEnergiesUpToDate(grid), true);
 
-    this.grid2Copy.removeSeamHorizontal(false);
-    this.grid2Copy.removeSeamHorizontal(false);
+    for (int seam = removed.size() - 1; seam >= 0; seam -= 1) {
+      grid.reinsertSeam(removed.get(seam));
+      t.checkExpect(this.pixelEnergiesUpToDate(grid), true);
+    }
+    t.checkExpect(grid.findLowestSeamVertical().totalWeight,
+        new Grid(this.balloons).findLowestSeamVertical().totalWeight);
+  }
 
-    // press a (random key)
-    this.ie2.onKeyEvent("a");
+  // returns whether the row and column heads of the grid match the pixels found
+  // by walking the links from the rootPixel
+  boolean headsUpToDate(Grid grid) {
+    boolean upToDate = grid.rowHeads.size() == grid.rootPixel.rowCount()
+        && grid.colHeads.size() == grid.rootPixel.colCount()
+        && grid.height == grid.rootPixel.rowCount() && grid.width == grid.rootPixel.colCount();
+    for (int row = 0; upToDate && row < grid.height; row += 1) {
+      upToDate = grid.getRowStart(row) == grid.rootPixel.getPixelAt(row, 0);
+    }
+    for (int col = 0; upToDate && col < grid.width; col += 1) {
+      upToDate = grid.getColStart(col) == grid.rootPixel.getPixelAt(0, col);
+    }
+    return upToDate;
+  }
 
-    // make sure grid didnt change
-    t.checkExpect(this.ie2, this.ie2Copy);
+  void testGridDimensionsAndHeads(Tester t) {
+    this.initConds();
 
-    // press h (remove hor)
-    this.ie2.onKeyEvent("h");
+    t.checkExpect(this.grid.width, 800);
+    t.checkExpect(this.grid.height, 343);
+    t.checkExpect(this.grid2.width, 4);
+    t.checkExpect(this.grid2.height, 4);
+    t.checkExpect(this.headsUpToDate(this.grid2), true);
+    t.checkExpect(this.grid2.getRowStart(0), this.grid2.rootPixel);
+    t.checkExpect(this.grid2.getColStart(0), this.grid2.rootPixel);
+    t.checkExpect(this.grid2.getPixelAt(3, 2), this.grid2.rootPixel.getPixelAt(3, 2));
+    t.checkExpect(this.grid.getPixelAt(62, 420), this.grid.rootPixel.getPixelAt(62, 420));
 
-    // make sure grid didnt change
-    t.checkExpect(this.ie2, this.ie2Copy);
+    t.checkException(new RuntimeException("Index out of bounds exception for getPixelAt!"),
+        this.grid2, "getPixelAt", 4, 0);
+    t.checkException(new RuntimeException("Index out of bounds exception for getPixelAt!"),
+        this.grid2, "getPixelAt", 0, -1);
 
-    // press v (remove ver)
-    this.ie2.onKeyEvent("v");
+    // the seam of grid2 goes through the bottom left corner
+    SeamInfo vertical = this.grid2.findLowestSeamVertical();
+    this.grid2.removeSeamVertical(true);
+    t.checkExpect(this.grid2.width, 4);
+    this.grid2.removeSeamVerticalHelp(vertical, false);
+    t.checkExpect(this.grid2.width, 3);
+    t.checkExpect(this.grid2.height, 4);
+    t.checkExpect(this.headsUpToDate(this.grid2), true);
+
+    // and the horizontal seam goes through the top right corner
+    SeamInfo horizontal = this.grid2.findLowestSeamHorizontal();
+    this.grid2.removeSeamHorizontal(false);
+    t.checkExpect(this.grid2.width, 3);
+    t.checkExpect(this.grid2.height, 3);
+    t.checkExpect(this.headsUpToDate(this.grid2), true);
+
+    this.grid2.reinsertSeam(horizontal);
+    t.checkExpect(this.grid2.height, 4);
+    t.checkExpect(this.headsUpToDate(this.grid2), true);
+    this.grid2.reinsertSeam(vertical);
+    t.checkExpect(this.grid2.width, 4);
+    t.checkExpect(this.headsUpToDate(this.grid2), true);
+    t.checkExpect(this.grid2, this.grid2Copy);
 
-    // make sure grid didnt change
-    t.checkExpect(this.ie2, this.ie2Copy);
+    // removing the root pixel moves the heads along with it
+    this.grid3x3.removeSeamHorizontalHelp(
+        this.grid3x3.seamFromPath(new int[] { 0, 0, 0 }, false), false);
+    t.checkExpect(this.headsUpToDate(this.grid3x3), true);
+    this.grid3x3.removeSeamVerticalHelp(this.grid3x3.seamFromPath(new int[] { 0, 0 }, true),
+        false);
+    t.checkExpect(this.headsUpToDate(this.grid3x3), true);
+    t.checkExpect(this.grid3x3.width, 2);
+    t.checkExpect(this.grid3x3.height, 2);
+    t.checkExpect(this.grid3x3.seamLength(this.grid3x3.findLowestSeamVertical()), 2);
+    t.checkExpect(this.grid3x3.seamLength(null), 0);
+  }
 
-    // press g (toggle grayscale)
-    this.ie2.onKeyEvent("g");
+  void testBorderSentinel(Tester t) {
+    this.initConds();
 
-    // make sure grid didnt change
-    t.checkExpect(this.ie2, this.ie2Copy);
+    // every edge refers to the same border pixel, and probing it allocates nothing
+    t.checkExpect(this.grid2.rootPixel.getTop() == BorderPixel.BORDER, true);
+    t.checkExpect(this.grid2.rootPixel.getLeft() == this.grid.rootPixel.getTop(), true);
+    t.checkExpect(BorderPixel.BORDER.getTop() == BorderPixel.BORDER, true);
+    t.checkExpect(BorderPixel.BORDER.getRight().getBottom().getLeft() == BorderPixel.BORDER, true);
+    t.checkExpect(new Pixel(Color.red).getBottom() == BorderPixel.BORDER, true);
+    t.checkExpect(BorderPixel.BORDER.brightness(), 0.0);
+    t.checkExpect(BorderPixel.BORDER.energy(), 0.0);
 
-    // press space (toggle pause)
-    this.ie2.onKeyEvent(" ");
+    // changing a neighbor of the shared border pixel does nothing
+    BorderPixel.BORDER.changeNeighbor(this.grid2.rootPixel, 2);
+    t.checkExpect(BorderPixel.BORDER.getBottom() == BorderPixel.BORDER, true);
 
-    // make sure grid didnt change
-    t.checkExpect(this.ie2, this.ie2Copy);
+    // removing and reinserting seams still works with a shared border
+    SeamInfo seam = this.grid2.findLowestSeamVertical();
+    this.grid2.removeSeamVertical(false);
+    t.checkExpect(this.grid2, this.grid2Remove1Seam);
+    this.grid2.reinsertSeam(seam);
+    t.checkExpect(this.grid2, this.grid2Copy);
+  }
 
-    // press r (toggle reverse)
-    this.ie2.onKeyEvent("r");
+  void testReplicateEdges(Tester t) {
+    this.initConds();
 
-    // update copy
-    this.ie2Copy.inflating = !this.ie2Copy.inflating;
+    t.checkExpect(this.packed2.replicateEdges, false);
 
-    // confirm change
-    t.checkExpect(this.ie2, this.ie2Copy);
+    // a single color image has no energy at all when the edges are replicated
+    PackedGrid blank = new PackedGrid(3, 3);
+    t.checkExpect(blank.energy(0, 0), 0.0);
+    blank.colors[4] = Color.white.getRGB();
+    t.checkInexact(blank.energy(0, 0), Math.sqrt(2), 0.0001);
+    for (int index = 0; index < 9; index += 1) {
+      blank.colors[index] = Color.white.getRGB();
+    }
+    t.checkInexact(blank.energy(0, 0), Math.sqrt(18), 0.0001);
+    blank.setReplicateEdges(true);
+    t.checkExpect(blank.energy(0, 0), 0.0);
+    t.checkExpect(blank.energyAt(2, 1), 0.0);
+
+    // outside positions repeat the nearest pixel
+    this.packed2.setReplicateEdges(true);
+    t.checkExpect(this.packed2.brightness(-1, -1), this.packed2.brightness(0, 0));
+    t.checkExpect(this.packed2.brightness(2, 4), this.packed2.brightness(2, 3));
+    t.checkExpect(this.packed2.brightness(4, 1), this.packed2.brightness(3, 1));
+    t.checkExpect(this.packed2.energy(1, 1), this.packed2Copy.energy(1, 1));
+    t.checkExpect(this.packed2.energyAt(0, 0) == this.packed2Copy.energyAt(0, 0), false);
+    t.checkExpect(this.energiesUpToDate(this.packed2), true);
+
+    // the cache stays up to date while carving in this mode
+    PackedGrid packedBalloons = new PackedGrid(this.balloons);
+    packedBalloons.setReplicateEdges(true);
+    ArrayList<PackedSeam> removed = new ArrayList<>();
+    for (int seam = 0; seam < 5; seam += 1) {
+      removed.add(packedBalloons.removeSeamVertical(false));
+      removed.add(packedBalloons.removeSeamHorizontal(false));
+    }
+    t.checkExpect(this.energiesUpToDate(packedBalloons), true);
+    for (int seam = removed.size() - 1; seam >= 0; seam -= 1) {
+      packedBalloons.reinsertSeam(removed.get(seam));
+    }
+    t.checkExpect(this.energiesUpToDate(packedBalloons), true);
+  }
 
-    // initialize conds
+  void testIterativeWalks(Tester t) {
     this.initConds();
 
-    // press space (toggle pause)
-    this.ie2.onKeyEvent(" ");
+    // a column of pixels far taller than the default stack could recurse through
+    Pixel top = new Pixel(Color.black);
+    Pixel current = top;
+    for (int row = 1; row < 100000; row += 1) {
+      Pixel below = new Pixel(row == 50000 ? Color.white : Color.black);
+      current.setNeighbor(below, 2);
+      current = below;
+    }
 
-    // update copy
-    this.ie2Copy.paused = !this.ie2Copy.paused;
+    t.checkExpect(top.rowCount(), 100000);
+    t.checkExpect(top.colCount(), 1);
+    t.checkExpect(top.getPixelAt(99999, 0) == current, true);
+    t.checkExpect(top.getPixelAt(50000, 0).color, Color.white);
+    t.checkExpect(top.constructPixelCol().size(), 100000);
+    t.checkExpect(top.constructPixelRow().size(), 1);
+    t.checkInexact(top.getMaximumEnergyGrid(0), 2.0, 0.0001);
+    t.checkInexact(top.getMaximumEnergyRow(0), 0.0, 0.0001);
+    t.checkException(new RuntimeException("Index out of bounds exception for getPixelAt!"), top,
+        "getPixelAt", 100000, 0);
+    t.checkException(new RuntimeException("Index out of bounds exception for getPixelAt!"), top,
+        "getPixelAt", 0, 1);
+
+    // the walks give the same answers as before on a real image
+    t.checkExpect(this.grid.rootPixel.getPixelAt(62, 420),
+        this.grid.rootPixel.getBottom().getRight().getPixelAt(61, 419));
+    t.checkExpect(this.grid.rootPixel.getPixelAt(342, 799), this.grid.getPixelAt(342, 799));
+
+    // removing and reinserting a seam 100000 pixels long walks it with loops
+    int[] colors = new int[2 * 100000];
+    for (int index = 0; index < colors.length; index += 1) {
+      colors[index] = index % 3 == 0 ? 0xFFFFFFFF : 0xFF000000;
+    }
+    Grid tall = new Grid(colors, 2, 100000);
+    SeamInfo seam = tall.findLowestSeamVertical();
+    t.checkExpect(tall.seamLength(seam), 100000);
+    CompactSeam compact = tall.compactSeam(seam, true);
+
+    tall.removeSeamVerticalHelp(seam, false);
+    t.checkExpect(tall.width, 1);
+    t.checkExpect(tall.rootPixel.rowCount(), 100000);
+    t.checkExpect(tall.rootPixel.colCount(), 1);
+    tall.reinsertSeam(seam);
+    t.checkExpect(tall.width, 2);
+    t.checkExpect(tall.height, 100000);
+    t.checkExpect(tall.rootPixel.colCount(), 2);
+    t.checkExpect(new RasterLoader().readColors(tall.toBufferedImage(BufferedImage.TYPE_INT_ARGB)),
+        colors);
+
+    // and so does rebuilding it from its compact form
+    tall.removeSeamVerticalHelp(tall.traceSeam(compact.indices, true), false);
+    tall.reinsertSeam(compact);
+    t.checkExpect(tall.width, 2);
+    t.checkExpect(new RasterLoader().readColors(tall.toBufferedImage(BufferedImage.TYPE_INT_ARGB)),
+        colors);
+  }
 
-    // confirm change
-    t.checkExpect(this.ie2, this.ie2Copy);
+  void testParallelEnergyMap(Tester t) {
+    this.initConds();
 
-    // press v (queue vertical remove)
-    this.ie2.onKeyEvent("v");
+    PackedGrid serial = new PackedGrid(this.balloons);
+    PackedGrid parallel = new PackedGrid(this.balloons);
+    EnergyMapBuilder builder = new EnergyMapBuilder(4, 8);
+
+    // wipe the map so the builder has to fill in every energy
+    parallel.energies = new double[parallel.energies.length];
+    builder.build(parallel);
+    t.checkExpect(parallel.energies, serial.energies);
+
+    // also after carving, and with the edges replicated
+    serial.removeSeamVertical(false);
+    serial.removeSeamHorizontal(false);
+    serial.setReplicateEdges(true);
+    parallel.removeSeamVertical(false);
+    parallel.removeSeamHorizontal(false);
+    parallel.replicateEdges = true;
+    parallel.energies = new double[parallel.energies.length];
+    builder.build(parallel);
+    t.checkExpect(this.energiesUpToDate(parallel), true);
+    t.checkExpect(parallel.getMaxEnergy(), serial.getMaxEnergy());
+
+    // with a band per row on several threads, every band loads its own rows of
+    // a plane left over from a bigger grid before any band reads them
+    PackedGrid banded = new PackedGrid(this.balloons);
+    banded.removeSeamVertical(false);
+    EnergyMapBuilder rowBands = new EnergyMapBuilder(3, 1);
+    Arrays.fill(banded.kernel.plane, -1.0);
+    banded.energies = new double[banded.energies.length];
+    rowBands.build(banded);
+    t.checkExpect(this.energiesUpToDate(banded), true);
+    SobelKernel serialKernel = new SobelKernel();
+    serialKernel.loadBrightness(banded);
+    int planeSize = serialKernel.paddedWidth * (banded.height + 2);
+    t.checkExpect(Arrays.equals(banded.kernel.plane, 0, planeSize, serialKernel.plane, 0,
+        planeSize), true);
+    rowBands.shutdown();
+
+    // a grid smaller than one band is computed in a single step
+    this.packed2.energies = new double[16];
+    builder.build(this.packed2);
+    t.checkExpect(this.packed2.energies, this.packed2Copy.energies);
+
+    t.checkExpect(new EnergyMapBuilder().pool.getParallelism(),
+        Runtime.getRuntime().availableProcessors());
+    t.checkExpect(builder.pool.getParallelism(), 4);
+    builder.shutdown();
+    t.checkExpect(builder.pool.isShutdown(), true);
+
+    t.checkConstructorException(
+        new RuntimeException("Parallelism and band size must be positive!"), "EnergyMapBuilder",
+        0, 8);
+  }
 
-    // update copy
-    this.ie2Copy.removeVerticalOverride = true;
-    this.ie2Copy.removeHorizontalOverride = false;
+  void testParallelSeamFinder(Tester t) {
+    this.initConds();
 
-    // confirm change
-    t.checkExpect(this.ie2, this.ie2Copy);
+    PackedGrid packed = new PackedGrid(this.balloons);
+    // tiny chunks and bands so even a small image has many of both
+    ParallelSeamFinder finder = new ParallelSeamFinder(4, 6, 5);
+    t.checkExpect(finder.bandRows, 3);
 
-    // press h (queue horizontal remove)
-    this.ie2.onKeyEvent("h");
+    for (int seam = 0; seam < 10; seam += 1) {
+      PackedSeam serial = packed.findLowestSeamVertical();
+      t.checkExpect(finder.findLowestSeamVertical(packed), serial);
+      packed.removeSeamVerticalHelp(serial, false);
+      packed.removeSeamHorizontal(false);
+    }
 
-    // update copy
-    this.ie2Copy.removeVerticalOverride = false;
-    this.ie2Copy.removeHorizontalOverride = true;
+    // a grid narrower than one chunk, and the linked grid agrees too
+    Grid grid = new Grid(this.tinyImg1);
+    SeamInfo linked = grid.findLowestSeamVertical();
+    PackedSeam parallel = finder.findLowestSeamVertical(this.packed2);
+    t.checkExpect(parallel.totalWeight, linked.totalWeight);
+    t.checkExpect(parallel, this.packed2.findLowestSeamVertical());
+
+    // a single row only picks the lowest energy
+    PackedGrid row = new PackedGrid(20, 1);
+    row.colors[7] = Color.white.getRGB();
+    row.computeEnergies();
+    t.checkExpect(finder.findLowestSeamVertical(row), row.findLowestSeamVertical());
+
+    finder.shutdown();
+    t.checkExpect(finder.pool.isShutdown(), true);
+    t.checkConstructorException(
+        new RuntimeException("Invalid parallel seam search settings!"), "ParallelSeamFinder",
+        2, 1, 1);
+  }
 
-    // confirm change
-    t.checkExpect(this.ie2, this.ie2Copy);
+  void testRemoveSeamsBatch(Tester t) {
+    this.initConds();
 
-    // press g (toggle grayscale)
-    this.ie2.onKeyEvent("g");
+    Grid oneAtATime = new Grid(this.balloons);
+    Grid batch = new Grid(this.balloons);
+    for (int seam = 0; seam < 4; seam += 1) {
+      oneAtATime.removeSeamVertical(false);
+    }
+    ArrayList<SeamInfo> removed = batch.removeSeamsVertical(4);
+    t.checkExpect(removed.size(), 4);
+    t.checkExpect(batch.width, oneAtATime.width);
+    t.checkExpect(this.headsUpToDate(batch), true);
+    t.checkExpect(new PackedGrid(batch).colors, new PackedGrid(oneAtATime).colors);
+
+    for (int seam = 0; seam < 3; seam += 1) {
+      oneAtATime.removeSeamHorizontal(false);
+    }
+    batch.removeSeamsHorizontal(3);
+    t.checkExpect(batch.height, oneAtATime.height);
+    t.checkExpect(this.headsUpToDate(batch), true);
+    t.checkExpect(new PackedGrid(batch).colors, new PackedGrid(oneAtATime).colors);
+
+    // the removed seams still reinsert in reverse order
+    Grid tiny = new Grid(this.tinyImg1);
+    ArrayList<SeamInfo> tinySeams = tiny.removeSeamsVertical(2);
+    t.checkExpect(tinySeams.get(0).totalWeight, this.grid2.findLowestSeamVertical().totalWeight);
+    tiny.reinsertSeam(tinySeams.get(1));
+    tiny.reinsertSeam(tinySeams.get(0));
+    t.checkExpect(new PackedGrid(tiny).colors, new PackedGrid(this.grid2).colors);
+
+    // removing no seams changes nothing
+    t.checkExpect(tiny.removeSeamsHorizontal(0), new ArrayList<SeamInfo>());
+    t.checkExpect(tiny.height, this.grid2.height);
+
+    t.checkException(new RuntimeException("Cannot remove that many seams!"), tiny,
+        "removeSeamsVertical", 5);
+    t.checkException(new RuntimeException("Cannot remove that many seams!"), tiny,
+        "removeSeamsHorizontal", -1);
+
+    BatchRemovalReport report = new BatchRemovalReport(this.tinyImg1, 2, false);
+    t.checkExpect(report.sameResult, true);
+    t.checkExpect(report.summary().startsWith("2 horizontal seams: one at a time "), true);
+  }
 
-    // update copy
-    this.ie2.grayScaleOffEnergy = !this.ie2.grayScaleOffEnergy;
+  void testCarveOrderMap(Tester t) {
+    this.initConds();
 
-    // confirm change
-    t.checkExpect(this.ie2, this.ie2Copy);
+    // carving the whole way down records a seam for all but one pixel per line
+    CarveOrderMap tiny = new CarveOrderMap(this.tinyImg1, 1, 1);
+    int width = tiny.width;
+    int height = tiny.height;
+    t.checkExpect(tiny.resize(width, height).colors, this.packed2Copy.colors);
+    PackedGrid carved = new PackedGrid(this.tinyImg1);
+    for (int size = width - 1; size >= 1; size -= 1) {
+      carved.removeSeamVertical(false);
+      t.checkExpect(tiny.resize(size, height).colors, carved.packedColors());
+    }
+    carved = new PackedGrid(this.tinyImg1);
+    for (int size = height - 1; size >= 1; size -= 1) {
+      carved.removeSeamHorizontal(false);
+      t.checkExpect(tiny.resize(width, size).colors, carved.packedColors());
+    }
 
-    // press g (toggle reversal)
-    this.ie2.onKeyEvent("r");
+    // a partial carve of a real image, in both directions
+    CarveOrderMap map = new CarveOrderMap(this.balloons, (int) this.balloons.getWidth() - 4,
+        (int) this.balloons.getHeight() - 3);
+    PackedGrid columns = new PackedGrid(this.balloons);
+    PackedGrid rows = new PackedGrid(this.balloons);
+    for (int seam = 0; seam < 4; seam += 1) {
+      columns.removeSeamVertical(false);
+    }
+    for (int seam = 0; seam < 3; seam += 1) {
+      rows.removeSeamHorizontal(false);
+    }
+    t.checkExpect(map.resize(map.width - 4, map.height).colors, columns.packedColors());
+    t.checkExpect(map.resize(map.width, map.height - 3).colors, rows.packedColors());
+    PackedGrid both = map.resize(map.minWidth, map.minHeight);
+    t.checkExpect(both.width, map.minWidth);
+    t.checkExpect(both.height, map.minHeight);
+    t.checkExpect(this.energiesUpToDate(both), true);
+
+    t.checkException(new RuntimeException("Target size is outside of the carve order map!"), map,
+        "resize", map.minWidth - 1, map.height);
+    t.checkException(new RuntimeException("Target size is outside of the carve order map!"), map,
+        "resize", map.width, map.height + 1);
+    t.checkConstructorException(new RuntimeException("Cannot carve to that size!"),
+        "CarveOrderMap", this.packed2, 0, 1);
+  }
 
-    // update copy
-    this.ie2.inflating = !this.ie2.inflating;
+  void testBufferedImageGrid(Tester t) throws IOException {
+    this.initConds();
 
-    // confirm change
-    t.checkExpect(this.ie2, this.ie2Copy);
+    BufferedImage image = ImageIO.read(new File("./tinyImage1.png"));
+    Grid grid = new Grid(image);
+    t.checkExpect(grid.width, this.grid2.width);
+    t.checkExpect(grid.height, this.grid2.height);
+    t.checkExpect(this.headsUpToDate(grid), true);
+    t.checkExpect(new PackedGrid(grid).colors, this.packed2Copy.colors);
+    t.checkExpect(grid.findLowestSeamVertical().totalWeight,
+        this.grid2.findLowestSeamVertical().totalWeight);
+
+    BufferedImage copy = grid.toBufferedImage(BufferedImage.TYPE_INT_ARGB);
+    t.checkExpect(copy.getRGB(0, 0, copy.getWidth(), copy.getHeight(), null, 0, copy.getWidth()),
+        this.packed2Copy.colors);
+
+    // a single pixel is still a grid
+    Grid single = new Grid(new int[] { Color.red.getRGB() }, 1, 1);
+    t.checkExpect(single.rootPixel.color, Color.red);
+    t.checkExpect(single.rootPixel.getRight(), BorderPixel.BORDER);
+    t.checkExpect(single.rootPixel.getBottom(), BorderPixel.BORDER);
+    t.checkConstructorException(new RuntimeException("Grid must contain at least one pixel!"),
+        "Grid", new int[0], 0, 1);
   }
 
-  void testGetMaxEnergy(Tester t) {
+  void testBatchCarver(Tester t) throws IOException, InterruptedException {
     this.initConds();
 
-    t.checkInexact(this.grid2.getMaxEnergy(), 2.43, 0.01);
-    t.checkInexact(this.grid.getMaxEnergy(), 3.83, 0.01);
-    t.checkInexact(this.grid2Remove1Seam.getMaxEnergy(), 2.49, 0.01);
+    File input = Files.createTempDirectory("carve-in").toFile();
+    File output = new File(input, "out");
+    ImageIO.write(ImageIO.read(new File("./tinyImage1.png")), "png", new File(input, "tiny.png"));
+    ImageIO.write(ImageIO.read(new File("./img3x3.png")), "png", new File(input, "small.png"));
+    Files.write(new File(input, "notes.txt").toPath(), "not an image".getBytes());
+
+    BatchCarveReport report = new BatchCarver(4, 4, 2).run(input, output);
+    t.checkExpect(report.images, 1);
+    t.checkExpect(report.seams, this.grid2.width - 4 + this.grid2.height - 4);
+    t.checkExpect(report.failures.size(), 1);
+    t.checkExpect(report.failures.get(0), "small.png: Image is smaller than the target size!");
+    t.checkExpect(report.summary().startsWith("1 images, "), true);
+
+    Grid expected = new Grid(this.tinyImg1);
+    expected.removeSeamsVertical(expected.width - 4);
+    expected.removeSeamsHorizontal(expected.height - 4);
+    Grid carved = new Grid(ImageIO.read(new File(output, "tiny.png")));
+    t.checkExpect(new PackedGrid(carved).colors, new PackedGrid(expected).colors);
+    t.checkExpect(new File(output, "small.png").exists(), false);
+
+    t.checkConstructorException(new RuntimeException("Target size and workers must be positive!"),
+        "BatchCarver", 4, 4, 0);
   }
 
-  void testFixPixels(Tester t) {
+  void testRasterLoader(Tester t) throws IOException {
     this.initConds();
 
-    ArrayList<ArrayList<Pixel>> list2d = new ArrayList<>();
+    RasterLoader loader = new RasterLoader();
+    BufferedImage balloons = loader.read(new File("./balloons.jpeg"));
+    int width = balloons.getWidth();
+    int height = balloons.getHeight();
+    int[] expected = balloons.getRGB(0, 0, width, height, null, 0, width);
+    t.checkExpect(loader.readColors(balloons), expected);
+
+    // every layout read directly, and the ones that fall back to getRGB
+    int[] types = new int[] { BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB,
+        BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR,
+        BufferedImage.TYPE_INT_BGR, BufferedImage.TYPE_BYTE_GRAY };
+    for (int type : types) {
+      BufferedImage image = new BufferedImage(width, height, type);
+      image.getGraphics().drawImage(balloons, 0, 0, null);
+      t.checkExpect(loader.readColors(image),
+          image.getRGB(0, 0, width, height, null, 0, width));
+    }
 
-    // set up a grid
-    Pixel pixel00 = new Pixel(new Color(143, 192, 235));
-    Pixel pixel01 = new Pixel(new Color(221, 143, 235));
-    Pixel pixel02 = new Pixel(new Color(221, 143, 235));
+    // transparency survives the 4 byte layout
+    BufferedImage clear = new BufferedImage(2, 1, BufferedImage.TYPE_4BYTE_ABGR);
+    clear.setRGB(0, 0, 0x80FF0000);
+    t.checkExpect(loader.readColors(clear), new int[] { 0x80FF0000, 0 });
+
+    // a subimage shares the raster of its parent, so it is not read directly
+    BufferedImage part = balloons.getSubimage(10, 20, 30, 40);
+    t.checkExpect(loader.readColors(part), part.getRGB(0, 0, 30, 40, null, 0, 30));
+
+    PackedGrid packed = loader.loadPackedGrid(new File("./tinyImage1.png"));
+    t.checkExpect(packed.colors, this.packed2Copy.colors);
+    t.checkExpect(packed.energies, this.packed2Copy.energies);
+    Grid grid = loader.loadGrid(new File("./tinyImage1.png"));
+    t.checkExpect(new PackedGrid(grid).colors, this.packed2Copy.colors);
+
+
+    // images javalib already loaded are read through getColorAt, with the same
+    // colors as decoding the file once with read
+    String[] fileNames = new String[] { "./balloons.jpeg", "./tinyImage1.png", "./img3x3.png" };
+    for (String fileName : fileNames) {
+      FromFileImage image = new FromFileImage(fileName);
+      int[] colors = loader.readColors(image);
+      t.checkExpect(colors[colors.length - 1],
+          image.getColorAt((int) image.getWidth() - 1, (int) image.getHeight() - 1).getRGB());
+      t.checkExpect(colors, loader.readColors(loader.read(new File(fileName))));
+      t.checkExpect(new PackedGrid(image).colors, loader.loadPackedGrid(new File(fileName)).colors);
+    }
+    t.checkException(new RuntimeException("Cannot read the image!"), loader, "read",
+        new File("./../ImageEditorFinal.java"));
+  }
 
-    Pixel pixel10 = new Pixel(new Color(143, 192, 235));
-    Pixel pixel11 = new Pixel(new Color(143, 192, 235));
-    Pixel pixel12 = new Pixel(new Color(221, 143, 235));
+  // does the renderer show exactly what Grid.makeImage would make right now?
+  boolean rendersLikeMakeImage(GridRenderer renderer, boolean grayScale) {
+    WorldImage shown = renderer.render(grayScale);
+    ComputedPixelImage expected = renderer.grid.makeImage(grayScale);
+    if (shown.getWidth() != expected.width || shown.getHeight() != expected.height) {
+      return false;
+    }
 
-    Pixel pixel20 = new Pixel(new Color(221, 143, 235));
-    Pixel pixel21 = new Pixel(new Color(143, 192, 235));
-    Pixel pixel22 = new Pixel(new Color(143, 192, 235));
+    for (int y = 0; y < expected.height; y += 1) {
+      for (int x = 0; x < expected.width; x += 1) {
+        if (!renderer.canvas.getColorAt(x, y).equals(expected.getColorAt(x, y))) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
 
-    list2d.add(new ArrayList<>());
-    list2d.add(new ArrayList<>());
-    list2d.add(new ArrayList<>());
+  void testGridRenderer(Tester t) {
+    this.initConds();
 
-    list2d.get(0).add(pixel00);
-    list2d.get(0).add(pixel01);
-    list2d.get(0).add(pixel02);
+    Grid grid = new Grid(this.balloons);
+    GridRenderer renderer = new GridRenderer(grid);
+    t.checkExpect(grid.renderer, renderer);
+    t.checkExpect(this.rendersLikeMakeImage(renderer, false), true);
+    t.checkExpect(renderer.drawn[0], grid.getPixelAt(0, 0).color.getRGB());
+
+    // nothing changed, so nothing is marked
+    t.checkExpect(renderer.dirtyFrom[0], grid.width);
+
+    grid.removeSeamVertical(false);
+    t.checkExpect(renderer.dirtyFrom[0] < grid.width, true);
+    t.checkExpect(this.rendersLikeMakeImage(renderer, false), true);
+    grid.removeSeamHorizontal(true);
+    t.checkExpect(this.rendersLikeMakeImage(renderer, false), true);
+    grid.removeSeamHorizontal(false);
+    t.checkExpect(this.rendersLikeMakeImage(renderer, false), true);
+
+    // switching to gray scale redraws everything with the cached max energy
+    t.checkExpect(this.rendersLikeMakeImage(renderer, true), true);
+    t.checkExpect(renderer.maxEnergy, grid.getMaxEnergy());
+    grid.removeSeamVertical(true);
+    t.checkExpect(this.rendersLikeMakeImage(renderer, true), true);
+    ArrayList<SeamInfo> seams = grid.removeSeamsVertical(2);
+    t.checkExpect(this.rendersLikeMakeImage(renderer, true), true);
+    ArrayList<SeamInfo> rows = grid.removeSeamsHorizontal(2);
+    t.checkExpect(this.rendersLikeMakeImage(renderer, true), true);
+    t.checkExpect(renderer.maxEnergy, grid.getMaxEnergy());
+
+    // reinserting redraws the whole grid
+    grid.reinsertSeam(rows.get(1));
+    grid.reinsertSeam(rows.get(0));
+    grid.reinsertSeam(seams.get(1));
+    t.checkExpect(renderer.allDirty, true);
+    t.checkExpect(this.rendersLikeMakeImage(renderer, false), true);
+    t.checkExpect(renderer.allDirty, false);
+
+    // a seam without indices redraws whole rows
+    SeamInfo unknown = grid.findLowestSeamHorizontal();
+    for (SeamInfo current = unknown; current != null; current = current.cameFrom) {
+      current.index = -1;
+    }
+    grid.removeSeamHorizontalHelp(unknown, true);
+    t.checkExpect(renderer.dirtyBelow[0], 0);
+    t.checkExpect(this.rendersLikeMakeImage(renderer, false), true);
+
+    // a grid bigger than the canvas gets a new canvas
+    Grid tiny = new Grid(this.tinyImg1);
+    SeamInfo seam = tiny.findLowestSeamVertical();
+    tiny.removeSeamVerticalHelp(seam, false);
+    GridRenderer small = new GridRenderer(tiny);
+    t.checkExpect(small.canvas.width, tiny.width);
+    tiny.reinsertSeam(seam);
+    t.checkExpect(this.rendersLikeMakeImage(small, true), true);
+    t.checkExpect(small.canvas.width, tiny.width);
+  }
 
-    list2d.get(1).add(pixel10);
-    list2d.get(1).add(pixel11);
-    list2d.get(1).add(pixel12);
+  // EFFECT: waits (up to two seconds) until the background pipeline of the
+  // given editor has found the seams of its grid, returning whether it did
+  boolean awaitForecast(ImageEditor editor) throws InterruptedException {
+    for (int wait = 0; wait < 2000 && editor.pipeline.forecast() == null; wait += 1) {
+      Thread.sleep(1);
+    }
+    return editor.pipeline.forecast() != null;
+  }
 
-    list2d.get(2).add(pixel20);
-    list2d.get(2).add(pixel21);
-    list2d.get(2).add(pixel22);
+  void testSeamPipeline(Tester t) throws InterruptedException {
+    this.initConds();
 
-    // test corners, non-corner edges, non edge or corner case
+    ImageEditor background = new ImageEditor(new Grid(this.balloons), true);
+    ImageEditor foreground = new ImageEditor(new Grid(this.balloons));
+    t.checkExpect(foreground.pipeline, null);
+
+    // the red line is removed on the next tick without searching again
+    t.checkExpect(this.awaitForecast(background), true);
+    background.onTick();
+    foreground.onTick();
+    SeamInfo redLine = background.redLineSeam;
+    t.checkExpect(redLine == null, false);
+    t.checkExpect(this.awaitForecast(background), true);
+    background.onTick();
+    foreground.onTick();
+    t.checkExpect(background.redLineSeam, null);
+    CompactSeam removed = background.seamHistory.pop();
+    t.checkExpect(removed.indices, background.grid.seamIndices(redLine));
+    background.seamHistory.push(removed);
+
+    for (int tick = 0; tick < 8; tick += 1) {
+      t.checkExpect(this.awaitForecast(background), true);
+      background.onTick();
+      foreground.onTick();
+    }
+    background.removeHorizontalOverride = true;
+    foreground.removeHorizontalOverride = true;
+    t.checkExpect(this.awaitForecast(background), true);
+    background.onTick();
+    foreground.onTick();
+    t.checkExpect(background.pipeline.version, background.seamHistory.size());
+    t.checkExpect(new PackedGrid(background.grid).colors, new PackedGrid(foreground.grid).colors);
+
+    // the mirror follows the grid back out while inflating
+    background.onTick();
+    foreground.onTick();
+    background.inflating = true;
+    foreground.inflating = true;
+    for (int tick = 0; tick < 3; tick += 1) {
+      t.checkExpect(this.awaitForecast(background), true);
+      background.onTick();
+      foreground.onTick();
+    }
+    t.checkExpect(new PackedGrid(background.grid).colors, new PackedGrid(foreground.grid).colors);
+    t.checkExpect(this.awaitForecast(background), true);
+    t.checkExpect(background.pipeline.forecast().vertical.indices,
+        background.grid.seamIndices(background.grid.findLowestSeamVertical()));
 
-    // fix pixel connections at 0,0 and 0,1...
-    this.grid3x3.connectPixels(img3x3, list2d, 0, 0, pixel00);
-    t.checkExpect(pixel00.getRight().getLeft(), pixel00);
-    t.checkExpect(pixel00.getBottom().getTop(), pixel00);
+    background.close();
+    background.pipeline.worker.join(2000);
+    t.checkExpect(background.pipeline.worker.isAlive(), false);
 
-    this.initConds();
+    t.checkException(new RuntimeException("Seam does not know its indices!"), this.grid2,
+        "seamIndices", new SeamInfo(this.grid2.rootPixel, 0, null));
+  }
 
-    this.grid3x3.connectPixels(img3x3, list2d, 0, 1, pixel01);
-    t.checkExpect(pixel01.getRight().getLeft(), pixel01);
+  // returns the forward energy cost of the pixel at the given row and col of the
+  // given grid, when the seam came from prevCol in the row above
+  double forwardCost(PackedGrid grid, int row, int col, int prevCol) {
+    double upCost = Math.abs(grid.brightness(row, col + 1) - grid.brightness(row, col - 1));
+    if (row > 0 && prevCol == col + 1) {
+      return upCost + Math.abs(grid.brightness(row - 1, col) - grid.brightness(row, col + 1));
+    }
+    if (row > 0 && prevCol == col - 1) {
+      return upCost + Math.abs(grid.brightness(row - 1, col) - grid.brightness(row, col - 1));
+    }
+    return upCost;
+  }
 
-    this.initConds();
+  // returns the lowest forward energy cost of every vertical seam of the given
+  // grid that has cost soFar up to and including the given row and col
+  double bruteForwardCost(PackedGrid grid, int row, int col, double soFar) {
+    if (row == grid.height - 1) {
+      return soFar;
+    }
 
-    this.grid3x3.connectPixels(img3x3, list2d, 0, 2, pixel02);
-    t.checkExpect(pixel02.getLeft().getRight(), pixel02);
-    t.checkExpect(pixel02.getBottom().getTop(), pixel02);
+    double lowest = Double.MAX_VALUE;
+    for (int next = col - 1; next <= col + 1; next += 1) {
+      if (next >= 0 && next < grid.width) {
+        lowest = Math.min(lowest, this.bruteForwardCost(grid, row + 1, next,
+            soFar + this.forwardCost(grid, row + 1, next, col)));
+      }
+    }
+    return lowest;
+  }
 
+  void testForwardEnergy(Tester t) {
     this.initConds();
 
-    this.grid3x3.connectPixels(img3x3, list2d, 1, 0, pixel10);
-    t.checkExpect(pixel10.getBottom().getTop(), pixel10);
-
-    this.initConds();
+    // the seam search finds the cheapest of every possible seam
+    Random rand = new Random(15);
+    PackedGrid random = new PackedGrid(6, 5);
+    for (int index = 0; index < random.colors.length; index += 1) {
+      random.colors[index] = rand.nextInt();
+    }
+    random.computeEnergies();
+    random.forwardEnergy = true;
+    PackedSeam seam = random.findLowestSeamVertical();
+    double lowest = Double.MAX_VALUE;
+    for (int col = 0; col < random.width; col += 1) {
+      lowest = Math.min(lowest, this.bruteForwardCost(random, 0, col,
+          this.forwardCost(random, 0, col, col)));
+    }
+    t.checkInexact(random.finder.lowestTotal, lowest, 0.000001);
+
+    // the seam found has that cost, and its weight is still the sum of energies
+    double cost = this.forwardCost(random, 0, seam.indices[0], seam.indices[0]);
+    double energy = random.energyAt(0, seam.indices[0]);
+    for (int row = 1; row < random.height; row += 1) {
+      cost += this.forwardCost(random, row, seam.indices[row], seam.indices[row - 1]);
+      energy += random.energyAt(row, seam.indices[row]);
+    }
+    t.checkInexact(cost, lowest, 0.000001);
+    t.checkInexact(seam.totalWeight, energy, 0.000001);
+
+    // the linked grid picks the same seams as the packed grid
+    Grid grid = new Grid(this.balloons);
+    grid.forwardEnergy = true;
+    PackedGrid packed = new PackedGrid(grid);
+    t.checkExpect(packed.forwardEnergy, true);
+    for (int step = 0; step < 3; step += 1) {
+      PackedSeam vertical = packed.findLowestSeamVertical();
+      SeamInfo linked = grid.findLowestSeamVertical();
+      t.checkExpect(grid.seamIndices(linked), vertical.indices);
+      t.checkExpect(linked.totalWeight, vertical.totalWeight);
+      grid.removeSeamVerticalHelp(linked, false);
+      packed.removeSeamVerticalHelp(vertical, false);
+
+      PackedSeam horizontal = packed.removeSeamHorizontal(false);
+      t.checkExpect(grid.seamIndices(grid.findLowestSeamHorizontal()), horizontal.indices);
+      grid.removeSeamHorizontal(false);
+    }
 
-    this.grid3x3.connectPixels(img3x3, list2d, 1, 1, pixel11);
-    t.checkExpect(pixel11.getBottom().getTop(), pixel11);
-    t.checkExpect(pixel11.getRight().getLeft(), pixel11);
+    // forward energy picks a different seam than backward energy here
+    packed.forwardEnergy = false;
+    PackedSeam backward = packed.findLowestSeamVertical();
+    packed.forwardEnergy = true;
+    t.checkExpect(Arrays.equals(packed.findLowestSeamVertical().indices, backward.indices), false);
+
+    // batch removal keeps the mode of the grid
+    Grid batch = new Grid(this.balloons);
+    batch.forwardEnergy = true;
+    batch.removeSeamsVertical(2);
+    Grid oneAtATime = new Grid(this.balloons);
+    oneAtATime.forwardEnergy = true;
+    oneAtATime.removeSeamVertical(false);
+    oneAtATime.removeSeamVertical(false);
+    t.checkExpect(new PackedGrid(batch).colors, new PackedGrid(oneAtATime).colors);
+
+    ForwardEnergyReport report = new ForwardEnergyReport(this.packed2, 3);
+    t.checkExpect(report.seams, 3);
+    t.checkExpect(this.packed2.forwardEnergy, false);
+    t.checkExpect(report.summary().startsWith("per seam: backward "), true);
+    t.checkConstructorException(new RuntimeException("Must find at least one seam!"),
+        "ForwardEnergyReport", this.packed2, 0);
+  }
 
+  // tests for SeamBenchmarks
+  void testSeamBenchmarks(Tester t) throws IOException {
     this.initConds();
+    t.checkConstructorException(new RuntimeException("Must measure at least one iteration!"),
+        "SeamBenchmarks", 0, 0);
+
+    SeamBenchmarks benchmarks = new SeamBenchmarks(0, 2);
+    FromFileImage synthetic = benchmarks.syntheticImage(8);
+    t.checkExpect(synthetic.getWidth(), 8.0);
+    t.checkExpect(synthetic.getHeight(), 8.0);
+    BufferedImage square = new BufferedImage(3, 3, BufferedImage.TYPE_INT_RGB);
+    t.checkExpect(benchmarks.scaledImage(square, 6).getWidth(), 6.0);
+
+    benchmarks.runAll("synthetic", synthetic);
+    t.checkExpect(benchmarks.results.size(), 7);
+    t.checkExpect(benchmarks.results.get(0).benchmark, "Grid(FromFileImage)");
+    t.checkExpect(benchmarks.results.get(6).benchmark, "makeImage");
+    t.checkExpect(benchmarks.results.get(3).size, 8);
+    t.checkExpect(benchmarks.results.get(2).nanosPerOp > 0, true);
+    t.checkExpect(benchmarks.results.get(0).line().startsWith("Grid(FromFileImage)"), true);
+
+    // removing and reinserting leaves a grid of the same size behind
+    GridOperation reinsert = new GridOperation("reinsertSeam", synthetic);
+    reinsert.prepare();
+    t.checkExpect(reinsert.grid.width, 7);
+    reinsert.run();
+    t.checkExpect(reinsert.grid.width, 8);
+    t.checkException(new RuntimeException("Unknown benchmark!"),
+        new GridOperation("sort", synthetic), "run");
+  }
 
-    this.grid3x3.connectPixels(img3x3, list2d, 1, 2, pixel12);
-    t.checkExpect(pixel12.getBottom().getTop(), pixel12);
-
+  void testPyramidSeamFinder(Tester t) {
     this.initConds();
+    t.checkConstructorException(new RuntimeException("Invalid pyramid seam search settings!"),
+        "PyramidSeamFinder", 0, 4);
+    t.checkConstructorException(new RuntimeException("Invalid pyramid seam search settings!"),
+        "PyramidSeamFinder", 2, -1);
+
+    // a 3 x 2 grid shrunk by 2 has a full block and a block of 1 x 2 pixels
+    PackedGrid small = new PackedGrid(3, 2);
+    small.energies = new double[] { 1, 2, 3, 4, 5, 6 };
+    PyramidSeamFinder halves = new PyramidSeamFinder(2, 0);
+    halves.computeCoarseEnergies(small);
+    t.checkExpect(halves.coarseWidth, 2);
+    t.checkInexact(halves.coarseEnergies, new double[] { 3.0, 4.5 }, 0.0001);
+    t.checkExpect(halves.findCoarseSeam(small), new int[] { 0 });
+    PackedSeam narrow = halves.findLowestSeamVertical(small);
+    t.checkExpect(narrow.indices, new int[] { 0, 0 });
+    t.checkInexact(narrow.totalWeight, 5.0, 0.0001);
+
+    // a band wider than the image always finds the exact seam, even while
+    // carving, and so does a pyramid that does not shrink the image
+    PackedGrid packed = new PackedGrid(this.balloons);
+    PyramidSeamFinder wide = new PyramidSeamFinder(4, packed.width);
+    PyramidSeamFinder exact = new PyramidSeamFinder(1, 0);
+    for (int seam = 0; seam < 5; seam += 1) {
+      PackedSeam lowest = packed.findLowestSeamVertical();
+      t.checkExpect(wide.findLowestSeamVertical(packed), lowest);
+      t.checkExpect(exact.findLowestSeamVertical(packed), lowest);
+      t.checkInexact(wide.relativeError(packed), 0.0, 0.0001);
+      packed.removeSeamVerticalHelp(lowest, false);
+    }
 
-    this.grid3x3.connectPixels(img3x3, list2d, 2, 0, pixel20);
-    t.checkExpect(pixel20.getTop().getBottom(), pixel20);
-    t.checkExpect(pixel20.getRight().getLeft(), pixel20);
+    // a narrow band finds a connected seam that is never better than the exact one
+    PyramidSeamFinder pyramid = new PyramidSeamFinder();
+    PackedSeam approximate = pyramid.findLowestSeamVertical(packed);
+    t.checkExpect(approximate.indices.length, packed.height);
+    for (int row = 1; row < packed.height; row += 1) {
+      t.checkExpect(Math.abs(approximate.indices[row] - approximate.indices[row - 1]) <= 1, true);
+    }
+    t.checkExpect(pyramid.relativeError(packed) >= 0, true);
+    t.checkExpect(pyramid.maxBand, 12);
+
+    // removing a seam averages again only the blocks it changed, so every
+    // block up to the one the seam went through agrees with a fresh map, until
+    // more seams were removed than the band is wide
+    PackedGrid carved = new PackedGrid(this.balloons);
+    PyramidSeamFinder patched = new PyramidSeamFinder(4, 2);
+    patched.findLowestSeamVertical(carved);
+    PackedSeam removed = carved.findLowestSeamVertical();
+    carved.removeSeamVerticalHelp(removed, false);
+    patched.seamRemoved(carved, removed);
+    t.checkExpect(patched.mapped == carved, true);
+    t.checkExpect(patched.staleSeams, 1);
+    PyramidSeamFinder fresh = new PyramidSeamFinder(4, 2);
+    fresh.computeCoarseEnergies(carved);
+    t.checkExpect(patched.coarseWidth, fresh.coarseWidth);
+    boolean agrees = true;
+    for (int coarseRow = 0; coarseRow * 4 < carved.height; coarseRow += 1) {
+      int seamBlock = Math.min(carved.width - 1, removed.indices[coarseRow * 4]) / 4;
+      for (int block = 0; block <= seamBlock; block += 1) {
+        int index = coarseRow * patched.coarseWidth + block;
+        agrees = agrees
+            && Math.abs(patched.coarseEnergies[index] - fresh.coarseEnergies[index]) < 0.0001;
+      }
+      int last = coarseRow * patched.coarseWidth + patched.coarseWidth - 1;
+      agrees = agrees
+          && Math.abs(patched.coarseEnergies[last] - fresh.coarseEnergies[last]) < 0.0001;
+    }
+    t.checkExpect(agrees, true);
+    for (int seam = 0; seam < 2; seam += 1) {
+      PackedSeam next = patched.findLowestSeamVertical(carved);
+      carved.removeSeamVerticalHelp(next, false);
+      patched.seamRemoved(carved, next);
+    }
+    t.checkExpect(patched.mapped, null);
+    patched.findCoarseSeam(carved);
+    t.checkExpect(patched.mapped == carved, true);
+    t.checkExpect(patched.staleSeams, 0);
+    // a grid that changed without seamRemoved is averaged from scratch
+    carved.removeSeamVerticalHelp(carved.findLowestSeamVertical(), false);
+    patched.findCoarseSeam(carved);
+    t.checkExpect(patched.mappedWidth, carved.width);
+
+    PyramidSeamReport report = new PyramidSeamReport(packed, pyramid, 3);
+    t.checkExpect(report.seams, 3);
+    t.checkExpect(packed.width, (int) this.balloons.getWidth() - 5);
+    t.checkExpect(report.worstError >= report.meanError, true);
+    t.checkExpect(report.summary().startsWith("per seam: exact "), true);
+    t.checkConstructorException(new RuntimeException("Cannot find that many seams!"),
+        "PyramidSeamReport", this.packed2, pyramid, 0);
+  }
 
+  void testSeamHistory(Tester t) {
     this.initConds();
+    t.checkConstructorException(new RuntimeException("Memory cap must be at least one int!"),
+        "SeamHistory", 3, null);
+    t.checkConstructorException(new RuntimeException("Every index needs a color!"),
+        "CompactSeam", true, new int[] { 1, 2 }, new int[] { 3 });
+
+    // room for two seams of length 2 (7 ints each) in memory
+    SeamHistory history = new SeamHistory(56, null);
+    t.checkException(new RuntimeException("No seams in the history!"), history, "pop");
+    CompactSeam first = new CompactSeam(true, new int[] { 0, 1 }, new int[] { -1, -2 });
+    CompactSeam second = new CompactSeam(false, new int[] { 1, 1 }, new int[] { 5, 6 });
+    CompactSeam third = new CompactSeam(true, new int[] { 2, 1 }, new int[] { 7, 8 });
+    CompactSeam longest = new CompactSeam(true, new int[] { 0, 0, 0, 0, 0, 0, 0 },
+        new int[] { 1, 2, 3, 4, 5, 6, 7 });
+
+    history.push(first);
+    history.push(second);
+    t.checkExpect(first.encode(), new int[] { 2, 1, 0, 1, -1, -2, 2 });
+    t.checkExpect(history.used, 14);
+    t.checkExpect(history.spilledSeams, 0);
+
+    // the oldest seams spill to disk, and a seam bigger than the cap goes
+    // straight to disk after them
+    history.push(third);
+    t.checkExpect(history.memorySeams, 2);
+    t.checkExpect(history.spilledSeams, 1);
+    t.checkExpect(history.spillFile.length(), 28L);
+    history.push(longest);
+    t.checkExpect(history.memorySeams, 0);
+    t.checkExpect(history.spilledSeams, 4);
+    t.checkExpect(history.buffer, new int[14]);
+
+    t.checkExpect(history.size(), 4);
+    t.checkExpect(history.pop(), longest);
+    history.push(first);
+    t.checkExpect(history.pop(), first);
+    t.checkExpect(history.pop(), third);
+    t.checkExpect(history.pop(), second);
+    t.checkExpect(history.pop(), first);
+    t.checkExpect(history.size(), 0);
+    t.checkExpect(history.spillFile.length(), 0L);
+
+    // the buffer grows while the seams fit in the cap, keeping their order
+    SeamHistory growing = new SeamHistory(SeamHistory.DEFAULT_MAX_BYTES, null);
+    CompactSeam wide = new CompactSeam(false, new int[600], new int[600]);
+    growing.push(first);
+    growing.push(wide);
+    t.checkExpect(growing.buffer.length, 2048);
+    t.checkExpect(growing.pop(), wide);
+    t.checkExpect(growing.pop(), first);
+
+    File file = history.spillFile;
+    history.push(first);
+    history.push(longest);
+    history.clear();
+    t.checkExpect(history.size(), 0);
+    t.checkExpect(file.exists(), false);
+  }
 
-    this.grid3x3.connectPixels(img3x3, list2d, 2, 1, pixel21);
-    t.checkExpect(pixel21.getRight().getLeft(), pixel21);
-
+  void testCompactSeamReinsertion(Tester t) {
     this.initConds();
 
-    this.grid3x3.connectPixels(img3x3, list2d, 2, 2, pixel22);
-    t.checkExpect(pixel22.getTop().getBottom(), pixel22);
-    t.checkExpect(pixel22.getLeft().getRight(), pixel22);
+    Grid grid = new Grid(this.balloons);
+    Grid original = new Grid(this.balloons);
+    SeamHistory history = new SeamHistory(4096, null);
+    Random rand = new Random(7);
+    for (int seam = 0; seam < 40; seam += 1) {
+      boolean vertical = rand.nextBoolean();
+      SeamInfo lowest = vertical ? grid.findLowestSeamVertical() : grid.findLowestSeamHorizontal();
+      history.push(grid.compactSeam(lowest, vertical));
+      if (vertical) {
+        grid.removeSeamVerticalHelp(lowest, false);
+      }
+      else {
+        grid.removeSeamHorizontalHelp(lowest, false);
+      }
+    }
+    t.checkExpect(history.spilledSeams > 0, true);
 
+    // halfway back, the grid is linked well enough to find the same seams
+    for (int seam = 0; seam < 20; seam += 1) {
+      grid.reinsertSeam(history.pop());
+    }
+    t.checkExpect(grid.findLowestSeamVertical(), grid.seamFromPath(
+        new PackedGrid(grid).findLowestSeamVertical().indices, true));
+    while (history.size() > 0) {
+      grid.reinsertSeam(history.pop());
+    }
+
+    t.checkExpect(grid.width, original.width);
+    t.checkExpect(grid.height, original.height);
+    t.checkExpect(new PackedGrid(grid).colors, new PackedGrid(original).colors);
+    t.checkExpect(grid.findLowestSeamVertical().totalWeight,
+        original.findLowestSeamVertical().totalWeight);
+    t.checkExpect(grid.findLowestSeamHorizontal().totalWeight,
+        original.findLowestSeamHorizontal().totalWeight);
+    t.checkExpect(grid.getPixelAt(5, 7).isWellFormedRow(), true);
+    t.checkExpect(grid.getPixelAt(5, 7).isWellFormedCol(), true);
+    t.checkExpect(grid.compactSeam(grid.findLowestSeamVertical(), true).colors.length,
+        grid.height);
+
+    this.grid2.reinsertSeam((CompactSeam) null);
+    t.checkExpect(this.grid2, this.grid2Copy);
   }
 
-  void testAsPixel(Tester t) {
+  void testSeamJournal(Tester t) throws IOException {
     this.initConds();
-
-    t.checkExpect(new Pixel(Color.black).asPixel(), new Pixel(Color.black));
-    t.checkException(new RuntimeException("Cannot call asPixel on a border pixel!"),
-        new BorderPixel(), "asPixel");
+    File file = File.createTempFile("journal", ".seams");
+    file.deleteOnExit();
+    t.checkConstructorException(new RuntimeException("Grid must contain at least one pixel!"),
+        "SeamJournal", file, 0, 4);
+
+    SeamJournal journal = new SeamJournal(file, 4, 3);
+    t.checkException(new RuntimeException("No seams in the history!"), journal, "pop");
+    CompactSeam first = new CompactSeam(true, new int[] { 0, 1, 1 }, new int[] { 1, 2, 3 });
+    CompactSeam second = new CompactSeam(false, new int[] { 2, 2, 1 }, new int[] { 4, 5, 6 });
+    journal.push(first);
+    journal.push(second);
+    t.checkExpect(journal.size(), 2);
+    t.checkExpect(journal.end, 24L + 2 * 36);
+    t.checkExpect(journal.pop(), second);
+    journal.push(second);
+    journal.close();
+    t.checkExpect(file.length(), 24L + 2 * 36);
+
+    // opening the file again finds the same seams, in the same order
+    SeamJournal reopened = new SeamJournal(file);
+    t.checkExpect(reopened.width, 4);
+    t.checkExpect(reopened.height, 3);
+    t.checkExpect(reopened.size(), 2);
+    t.checkExpect(reopened.pop(), second);
+    t.checkExpect(reopened.pop(), first);
+    t.checkExpect(reopened.size(), 0);
+    reopened.close();
+    t.checkExpect(file.length(), 24L);
+
+    reopened.close();
+    t.checkExpect(reopened.channel, null);
+    t.checkExpect(reopened.window, null);
+
+    // undoing a long carve maps a window backward from the end of the history
+    // and keeps popping seams out of it, instead of mapping one per seam
+    SeamJournal big = new SeamJournal(file, 1000, 1000);
+    CompactSeam tall = new CompactSeam(true, new int[1000], new int[1000]);
+    for (int seam = 0; seam < 600; seam += 1) {
+      big.push(tall);
+    }
+    int remaps = 0;
+    while (big.size() > 0) {
+      MappedByteBuffer window = big.window;
+      big.pop();
+      if (big.window != window) {
+        remaps += 1;
+        t.checkExpect(big.windowStart % SeamJournal.ALIGN_BYTES, 0L);
+      }
+    }
+    t.checkExpect(remaps <= 3, true);
+    big.close();
+    t.checkExpect(file.length(), 24L);
+
+    // files that are not journals are left exactly as they were
+    File other = File.createTempFile("journal", ".png");
+    other.deleteOnExit();
+    Files.write(other.toPath(), new byte[] { 1, 2, 3 });
+    t.checkConstructorException(new RuntimeException("Seam journal header is cut off!"),
+        "SeamJournal", other);
+    t.checkExpect(other.length(), 3L);
+    Files.write(other.toPath(), new byte[52]);
+    t.checkConstructorException(new RuntimeException("Not a seam journal!"), "SeamJournal",
+        other);
+    t.checkExpect(other.length(), 52L);
   }
 
-  void testGetMaximumEnergyGridAndRow(Tester t) {
+  void testResumeFromJournal(Tester t) throws IOException {
     this.initConds();
+    File file = File.createTempFile("journal", ".seams");
+    file.deleteOnExit();
+
+    // carve through an editor that keeps its history in the journal
+    Grid grid = new Grid(this.balloons);
+    ImageEditor editor = new ImageEditor(grid,
+        new SeamJournal(file, grid.width, grid.height));
+    for (int tick = 0; tick < 30; tick += 1) {
+      editor.onTick();
+    }
+    editor.removeVerticalOverride = true;
+    editor.onTick();
+    int seams = editor.seamHistory.size();
+    t.checkExpect(seams > 10, true);
+    editor.close();
+    t.checkExpect(((SeamJournal) editor.seamHistory).channel, null);
+    t.checkExpect(file.length(), ((SeamJournal) editor.seamHistory).end);
+
+    // a new editor on the original image picks up where the carve stopped
+    ImageEditor resumed = new ImageEditor(new Grid(this.balloons), new SeamJournal(file));
+    t.checkExpect(resumed.seamHistory.size(), seams);
+    t.checkExpect(resumed.grid.width, grid.width);
+    t.checkExpect(resumed.grid.height, grid.height);
+    t.checkExpect(new PackedGrid(resumed.grid).colors, new PackedGrid(grid).colors);
+
+    // and undoes every seam from the journal back to the original image
+    resumed.inflating = true;
+    for (int tick = 0; tick < seams + 2; tick += 1) {
+      resumed.onTick();
+    }
+    t.checkExpect(resumed.seamHistory.size(), 0);
+    t.checkExpect(new PackedGrid(resumed.grid).colors,
+        new PackedGrid(new Grid(this.balloons)).colors);
+    ((SeamJournal) resumed.seamHistory).close();
+
+    // the journal only replays onto the image it was started for
+    SeamJournal journal = new SeamJournal(file, 4, 4);
+    t.checkException(new RuntimeException("Journal is for a different image!"), journal,
+        "replay", new Grid(this.balloons));
+    journal.push(new CompactSeam(true, new int[] { 0, 0, 0, 0 }, new int[] { 1, 1, 1, 1 }));
+    t.checkException(new RuntimeException("Journal is for a different image!"), journal,
+        "replay", new Grid(this.tinyImg1));
+    journal.close();
+  }
 
-    t.checkInexact(this.grid2.rootPixel.getMaximumEnergyGrid(-1), 2.43, 0.01);
-    t.checkInexact(this.grid.rootPixel.getMaximumEnergyGrid(-1), 3.83, 0.01);
+  void testSobelKernel(Tester t) {
+    this.initConds();
 
-    t.checkInexact(this.grid2.rootPixel.getMaximumEnergyRow(-1), 2.31, 0.01);
-    t.checkInexact(this.grid.rootPixel.getMaximumEnergyRow(-1), 3.41, 0.01);
+    // grids use the Vector API kernel when its module was added and it was
+    // compiled, and the scalar kernel otherwise
+    SobelKernel fastest = SobelKernel.fastest();
+    t.checkExpect(fastest.getClass().getName(),
+        SobelKernel.vectorModulePresent() && this.hasClass("VectorSobelKernel")
+            ? "VectorSobelKernel" : "SobelKernel");
+    t.checkExpect(new PackedGrid(2, 2).kernel.getClass(), fastest.getClass());
+
+    // both kernels agree with the linked pixels within a tolerance, and
+    // exactly with the scalar energy of the packed grid, in both edge modes
+    Grid grid = new Grid(this.balloons);
+    PackedGrid packed = new PackedGrid(this.balloons);
+    for (SobelKernel each : new SobelKernel[] { new SobelKernel(), fastest }) {
+      packed.kernel = each;
+      packed.computeEnergies();
+      double largestDifference = 0;
+      for (int row = 0; row < grid.height; row += 1) {
+        APixel current = grid.getRowStart(row);
+        for (int col = 0; col < grid.width; col += 1) {
+          largestDifference = Math.max(largestDifference,
+              Math.abs(packed.energyAt(row, col) - current.energy()));
+          current = current.getRight();
+        }
+      }
+      t.checkInexact(largestDifference, 0.0, 0.000001);
+    }
 
-    t.checkInexact(new BorderPixel().getMaximumEnergyRow(70), 70.0, 0.01);
-    t.checkInexact(new BorderPixel().getMaximumEnergyRow(68), 68.0, 0.01);
+    // including the columns after the last full vector of every row
+    PackedGrid odd = new PackedGrid(this.balloons);
+    odd.removeSeamVertical(false);
+    odd.removeSeamVertical(false);
+    odd.removeSeamVertical(false);
+    PackedGrid scalarOdd = odd.compactCopy();
+    PackedGrid vectorOdd = odd.compactCopy();
+    scalarOdd.kernel = new SobelKernel();
+    scalarOdd.computeEnergies();
+    vectorOdd.kernel = fastest;
+    vectorOdd.computeEnergies();
+    t.checkExpect(vectorOdd.energies, scalarOdd.energies);
+
+    double[] kernelEnergies = packed.energies.clone();
+    packed.computeEnergyRows(0, packed.height);
+    t.checkExpect(kernelEnergies, packed.energies);
+
+    packed.setReplicateEdges(true);
+    kernelEnergies = packed.energies.clone();
+    packed.computeEnergyRows(0, packed.height);
+    t.checkExpect(kernelEnergies, packed.energies);
+
+    // the padding is black, or repeats the nearest edge pixel
+    PackedGrid small = new PackedGrid(2, 1);
+    small.colors[0] = Color.white.getRGB();
+    SobelKernel kernel = new SobelKernel();
+    kernel.loadBrightness(small);
+    t.checkExpect(kernel.paddedWidth, 4);
+    t.checkInexact(kernel.plane, new double[] { 0, 0, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0 }, 0.0001);
+    small.replicateEdges = true;
+    kernel.loadBrightness(small);
+    t.checkInexact(kernel.plane, new double[] { 1, 1, 0, 0, 1, 1, 0, 0, 1, 1, 0, 0 }, 0.0001);
+    kernel.computeEnergies(small);
+    t.checkInexact(small.energies, new double[] { 4.0, 4.0 }, 0.0001);
+
+    // a narrower grid reuses the plane, only rows inside the range change
+    PackedGrid carved = new PackedGrid(this.balloons);
+    carved.removeSeamVertical(false);
+    carved.removeSeamHorizontal(false);
+    double[] refreshed = carved.energies.clone();
+    carved.computeEnergies();
+    t.checkExpect(carved.energies, refreshed);
+    kernel.loadBrightness(carved);
+    Arrays.fill(carved.energies, -1.0);
+    kernel.computeRows(carved, 2, 4);
+    t.checkExpect(carved.energyAt(1, 5), -1.0);
+    t.checkExpect(carved.energyAt(3, 5), refreshed[3 * carved.stride + 5]);
   }
 
-  void testIsWellFormed(Tester t) {
+  void testCachedBrightness(Tester t) {
     this.initConds();
 
-    t.checkExpect(this.grid2.rootPixel.isWellFormedCol(), true);
-    t.checkExpect(this.grid2.rootPixel.isWellFormedRow(), true);
+    // computed once from the color, the same way the brightness always was
+    Pixel pixel = new Pixel(new Color(10, 200, 55));
+    t.checkInexact(pixel.cachedBrightness, 265 / 765.0, 0.000001);
+    t.checkExpect(pixel.brightness(), pixel.cachedBrightness);
+    t.checkExpect(BorderPixel.BORDER.cachedBrightness, 0.0);
+
+    // every pixel keeps its brightness through removal and reinsertion, so the
+    // energies still match the packed grid, which reads the colors
+    Grid grid = new Grid(this.balloons);
+    PackedGrid packed = new PackedGrid(this.balloons);
+    SeamInfo vertical = grid.findLowestSeamVertical();
+    grid.removeSeamVerticalHelp(vertical, false);
+    packed.removeSeamVertical(false);
+    SeamInfo horizontal = grid.findLowestSeamHorizontal();
+    grid.removeSeamHorizontalHelp(horizontal, false);
+    packed.removeSeamHorizontal(false);
+    t.checkExpect(grid.getPixelAt(40, 60).energy(), packed.energyAt(40, 60));
+    t.checkExpect(grid.getPixelAt(0, packed.width - 1).energy(),
+        packed.energyAt(0, packed.width - 1));
+
+    grid.reinsertSeam(grid.compactSeam(horizontal, false));
+    grid.reinsertSeam(grid.compactSeam(vertical, true));
+    Pixel reinserted = grid.getPixelAt(0, 0);
+    t.checkExpect(reinserted.brightness(),
+        new PackedGrid(this.balloons).brightness(0, 0));
+    t.checkExpect(grid.findLowestSeamVertical().totalWeight,
+        new Grid(this.balloons).findLowestSeamVertical().totalWeight);
+  }
 
-    t.checkExpect(this.grid.rootPixel.isWellFormedCol(), true);
-    t.checkExpect(this.grid.rootPixel.isWellFormedRow(), true);
+  // waits up to 10 seconds for the given future to finish, returning whether
+  // it did
+  boolean awaitDone(CompletableFuture<?> future) throws InterruptedException {
+    for (int wait = 0; wait < 1000 && !future.isDone(); wait += 1) {
+      Thread.sleep(10);
+    }
+    return future.isDone();
+  }
 
-    // remove a seam
-    this.grid2.removeSeamHorizontal(false);
-    this.grid2.removeSeamVertical(false);
+  void testCarveScheduler(Tester t) throws InterruptedException, IOException {
+    this.initConds();
+    t.checkConstructorException(new RuntimeException("Invalid carve scheduler settings!"),
+        "CarveScheduler", 0, 2, false);
+    t.checkConstructorException(new RuntimeException("Invalid carve scheduler settings!"),
+        "CarveScheduler", 2, -1, false);
+    t.checkConstructorException(new RuntimeException("Target size must be positive!"),
+        "CarveStep", 0, 5);
+
+    CarveScheduler scheduler = new CarveScheduler(2, 2, true);
+    t.checkExpect(scheduler.capacity, 4);
+    t.checkExpect(scheduler.virtualThreads, Runtime.version().feature() >= 21);
+    t.checkExpect(new CarveScheduler(1, 0, false).virtualThreads, false);
+
+    // every job carves its own copy, exactly like carving a packed grid by hand
+    BufferedImage balloons = new RasterLoader().read(new File("./balloons.jpeg"));
+    PackedGrid expected = new PackedGrid(balloons);
+    for (int seam = 0; seam < 6; seam += 1) {
+      expected.removeSeamVertical(false);
+    }
+    for (int seam = 0; seam < 3; seam += 1) {
+      expected.removeSeamHorizontal(false);
+    }
+    PackedGrid byHand = new PackedGrid(balloons);
+    t.checkExpect(byHand.carveTo(balloons.getWidth() - 6, balloons.getHeight() - 3), 9);
+    t.checkExpect(byHand.packedColors(), expected.packedColors());
+    t.checkException(new RuntimeException("Image is smaller than the target size!"), byHand,
+        "carveTo", 2000, 10);
+    ArrayList<CompletableFuture<BufferedImage>> jobs =
+        new ArrayList<CompletableFuture<BufferedImage>>();
+    for (int job = 0; job < 10; job += 1) {
+      jobs.add(scheduler.submit(balloons, balloons.getWidth() - 6, balloons.getHeight() - 3));
+      t.checkExpect(scheduler.unfinished() <= 4, true);
+    }
+    for (CompletableFuture<BufferedImage> job : jobs) {
+      BufferedImage carved = job.join();
+      t.checkExpect(carved.getWidth(), expected.width);
+      t.checkExpect(new RasterLoader().readColors(carved), expected.packedColors());
+    }
 
-    this.grid.removeSeamHorizontal(false);
-    this.grid.removeSeamVertical(false);
+    // a job that fails still gives its slot back
+    CompletableFuture<BufferedImage> tooSmall = scheduler.submit(balloons, 2000, 10);
+    t.checkExpect(this.awaitDone(tooSmall), true);
+    t.checkExpect(tooSmall.isCompletedExceptionally(), true);
+
+    // files are read and written on the io executor
+    File output = File.createTempFile("carved", ".jpg");
+    output.deleteOnExit();
+    CompletableFuture<File> written = scheduler.submit(new File("./balloons.jpeg"), output,
+        100, 50);
+    t.checkExpect(written.join(), output);
+    BufferedImage reread = new RasterLoader().read(output);
+    t.checkExpect(reread.getWidth(), 100);
+    t.checkExpect(reread.getHeight(), 50);
+    CompletableFuture<File> missing = scheduler.submit(new File("./missing.png"), output, 1, 1);
+    t.checkExpect(this.awaitDone(missing), true);
+    t.checkExpect(missing.isCompletedExceptionally(), true);
+
+    // like BatchCarver, an extension no writer knows is written as png
+    File unknown = new File(output.getParentFile(), output.getName() + ".unknown");
+    File fallback = scheduler.submit(new File("./tinyImage1.png"), unknown, 3, 3).join();
+    fallback.deleteOnExit();
+    t.checkExpect(fallback.getName(), unknown.getName() + ".png");
+    t.checkExpect(new RasterLoader().read(fallback).getWidth(), 3);
+    scheduler.shutdown();
+
+    // transparency is dropped from formats other than png
+    BufferedImage clear = new BufferedImage(2, 1, BufferedImage.TYPE_INT_ARGB);
+    clear.setRGB(0, 0, 0x80FF0000);
+    File opaque = new WriteImageStep(File.createTempFile("opaque", ".bmp")).apply(clear);
+    opaque.deleteOnExit();
+    t.checkExpect(new RasterLoader().read(opaque).getColorModel().hasAlpha(), false);
+    t.checkExpect(new RasterLoader().read(opaque).getRGB(0, 0), 0xFFFF0000);
+
+    // reading and writing keep the IOException that failed them as the cause
+    Throwable readFailure = null;
+    try {
+      new ReadImageStep(new File("./missing.png")).get();
+    }
+    catch (RuntimeException e) {
+      readFailure = e;
+    }
+    t.checkExpect(readFailure.getMessage(), "Cannot read the image!");
+    t.checkExpect(readFailure.getCause() instanceof IOException, true);
+    Throwable writeFailure = null;
+    try {
+      new WriteImageStep(new File("./missing/carved.png")).apply(clear);
+    }
+    catch (RuntimeException e) {
+      writeFailure = e;
+    }
+    t.checkExpect(writeFailure.getMessage(), "Cannot write the image!");
+    t.checkExpect(writeFailure.getCause() instanceof IOException, true);
+
+    // a full queue turns trySubmit away instead of waiting
+    CarveScheduler single = new CarveScheduler(1, 0, false);
+    single.slots.acquire();
+    t.checkExpect(single.unfinished(), 1);
+    t.checkExpect(single.trySubmit(balloons, 10, 10), null);
+    single.slots.release();
+    CompletableFuture<BufferedImage> tiny = single.trySubmit(balloons, 10, 10);
+    t.checkExpect(tiny.join().getHeight(), 10);
+    single.shutdown();
+
+    // a job turned away after shutting down gives its slot back
+    t.checkExpect(single.trySubmit(balloons, 10, 10).isCompletedExceptionally(), true);
+    t.checkExpect(single.unfinished(), 0);
+    boolean rejected = false;
+    try {
+      single.submit(new File("./balloons.jpeg"), output, 10, 10);
+    }
+    catch (RejectedExecutionException e) {
+      rejected = true;
+    }
+    t.checkExpect(rejected, true);
+    t.checkExpect(single.unfinished(), 0);
+  }
 
-    t.checkExpect(this.grid2.rootPixel.isWellFormedCol(), true);
-    t.checkExpect(this.grid2.rootPixel.isWellFormedRow(), true);
+  void testIncrementalSeamCosts(Tester t) {
+    this.initConds();
 
-    t.checkExpect(this.grid.rootPixel.isWellFormedCol(), true);
-    t.checkExpect(this.grid.rootPixel.isWellFormedRow(), true);
+    // the patched costs always find the same seam as a search from scratch,
+    // through vertical removals, horizontal removals and reinsertions
+    PackedGrid patched = new PackedGrid(this.balloons);
+    PackedGrid fresh = new PackedGrid(this.balloons);
+    t.checkExpect(patched.seamCostsValid, false);
+    t.checkExpect(patched.findLowestSeamVertical(), fresh.findLowestSeamVerticalFromScratch());
+    t.checkExpect(patched.seamCostsValid, true);
+
+    ArrayList<PackedSeam> removed = new ArrayList<PackedSeam>();
+    for (int seam = 0; seam < 25; seam += 1) {
+      PackedSeam lowest = patched.findLowestSeamVertical();
+      t.checkExpect(lowest, fresh.findLowestSeamVerticalFromScratch());
+      patched.removeSeamVerticalHelp(lowest, false);
+      fresh.removeSeamVerticalHelp(fresh.findLowestSeamVertical(), false);
+      removed.add(lowest);
+      if (seam % 10 == 9) {
+        PackedSeam row = patched.removeSeamHorizontal(false);
+        t.checkExpect(patched.seamCostsValid, false);
+        fresh.removeSeamHorizontal(false);
+        removed.add(row);
+      }
+    }
+    t.checkExpect(patched.seamCostsValid, true);
+
+    // the costs of every pixel match a full recompute
+    double[] costs = patched.seamCosts.clone();
+    byte[] moves = patched.seamMoves.clone();
+    patched.seamCostsValid = false;
+    patched.findLowestSeamVertical();
+    t.checkExpect(Arrays.equals(costs, patched.seamCosts), true);
+    t.checkExpect(Arrays.equals(moves, patched.seamMoves), true);
+
+    // a red line changes nothing, reinserting starts over
+    patched.removeSeamVerticalHelp(patched.findLowestSeamVertical(), true);
+    t.checkExpect(patched.seamCostsValid, true);
+    patched.reinsertSeam(removed.get(removed.size() - 1));
+    t.checkExpect(patched.seamCostsValid, false);
+    fresh.reinsertSeam(removed.get(removed.size() - 1));
+    t.checkExpect(patched.findLowestSeamVertical(), fresh.findLowestSeamVerticalFromScratch());
+
+    // a seam along either edge of the image
+    PackedGrid edges = new PackedGrid(this.tinyImg1);
+    edges.findLowestSeamVertical();
+    edges.removeSeamVerticalHelp(new PackedSeam(true, new int[] { 0, 0, 0, 0 }, 0), false);
+    t.checkExpect(edges.findLowestSeamVertical(), edges.findLowestSeamVerticalFromScratch());
+    edges.removeSeamVerticalHelp(new PackedSeam(true, new int[] { 2, 2, 1, 2 }, 0), false);
+    t.checkExpect(edges.findLowestSeamVertical(), edges.findLowestSeamVerticalFromScratch());
+    edges.setReplicateEdges(true);
+    t.checkExpect(edges.seamCostsValid, false);
+    t.checkExpect(edges.findLowestSeamVertical(), edges.findLowestSeamVerticalFromScratch());
+  }
 
-    t.checkExpect(((Pixel) this.grid.rootPixel.getRight()).isWellFormedCol(), true);
-    t.checkExpect(((Pixel) this.grid.rootPixel.getRight()).isWellFormedRow(), true);
+  void testDualSeamSearch(Tester t) {
+    this.initConds();
 
-    // make a bad pixel
-    APixel rightPixel = this.grid.rootPixel.getRight();
-    rightPixel.changeNeighbor(new BorderPixel(), 3);
-    rightPixel.changeNeighbor(new Pixel(Color.blue), 1);
+    // both seams match the ones found one after the other
+    DualSeamSearch search = new DualSeamSearch();
+    PackedGrid packedBalloons = new PackedGrid(this.balloons);
+    PackedGrid alone = new PackedGrid(this.balloons);
+    SeamForecast both = search.search(packedBalloons, 3);
+    t.checkExpect(both.version, 3);
+    t.checkExpect(both.vertical, alone.findLowestSeamVertical());
+    t.checkExpect(both.horizontal, alone.findLowestSeamHorizontal());
+    t.checkExpect(search.search(this.packed2, 0),
+        new SeamForecast(0, this.packed2Copy.findLowestSeamVertical(),
+            this.packed2Copy.findLowestSeamHorizontal()));
+
+    // in forward energy too, where both searches read the colors
+    packedBalloons.forwardEnergy = true;
+    alone.forwardEnergy = true;
+    both = search.search(packedBalloons, 0);
+    t.checkExpect(both.vertical, alone.findLowestSeamVertical());
+    t.checkExpect(both.horizontal, alone.findLowestSeamHorizontal());
+    search.shutdown();
+    t.checkExpect(search.helper.isShutdown(), true);
+
+    // the cheaper seam is the one that removes less energy per pixel
+    PackedSeam tall = new PackedSeam(true, new int[] { 0, 0, 0, 0 }, 8);
+    PackedSeam wide = new PackedSeam(false, new int[] { 0, 0 }, 5);
+    t.checkExpect(new SeamForecast(0, tall, wide).verticalIsCheaper(), true);
+    t.checkExpect(new SeamForecast(0, tall, new PackedSeam(false, new int[] { 0, 0 }, 3))
+        .verticalIsCheaper(), false);
+    t.checkExpect(new SeamForecast(0, tall, new PackedSeam(false, new int[] { 0, 0 }, 4))
+        .verticalIsCheaper(), true);
+
+    // o toggles the optimal order, whose red line is always the cheaper seam
+    ImageEditor editor = new ImageEditor(new Grid(this.balloons));
+    editor.onKeyEvent("o");
+    t.checkExpect(editor.optimalOrder, true);
+    for (int tick = 0; tick < 6; tick += 1) {
+      SeamForecast expected = new DualSeamSearch().search(new PackedGrid(editor.grid), 0);
+      editor.onTick();
+      t.checkExpect(editor.removeVertical, expected.verticalIsCheaper());
+      t.checkExpect(editor.grid.seamIndices(editor.redLineSeam),
+          expected.seam(expected.verticalIsCheaper()).indices);
+      editor.onTick();
+      t.checkExpect(editor.redLineSeam, null);
+    }
 
-    t.checkExpect(((Pixel) this.grid.rootPixel.getRight()).isWellFormedCol(), true);
-    t.checkExpect(((Pixel) this.grid.rootPixel.getRight()).isWellFormedRow(), false);
+    // the seams are found on one copy of the grid, kept in step with it
+    GridMirror mirror = editor.mirror;
+    editor.removeHorizontalOverride = true;
+    editor.onTick();
+    t.checkExpect(editor.mirror == mirror, true);
+    t.checkExpect(mirror.grid.packedColors(), new PackedGrid(editor.grid).colors);
+    editor.inflating = true;
+    for (int tick = 0; tick < 4; tick += 1) {
+      editor.onTick();
+    }
+    t.checkExpect(mirror.grid.packedColors(), new PackedGrid(editor.grid).colors);
+    editor.inflating = false;
+
+    editor.onKeyEvent("o");
+    t.checkExpect(editor.optimalOrder, false);
+    editor.close();
+    t.checkExpect(editor.dualSearch.helper.isShutdown(), true);
+
+    // a mirror made after seams were removed takes them back while inflating,
+    // growing its buffer past the size it was made at
+    ImageEditor late = new ImageEditor(new Grid(this.balloons));
+    for (int tick = 0; tick < 6; tick += 1) {
+      late.onTick();
+    }
+    late.removeVerticalOverride = true;
+    late.onTick();
+    int removed = late.seamHistory.size();
+    t.checkExpect(removed > 2, true);
+    late.onKeyEvent("o");
+    late.onTick();
+    t.checkExpect(late.mirror == null, false);
+    late.onKeyEvent("r");
+    for (int tick = 0; tick < removed + 3; tick += 1) {
+      late.onTick();
+      t.checkExpect(late.mirror.grid.packedColors(), new PackedGrid(late.grid).colors);
+    }
+    t.checkExpect(late.seamHistory.size(), 0);
+    t.checkExpect(late.mirror.grid.packedColors(), new PackedGrid(this.balloons).colors);
+    t.checkExpect(late.mirror.grid.findLowestSeamVertical(),
+        new PackedGrid(this.balloons).findLowestSeamVertical());
+    late.close();
+
+    // and a packed grid can always take back the seams removed from its grid
+    PackedGrid narrow = new PackedGrid(2, 2);
+    PackedSeam column = new PackedSeam(true, new int[] { 2, 0 }, 0);
+    column.colors = new int[] { 1, 2 };
+    narrow.reinsertSeam(column);
+    PackedSeam row = new PackedSeam(false, new int[] { 2, 2, 0 }, 0);
+    row.colors = new int[] { 3, 4, 5 };
+    narrow.reinsertSeam(row);
+    t.checkExpect(narrow.packedColors(), new int[] { 0, 0, 5, 2, 0, 1, 3, 4, 0 });
+    t.checkExpect(this.energiesUpToDate(narrow), true);
+  }
 
+  void testTransportMap(Tester t) throws IOException {
     this.initConds();
-    // make a bad pixel
-    APixel bottomPixel = this.grid.rootPixel.getBottom();
-    bottomPixel.changeNeighbor(new BorderPixel(), 0);
-    bottomPixel.changeNeighbor(new Pixel(Color.blue), 2);
-
-    t.checkExpect(((Pixel) this.grid.rootPixel.getBottom()).isWellFormedCol(), false);
-    t.checkExpect(((Pixel) this.grid.rootPixel.getBottom()).isWellFormedRow(), true);
 
+    // a compact copy has no spare columns but the same colors and energies
+    PackedGrid carved = new PackedGrid(this.balloons);
+    carved.removeSeamVertical(false);
+    carved.removeSeamHorizontal(false);
+    PackedGrid copy = carved.compactCopy();
+    t.checkExpect(copy.stride, carved.width);
+    t.checkExpect(copy.colors, carved.packedColors());
+    double[] energies = copy.energies.clone();
+    copy.computeEnergies();
+    t.checkExpect(Arrays.equals(energies, copy.energies), true);
+
+    // an empty map removes nothing
+    TransportMap empty = new TransportMap(this.packed2, 0, 0);
+    t.checkExpect(empty.totalCost(), 0.0);
+    t.checkExpect(empty.order(), new boolean[0]);
+    t.checkExpect(empty.result().colors, this.packed2.packedColors());
+
+    // the edges of the map can only go one way
+    BufferedImage scaled = new BufferedImage(60, 26, BufferedImage.TYPE_INT_RGB);
+    scaled.getGraphics().drawImage(new RasterLoader().read(new File("balloons.jpeg")), 0, 0,
+        60, 26, null);
+    PackedGrid small = new PackedGrid(scaled);
+    TransportMap map = new TransportMap(small, 4, 5);
+    for (int col = 1; col <= 5; col += 1) {
+      t.checkExpect(map.isVertical(0, col), true);
+    }
+    for (int row = 1; row <= 4; row += 1) {
+      t.checkExpect(map.isVertical(row, 0), false);
+    }
+    t.checkExpect(map.result().width, small.width - 5);
+    t.checkExpect(map.result().height, small.height - 4);
+
+    // carving in the order of the map removes its total cost, and gets its image
+    boolean[] order = map.order();
+    t.checkExpect(order.length, 9);
+    PackedGrid replay = small.compactCopy();
+    double cost = 0;
+    for (boolean vertical : order) {
+      cost += vertical ? replay.removeSeamVertical(false).totalWeight
+          : replay.removeSeamHorizontal(false).totalWeight;
+    }
+    t.checkInexact(cost, map.totalCost(), 0.000001);
+    t.checkExpect(replay.packedColors(), map.result().packedColors());
+
+    // filling the map in parallel finds the same map
+    ForkJoinPool pool = new ForkJoinPool(3);
+    TransportMap parallel = new TransportMap(small, 4, 5, pool, 1);
+    t.checkExpect(parallel.choices, map.choices);
+    t.checkExpect(parallel.costs, map.costs);
+    t.checkExpect(parallel.result().packedColors(), map.result().packedColors());
+
+    // only the images of the anti-diagonal being filled and the one before are
+    // kept, which is a single cell at the end
+    for (int col = 0; col < 5; col += 1) {
+      t.checkExpect(map.images[col], null);
+      t.checkExpect(map.verticalSeams[col], null);
+    }
+    t.checkExpect(map.images[5].length, (small.width - 5) * (small.height - 4));
+    t.checkExpect(map.peakBytes > 4L * small.width * small.height, true);
+    t.checkExpect(map.peakBytes < 4L * 2 * 5 * small.width * small.height + 4096, true);
+
+    // carving packed colors keeps the same pixels as removing the seam from a grid
+    PackedGrid vertical = small.compactCopy();
+    PackedGrid horizontal = small.compactCopy();
+    int[] verticalCarved = map.carve(small.packedColors(), small.width, small.height,
+        vertical.removeSeamVertical(false));
+    int[] horizontalCarved = map.carve(small.packedColors(), small.width, small.height,
+        horizontal.removeSeamHorizontal(false));
+    t.checkExpect(verticalCarved, vertical.packedColors());
+    t.checkExpect(horizontalCarved, horizontal.packedColors());
+
+    // the report compares against the same seams in a random order
+    TransportMapReport report = new TransportMapReport(small, 3, 3, new Random(4), pool);
+    t.checkExpect(report.optimalCost, new TransportMap(small, 3, 3).totalCost());
+    t.checkExpect(report.randomCost > 0, true);
+    t.checkExpect(report.summary().startsWith("3 x 3 removals"), true);
+    pool.shutdown();
+
+    t.checkConstructorException(new RuntimeException("Cannot carve to that size!"),
+        "TransportMap", this.packed2, 4, 0);
+    t.checkConstructorException(new RuntimeException("Cannot carve to that size!"),
+        "TransportMap", this.packed2, 0, -1);
+    t.checkConstructorException(new RuntimeException("Tasks must have at least one cell!"),
+        "TransportMap", this.packed2, 1, 1, null, 0);
+    t.checkException(new RuntimeException("Cell is outside of the map!"), map,
+        "isVertical", 5, 0);
   }
 
 }
\ No newline at end of file
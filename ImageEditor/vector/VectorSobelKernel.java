@@ -0,0 +1,51 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+// a SobelKernel that computes as many energies at once as the widest SIMD
+// registers of this machine hold, with the Vector API, the lanes do the same
+// operations in the same order as SobelKernel.computeRow, so the energies are
+// exactly the same
+// the Vector API is an incubator module, so this is compiled and run apart
+// from ImageEditorFinal.java, which only loads it through SobelKernel.fastest:
+//   javac -cp <classes of ImageEditorFinal.java> --add-modules jdk.incubator.vector
+//       VectorSobelKernel.java
+//   java --add-modules jdk.incubator.vector ...
+class VectorSobelKernel extends SobelKernel {
+  static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+  // EFFECT: computes the energy of every pixel from firstRow up to (but not
+  // including) lastRow like SobelKernel.computeRows, a vector at a time, and
+  // the columns left over at the end of every row one at a time
+  void computeRows(PackedGrid grid, int firstRow, int lastRow) {
+    double[] plane = this.plane;
+    double[] energies = grid.energies;
+    int lanes = SPECIES.length();
+    int lastVector = SPECIES.loopBound(grid.width);
+
+    for (int row = firstRow; row < lastRow; row += 1) {
+      int up = row * this.paddedWidth;
+      int middle = up + this.paddedWidth;
+      int down = middle + this.paddedWidth;
+      int out = row * grid.stride;
+
+      for (int col = 0; col < lastVector; col += lanes) {
+        DoubleVector topLeft = DoubleVector.fromArray(SPECIES, plane, up + col);
+        DoubleVector top = DoubleVector.fromArray(SPECIES, plane, up + col + 1);
+        DoubleVector topRight = DoubleVector.fromArray(SPECIES, plane, up + col + 2);
+        DoubleVector left = DoubleVector.fromArray(SPECIES, plane, middle + col);
+        DoubleVector right = DoubleVector.fromArray(SPECIES, plane, middle + col + 2);
+        DoubleVector bottomLeft = DoubleVector.fromArray(SPECIES, plane, down + col);
+        DoubleVector bottom = DoubleVector.fromArray(SPECIES, plane, down + col + 1);
+        DoubleVector bottomRight = DoubleVector.fromArray(SPECIES, plane, down + col + 2);
+
+        DoubleVector hEnergy = topLeft.add(left.mul(2.0)).add(bottomLeft)
+            .sub(topRight.add(right.mul(2.0)).add(bottomRight));
+        DoubleVector vEnergy = topLeft.add(top.mul(2.0)).add(topRight)
+            .sub(bottomLeft.add(bottom.mul(2.0)).add(bottomRight));
+        hEnergy.mul(hEnergy).add(vEnergy.mul(vEnergy)).sqrt().intoArray(energies, out + col);
+      }
+
+      this.computeRow(grid, row, lastVector);
+    }
+  }
+}